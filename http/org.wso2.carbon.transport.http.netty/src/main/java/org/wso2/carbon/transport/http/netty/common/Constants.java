@@ -96,6 +96,38 @@ public final class Constants {
 
     public static final String MIN_EVICTION_IDLE_TIME = "client.min.eviction.idle.time";
 
+    // Block or fail bound the connections in use per route to client.max.active.connections.per.pool, across all
+    // the pools of the route as well as the connections cached per source channel
+    public static final String POOL_EXHAUSTED_ACTION = "client.connection.pool.exhausted.action";
+
+    public static final String MAX_PENDING_ACQUIRES_PER_POOL = "client.max.pending.acquires.per.pool";
+
+    public static final String MAX_WAIT_TIME_FOR_CONNECTION = "client.max.wait.time.for.connection";
+
+    public static final String MAX_CONNECTION_LIFETIME = "client.max.connection.lifetime";
+
+    public static final String MAX_REQUESTS_PER_CONNECTION = "client.max.requests.per.connection";
+
+    // Carbon message property which overrides the maximum time a request waits for a pooled connection
+    public static final String POOL_ACQUIRE_TIMEOUT = "POOL_ACQUIRE_TIMEOUT";
+
+    // Carbon message property with the timeout in milliseconds for the first byte of the response, which covers
+    // acquiring a connection, connecting and writing the request
+    public static final String REQUEST_TIMEOUT = "REQUEST_TIMEOUT";
+
+    // Carbon message property with the timeout in milliseconds for the whole response
+    public static final String RESPONSE_TIMEOUT = "RESPONSE_TIMEOUT";
+
+    // Time the request is handed over to the sender, deadlines of the request are calculated from this time
+    public static final String REQUEST_START_TIME = "REQUEST_START_TIME";
+
+    // Carbon message property with the path of the Unix domain socket the backend listens on
+    public static final String UNIX_DOMAIN_SOCKET_PATH = "UNIX_DOMAIN_SOCKET_PATH";
+
+    // Carbon message property which tells the sender to inflate the response, otherwise an encoded response is
+    // passed through as it is
+    public static final String DECOMPRESS_RESPONSE = "DECOMPRESS_RESPONSE";
+
     public static final String ENABLE_GLOBAL_CONNECTION_POOLING = "enable.global.client.connection.pooling";
 
     public static final String NO_THREADS_IN_EXECUTOR_SERVICE = "sender.thread.count";
@@ -179,6 +211,9 @@ public final class Constants {
 
     public static final String SRC_HANDLER = "SRC_HANDLER";
 
+    // Context of the backend connection of a response, whose reading is suspended while the client is slow
+    public static final String TARGET_CHNL_HNDLR_CTX = "TARGET_CHNL_HNDLR_CTX";
+
     //Server Connection Related Parameters
     public static final String LOCAL_ADDRESS = "LOCAL_ADDRESS";
     public static final String LOCAL_NAME = "LOCAL_NAME";
@@ -217,6 +252,14 @@ public final class Constants {
     public static final String HTTP2_PATH = ":path";
     public static final String HTTP2_AUTHORITY = ":authority";
     public static final String HTTP2_SCHEME = ":scheme";
+    // Resources to be pushed along with a response
+    public static final String HTTP2_PUSH_PROMISES = "HTTP2_PUSH_PROMISES";
+    // Trailers of a response as a map of header names to values, e.g. grpc-status
+    public static final String HTTP_TRAILER_HEADERS = "HTTP_TRAILER_HEADERS";
+    public static final String GRPC_CONTENT_TYPE = "application/grpc";
+    // Stream schedulers of the HTTP/2 connections of a listener
+    public static final String HTTP2_SCHEDULER_WEIGHTED_FAIR = "weighted-fair";
+    public static final String HTTP2_SCHEDULER_UNIFORM = "uniform";
 
     private Constants() {
     }
@@ -21,6 +21,7 @@ package org.wso2.carbon.transport.http.netty.common;
 public class HttpRoute {
     private String host;
     private int port;
+    private String domainSocketPath;
 
 
     public HttpRoute(String host, int port) {
@@ -28,8 +29,25 @@ public class HttpRoute {
         this.port = port;
     }
 
+    /**
+     * Route to a backend which listens on a Unix domain socket. Host and port are only used for the request
+     * headers since the connection is made to the socket path.
+     *
+     * @param host             host of the backend
+     * @param port             port of the backend
+     * @param domainSocketPath path of the Unix domain socket, null to connect over TCP
+     */
+    public HttpRoute(String host, int port, String domainSocketPath) {
+        this.host = host;
+        this.port = port;
+        this.domainSocketPath = domainSocketPath;
+    }
+
     @Override
     public String toString() {
+        if (domainSocketPath != null) {
+            return "unix-" + domainSocketPath;
+        }
         return host + "-" + port;
     }
 
@@ -40,6 +58,14 @@ public class HttpRoute {
     public int getPort() {
         return port;
     }
+
+    public String getDomainSocketPath() {
+        return domainSocketPath;
+    }
+
+    public boolean isDomainSocket() {
+        return domainSocketPath != null;
+    }
 }
 
 
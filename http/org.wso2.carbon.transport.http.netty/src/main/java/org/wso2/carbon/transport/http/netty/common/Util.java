@@ -15,8 +15,14 @@
 
 package org.wso2.carbon.transport.http.netty.common;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.DefaultHttpRequest;
 import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpMessage;
 import io.netty.handler.codec.http.HttpMethod;
@@ -34,6 +40,7 @@ import org.wso2.carbon.transport.http.netty.config.Parameter;
 import org.wso2.carbon.transport.http.netty.listener.RequestDataHolder;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -111,6 +118,27 @@ public class Util {
         return outgoingResponse;
     }
 
+    /**
+     * Create a response for the requests which are rejected before they are processed. The content is not
+     * released when the response is written, hence a single instance can be written many times through
+     * {@link FullHttpResponse#retainedDuplicate()}.
+     *
+     * @param status     status of the response
+     * @param retryAfter value of the Retry-After header in seconds, not added if negative
+     * @return response with an unreleasable content
+     */
+    public static FullHttpResponse createRejectionResponse(HttpResponseStatus status, int retryAfter) {
+        ByteBuf content = Unpooled.unreleasableBuffer(Unpooled.copiedBuffer(status.reasonPhrase(),
+                StandardCharsets.UTF_8));
+        FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, status, content);
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.TEXT_PLAIN);
+        response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, content.readableBytes());
+        if (retryAfter >= 0) {
+            response.headers().setInt(HttpHeaderNames.RETRY_AFTER, retryAfter);
+        }
+        return response;
+    }
+
     @SuppressWarnings("unchecked")
     public static HttpRequest createHttpRequest(CarbonMessage msg) {
         HttpMethod httpMethod;
@@ -141,8 +169,13 @@ public class Util {
      * @param cMsg CarbonMessage
      */
     public static void setupTransferEncodingForRequest(CarbonMessage cMsg) {
+        String contentType = cMsg.getHeader(Constants.HTTP_CONTENT_TYPE);
         if (cMsg.getHeader(Constants.HTTP_TRANSFER_ENCODING) != null) {
             cMsg.removeHeader(Constants.HTTP_CONTENT_LENGTH);
+        } else if (!cMsg.isAlreadyRead() && cMsg.getHeader(Constants.HTTP_CONTENT_LENGTH) == null
+                && contentType != null && contentType.startsWith(Constants.GRPC_CONTENT_TYPE)) {
+            // gRPC requests are streamed, hence they are not held back to find out their length
+            cMsg.setHeader(Constants.HTTP_TRANSFER_ENCODING, HttpHeaderValues.CHUNKED.toString());
         } else if (cMsg.isAlreadyRead() || (cMsg.getHeader(Constants.HTTP_CONTENT_LENGTH) == null && !cMsg.isEmpty())) {
             int contentLength = cMsg.getFullMessageLength();
             if (contentLength > 0) {
@@ -151,6 +184,26 @@ public class Util {
         }
     }
 
+    /**
+     * Negotiate the content coding of the response with the backend. An Accept-Encoding of the request is passed
+     * through as it is, so that an encoded response can be relayed to the client without inflating it. Otherwise
+     * the configured Accept-Encoding is added and the response is marked to be inflated by the sender.
+     *
+     * @param httpRequest    outgoing request
+     * @param cMsg           CarbonMessage of the request
+     * @param acceptEncoding Accept-Encoding of the sender configuration, null if not configured
+     */
+    public static void setupAcceptEncodingForRequest(HttpRequest httpRequest, CarbonMessage cMsg,
+                                                     String acceptEncoding) {
+        if (acceptEncoding == null || httpRequest.headers().contains(Constants.ACCEPT_ENCODING)) {
+            return;
+        }
+        httpRequest.headers().set(Constants.ACCEPT_ENCODING, acceptEncoding);
+        if (cMsg.getProperty(Constants.DECOMPRESS_RESPONSE) == null) {
+            cMsg.setProperty(Constants.DECOMPRESS_RESPONSE, true);
+        }
+    }
+
     /**
      * Prepare response message with Transfer-Encoding/Content-Length
      *
@@ -421,6 +474,11 @@ public class Util {
             return defaultVal;
         }
 
+        // YAML parser provides integers for values which fit into the integer range
+        if (propertyVal instanceof Integer) {
+            return ((Integer) propertyVal).longValue();
+        }
+
         if (!(propertyVal instanceof Long)) {
             throw new IllegalArgumentException("Property : " + key + " must be a long");
         }
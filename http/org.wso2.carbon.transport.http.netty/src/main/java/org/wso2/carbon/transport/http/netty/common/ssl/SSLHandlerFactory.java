@@ -172,6 +172,32 @@ public class SSLHandlerFactory {
                         ApplicationProtocolNames.HTTP_1_1)).build();
     }
 
+    /**
+     * This method will provide netty ssl context for the client side which negotiates HTTP2 over TLS using
+     * Application Layer Protocol Negotiation (ALPN)
+     *
+     * @return instance of {@link SslContext}
+     * @throws SSLException
+     */
+    public SslContext createHttp2TLSContextForClient() throws SSLException {
+        List<String> ciphers = sslConfig.getCipherSuites() != null && sslConfig.getCipherSuites().length > 0 ? Arrays
+                .asList(sslConfig.getCipherSuites()) : Http2SecurityUtil.CIPHERS;
+        SslProvider provider = OpenSsl.isAlpnSupported() ? SslProvider.OPENSSL : SslProvider.JDK;
+        SslContextBuilder sslContextBuilder = SslContextBuilder.forClient()
+                .trustManager(this.getTrustStoreFactory())
+                .sslProvider(provider)
+                .ciphers(ciphers, SupportedCipherSuiteFilter.INSTANCE)
+                .applicationProtocolConfig(new ApplicationProtocolConfig(
+                        ApplicationProtocolConfig.Protocol.ALPN,
+                        ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+                        ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+                        ApplicationProtocolNames.HTTP_2));
+        if (sslConfig.getKeyStore() != null) {
+            sslContextBuilder.keyManager(this.getKeyManagerFactory());
+        }
+        return sslContextBuilder.build();
+    }
+
     public KeyManagerFactory getKeyManagerFactory() {
         return kmf;
     }
@@ -18,6 +18,7 @@
  */
 package org.wso2.carbon.transport.http.netty.config;
 
+import org.wso2.carbon.transport.http.netty.common.Constants;
 import org.wso2.carbon.transport.http.netty.common.Util;
 import org.wso2.carbon.transport.http.netty.common.ssl.SSLConfig;
 import java.util.ArrayList;
@@ -62,6 +63,9 @@ public class ListenerConfiguration {
     @XmlAttribute
     private boolean http2 = false;
 
+    @XmlAttribute
+    private boolean http2PriorKnowledge = false;
+
     @XmlAttribute
     private String keyStoreFile;
 
@@ -77,6 +81,127 @@ public class ListenerConfiguration {
     @XmlAttribute
     private String certPass;
 
+    @XmlAttribute
+    private int expectContinueTimeout = 3000;
+
+    @XmlAttribute
+    private boolean adaptiveConcurrencyLimit = false;
+
+    @XmlAttribute
+    private int initialConcurrencyLimit = 100;
+
+    @XmlAttribute
+    private int minConcurrencyLimit = 10;
+
+    @XmlAttribute
+    private int maxConcurrencyLimit = 1000;
+
+    @XmlAttribute
+    private int retryAfter = 1;
+
+    @XmlAttribute
+    private int pipeliningLimit = 1;
+
+    @XmlAttribute
+    private int idleTimeout = 0;
+
+    @XmlAttribute
+    private int headerReadTimeout = 0;
+
+    @XmlAttribute
+    private int maxRequestsPerConnection = 0;
+
+    @XmlAttribute
+    private int maxConnections = 0;
+
+    @XmlAttribute
+    private int maxConnectionsPerClient = 0;
+
+    @XmlAttribute
+    private double rateLimit = 0;
+
+    @XmlAttribute
+    private int rateLimitBurst = 0;
+
+    @XmlAttribute
+    private double clientRateLimit = 0;
+
+    @XmlAttribute
+    private int clientRateLimitBurst = 0;
+
+    @XmlAttribute
+    private int maxRateLimitedClients = 10000;
+
+    @XmlAttribute
+    private int maxConcurrentRequests = 0;
+
+    @XmlAttribute
+    private int maxQueuedRequests = 0;
+
+    @XmlAttribute
+    private int drainTimeout = 0;
+
+    @XmlAttribute
+    private String workerGroup;
+
+    @XmlAttribute
+    private int workerGroupSize = 0;
+
+    @XmlAttribute
+    private int http2MaxConcurrentStreams = 100;
+
+    @XmlAttribute
+    private int http2MaxHeaderListSize = 8192;
+
+    @XmlAttribute
+    private int http2InitialWindowSize = 0;
+
+    @XmlAttribute
+    private int http2ConnectionWindowSize = 0;
+
+    @XmlAttribute
+    private boolean http2ConnectionWindowAutoTuning = false;
+
+    @XmlAttribute
+    private int http2MaxConnectionWindowSize = 16 * 1024 * 1024;
+
+    @XmlAttribute
+    private int http2MaxFrameSize = 0;
+
+    @XmlAttribute
+    private int http2HeaderTableSize = -1;
+
+    @XmlAttribute
+    private int http2PushBudget = 100;
+
+    @XmlAttribute
+    private String http2StreamScheduler = Constants.HTTP2_SCHEDULER_WEIGHTED_FAIR;
+
+    @XmlAttribute
+    private int http2AllocationQuantum = 1024;
+
+    @XmlAttribute
+    private String http2PassthroughHost;
+
+    @XmlAttribute
+    private int http2PassthroughPort = 80;
+
+    @XmlAttribute
+    private boolean grpcFraming = false;
+
+    @XmlAttribute
+    private int grpcMaxMessageSize = 4 * 1024 * 1024;
+
+    @XmlAttribute
+    private int webSocketExecutorThreads = 0;
+
+    @XmlAttribute
+    private int webSocketExecutorQueueSize = 10000;
+
+    @XmlElementWrapper(name = "requestClasses")
+    @XmlElement(name = "requestClass")
+    private List<RequestClassConfiguration> requestClasses = new ArrayList<>();
+
     @XmlElementWrapper(name = "parameters")
     @XmlElement(name = "parameter")
     private List<Parameter> parameters = getDefaultParameters();
@@ -162,6 +287,453 @@ public class ListenerConfiguration {
         this.http2 = http2;
     }
 
+    /**
+     * Whether cleartext HTTP/2 connections of the listener may start with the connection preface right away, in
+     * which case the first bytes of a connection decide between HTTP/2 and HTTP/1.1 without an upgrade request.
+     */
+    public boolean isHttp2PriorKnowledge() {
+        return http2PriorKnowledge;
+    }
+
+    public void setHttp2PriorKnowledge(boolean http2PriorKnowledge) {
+        this.http2PriorKnowledge = http2PriorKnowledge;
+    }
+
+    /**
+     * Time in milliseconds a request with Expect: 100-continue waits for the backend to accept its body before the
+     * listener asks the client for the body by itself. The client is asked right away if it is not positive.
+     *
+     * @return expect continue timeout
+     */
+    public int getExpectContinueTimeout() {
+        return expectContinueTimeout;
+    }
+
+    public void setExpectContinueTimeout(int expectContinueTimeout) {
+        this.expectContinueTimeout = expectContinueTimeout;
+    }
+
+    /**
+     * Whether the number of concurrently processed requests is limited by a limit which adapts to the processing
+     * latency.
+     *
+     * @return true if the adaptive concurrency limit is enabled
+     */
+    public boolean isAdaptiveConcurrencyLimit() {
+        return adaptiveConcurrencyLimit;
+    }
+
+    public void setAdaptiveConcurrencyLimit(boolean adaptiveConcurrencyLimit) {
+        this.adaptiveConcurrencyLimit = adaptiveConcurrencyLimit;
+    }
+
+    public int getInitialConcurrencyLimit() {
+        return initialConcurrencyLimit;
+    }
+
+    public void setInitialConcurrencyLimit(int initialConcurrencyLimit) {
+        this.initialConcurrencyLimit = initialConcurrencyLimit;
+    }
+
+    public int getMinConcurrencyLimit() {
+        return minConcurrencyLimit;
+    }
+
+    public void setMinConcurrencyLimit(int minConcurrencyLimit) {
+        this.minConcurrencyLimit = minConcurrencyLimit;
+    }
+
+    public int getMaxConcurrencyLimit() {
+        return maxConcurrencyLimit;
+    }
+
+    public void setMaxConcurrencyLimit(int maxConcurrencyLimit) {
+        this.maxConcurrencyLimit = maxConcurrencyLimit;
+    }
+
+    /**
+     * Value of the Retry-After header in seconds sent with the requests rejected by the listener.
+     *
+     * @return retry after in seconds
+     */
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+
+    public void setRetryAfter(int retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+
+    public int getPipeliningLimit() {
+        return pipeliningLimit;
+    }
+
+    public void setPipeliningLimit(int pipeliningLimit) {
+        this.pipeliningLimit = pipeliningLimit;
+    }
+
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(int idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public int getHeaderReadTimeout() {
+        return headerReadTimeout;
+    }
+
+    public void setHeaderReadTimeout(int headerReadTimeout) {
+        this.headerReadTimeout = headerReadTimeout;
+    }
+
+    public int getMaxRequestsPerConnection() {
+        return maxRequestsPerConnection;
+    }
+
+    public void setMaxRequestsPerConnection(int maxRequestsPerConnection) {
+        this.maxRequestsPerConnection = maxRequestsPerConnection;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getMaxConnectionsPerClient() {
+        return maxConnectionsPerClient;
+    }
+
+    public void setMaxConnectionsPerClient(int maxConnectionsPerClient) {
+        this.maxConnectionsPerClient = maxConnectionsPerClient;
+    }
+
+    public double getRateLimit() {
+        return rateLimit;
+    }
+
+    public void setRateLimit(double rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    public int getRateLimitBurst() {
+        return rateLimitBurst;
+    }
+
+    public void setRateLimitBurst(int rateLimitBurst) {
+        this.rateLimitBurst = rateLimitBurst;
+    }
+
+    public double getClientRateLimit() {
+        return clientRateLimit;
+    }
+
+    public void setClientRateLimit(double clientRateLimit) {
+        this.clientRateLimit = clientRateLimit;
+    }
+
+    public int getClientRateLimitBurst() {
+        return clientRateLimitBurst;
+    }
+
+    public void setClientRateLimitBurst(int clientRateLimitBurst) {
+        this.clientRateLimitBurst = clientRateLimitBurst;
+    }
+
+    public int getMaxRateLimitedClients() {
+        return maxRateLimitedClients;
+    }
+
+    public void setMaxRateLimitedClients(int maxRateLimitedClients) {
+        this.maxRateLimitedClients = maxRateLimitedClients;
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    public int getMaxQueuedRequests() {
+        return maxQueuedRequests;
+    }
+
+    public void setMaxQueuedRequests(int maxQueuedRequests) {
+        this.maxQueuedRequests = maxQueuedRequests;
+    }
+
+    /**
+     * Time given to the in-flight requests of the connections of the listener to complete once it is unbound, before
+     * the connections are closed.
+     *
+     * @return drain timeout in milliseconds, 0 if the connections are left as they are when the listener is unbound
+     */
+    public int getDrainTimeout() {
+        return drainTimeout;
+    }
+
+    public void setDrainTimeout(int drainTimeout) {
+        this.drainTimeout = drainTimeout;
+    }
+
+    /**
+     * Name of the worker group which serves the connections of the listener. Listeners with the same worker group
+     * name share the event loops of the group.
+     *
+     * @return worker group name, null if the listener has a worker group of its own or uses the default one
+     */
+    public String getWorkerGroup() {
+        return workerGroup;
+    }
+
+    public void setWorkerGroup(String workerGroup) {
+        this.workerGroup = workerGroup;
+    }
+
+    /**
+     * Number of event loops of the worker group of the listener. A listener without a worker group name gets a
+     * worker group of its own if this is positive, and uses the default worker group otherwise.
+     *
+     * @return worker group size
+     */
+    public int getWorkerGroupSize() {
+        return workerGroupSize;
+    }
+
+    public void setWorkerGroupSize(int workerGroupSize) {
+        this.workerGroupSize = workerGroupSize;
+    }
+
+    /**
+     * SETTINGS_MAX_CONCURRENT_STREAMS advertised to the HTTP/2 clients of the listener. Streams opened beyond it are
+     * refused.
+     *
+     * @return maximum number of concurrent streams of a connection, not advertised if it is not positive
+     */
+    public int getHttp2MaxConcurrentStreams() {
+        return http2MaxConcurrentStreams;
+    }
+
+    public void setHttp2MaxConcurrentStreams(int http2MaxConcurrentStreams) {
+        this.http2MaxConcurrentStreams = http2MaxConcurrentStreams;
+    }
+
+    /**
+     * SETTINGS_MAX_HEADER_LIST_SIZE advertised to the HTTP/2 clients of the listener, which also limits the size
+     * of the headers the listener accepts.
+     *
+     * @return maximum size of the header list of a request in bytes, not advertised if it is not positive
+     */
+    public int getHttp2MaxHeaderListSize() {
+        return http2MaxHeaderListSize;
+    }
+
+    public void setHttp2MaxHeaderListSize(int http2MaxHeaderListSize) {
+        this.http2MaxHeaderListSize = http2MaxHeaderListSize;
+    }
+
+    /**
+     * SETTINGS_INITIAL_WINDOW_SIZE advertised to the HTTP/2 clients of the listener, which is the flow control
+     * window of each stream.
+     *
+     * @return initial stream window in bytes, the protocol default of 65535 bytes is used if it is not positive
+     */
+    public int getHttp2InitialWindowSize() {
+        return http2InitialWindowSize;
+    }
+
+    public void setHttp2InitialWindowSize(int http2InitialWindowSize) {
+        this.http2InitialWindowSize = http2InitialWindowSize;
+    }
+
+    /**
+     * Flow control window of an HTTP/2 connection as a whole, which is opened up with a WINDOW_UPDATE right after
+     * the connection preface.
+     *
+     * @return connection window in bytes, the protocol default of 65535 bytes is used if it is not larger
+     */
+    public int getHttp2ConnectionWindowSize() {
+        return http2ConnectionWindowSize;
+    }
+
+    public void setHttp2ConnectionWindowSize(int http2ConnectionWindowSize) {
+        this.http2ConnectionWindowSize = http2ConnectionWindowSize;
+    }
+
+    /**
+     * Whether the connection window of an HTTP/2 connection is grown up to {@link #getHttp2MaxConnectionWindowSize()}
+     * based on the bandwidth-delay product estimated with PINGs.
+     */
+    public boolean isHttp2ConnectionWindowAutoTuning() {
+        return http2ConnectionWindowAutoTuning;
+    }
+
+    public void setHttp2ConnectionWindowAutoTuning(boolean http2ConnectionWindowAutoTuning) {
+        this.http2ConnectionWindowAutoTuning = http2ConnectionWindowAutoTuning;
+    }
+
+    public int getHttp2MaxConnectionWindowSize() {
+        return http2MaxConnectionWindowSize;
+    }
+
+    public void setHttp2MaxConnectionWindowSize(int http2MaxConnectionWindowSize) {
+        this.http2MaxConnectionWindowSize = http2MaxConnectionWindowSize;
+    }
+
+    /**
+     * SETTINGS_MAX_FRAME_SIZE advertised to the HTTP/2 clients of the listener.
+     *
+     * @return largest frame payload accepted in bytes, the protocol default of 16384 bytes is used if it is not
+     * positive
+     */
+    public int getHttp2MaxFrameSize() {
+        return http2MaxFrameSize;
+    }
+
+    public void setHttp2MaxFrameSize(int http2MaxFrameSize) {
+        this.http2MaxFrameSize = http2MaxFrameSize;
+    }
+
+    /**
+     * SETTINGS_HEADER_TABLE_SIZE advertised to the HTTP/2 clients of the listener, which bounds the HPACK dynamic
+     * table used to decode the request headers.
+     *
+     * @return header table size in bytes, the protocol default of 4096 bytes is used if it is negative
+     */
+    public int getHttp2HeaderTableSize() {
+        return http2HeaderTableSize;
+    }
+
+    public void setHttp2HeaderTableSize(int http2HeaderTableSize) {
+        this.http2HeaderTableSize = http2HeaderTableSize;
+    }
+
+    /**
+     * Number of streams which may be pushed over an HTTP/2 connection of the listener, on top of the streams the
+     * client allows to be open at once.
+     *
+     * @return push budget of a connection, push is disabled if it is not positive
+     */
+    public int getHttp2PushBudget() {
+        return http2PushBudget;
+    }
+
+    public void setHttp2PushBudget(int http2PushBudget) {
+        this.http2PushBudget = http2PushBudget;
+    }
+
+    /**
+     * Scheduler which shares the flow control window of an HTTP/2 connection between its streams. With
+     * {@value Constants#HTTP2_SCHEDULER_WEIGHTED_FAIR} the streams get bytes according to the priorities sent by
+     * the client, while with {@value Constants#HTTP2_SCHEDULER_UNIFORM} priorities are ignored.
+     */
+    public String getHttp2StreamScheduler() {
+        return http2StreamScheduler;
+    }
+
+    public void setHttp2StreamScheduler(String http2StreamScheduler) {
+        this.http2StreamScheduler = http2StreamScheduler;
+    }
+
+    /**
+     * Number of bytes a stream is allocated at a time by the stream scheduler. Smaller values interleave the
+     * streams more finely at the cost of more, smaller frames.
+     */
+    public int getHttp2AllocationQuantum() {
+        return http2AllocationQuantum;
+    }
+
+    public void setHttp2AllocationQuantum(int http2AllocationQuantum) {
+        this.http2AllocationQuantum = http2AllocationQuantum;
+    }
+
+    /**
+     * Cleartext HTTP/2 backend which the HTTP/2 streams of the listener are relayed to as they are, bypassing the
+     * message processor.
+     *
+     * @return host of the passthrough target, null if the streams are dispatched to the message processor
+     */
+    public String getHttp2PassthroughHost() {
+        return http2PassthroughHost;
+    }
+
+    public void setHttp2PassthroughHost(String http2PassthroughHost) {
+        this.http2PassthroughHost = http2PassthroughHost;
+    }
+
+    public int getHttp2PassthroughPort() {
+        return http2PassthroughPort;
+    }
+
+    public void setHttp2PassthroughPort(int http2PassthroughPort) {
+        this.http2PassthroughPort = http2PassthroughPort;
+    }
+
+    /**
+     * Whether the request content of the gRPC streams of the listener is split into its length-prefixed messages,
+     * so that each message is a content of its own and the flow control window is returned as they are read.
+     */
+    public boolean isGrpcFraming() {
+        return grpcFraming;
+    }
+
+    public void setGrpcFraming(boolean grpcFraming) {
+        this.grpcFraming = grpcFraming;
+    }
+
+    /**
+     * Largest gRPC message accepted when framing is enabled. Streams which send larger messages are reset.
+     */
+    public int getGrpcMaxMessageSize() {
+        return grpcMaxMessageSize;
+    }
+
+    public void setGrpcMaxMessageSize(int grpcMaxMessageSize) {
+        this.grpcMaxMessageSize = grpcMaxMessageSize;
+    }
+
+    /**
+     * Number of threads of the executor shared by the WebSocket connections of the listener. WebSocket handlers
+     * are run on the event loops of their connections if it is not positive.
+     *
+     * @return number of WebSocket executor threads
+     */
+    public int getWebSocketExecutorThreads() {
+        return webSocketExecutorThreads;
+    }
+
+    public void setWebSocketExecutorThreads(int webSocketExecutorThreads) {
+        this.webSocketExecutorThreads = webSocketExecutorThreads;
+    }
+
+    /**
+     * Number of tasks waiting for each thread of the WebSocket executor, beyond which the connections served by the
+     * thread stop reading until it catches up.
+     *
+     * @return queue size of a WebSocket executor thread
+     */
+    public int getWebSocketExecutorQueueSize() {
+        return webSocketExecutorQueueSize;
+    }
+
+    public void setWebSocketExecutorQueueSize(int webSocketExecutorQueueSize) {
+        this.webSocketExecutorQueueSize = webSocketExecutorQueueSize;
+    }
+
+    public List<RequestClassConfiguration> getRequestClasses() {
+        return requestClasses;
+    }
+
+    public void setRequestClasses(List<RequestClassConfiguration> requestClasses) {
+        this.requestClasses = requestClasses;
+    }
+
     public List<Parameter> getParameters() {
         return parameters;
     }
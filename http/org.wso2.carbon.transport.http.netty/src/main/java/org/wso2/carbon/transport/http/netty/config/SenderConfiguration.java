@@ -68,6 +68,31 @@ public class SenderConfiguration {
     @XmlAttribute
     private String certPass;
 
+    @XmlAttribute
+    private boolean http2 = false;
+
+    @XmlAttribute
+    private int http2MaxConcurrentStreams = 100;
+
+    @XmlAttribute
+    private int http2MaxConnectionsPerRoute = 2;
+
+    @XmlAttribute
+    private String requestCompression;
+
+    @XmlAttribute
+    private int requestCompressionThreshold = 1024;
+
+    @XmlAttribute
+    private String acceptEncoding;
+
+    @XmlAttribute
+    private int expectContinueTimeout = 1000;
+
+    @XmlElementWrapper(name = "warmUpRoutes")
+    @XmlElement(name = "route")
+    private List<String> warmUpRoutes;
+
     @XmlElementWrapper(name = "parameters")
     @XmlElement(name = "parameter")
     private List<Parameter> parameters;
@@ -128,6 +153,97 @@ public class SenderConfiguration {
         this.scheme = scheme;
     }
 
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+
+    public int getHttp2MaxConcurrentStreams() {
+        return http2MaxConcurrentStreams;
+    }
+
+    public void setHttp2MaxConcurrentStreams(int http2MaxConcurrentStreams) {
+        this.http2MaxConcurrentStreams = http2MaxConcurrentStreams;
+    }
+
+    public int getHttp2MaxConnectionsPerRoute() {
+        return http2MaxConnectionsPerRoute;
+    }
+
+    public void setHttp2MaxConnectionsPerRoute(int http2MaxConnectionsPerRoute) {
+        this.http2MaxConnectionsPerRoute = http2MaxConnectionsPerRoute;
+    }
+
+    /**
+     * Content coding used to compress request bodies, gzip or deflate. Requests are not compressed if not set.
+     *
+     * @return content coding of the request bodies
+     */
+    public String getRequestCompression() {
+        return requestCompression;
+    }
+
+    public void setRequestCompression(String requestCompression) {
+        this.requestCompression = requestCompression;
+    }
+
+    /**
+     * Minimum size in bytes of a request body with a known length to be compressed.
+     *
+     * @return compression threshold
+     */
+    public int getRequestCompressionThreshold() {
+        return requestCompressionThreshold;
+    }
+
+    public void setRequestCompressionThreshold(int requestCompressionThreshold) {
+        this.requestCompressionThreshold = requestCompressionThreshold;
+    }
+
+    /**
+     * Accept-Encoding sent to the backends on behalf of the requests which do not carry one. Responses of such
+     * requests are inflated by the sender.
+     *
+     * @return value of the Accept-Encoding header
+     */
+    public String getAcceptEncoding() {
+        return acceptEncoding;
+    }
+
+    public void setAcceptEncoding(String acceptEncoding) {
+        this.acceptEncoding = acceptEncoding;
+    }
+
+    /**
+     * Time in milliseconds to wait for the interim response of a request with Expect: 100-continue before the body
+     * is sent anyway.
+     *
+     * @return expect continue timeout
+     */
+    public int getExpectContinueTimeout() {
+        return expectContinueTimeout;
+    }
+
+    public void setExpectContinueTimeout(int expectContinueTimeout) {
+        this.expectContinueTimeout = expectContinueTimeout;
+    }
+
+    /**
+     * Routes which are connected at startup, in host:port format.
+     *
+     * @return list of routes
+     */
+    public List<String> getWarmUpRoutes() {
+        return warmUpRoutes;
+    }
+
+    public void setWarmUpRoutes(List<String> warmUpRoutes) {
+        this.warmUpRoutes = warmUpRoutes;
+    }
+
     public List<Parameter> getParameters() {
         return parameters;
     }
@@ -26,9 +26,18 @@ import org.wso2.carbon.messaging.CarbonMessageProcessor;
 import org.wso2.carbon.messaging.TransportListenerManager;
 import org.wso2.carbon.messaging.handler.HandlerExecutor;
 import org.wso2.carbon.transport.http.netty.config.ListenerConfiguration;
+import org.wso2.carbon.transport.http.netty.listener.ConnectionDrainer;
+import org.wso2.carbon.transport.http.netty.listener.WebSocketExecutor;
+import org.wso2.carbon.transport.http.netty.listener.WorkerGroup;
+import org.wso2.carbon.transport.http.netty.listener.limiter.AdaptiveConcurrencyLimiter;
+import org.wso2.carbon.transport.http.netty.listener.limiter.ConnectionLimiter;
+import org.wso2.carbon.transport.http.netty.listener.limiter.PriorityLoadShedder;
+import org.wso2.carbon.transport.http.netty.listener.limiter.RateLimiter;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * DataHolder for the HTTP transport.
@@ -44,6 +53,13 @@ public class HTTPTransportContextHolder {
     private TransportListenerManager manager;
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
+    private Map<String, WorkerGroup> workerGroups = new ConcurrentHashMap<>();
+    private Map<String, AdaptiveConcurrencyLimiter> concurrencyLimiters = new ConcurrentHashMap<>();
+    private Map<String, PriorityLoadShedder> loadShedders = new ConcurrentHashMap<>();
+    private Map<String, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
+    private Map<String, ConnectionLimiter> connectionLimiters = new ConcurrentHashMap<>();
+    private Map<String, ConnectionDrainer> connectionDrainers = new ConcurrentHashMap<>();
+    private Map<String, WebSocketExecutor> webSocketExecutors = new ConcurrentHashMap<>();
 
     public EventLoopGroup getBossGroup() {
         return bossGroup;
@@ -61,6 +77,28 @@ public class HTTPTransportContextHolder {
         this.workerGroup = workerGroup;
     }
 
+    /**
+     * Provide a worker group by its name, which also carries the utilisation metrics of the group.
+     *
+     * @param name name of the worker group, {@link WorkerGroup#DEFAULT_WORKER_GROUP} for the default one
+     * @return worker group, null if there is no such worker group
+     */
+    public WorkerGroup getWorkerGroup(String name) {
+        return workerGroups.get(name);
+    }
+
+    public Collection<WorkerGroup> getWorkerGroups() {
+        return workerGroups.values();
+    }
+
+    public void setWorkerGroup(String name, WorkerGroup workerGroup) {
+        workerGroups.put(name, workerGroup);
+    }
+
+    public void removeWorkerGroup(String name) {
+        workerGroups.remove(name);
+    }
+
     public ListenerConfiguration getListenerConfiguration(String id) {
         return listenerConfigurations.get(id);
     }
@@ -69,6 +107,105 @@ public class HTTPTransportContextHolder {
         listenerConfigurations.put(id, config);
     }
 
+    /**
+     * Provide the concurrency limiter of a listener, which also carries the current limit and the rejection count.
+     *
+     * @param listenerId id of the listener
+     * @return concurrency limiter, null if the listener does not limit the concurrency
+     */
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter(String listenerId) {
+        return concurrencyLimiters.get(listenerId);
+    }
+
+    public void setConcurrencyLimiter(String listenerId, AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        concurrencyLimiters.put(listenerId, concurrencyLimiter);
+    }
+
+    public void removeConcurrencyLimiter(String listenerId) {
+        concurrencyLimiters.remove(listenerId);
+    }
+
+    public PriorityLoadShedder getLoadShedder(String listenerId) {
+        return loadShedders.get(listenerId);
+    }
+
+    public void setLoadShedder(String listenerId, PriorityLoadShedder loadShedder) {
+        loadShedders.put(listenerId, loadShedder);
+    }
+
+    public void removeLoadShedder(String listenerId) {
+        loadShedders.remove(listenerId);
+    }
+
+    public RateLimiter getRateLimiter(String listenerId) {
+        return rateLimiters.get(listenerId);
+    }
+
+    public void setRateLimiter(String listenerId, RateLimiter rateLimiter) {
+        rateLimiters.put(listenerId, rateLimiter);
+    }
+
+    public void removeRateLimiter(String listenerId) {
+        rateLimiters.remove(listenerId);
+    }
+
+    public ConnectionLimiter getConnectionLimiter(String listenerId) {
+        return connectionLimiters.get(listenerId);
+    }
+
+    public void setConnectionLimiter(String listenerId, ConnectionLimiter connectionLimiter) {
+        connectionLimiters.put(listenerId, connectionLimiter);
+    }
+
+    public void removeConnectionLimiter(String listenerId) {
+        connectionLimiters.remove(listenerId);
+    }
+
+    /**
+     * Provide the connection drainer of a listener, which is kept until the connections are drained once the
+     * listener is unbound.
+     *
+     * @param listenerId id of the listener
+     * @return connection drainer, null if the listener is not bound or drained
+     */
+    public ConnectionDrainer getConnectionDrainer(String listenerId) {
+        return connectionDrainers.get(listenerId);
+    }
+
+    public Collection<ConnectionDrainer> getConnectionDrainers() {
+        return connectionDrainers.values();
+    }
+
+    public void setConnectionDrainer(String listenerId, ConnectionDrainer connectionDrainer) {
+        connectionDrainers.put(listenerId, connectionDrainer);
+    }
+
+    public void removeConnectionDrainer(String listenerId, ConnectionDrainer connectionDrainer) {
+        connectionDrainers.remove(listenerId, connectionDrainer);
+    }
+
+    /**
+     * Provide the executor shared by the WebSocket handlers of a listener.
+     *
+     * @param listenerId id of the listener
+     * @return WebSocket executor, null if the WebSocket handlers of the listener run on the event loops
+     */
+    public WebSocketExecutor getWebSocketExecutor(String listenerId) {
+        return webSocketExecutors.get(listenerId);
+    }
+
+    public Collection<WebSocketExecutor> getWebSocketExecutors() {
+        return webSocketExecutors.values();
+    }
+
+    public void setWebSocketExecutor(String listenerId, WebSocketExecutor webSocketExecutor) {
+        webSocketExecutors.put(listenerId, webSocketExecutor);
+    }
+
+    public WebSocketExecutor removeWebSocketExecutor(String listenerId) {
+        return webSocketExecutors.remove(listenerId);
+    }
+
     private HTTPTransportContextHolder() {
 
     }
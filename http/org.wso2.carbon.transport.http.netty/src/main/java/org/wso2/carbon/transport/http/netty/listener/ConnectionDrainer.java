@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.listener;
+
+import io.netty.channel.Channel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import io.netty.handler.codec.http2.Http2ConnectionHandler;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tracks the source connections of a listener and closes them gracefully once the listener is taken out of service.
+ * <p>
+ * While draining, an HTTP/1.x connection is closed as soon as it has no request in flight, and the responses written
+ * until then carry Connection: close. An HTTP/2 connection is sent a GOAWAY and is closed once its active streams
+ * are completed. A WebSocket connection is sent a close frame with status 1001 (going away) and is closed once the
+ * client answers it. Connections which are still open when the deadline elapses are closed forcibly.
+ */
+public class ConnectionDrainer {
+
+    private static final Logger log = LoggerFactory.getLogger(ConnectionDrainer.class);
+    private static final int WEBSOCKET_GOING_AWAY = 1001;
+
+    private final String listenerId;
+    private final ChannelGroup channels;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final CompletableFuture<Void> drainFuture = new CompletableFuture<>();
+    private volatile long deadline;
+
+    public ConnectionDrainer(String listenerId) {
+        this.listenerId = listenerId;
+        this.channels = new DefaultChannelGroup(listenerId, GlobalEventExecutor.INSTANCE);
+    }
+
+    /**
+     * Track a source connection of the listener. A connection accepted while the listener is draining is drained
+     * right away.
+     *
+     * @param channel source channel
+     */
+    public void add(Channel channel) {
+        channels.add(channel);
+        channel.closeFuture().addListener(future -> completeIfDrained());
+        if (draining.get()) {
+            channel.eventLoop().execute(() -> drainChannel(channel));
+        }
+    }
+
+    /**
+     * Start draining the connections of the listener. Only the first call has an effect.
+     *
+     * @param timeoutMillis time given to the in-flight requests to complete
+     * @return future completed once all connections are closed
+     */
+    public CompletableFuture<Void> drain(long timeoutMillis) {
+        if (!draining.compareAndSet(false, true)) {
+            return drainFuture;
+        }
+        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        log.info("Draining " + channels.size() + " connections of listener " + listenerId + " within "
+                + timeoutMillis + " ms");
+        for (Channel channel : channels) {
+            channel.eventLoop().execute(() -> drainChannel(channel));
+        }
+        GlobalEventExecutor.INSTANCE.schedule(this::closeRemaining, timeoutMillis, TimeUnit.MILLISECONDS);
+        completeIfDrained();
+        return drainFuture;
+    }
+
+    private void drainChannel(Channel channel) {
+        if (!channel.isActive()) {
+            return;
+        }
+        Http2ConnectionHandler http2Handler = channel.pipeline().get(Http2ConnectionHandler.class);
+        if (http2Handler != null) {
+            // Close of an HTTP/2 connection sends a GOAWAY and waits for the active streams
+            http2Handler.gracefulShutdownTimeoutMillis(getRemainingTime());
+            channel.close();
+            return;
+        }
+        SourceHandler sourceHandler = channel.pipeline().get(SourceHandler.class);
+        if (sourceHandler == null) {
+            // Protocol is not negotiated yet, hence there is no request in flight
+            channel.close();
+        } else if (sourceHandler instanceof WebSocketSourceHandler) {
+            // Source handler closes the connection once the client sends its close frame
+            channel.writeAndFlush(new CloseWebSocketFrame(WEBSOCKET_GOING_AWAY, "Server is going away"));
+        } else {
+            sourceHandler.drain();
+        }
+    }
+
+    private void closeRemaining() {
+        if (drainFuture.isDone()) {
+            return;
+        }
+        log.warn("Closing " + channels.size() + " connections of listener " + listenerId
+                + " which are not drained within the drain timeout");
+        for (Channel channel : channels) {
+            channel.eventLoop().execute(() -> {
+                Http2ConnectionHandler http2Handler = channel.pipeline().get(Http2ConnectionHandler.class);
+                if (http2Handler != null) {
+                    http2Handler.gracefulShutdownTimeoutMillis(0);
+                }
+                channel.close();
+            });
+        }
+    }
+
+    private void completeIfDrained() {
+        // Channel group drops a closed channel before the listeners added after it are notified
+        if (draining.get() && channels.isEmpty()) {
+            drainFuture.complete(null);
+        }
+    }
+
+    public String getListenerId() {
+        return listenerId;
+    }
+
+    public boolean isDraining() {
+        return draining.get();
+    }
+
+    /**
+     * Future which is completed once all connections of the listener are closed after it started draining.
+     *
+     * @return drain future
+     */
+    public CompletableFuture<Void> getDrainFuture() {
+        return drainFuture;
+    }
+
+    /**
+     * Time left until the remaining connections are closed forcibly.
+     *
+     * @return remaining time in milliseconds, 0 if the listener is not draining
+     */
+    public long getRemainingTime() {
+        if (!draining.get()) {
+            return 0;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+
+    public int getConnectionCount() {
+        return channels.size();
+    }
+
+    /**
+     * Number of requests in flight on the connections of the listener, which is approximate since the connections
+     * are served by other threads.
+     *
+     * @return number of in-flight requests and HTTP/2 streams
+     */
+    public int getInFlightRequestCount() {
+        int count = 0;
+        for (Channel channel : channels) {
+            Http2ConnectionHandler http2Handler = channel.pipeline().get(Http2ConnectionHandler.class);
+            if (http2Handler != null) {
+                count += http2Handler.connection().numActiveStreams();
+                continue;
+            }
+            SourceHandler sourceHandler = channel.pipeline().get(SourceHandler.class);
+            if (sourceHandler != null) {
+                count += sourceHandler.getInFlightRequestCount();
+            }
+        }
+        return count;
+    }
+}
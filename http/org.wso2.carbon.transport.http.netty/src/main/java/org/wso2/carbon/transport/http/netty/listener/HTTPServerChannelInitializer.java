@@ -28,6 +28,7 @@ import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslHandler;
 import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.AsciiString;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,12 +36,21 @@ import org.wso2.carbon.messaging.CarbonTransportInitializer;
 import org.wso2.carbon.transport.http.netty.common.ssl.SSLHandlerFactory;
 import org.wso2.carbon.transport.http.netty.config.ListenerConfiguration;
 import org.wso2.carbon.transport.http.netty.config.RequestSizeValidationConfiguration;
+import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
+import org.wso2.carbon.transport.http.netty.listener.http2.HTTP2PrefaceDetector;
 import org.wso2.carbon.transport.http.netty.listener.http2.HTTP2SourceHandlerBuilder;
 import org.wso2.carbon.transport.http.netty.listener.http2.HTTPProtocolNegotiationHandler;
+import org.wso2.carbon.transport.http.netty.listener.limiter.AdaptiveConcurrencyLimiter;
+import org.wso2.carbon.transport.http.netty.listener.limiter.ConnectionLimitHandler;
+import org.wso2.carbon.transport.http.netty.listener.limiter.ConnectionLimiter;
+import org.wso2.carbon.transport.http.netty.listener.limiter.PriorityLoadShedder;
+import org.wso2.carbon.transport.http.netty.listener.limiter.RateLimiter;
+import org.wso2.carbon.transport.http.netty.listener.limiter.RateLimitingHandler;
 import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A class that responsible for create server side channels.
@@ -60,11 +70,61 @@ public class HTTPServerChannelInitializer extends ChannelInitializer<SocketChann
     public void registerListenerConfig(ListenerConfiguration listenerConfiguration, SslContext sslContext) {
         listenerConfigurationMap.put(listenerConfiguration.getPort(), listenerConfiguration);
         sslContextMap.put(listenerConfiguration.getPort(), sslContext);
+        HTTPTransportContextHolder.getInstance().setConnectionDrainer(listenerConfiguration.getId(),
+                new ConnectionDrainer(listenerConfiguration.getId()));
+        if (listenerConfiguration.isAdaptiveConcurrencyLimit()) {
+            HTTPTransportContextHolder.getInstance().setConcurrencyLimiter(listenerConfiguration.getId(),
+                    new AdaptiveConcurrencyLimiter(listenerConfiguration.getInitialConcurrencyLimit(),
+                            listenerConfiguration.getMinConcurrencyLimit(),
+                            listenerConfiguration.getMaxConcurrencyLimit(),
+                            listenerConfiguration.getRetryAfter()));
+        }
+        if (!listenerConfiguration.getRequestClasses().isEmpty()) {
+            HTTPTransportContextHolder.getInstance().setLoadShedder(listenerConfiguration.getId(),
+                    new PriorityLoadShedder(listenerConfiguration));
+        }
+        if (listenerConfiguration.getMaxConnections() > 0 || listenerConfiguration.getMaxConnectionsPerClient() > 0
+                || listenerConfiguration.getIdleTimeout() > 0 || listenerConfiguration.getHeaderReadTimeout() > 0
+                || listenerConfiguration.getMaxRequestsPerConnection() > 0) {
+            HTTPTransportContextHolder.getInstance().setConnectionLimiter(listenerConfiguration.getId(),
+                    new ConnectionLimiter(listenerConfiguration));
+        }
+        if (listenerConfiguration.getRateLimit() > 0 || listenerConfiguration.getClientRateLimit() > 0) {
+            HTTPTransportContextHolder.getInstance().setRateLimiter(listenerConfiguration.getId(),
+                    new RateLimiter(listenerConfiguration));
+        }
+        if (listenerConfiguration.getWebSocketExecutorThreads() > 0) {
+            HTTPTransportContextHolder.getInstance().setWebSocketExecutor(listenerConfiguration.getId(),
+                    new WebSocketExecutor(listenerConfiguration.getId(),
+                            listenerConfiguration.getWebSocketExecutorThreads(),
+                            listenerConfiguration.getWebSocketExecutorQueueSize()));
+        }
     }
 
     public void unRegisterListenerConfig(ListenerConfiguration listenerConfiguration) {
         listenerConfigurationMap.remove(listenerConfiguration.getPort());
         sslContextMap.remove(listenerConfiguration.getPort());
+        HTTPTransportContextHolder.getInstance().removeConcurrencyLimiter(listenerConfiguration.getId());
+        HTTPTransportContextHolder.getInstance().removeLoadShedder(listenerConfiguration.getId());
+        HTTPTransportContextHolder.getInstance().removeRateLimiter(listenerConfiguration.getId());
+        HTTPTransportContextHolder.getInstance().removeConnectionLimiter(listenerConfiguration.getId());
+        ConnectionDrainer connectionDrainer = HTTPTransportContextHolder.getInstance()
+                .getConnectionDrainer(listenerConfiguration.getId());
+        WebSocketExecutor webSocketExecutor = HTTPTransportContextHolder.getInstance()
+                .removeWebSocketExecutor(listenerConfiguration.getId());
+        if (webSocketExecutor != null) {
+            if (connectionDrainer != null && connectionDrainer.isDraining()) {
+                // WebSocket connections of a draining listener are still served until they are closed
+                connectionDrainer.getDrainFuture().whenComplete((result, throwable) -> webSocketExecutor.shutdown());
+            } else {
+                webSocketExecutor.shutdown();
+            }
+        }
+        // Drainer of a draining listener is removed once its connections are drained
+        if (connectionDrainer != null && !connectionDrainer.isDraining()) {
+            HTTPTransportContextHolder.getInstance().removeConnectionDrainer(listenerConfiguration.getId(),
+                    connectionDrainer);
+        }
     }
 
     @Override
@@ -88,6 +148,20 @@ public class HTTPServerChannelInitializer extends ChannelInitializer<SocketChann
         int port = ch.localAddress().getPort();
         ListenerConfiguration listenerConfiguration = listenerConfigurationMap.get(port);
         ChannelPipeline p = ch.pipeline();
+        WorkerGroup workerGroup = ch.attr(WorkerGroup.WORKER_GROUP).get();
+        if (workerGroup != null) {
+            workerGroup.addChannel(ch);
+        }
+        ConnectionDrainer connectionDrainer = HTTPTransportContextHolder.getInstance()
+                .getConnectionDrainer(listenerConfiguration.getId());
+        if (connectionDrainer != null) {
+            connectionDrainer.add(ch);
+        }
+        ConnectionLimiter connectionLimiter = HTTPTransportContextHolder.getInstance()
+                .getConnectionLimiter(listenerConfiguration.getId());
+        if (connectionLimiter != null) {
+            p.addLast("connection-limiter", new ConnectionLimitHandler(connectionLimiter));
+        }
         /*
          * HTTP2 required ALPN Protocol support. Server is required to have ALPN protocol libraries at class path
          * If http2 in enabled , Assume required libraries available and HTTP/1 and HTTP2 requests will be handled.
@@ -102,6 +176,10 @@ public class HTTPServerChannelInitializer extends ChannelInitializer<SocketChann
                  */
                 // Configure Upgrade handler for HTTP/2 requests Over TLS
                 configureHttp2TLSPipeline(ch, listenerConfiguration, sslContext);
+            } else if (listenerConfiguration.isHttp2PriorKnowledge()) {
+                // Detect HTTP/2 with prior knowledge, falling back to HTTP/1 with the upgrade handler
+                p.addLast("http2-preface", new HTTP2PrefaceDetector(connectionManager, listenerConfiguration,
+                        ctx -> configureHttp2Pipeline(ch, listenerConfiguration)));
             } else {
                 // Configure Upgrade handler for HTTP/2 requests
                 configureHttp2Pipeline(ch, listenerConfiguration);
@@ -174,6 +252,7 @@ public class HTTPServerChannelInitializer extends ChannelInitializer<SocketChann
         } else {
             p.addLast("decoder", new HttpRequestDecoder());
         }
+        configureRequestLimits(p, listenerConfiguration);
         if (RequestSizeValidationConfiguration.getInstance().isRequestSizeValidation()) {
             p.addLast("custom-aggregator", new CustomHttpObjectAggregator());
         }
@@ -186,6 +265,28 @@ public class HTTPServerChannelInitializer extends ChannelInitializer<SocketChann
         }
     }
 
+    /**
+     * Add the handlers which limit the HTTP/1.x requests of a source channel, right after the request decoder.
+     *
+     * @param p                     pipeline of the channel
+     * @param listenerConfiguration Listener Configuration
+     */
+    public static void configureRequestLimits(ChannelPipeline p, ListenerConfiguration listenerConfiguration) {
+        ConnectionLimitHandler connectionLimitHandler = p.get(ConnectionLimitHandler.class);
+        if (connectionLimitHandler != null) {
+            if (listenerConfiguration.getIdleTimeout() > 0) {
+                p.addLast("idle-state", new IdleStateHandler(0, 0, listenerConfiguration.getIdleTimeout(),
+                        TimeUnit.MILLISECONDS));
+            }
+            p.addLast("request-limiter", connectionLimitHandler.getRequestHandler());
+        }
+        RateLimiter rateLimiter = HTTPTransportContextHolder.getInstance()
+                .getRateLimiter(listenerConfiguration.getId());
+        if (rateLimiter != null) {
+            p.addLast("rate-limiter", new RateLimitingHandler(rateLimiter));
+        }
+    }
+
     @Override
     public boolean isServerInitializer() {
         return true;
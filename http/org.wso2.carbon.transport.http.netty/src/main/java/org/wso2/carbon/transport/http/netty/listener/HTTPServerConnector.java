@@ -61,12 +61,19 @@ public class HTTPServerConnector extends ServerConnector {
         serverConnectorController.unBindInterface(this);
     }
 
+    /**
+     * Take the listener out of service, draining its connections within the drain timeout of the listener.
+     */
     @Override
     public void beginMaintenance() {
+        serverConnectorController.drainInterface(this, listenerConfiguration.getDrainTimeout());
     }
 
     @Override
     public void endMaintenance() {
+        if (!serverConnectorController.bindInterface(this)) {
+            log.error("Cannot bind " + this + " after the maintenance");
+        }
     }
 
     @Override
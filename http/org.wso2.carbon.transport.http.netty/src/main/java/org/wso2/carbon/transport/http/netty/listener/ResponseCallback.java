@@ -19,7 +19,6 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
-import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.DefaultHttpContent;
 import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpResponse;
@@ -41,19 +40,27 @@ import java.nio.ByteBuffer;
  */
 public class ResponseCallback implements CarbonCallback {
 
-    private ChannelHandlerContext ctx;
+    private ResponseSequencer.ResponseSlot responseSlot;
 
     private static final Logger logger = LoggerFactory.getLogger(ResponseCallback.class);
     private RequestDataHolder requestDataHolder;
+    private CarbonMessage requestMsg;
 
-    public ResponseCallback(ChannelHandlerContext channelHandlerContext, CarbonMessage requestMsg) {
-        this.ctx = channelHandlerContext;
+    public ResponseCallback(ResponseSequencer.ResponseSlot responseSlot, CarbonMessage requestMsg) {
+        this.responseSlot = responseSlot;
+        this.requestMsg = requestMsg;
         requestDataHolder = new RequestDataHolder(requestMsg);
     }
 
     public void done(CarbonMessage cMsg) {
 
-        boolean connectionCloseAfterResponse = shouldConnectionClose(cMsg);
+        Object sourceHandler = requestMsg.getProperty(Constants.SRC_HANDLER);
+        if (sourceHandler instanceof SourceHandler) {
+            ((SourceHandler) sourceHandler).releaseConcurrencyPermit(responseSlot);
+        }
+        boolean connectionCloseAfterResponse = shouldConnectionClose(cMsg) || isContinueRejected();
+        // Connection of a draining listener is closed by the source handler after the last response in flight
+        boolean draining = sourceHandler instanceof SourceHandler && ((SourceHandler) sourceHandler).isDraining();
 
         Util.prepareBuiltMessageForTransfer(cMsg);
         Util.setupTransferEncodingForResponse(cMsg, requestDataHolder);
@@ -61,18 +68,18 @@ public class ResponseCallback implements CarbonCallback {
         if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
             HTTPTransportContextHolder.getInstance().getHandlerExecutor().executeAtSourceResponseReceiving(cMsg);
         }
-        final HttpResponse response = Util.createHttpResponse(cMsg, connectionCloseAfterResponse);
+        final HttpResponse response = Util.createHttpResponse(cMsg, connectionCloseAfterResponse || draining);
 
-        ctx.write(response);
+        responseSlot.write(response);
 
         if (!cMsg.isBufferContent()) {
-            cMsg.setWriter(new ResponseContentWriter(ctx));
+            cMsg.setWriter(new ResponseContentWriter(responseSlot));
         } else {
             if (cMsg instanceof HTTPCarbonMessage) {
                 HTTPCarbonMessage nettyCMsg = (HTTPCarbonMessage) cMsg;
                 while (true) {
                     if (nettyCMsg.isEndOfMsgAdded() && nettyCMsg.isEmpty()) {
-                        ChannelFuture future = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+                        ChannelFuture future = responseSlot.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
                         if (connectionCloseAfterResponse) {
                             future.addListener(ChannelFutureListener.CLOSE);
                         }
@@ -80,7 +87,7 @@ public class ResponseCallback implements CarbonCallback {
                     }
                     HttpContent httpContent = nettyCMsg.getHttpContent();
                     if (httpContent instanceof LastHttpContent) {
-                        ChannelFuture future = ctx.writeAndFlush(httpContent);
+                        ChannelFuture future = responseSlot.writeAndFlush(httpContent);
                         if (connectionCloseAfterResponse) {
                             future.addListener(ChannelFutureListener.CLOSE);
                         }
@@ -90,12 +97,12 @@ public class ResponseCallback implements CarbonCallback {
                         }
                         break;
                     }
-                    ctx.write(httpContent);
+                    responseSlot.write(httpContent);
                 }
             } else if (cMsg instanceof DefaultCarbonMessage) {
                 DefaultCarbonMessage defaultCMsg = (DefaultCarbonMessage) cMsg;
                 if (defaultCMsg.isEndOfMsgAdded() && defaultCMsg.isEmpty()) {
-                    ChannelFuture future = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+                    ChannelFuture future = responseSlot.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
                     if (connectionCloseAfterResponse) {
                         future.addListener(ChannelFutureListener.CLOSE);
                     }
@@ -105,9 +112,9 @@ public class ResponseCallback implements CarbonCallback {
                     ByteBuffer byteBuffer = defaultCMsg.getMessageBody();
                     ByteBuf bbuf = Unpooled.wrappedBuffer(byteBuffer);
                     DefaultHttpContent httpContent = new DefaultHttpContent(bbuf);
-                    ctx.write(httpContent);
+                    responseSlot.write(httpContent);
                     if (defaultCMsg.isEndOfMsgAdded() && defaultCMsg.isEmpty()) {
-                        ChannelFuture future = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+                        ChannelFuture future = responseSlot.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
                         if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
                             HTTPTransportContextHolder.getInstance().getHandlerExecutor().
                                     executeAtSourceResponseSending(cMsg);
@@ -122,6 +129,12 @@ public class ResponseCallback implements CarbonCallback {
         }
     }
 
+    // Client of a request with Expect: 100-continue still holds the body, hence the connection cannot be reused
+    private boolean isContinueRejected() {
+        Object sourceHandler = requestMsg.getProperty(Constants.SRC_HANDLER);
+        return sourceHandler instanceof SourceHandler && ((SourceHandler) sourceHandler).rejectContinue(requestMsg);
+    }
+
     // Decides whether to close the connection after sending the response
     private boolean shouldConnectionClose(CarbonMessage responseMsg) {
         String responseConnectionHeader = responseMsg.getHeader(Constants.HTTP_CONNECTION);
@@ -22,7 +22,6 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
-import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.DefaultHttpContent;
 import io.netty.handler.codec.http.LastHttpContent;
 import org.wso2.carbon.messaging.CarbonMessage;
@@ -33,28 +32,28 @@ import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
 import java.nio.ByteBuffer;
 
 /**
- * A class which wraps Inbound Channel Handler ctx and write content directly to netty IO works.
+ * A class which writes content to netty IO works in the order of the responses of the source connection.
  */
 public class ResponseContentWriter implements Writer {
 
-    private ChannelHandlerContext channelHandlerContext;
+    private ResponseSequencer.ResponseSlot responseSlot;
 
     private static final String HTTP_CONNECTION_CLOSE = "close";
 
-    public ResponseContentWriter(ChannelHandlerContext channelHandlerContext) {
-        this.channelHandlerContext = channelHandlerContext;
+    public ResponseContentWriter(ResponseSequencer.ResponseSlot responseSlot) {
+        this.responseSlot = responseSlot;
     }
 
     @Override
     public void write(ByteBuffer byteBuffer) {
         ByteBuf bbuf = Unpooled.copiedBuffer(byteBuffer);
         DefaultHttpContent httpContent = new DefaultHttpContent(bbuf);
-        this.channelHandlerContext.write(httpContent);
+        this.responseSlot.write(httpContent);
     }
 
     @Override
     public void writeLastContent(CarbonMessage carbonMessage) {
-        ChannelFuture future = channelHandlerContext.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+        ChannelFuture future = responseSlot.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
         if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
             HTTPTransportContextHolder.getInstance().getHandlerExecutor().
                     executeAtSourceResponseSending(carbonMessage);
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.listener;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+import org.wso2.carbon.transport.http.netty.listener.limiter.RequestClass;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Writes the responses of the pipelined requests of a source connection in the order of the requests.
+ * <p>
+ * Each request gets a {@link ResponseSlot} through which its response is written. The response of the oldest
+ * request is written right away, while the responses of the later requests are held back until the responses
+ * before them are completed, even if they are produced earlier. The state is confined to the event loop of the
+ * connection, and writes from other threads are handed over to it.
+ */
+public class ResponseSequencer {
+
+    private final ChannelHandlerContext ctx;
+    private final Runnable onResponseCompleted;
+    private final Deque<ResponseSlot> slots = new ArrayDeque<>();
+    // Number of slots, which is also read from other threads
+    private volatile int size;
+
+    /**
+     * @param ctx                 context of the source handler
+     * @param onResponseCompleted invoked in the event loop whenever the oldest response is completed
+     */
+    public ResponseSequencer(ChannelHandlerContext ctx, Runnable onResponseCompleted) {
+        this.ctx = ctx;
+        this.onResponseCompleted = onResponseCompleted;
+    }
+
+    /**
+     * Reserve the place of the response of a request which has just arrived. Has to be called in the event loop.
+     *
+     * @return slot to write the response
+     */
+    public ResponseSlot newSlot() {
+        return newSlot(ctx);
+    }
+
+    /**
+     * Reserve the place of the response of a request which has just arrived, whose response is written from the
+     * given context. Has to be called in the event loop.
+     *
+     * @param writeCtx context to write the response from
+     * @return slot to write the response
+     */
+    public ResponseSlot newSlot(ChannelHandlerContext writeCtx) {
+        ResponseSlot slot = new ResponseSlot(writeCtx);
+        slots.addLast(slot);
+        size = slots.size();
+        return slot;
+    }
+
+    /**
+     * Number of requests whose responses are not completed yet.
+     *
+     * @return number of requests in flight
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Drop the responses which are held back once the connection is closed. Has to be called in the event loop.
+     *
+     * @param onDropped invoked with each slot whose response is not completed
+     */
+    public void clear(Consumer<ResponseSlot> onDropped) {
+        ResponseSlot slot;
+        while ((slot = slots.pollFirst()) != null) {
+            slot.discardPendingWrites();
+            onDropped.accept(slot);
+        }
+        size = 0;
+    }
+
+    private void write(ResponseSlot slot, Object msg, boolean flush, ChannelPromise promise) {
+        if (slots.peekFirst() != slot) {
+            if (!slots.contains(slot)) {
+                // Connection is closed and the slot is dropped
+                ReferenceCountUtil.release(msg);
+                promise.tryFailure(new ClosedChannelException());
+                return;
+            }
+            slot.pendingWrites.add(new PendingWrite(msg, promise));
+            if (isLast(msg)) {
+                slot.completed = true;
+            }
+            return;
+        }
+        slot.writeCtx.write(msg, promise);
+        if (isLast(msg)) {
+            slots.pollFirst();
+            writeCompletedSlots();
+            size = slots.size();
+            ctx.flush();
+            onResponseCompleted.run();
+        } else if (flush) {
+            ctx.flush();
+        }
+    }
+
+    private void writeCompletedSlots() {
+        ResponseSlot next;
+        while ((next = slots.peekFirst()) != null) {
+            for (PendingWrite pendingWrite : next.pendingWrites) {
+                next.writeCtx.write(pendingWrite.msg, pendingWrite.promise);
+            }
+            next.pendingWrites.clear();
+            if (!next.completed) {
+                return;
+            }
+            slots.pollFirst();
+        }
+    }
+
+    // Interim responses are followed by the final response of the same request
+    private static boolean isLast(Object msg) {
+        return msg instanceof LastHttpContent
+                && !(msg instanceof HttpResponse && ((HttpResponse) msg).status().code() < 200);
+    }
+
+    /**
+     * Place of the response of a request in the order of the responses of the connection, which also carries the
+     * admission state of the request.
+     */
+    public class ResponseSlot {
+
+        private final ChannelHandlerContext writeCtx;
+        private final List<PendingWrite> pendingWrites = new ArrayList<>(0);
+        private boolean completed;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile long permitTime;
+        private volatile RequestClass requestClass;
+
+        private ResponseSlot(ChannelHandlerContext writeCtx) {
+            this.writeCtx = writeCtx;
+        }
+
+        public ChannelFuture write(Object msg) {
+            return write(msg, false);
+        }
+
+        public ChannelFuture writeAndFlush(Object msg) {
+            return write(msg, true);
+        }
+
+        private ChannelFuture write(Object msg, boolean flush) {
+            ChannelPromise promise = ctx.newPromise();
+            if (ctx.executor().inEventLoop()) {
+                ResponseSequencer.this.write(this, msg, flush, promise);
+            } else {
+                ctx.executor().execute(() -> ResponseSequencer.this.write(this, msg, flush, promise));
+            }
+            return promise;
+        }
+
+        private void discardPendingWrites() {
+            for (PendingWrite pendingWrite : pendingWrites) {
+                ReferenceCountUtil.release(pendingWrite.msg);
+                pendingWrite.promise.tryFailure(new ClosedChannelException());
+            }
+            pendingWrites.clear();
+        }
+
+        void admit(long permitTime, RequestClass requestClass) {
+            this.permitTime = permitTime;
+            this.requestClass = requestClass;
+        }
+
+        /**
+         * Mark the admission state of the request as released. Only the first call succeeds.
+         *
+         * @return true if the admission state has to be released by the caller
+         */
+        boolean release() {
+            return released.compareAndSet(false, true);
+        }
+
+        long getPermitTime() {
+            return permitTime;
+        }
+
+        RequestClass getRequestClass() {
+            return requestClass;
+        }
+    }
+
+    /**
+     * A response message held back until the responses before it are completed.
+     */
+    private static class PendingWrite {
+        private final Object msg;
+        private final ChannelPromise promise;
+
+        private PendingWrite(Object msg, ChannelPromise promise) {
+            this.msg = msg;
+            this.promise = promise;
+        }
+    }
+}
@@ -38,9 +38,15 @@ import org.wso2.carbon.transport.http.netty.config.TransportsConfiguration;
 import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 import javax.net.ssl.SSLException;
 
@@ -53,7 +59,11 @@ public class ServerConnectorController {
 
     private static final Logger log = LoggerFactory.getLogger(ServerConnectorController.class);
 
-    private ServerBootstrap bootstrap;
+    // Time given to the connections which are closed forcibly at the drain deadline
+    private static final long FORCED_CLOSE_TIMEOUT = 5000;
+
+    // Bootstraps of the worker groups by the name of the group
+    private Map<String, ServerBootstrap> bootstraps = new ConcurrentHashMap<>();
 
     private HTTPServerChannelInitializer handler;
 
@@ -61,6 +71,8 @@ public class ServerConnectorController {
 
     private boolean initialized = false;
 
+    private Map<String, HTTPServerConnector> boundConnectors = new ConcurrentHashMap<>();
+
     public ServerConnectorController(TransportsConfiguration transportsConfiguration) {
         this.transportsConfiguration = transportsConfiguration;
     }
@@ -79,7 +91,6 @@ public class ServerConnectorController {
 
         // Create Bootstrap Configuration from listener parameters
         ServerBootstrapConfiguration.createBootStrapConfiguration(transportProperties);
-        ServerBootstrapConfiguration serverBootstrapConfiguration = ServerBootstrapConfiguration.getInstance();
 
         // Create Boss Group - boss group is for accepting channels
         EventLoopGroup bossGroup = HTTPTransportContextHolder.getInstance().getBossGroup();
@@ -106,13 +117,9 @@ public class ServerConnectorController {
         // Set Handler Executor
         HTTPTransportContextHolder.getInstance().setHandlerExecutor(new HandlerExecutor());
 
-        bootstrap = new ServerBootstrap();
-        bootstrap.group(bossGroup, workerGroup).channel(NioServerSocketChannel.class);
-
         // Register Channel initializer
         handler = new HTTPServerChannelInitializer();
         handler.setupConnectionManager(transportProperties);
-        bootstrap.childHandler(handler);
 
         int bufferSize =
                 Util.getIntProperty(transportProperties, Constants.OUTPUT_CONTENT_BUFFER_SIZE, 0);
@@ -121,6 +128,22 @@ public class ServerConnectorController {
             BufferFactory.createInstance(bufferSize);
         }
 
+        WorkerGroup defaultWorkerGroup = new WorkerGroup(WorkerGroup.DEFAULT_WORKER_GROUP, workerGroup);
+        HTTPTransportContextHolder.getInstance().setWorkerGroup(WorkerGroup.DEFAULT_WORKER_GROUP, defaultWorkerGroup);
+        bootstraps.put(WorkerGroup.DEFAULT_WORKER_GROUP, createBootstrap(defaultWorkerGroup));
+
+        initialized = true;
+    }
+
+    private ServerBootstrap createBootstrap(WorkerGroup workerGroup) {
+        ServerBootstrapConfiguration serverBootstrapConfiguration = ServerBootstrapConfiguration.getInstance();
+
+        ServerBootstrap bootstrap = new ServerBootstrap();
+        bootstrap.group(HTTPTransportContextHolder.getInstance().getBossGroup(), workerGroup.getEventLoopGroup())
+                .channel(NioServerSocketChannel.class);
+        bootstrap.childHandler(handler);
+        bootstrap.childAttr(WorkerGroup.WORKER_GROUP, workerGroup);
+
         // Set other bootstrap parameters
         bootstrap.option(ChannelOption.SO_BACKLOG, serverBootstrapConfiguration.getSoBackLog());
         log.debug("Netty Server Socket BACKLOG " + serverBootstrapConfiguration.getSoBackLog());
@@ -138,14 +161,71 @@ public class ServerConnectorController {
         log.debug("Netty Server Socket SO_RCVBUF " + serverBootstrapConfiguration.getReceiveBufferSize());
         bootstrap.childOption(ChannelOption.SO_SNDBUF, serverBootstrapConfiguration.getSendBufferSize());
         log.debug("Netty Server Socket SO_SNDBUF " + serverBootstrapConfiguration.getSendBufferSize());
+        return bootstrap;
+    }
 
-        initialized = true;
+    /**
+     * Provide the bootstrap of the worker group of a listener, creating the worker group if the listener asks for
+     * a worker group other than the default one.
+     */
+    private synchronized ServerBootstrap getBootstrap(ListenerConfiguration listenerConfiguration) {
+        String workerGroupName = listenerConfiguration.getWorkerGroup();
+        if (workerGroupName == null) {
+            if (listenerConfiguration.getWorkerGroupSize() <= 0) {
+                return bootstraps.get(WorkerGroup.DEFAULT_WORKER_GROUP);
+            }
+            workerGroupName = listenerConfiguration.getId();
+        }
+        ServerBootstrap bootstrap = bootstraps.get(workerGroupName);
+        if (bootstrap == null) {
+            int workerGroupSize = listenerConfiguration.getWorkerGroupSize() > 0 ?
+                    listenerConfiguration.getWorkerGroupSize() : Runtime.getRuntime().availableProcessors();
+            WorkerGroup workerGroup = new WorkerGroup(workerGroupName, new NioEventLoopGroup(workerGroupSize));
+            HTTPTransportContextHolder.getInstance().setWorkerGroup(workerGroupName, workerGroup);
+            bootstrap = createBootstrap(workerGroup);
+            bootstraps.put(workerGroupName, bootstrap);
+            log.info("Created worker group " + workerGroupName + " with " + workerGroupSize + " event loops");
+        }
+        return bootstrap;
     }
 
     public void stop() {
+        drainInterfaces();
         shutdownEventLoops();
     }
 
+    /**
+     * Drain the bound listeners which have a drain timeout, and wait for them and for the listeners which are already
+     * draining before the event loops are shut down.
+     */
+    private void drainInterfaces() {
+        for (HTTPServerConnector serverConnector : new ArrayList<>(boundConnectors.values())) {
+            int drainTimeout = serverConnector.getListenerConfiguration().getDrainTimeout();
+            if (drainTimeout > 0) {
+                drainInterface(serverConnector, drainTimeout);
+            }
+        }
+        List<ConnectionDrainer> connectionDrainers =
+                new ArrayList<>(HTTPTransportContextHolder.getInstance().getConnectionDrainers());
+        for (ConnectionDrainer connectionDrainer : connectionDrainers) {
+            if (!connectionDrainer.isDraining()) {
+                continue;
+            }
+            try {
+                connectionDrainer.getDrainFuture().get(connectionDrainer.getRemainingTime() + FORCED_CLOSE_TIMEOUT,
+                        TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error("Interrupted while draining the connections of listener "
+                        + connectionDrainer.getListenerId());
+                return;
+            } catch (ExecutionException | TimeoutException e) {
+                log.warn(connectionDrainer.getConnectionCount() + " connections of listener "
+                        + connectionDrainer.getListenerId() + " are not closed before the event loops are shut down");
+            }
+        }
+    }
+
     private void shutdownEventLoops() {
         try {
             EventLoopGroup bossGroup = HTTPTransportContextHolder.getInstance().getBossGroup();
@@ -158,6 +238,13 @@ public class ServerConnectorController {
                 workerGroup.shutdownGracefully().sync();
                 HTTPTransportContextHolder.getInstance().setWorkerGroup(null);
             }
+            for (WorkerGroup group : new ArrayList<>(HTTPTransportContextHolder.getInstance().getWorkerGroups())) {
+                if (!group.isDefault()) {
+                    group.getEventLoopGroup().shutdownGracefully().sync();
+                }
+                HTTPTransportContextHolder.getInstance().removeWorkerGroup(group.getName());
+            }
+            bootstraps.clear();
             log.info("HTTP transport event loops stopped successfully");
         } catch (InterruptedException e) {
             log.error("Error while shutting down event loops " + e.getMessage());
@@ -182,11 +269,13 @@ public class ServerConnectorController {
 
             handler.registerListenerConfig(listenerConfiguration, http2sslContext);
 
+            ServerBootstrap bootstrap = getBootstrap(listenerConfiguration);
             ChannelFuture future = bootstrap.bind(new InetSocketAddress(listenerConfiguration.getHost(),
                                                                         listenerConfiguration.getPort())).sync();
             serverConnector.setChannelFuture(future);
 
             if (future.isSuccess()) {
+                boundConnectors.put(listenerConfiguration.getId(), serverConnector);
 
                 String msg = "Started listener " +
                              listenerConfiguration.getScheme() + "-" + listenerConfiguration.getPort();
@@ -216,6 +305,14 @@ public class ServerConnectorController {
         return false;
     }
 
+    /**
+     * Stop accepting connections on the interface of a connector. If the listener has a drain timeout, its
+     * connections are drained as with {@link #drainInterface(HTTPServerConnector, long)}, otherwise they are left
+     * as they are.
+     *
+     * @param serverConnector connector to unbind
+     * @return true if the interface is unbound
+     */
     public boolean unBindInterface(HTTPServerConnector serverConnector) {
 
         if (!initialized) {
@@ -223,8 +320,46 @@ public class ServerConnectorController {
             return false;
         }
 
+        ListenerConfiguration listenerConfiguration = serverConnector.getListenerConfiguration();
+        if (listenerConfiguration.getDrainTimeout() > 0) {
+            return drainInterface(serverConnector, listenerConfiguration.getDrainTimeout()) != null;
+        }
+        return closeInterface(serverConnector);
+    }
+
+    /**
+     * Stop accepting connections on the interface of a connector and close its connections gracefully. HTTP/1.x
+     * connections are closed once their in-flight requests are completed, and HTTP/2 connections are sent a GOAWAY.
+     * Connections which are still open after the timeout are closed forcibly.
+     *
+     * @param serverConnector connector to drain
+     * @param timeoutMillis   time given to the in-flight requests to complete
+     * @return drainer which exposes the progress of draining, null if the interface cannot be unbound
+     */
+    public ConnectionDrainer drainInterface(HTTPServerConnector serverConnector, long timeoutMillis) {
+
+        if (!initialized) {
+            log.error("ServerConnectorController is not initialized");
+            return null;
+        }
+
+        String listenerId = serverConnector.getListenerConfiguration().getId();
+        ConnectionDrainer connectionDrainer = HTTPTransportContextHolder.getInstance().getConnectionDrainer(listenerId);
+        if (connectionDrainer == null) {
+            // Listener is not bound, or is already drained
+            return null;
+        }
+        connectionDrainer.drain(timeoutMillis).whenComplete((result, throwable) -> {
+            HTTPTransportContextHolder.getInstance().removeConnectionDrainer(listenerId, connectionDrainer);
+            log.info("Drained the connections of listener " + listenerId);
+        });
+        return closeInterface(serverConnector) ? connectionDrainer : null;
+    }
+
+    private boolean closeInterface(HTTPServerConnector serverConnector) {
         ListenerConfiguration listenerConfiguration = serverConnector.getListenerConfiguration();
 
+        boundConnectors.remove(listenerConfiguration.getId(), serverConnector);
         handler.unRegisterListenerConfig(listenerConfiguration);
 
         //Remove cached channels and close them.
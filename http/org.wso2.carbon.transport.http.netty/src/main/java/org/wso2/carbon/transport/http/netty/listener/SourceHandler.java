@@ -21,23 +21,30 @@ package org.wso2.carbon.transport.http.netty.listener;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.DefaultLastHttpContent;
 import io.netty.handler.codec.http.FullHttpMessage;
+import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpMessage;
 import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
 import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.WebSocketServerHandshaker;
 import io.netty.handler.codec.http.websocketx.WebSocketServerHandshakerFactory;
-import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.ReferenceCountUtil;
 import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.ScheduledFuture;
 import org.apache.commons.pool.impl.GenericObjectPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -49,16 +56,24 @@ import org.wso2.carbon.transport.http.netty.common.HttpRoute;
 import org.wso2.carbon.transport.http.netty.common.Util;
 import org.wso2.carbon.transport.http.netty.config.ListenerConfiguration;
 import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
+import org.wso2.carbon.transport.http.netty.listener.ResponseSequencer.ResponseSlot;
+import org.wso2.carbon.transport.http.netty.listener.limiter.AdaptiveConcurrencyLimiter;
+import org.wso2.carbon.transport.http.netty.listener.limiter.PriorityLoadShedder;
+import org.wso2.carbon.transport.http.netty.listener.limiter.RejectedRequest;
+import org.wso2.carbon.transport.http.netty.listener.limiter.RequestClass;
 import org.wso2.carbon.transport.http.netty.message.HTTPCarbonMessage;
 import org.wso2.carbon.transport.http.netty.sender.channel.TargetChannel;
 import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
-import org.wso2.carbon.transport.http.netty.sender.channel.pool.PoolConfiguration;
 
 import java.net.InetSocketAddress;
 import java.net.ProtocolException;
 import java.net.URISyntaxException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A Class responsible for handle  incoming message through netty inbound pipeline.
@@ -69,11 +84,30 @@ public class SourceHandler extends ChannelInboundHandlerAdapter {
     protected ChannelHandlerContext ctx;
     protected HTTPCarbonMessage cMsg;
     protected ConnectionManager connectionManager;
-    private Map<String, TargetChannel> channelFutureMap = new HashMap<>();
+    private Map<String, TargetChannel> channelFutureMap = new ConcurrentHashMap<>();
     protected Map<String, GenericObjectPool> targetChannelPool;
     protected ListenerConfiguration listenerConfiguration;
     private WebSocketServerHandshaker handshaker;
 
+    // Request with Expect: 100-continue whose client is not yet asked for the body
+    private final AtomicReference<CarbonMessage> expectingContinue = new AtomicReference<>();
+    private volatile ScheduledFuture<?> continueTimer;
+
+    private volatile ResponseSlot expectingContinueSlot;
+
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private PriorityLoadShedder loadShedder;
+    // Request waiting for the budget of its class
+    private PriorityLoadShedder.PendingRequest pendingRequest;
+    // Messages held back by the load shedder or the pipelining limit, starting with a request
+    private final List<Object> queuedMessages = new ArrayList<>();
+
+    private ResponseSequencer responseSequencer;
+    // Slot of the response of the request whose content is being read
+    private ResponseSlot responseSlot;
+    // Connection is closed once the responses of the requests in flight are completed
+    private volatile boolean draining;
+
 
     public ListenerConfiguration getListenerConfiguration() {
         return listenerConfiguration;
@@ -89,7 +123,17 @@ public class SourceHandler extends ChannelInboundHandlerAdapter {
     public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
         super.handlerAdded(ctx);
         this.ctx = ctx;
-        this.targetChannelPool = connectionManager.getTargetChannelPool();
+        this.targetChannelPool = connectionManager.getTargetChannelPool(getWorkerGroupName(ctx));
+        this.concurrencyLimiter = HTTPTransportContextHolder.getInstance()
+                .getConcurrencyLimiter(listenerConfiguration.getId());
+        this.loadShedder = HTTPTransportContextHolder.getInstance().getLoadShedder(listenerConfiguration.getId());
+        this.responseSequencer = new ResponseSequencer(ctx, this::onResponseCompleted);
+    }
+
+    // Name of the worker group of a listener which does not use the default one
+    private static String getWorkerGroupName(ChannelHandlerContext ctx) {
+        WorkerGroup workerGroup = ctx.channel().attr(WorkerGroup.WORKER_GROUP).get();
+        return workerGroup == null || workerGroup.isDefault() ? null : workerGroup.getName();
     }
 
     @Override
@@ -101,14 +145,39 @@ public class SourceHandler extends ChannelInboundHandlerAdapter {
         }
         this.ctx = ctx;
         if (this.targetChannelPool == null) {
-            this.targetChannelPool = connectionManager.getTargetChannelPool();
+            this.targetChannelPool = connectionManager.getTargetChannelPool(getWorkerGroupName(ctx));
         }
     }
 
     @SuppressWarnings("unchecked")
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!queuedMessages.isEmpty()) {
+            queuedMessages.add(msg);
+            return;
+        }
+        if (msg instanceof RejectedRequest) {
+            RejectedRequest rejectedRequest = (RejectedRequest) msg;
+            rejectRequest(responseSequencer.newSlot(rejectedRequest.getContext()), rejectedRequest.getRequest(),
+                    rejectedRequest.getResponse());
+            return;
+        }
+        if (msg instanceof HttpRequest && (msg instanceof FullHttpMessage || !isWebSocketUpgrade((HttpRequest) msg))) {
+            if (responseSequencer.size() >= Math.max(1, listenerConfiguration.getPipeliningLimit())) {
+                // Pipelined request waits until the responses of the requests before it are completed
+                holdMessage(msg);
+                return;
+            }
+            ResponseSlot slot = responseSequencer.newSlot();
+            if (!admitRequest((HttpRequest) msg, slot)) {
+                return;
+            }
+            responseSlot = slot;
+        }
+        readMessage(msg);
+    }
 
+    private void readMessage(Object msg) throws URISyntaxException, ProtocolException {
         if (msg instanceof FullHttpMessage) {
             FullHttpMessage fullHttpMessage = (FullHttpMessage) msg;
             cMsg = (HTTPCarbonMessage) setupCarbonMessage(fullHttpMessage);
@@ -125,15 +194,16 @@ public class SourceHandler extends ChannelInboundHandlerAdapter {
             Checks whether the given connection is a WebSocketUpgrade and add necessary components to it.
              */
             HttpRequest httpRequest = (HttpRequest) msg;
-            HttpHeaders headers = httpRequest.headers();
-            if (Constants.UPGRADE.equalsIgnoreCase(headers.get(Constants.CONNECTION)) &&
-                    Constants.WEBSOCKET_UPGRADE.equalsIgnoreCase(headers.get(Constants.UPGRADE))) {
+            if (isWebSocketUpgrade(httpRequest)) {
                 log.info("Upgrading the connection from Http to WebSocket for " +
                                      "channel : " + ctx.channel());
                 handleWebSocketHandshake(httpRequest);
 
             } else {
                 cMsg = (HTTPCarbonMessage) setupCarbonMessage(httpRequest);
+                if (HttpUtil.is100ContinueExpected(httpRequest)) {
+                    expectContinue(cMsg, responseSlot);
+                }
                 publishToMessageProcessor(cMsg);
             }
             //Publish message to CarbonMessageProcessor
@@ -152,9 +222,250 @@ public class SourceHandler extends ChannelInboundHandlerAdapter {
 
                     }
                 }
+            } else {
+                // Content of a rejected request
+                ReferenceCountUtil.release(msg);
+            }
+        }
+
+    }
+
+    private boolean isWebSocketUpgrade(HttpRequest httpRequest) {
+        HttpHeaders headers = httpRequest.headers();
+        return Constants.UPGRADE.equalsIgnoreCase(headers.get(Constants.CONNECTION)) &&
+                Constants.WEBSOCKET_UPGRADE.equalsIgnoreCase(headers.get(Constants.UPGRADE));
+    }
+
+    /**
+     * Hold back a message together with the messages read after it, while reading from the connection is
+     * suspended.
+     */
+    private void holdMessage(Object msg) {
+        queuedMessages.add(msg);
+        updateAutoRead();
+    }
+
+    private void updateAutoRead() {
+        ctx.channel().config().setAutoRead(queuedMessages.isEmpty());
+    }
+
+    private void onResponseCompleted() {
+        releaseHeldMessages();
+        closeIfDrained();
+    }
+
+    /**
+     * Process the messages held back by the pipelining limit once the response of an earlier request is completed.
+     */
+    private void releaseHeldMessages() {
+        if (pendingRequest != null || queuedMessages.isEmpty()) {
+            return;
+        }
+        List<Object> messages = new ArrayList<>(queuedMessages);
+        queuedMessages.clear();
+        updateAutoRead();
+        try {
+            for (Object msg : messages) {
+                channelRead(ctx, msg);
             }
+        } catch (Exception e) {
+            ctx.fireExceptionCaught(e);
+        }
+    }
+
+    /**
+     * Close the connection once the requests in flight are completed, announcing it with Connection: close on the
+     * responses written until then. Has to be called in the event loop.
+     */
+    public void drain() {
+        draining = true;
+        closeIfDrained();
+    }
+
+    public boolean isDraining() {
+        return draining;
+    }
+
+    public int getInFlightRequestCount() {
+        return responseSequencer.size();
+    }
+
+    private void closeIfDrained() {
+        if (draining && responseSequencer.size() == 0 && queuedMessages.isEmpty() && ctx.channel().isActive()) {
+            ctx.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
         }
+    }
 
+    /**
+     * Admit a request through the load shedder and the concurrency limiter of the listener before a carbon message
+     * is set up for it. A request which has to wait for the budget of its class is held back together with the
+     * messages read after it.
+     *
+     * @return true if the request can be processed right away
+     */
+    private boolean admitRequest(HttpRequest httpRequest, ResponseSlot slot) {
+        RequestClass requestClass = loadShedder == null ? null : loadShedder.classify(httpRequest);
+        if (requestClass != null && !loadShedder.tryAcquire(requestClass)) {
+            if (loadShedder.isQueueable(requestClass)) {
+                queueRequest(httpRequest, requestClass, slot);
+            } else {
+                loadShedder.recordRejected(requestClass);
+                rejectRequest(slot, httpRequest, loadShedder.getRejectionResponse());
+            }
+            return false;
+        }
+        return acquireConcurrencyPermit(httpRequest, requestClass, slot);
+    }
+
+    private boolean acquireConcurrencyPermit(HttpRequest httpRequest, RequestClass requestClass, ResponseSlot slot) {
+        long permitTime = 0;
+        if (concurrencyLimiter != null) {
+            if (!concurrencyLimiter.tryAcquire()) {
+                if (requestClass != null) {
+                    loadShedder.release(requestClass);
+                }
+                rejectRequest(slot, httpRequest, concurrencyLimiter.getRejectionResponse());
+                return false;
+            }
+            permitTime = System.nanoTime();
+        }
+        slot.admit(permitTime, requestClass);
+        return true;
+    }
+
+    private void queueRequest(HttpRequest httpRequest, RequestClass requestClass, ResponseSlot slot) {
+        holdMessage(httpRequest);
+        pendingRequest = loadShedder.enqueue(requestClass,
+                () -> ctx.executor().execute(() -> resumeQueuedRequest(requestClass, slot, true)),
+                () -> ctx.executor().execute(() -> resumeQueuedRequest(requestClass, slot, false)));
+        if (pendingRequest == null) {
+            queuedMessages.clear();
+            updateAutoRead();
+            loadShedder.recordRejected(requestClass);
+            rejectRequest(slot, httpRequest, loadShedder.getRejectionResponse());
+        }
+    }
+
+    /**
+     * Process or reject a queued request once it leaves the queue, followed by the messages read after it.
+     *
+     * @param requestClass class of the request
+     * @param slot         slot of the response of the request
+     * @param admitted     true if the request is admitted, false if it is shed
+     */
+    private void resumeQueuedRequest(RequestClass requestClass, ResponseSlot slot, boolean admitted) {
+        if (pendingRequest == null) {
+            // Connection is closed while the request is waiting
+            if (admitted) {
+                loadShedder.release(requestClass);
+            }
+            return;
+        }
+        pendingRequest = null;
+        List<Object> messages = new ArrayList<>(queuedMessages);
+        queuedMessages.clear();
+        updateAutoRead();
+        HttpRequest httpRequest = (HttpRequest) messages.get(0);
+        try {
+            if (!admitted) {
+                rejectRequest(slot, httpRequest, loadShedder.getRejectionResponse());
+            } else if (acquireConcurrencyPermit(httpRequest, requestClass, slot)) {
+                responseSlot = slot;
+                readMessage(httpRequest);
+            }
+            for (int i = 1; i < messages.size(); i++) {
+                channelRead(ctx, messages.get(i));
+            }
+        } catch (Exception e) {
+            ctx.fireExceptionCaught(e);
+        }
+    }
+
+    /**
+     * Release the admission state of a request once its response is started, feeding the processing latency to the
+     * concurrency limiter and handing over the budget of its class to the queued requests.
+     *
+     * @param slot slot of the response of the request
+     */
+    public void releaseConcurrencyPermit(ResponseSlot slot) {
+        if (!slot.release()) {
+            return;
+        }
+        long permitTime = slot.getPermitTime();
+        if (permitTime != 0) {
+            concurrencyLimiter.release(System.nanoTime() - permitTime);
+        }
+        RequestClass requestClass = slot.getRequestClass();
+        if (requestClass != null) {
+            loadShedder.release(requestClass);
+        }
+    }
+
+    /**
+     * Answer a request with a precomputed response without processing it. Content of the request which is still
+     * to be received is discarded.
+     */
+    private void rejectRequest(ResponseSlot slot, HttpRequest httpRequest, FullHttpResponse rejectionResponse) {
+        cMsg = null;
+        boolean closeConnection = !HttpUtil.isKeepAlive(httpRequest)
+                || (!(httpRequest instanceof FullHttpMessage) && HttpUtil.is100ContinueExpected(httpRequest));
+        ReferenceCountUtil.release(httpRequest);
+        ChannelFuture future = slot.writeAndFlush(rejectionResponse.retainedDuplicate());
+        if (closeConnection) {
+            future.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    /**
+     * Hold the body of a request with Expect: 100-continue at the client until the backend accepts it, or until the
+     * expect continue timeout of the listener elapses.
+     */
+    private void expectContinue(CarbonMessage requestMsg, ResponseSlot slot) {
+        expectingContinueSlot = slot;
+        expectingContinue.set(requestMsg);
+        int timeout = listenerConfiguration.getExpectContinueTimeout();
+        if (timeout <= 0) {
+            continueRequest(requestMsg);
+            return;
+        }
+        continueTimer = ctx.executor().schedule(() -> continueRequest(requestMsg), timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Ask the client of a request with Expect: 100-continue to send the body. Only the first call for a request
+     * has an effect.
+     *
+     * @param requestMsg request which expects the interim response
+     */
+    public void continueRequest(CarbonMessage requestMsg) {
+        if (expectingContinue.compareAndSet(requestMsg, null)) {
+            cancelContinueTimer();
+            expectingContinueSlot.writeAndFlush(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+                    HttpResponseStatus.CONTINUE));
+        }
+    }
+
+    /**
+     * Give up the body of a request with Expect: 100-continue since it is answered with a final response.
+     *
+     * @param requestMsg request which expects the interim response
+     * @return true if the client has not been asked for the body, hence the connection has to be closed after the
+     * response
+     */
+    public boolean rejectContinue(CarbonMessage requestMsg) {
+        if (expectingContinue.compareAndSet(requestMsg, null)) {
+            cancelContinueTimer();
+            return true;
+        }
+        return false;
+    }
+
+    private void cancelContinueTimer() {
+        ScheduledFuture<?> timer = continueTimer;
+        if (timer != null) {
+            timer.cancel(false);
+            continueTimer = null;
+        }
     }
 
     /*
@@ -173,8 +484,10 @@ public class SourceHandler extends ChannelInboundHandlerAdapter {
 
             //Replace HTTP handlers  with  new Handlers for WebSocket in the pipeline
             ChannelPipeline pipeline = ctx.pipeline();
-            int maxThreads = PoolConfiguration.getInstance().getEventGroupExecutorThreads();
-            EventExecutorGroup executorGroup = new DefaultEventExecutorGroup(maxThreads);
+            // WebSocket handler runs on the event loop of the channel unless the listener offloads it
+            WebSocketExecutor webSocketExecutor = HTTPTransportContextHolder.getInstance()
+                    .getWebSocketExecutor(listenerConfiguration.getId());
+            EventExecutorGroup executorGroup = webSocketExecutor != null ? webSocketExecutor.getExecutorGroup() : null;
             pipeline.addLast(executorGroup, "ws_handler",
                              new WebSocketSourceHandler(generateWebSocketChannelID(),
                                                         this.connectionManager,
@@ -182,6 +495,10 @@ public class SourceHandler extends ChannelInboundHandlerAdapter {
                                                         httpRequest.getUri(),
                                                         isSecuredConnection,
                                                         ctx));
+            if (webSocketExecutor != null) {
+                pipeline.addBefore("ws_handler", "ws_backpressure",
+                        webSocketExecutor.newBackpressureHandler(pipeline.context("ws_handler").executor()));
+            }
 
             pipeline.remove(this);
 
@@ -231,7 +548,7 @@ public class SourceHandler extends ChannelInboundHandlerAdapter {
                     .getMessageProcessor();
             if (carbonMessageProcessor != null) {
                 try {
-                    carbonMessageProcessor.receive(cMsg, new ResponseCallback(this.ctx, cMsg));
+                    carbonMessageProcessor.receive(cMsg, new ResponseCallback(responseSlot, cMsg));
                 } catch (Exception e) {
                     log.error("Error while submitting CarbonMessage to CarbonMessageProcessor", e);
                 }
@@ -245,6 +562,14 @@ public class SourceHandler extends ChannelInboundHandlerAdapter {
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
         // Stop the connector timer
+        cancelContinueTimer();
+        responseSequencer.clear(this::releaseConcurrencyPermit);
+        if (pendingRequest != null) {
+            loadShedder.remove(pendingRequest);
+            pendingRequest = null;
+        }
+        queuedMessages.forEach(ReferenceCountUtil::release);
+        queuedMessages.clear();
         ctx.close();
         if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
             HTTPTransportContextHolder.getInstance().getHandlerExecutor()
@@ -261,6 +586,10 @@ public class SourceHandler extends ChannelInboundHandlerAdapter {
         return channelFutureMap.remove(route.toString());
     }
 
+    public void removeTargetChannel(HttpRoute route, TargetChannel targetChannel) {
+        channelFutureMap.remove(route.toString(), targetChannel);
+    }
+
     public boolean isChannelFutureExists(HttpRoute route) {
         return (channelFutureMap.get(route.toString()) != null);
     }
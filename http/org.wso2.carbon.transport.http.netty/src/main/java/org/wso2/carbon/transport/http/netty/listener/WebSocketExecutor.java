@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.listener;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import org.wso2.carbon.transport.http.netty.common.TransportThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A bounded group of executors of a listener, to which the WebSocket handlers of its connections are offloaded
+ * instead of being run on the event loops.
+ * <p>
+ * Each connection is served by one executor of the group for its lifetime. Frames are never dropped, since that
+ * would corrupt fragmented messages. Instead, a connection stops reading once its executor has queue size tasks
+ * pending, and resumes once the executor catches up with the frames it is given until then.
+ */
+public class WebSocketExecutor {
+
+    private final String listenerId;
+    private final int queueSize;
+    private final EventExecutorGroup executorGroup;
+    private final List<EventExecutor> executors = new ArrayList<>();
+
+    public WebSocketExecutor(String listenerId, int threads, int queueSize) {
+        this.listenerId = listenerId;
+        this.queueSize = queueSize;
+        // Queues are not bounded by the executors, the backpressure handlers keep them around the queue size
+        this.executorGroup = new DefaultEventExecutorGroup(threads,
+                new TransportThreadFactory(new ThreadGroup("websocket-" + listenerId)));
+        executorGroup.forEach(executors::add);
+    }
+
+    /**
+     * Create the handler which stops a connection from reading while the executor of its WebSocket handler is
+     * behind, to be placed right before the WebSocket handler on the event loop of the connection.
+     *
+     * @param executor executor of the WebSocket handler of the connection
+     * @return backpressure handler of the connection
+     */
+    public ChannelHandler newBackpressureHandler(EventExecutor executor) {
+        return new BackpressureHandler(executor);
+    }
+
+    public String getListenerId() {
+        return listenerId;
+    }
+
+    public EventExecutorGroup getExecutorGroup() {
+        return executorGroup;
+    }
+
+    public int getExecutorCount() {
+        return executors.size();
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * Number of tasks waiting to be run by each executor of the group.
+     *
+     * @return number of pending tasks, indexed by the executor
+     */
+    public int[] getPendingTaskCounts() {
+        int[] pendingTasks = new int[executors.size()];
+        for (int i = 0; i < executors.size(); i++) {
+            EventExecutor executor = executors.get(i);
+            if (executor instanceof SingleThreadEventExecutor) {
+                pendingTasks[i] = ((SingleThreadEventExecutor) executor).pendingTasks();
+            }
+        }
+        return pendingTasks;
+    }
+
+    /**
+     * Number of tasks waiting to be run by the executors of the group.
+     *
+     * @return number of pending tasks
+     */
+    public int getPendingTaskCount() {
+        int pendingTasks = 0;
+        for (int count : getPendingTaskCounts()) {
+            pendingTasks += count;
+        }
+        return pendingTasks;
+    }
+
+    public void shutdown() {
+        executorGroup.shutdownGracefully();
+    }
+
+    /**
+     * Suspends reading from a connection once the executor of its WebSocket handler has queue size tasks pending.
+     * Reading is resumed by a task queued behind the pending ones, hence once the executor catches up with them.
+     */
+    private class BackpressureHandler extends ChannelInboundHandlerAdapter {
+
+        private final EventExecutor executor;
+
+        private BackpressureHandler(EventExecutor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            ctx.fireChannelRead(msg);
+            if (executor instanceof SingleThreadEventExecutor
+                    && ((SingleThreadEventExecutor) executor).pendingTasks() >= queueSize
+                    && ctx.channel().config().isAutoRead()) {
+                ctx.channel().config().setAutoRead(false);
+                executor.execute(() -> ctx.channel().config().setAutoRead(true));
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.listener;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A named group of event loops which serves the source connections of one or more listeners, together with the
+ * connections to the backends created for their requests.
+ * <p>
+ * Utilisation of the group is measured by the lag of the event loops, which is the delay of a probe task scheduled
+ * periodically on each event loop beyond its scheduled time. The lag grows once an event loop is saturated, well
+ * before the number of pending tasks does.
+ */
+public class WorkerGroup {
+
+    /**
+     * Worker group of a source channel.
+     */
+    public static final AttributeKey<WorkerGroup> WORKER_GROUP = AttributeKey.valueOf("workerGroup");
+
+    public static final String DEFAULT_WORKER_GROUP = "default";
+
+    private static final long PROBE_INTERVAL = 1000;
+
+    private final String name;
+    private final EventLoopGroup eventLoopGroup;
+    private final List<EventExecutor> eventLoops = new ArrayList<>();
+    // Lag in nanoseconds of the latest probe of each event loop
+    private final AtomicLongArray eventLoopLags;
+    private final AtomicInteger channelCount = new AtomicInteger();
+
+    public WorkerGroup(String name, EventLoopGroup eventLoopGroup) {
+        this.name = name;
+        this.eventLoopGroup = eventLoopGroup;
+        eventLoopGroup.forEach(eventLoops::add);
+        this.eventLoopLags = new AtomicLongArray(eventLoops.size());
+        for (int i = 0; i < eventLoops.size(); i++) {
+            scheduleProbe(i);
+        }
+    }
+
+    private void scheduleProbe(int eventLoopIndex) {
+        EventExecutor eventLoop = eventLoops.get(eventLoopIndex);
+        if (eventLoop.isShuttingDown()) {
+            return;
+        }
+        long scheduledTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(PROBE_INTERVAL);
+        try {
+            eventLoop.schedule(() -> {
+                eventLoopLags.set(eventLoopIndex, Math.max(0, System.nanoTime() - scheduledTime));
+                scheduleProbe(eventLoopIndex);
+            }, PROBE_INTERVAL, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Event loop is shutting down
+        }
+    }
+
+    /**
+     * Count a source channel of the group until it is closed.
+     *
+     * @param channel source channel
+     */
+    public void addChannel(Channel channel) {
+        channelCount.incrementAndGet();
+        channel.closeFuture().addListener(future -> channelCount.decrementAndGet());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isDefault() {
+        return DEFAULT_WORKER_GROUP.equals(name);
+    }
+
+    public EventLoopGroup getEventLoopGroup() {
+        return eventLoopGroup;
+    }
+
+    public int getEventLoopCount() {
+        return eventLoops.size();
+    }
+
+    /**
+     * Number of open source channels of the group.
+     *
+     * @return number of source channels
+     */
+    public int getChannelCount() {
+        return channelCount.get();
+    }
+
+    /**
+     * Number of tasks waiting to be run by the event loops of the group.
+     *
+     * @return number of pending tasks
+     */
+    public int getPendingTaskCount() {
+        int pendingTasks = 0;
+        for (EventExecutor eventLoop : eventLoops) {
+            if (eventLoop instanceof SingleThreadEventExecutor) {
+                pendingTasks += ((SingleThreadEventExecutor) eventLoop).pendingTasks();
+            }
+        }
+        return pendingTasks;
+    }
+
+    /**
+     * Largest lag among the event loops of the group as of their latest probes.
+     *
+     * @return maximum lag in milliseconds
+     */
+    public double getMaxEventLoopLag() {
+        long maxLag = 0;
+        for (int i = 0; i < eventLoopLags.length(); i++) {
+            maxLag = Math.max(maxLag, eventLoopLags.get(i));
+        }
+        return maxLag / 1000000.0;
+    }
+
+    /**
+     * Average lag of the event loops of the group as of their latest probes.
+     *
+     * @return average lag in milliseconds
+     */
+    public double getAverageEventLoopLag() {
+        if (eventLoopLags.length() == 0) {
+            return 0;
+        }
+        long totalLag = 0;
+        for (int i = 0; i < eventLoopLags.length(); i++) {
+            totalLag += eventLoopLags.get(i);
+        }
+        return totalLag / (eventLoopLags.length() * 1000000.0);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.transport.http.netty.listener.http2;
+
+/**
+ * Estimates the bandwidth-delay product of an HTTP/2 connection to grow its connection level flow control window.
+ * <p>
+ * A PING is sent along with the first DATA frame received after the previous sample is completed, and the bytes
+ * received until its ACK arrives are counted as a sample of the bytes in flight in a round trip. Once a sample fills
+ * two thirds of the window the peer is likely to be throttled by it, hence the window is doubled, up to the maximum.
+ * Has to be used in the event loop of the connection.
+ */
+class BdpEstimator {
+
+    /**
+     * Payload of the PINGs sent by the estimator, which tells their ACKs apart from the ACKs of other PINGs.
+     */
+    static final long PING_PAYLOAD = 0x6264705f70696e67L;
+
+    private final int maxWindowSize;
+    private int windowSize;
+    private boolean pingPending;
+    private long sample;
+
+    BdpEstimator(int windowSize, int maxWindowSize) {
+        this.windowSize = windowSize;
+        this.maxWindowSize = maxWindowSize;
+    }
+
+    /**
+     * Account for the bytes of a DATA frame.
+     *
+     * @param bytes flow controlled bytes of the frame
+     * @return true if a PING has to be sent to start a new sample
+     */
+    boolean onDataRead(int bytes) {
+        sample += bytes;
+        if (pingPending) {
+            return false;
+        }
+        pingPending = true;
+        sample = bytes;
+        return true;
+    }
+
+    /**
+     * Complete the current sample.
+     *
+     * @return number of bytes by which the connection window has to be incremented, which is 0 if it does not grow
+     */
+    int onPingAckRead() {
+        pingPending = false;
+        if (windowSize >= maxWindowSize || sample < windowSize * 2L / 3) {
+            return 0;
+        }
+        int newWindowSize = (int) Math.min(maxWindowSize, windowSize * 2L);
+        int increment = newWindowSize - windowSize;
+        windowSize = newWindowSize;
+        return increment;
+    }
+
+    int getWindowSize() {
+        return windowSize;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.transport.http.netty.listener.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http2.Http2Error;
+import io.netty.handler.codec.http2.Http2Exception;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Splits the request content of a gRPC stream into its length-prefixed messages, so that each message is delivered
+ * to the message processor as a content of its own.
+ * <p>
+ * A message is a slice of the received DATA, including its 5 byte prefix of the compressed flag and the length, hence
+ * it is not copied. Bytes of a message which is not complete yet are returned to the flow control window right away,
+ * while the bytes of the complete messages are returned once they are read, which limits the unread messages of a
+ * stream to its window. Has to be used in the event loop of the connection.
+ */
+class GrpcMessageFramer {
+
+    static final int PREFIX_LENGTH = 5;
+
+    private final int streamId;
+    private final int maxMessageSize;
+    private final CompositeByteBuf cumulation;
+    // Bytes at the head of the cumulation which are already returned to the window
+    private int returnedBytes;
+
+    GrpcMessageFramer(ByteBufAllocator alloc, int streamId, int maxMessageSize) {
+        this.streamId = streamId;
+        this.maxMessageSize = maxMessageSize;
+        this.cumulation = alloc.compositeBuffer(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Add the content of a DATA frame.
+     *
+     * @param data content of the frame, whose ownership is taken over
+     * @return messages completed by the content
+     * @throws Http2Exception if a message exceeds the maximum message size
+     */
+    List<GrpcMessage> add(ByteBuf data) throws Http2Exception {
+        cumulation.addComponent(true, data);
+        List<GrpcMessage> messages = new ArrayList<>(1);
+        while (cumulation.readableBytes() >= PREFIX_LENGTH) {
+            long messageLength = cumulation.getUnsignedInt(cumulation.readerIndex() + 1);
+            if (messageLength > maxMessageSize) {
+                throw Http2Exception.streamError(streamId, Http2Error.CANCEL,
+                        "gRPC message of %d bytes exceeds the maximum of %d bytes", messageLength, maxMessageSize);
+            }
+            int frameLength = PREFIX_LENGTH + (int) messageLength;
+            if (cumulation.readableBytes() < frameLength) {
+                break;
+            }
+            messages.add(new GrpcMessage(cumulation.readRetainedSlice(frameLength), frameLength - returnedBytes));
+            returnedBytes = 0;
+        }
+        cumulation.discardReadComponents();
+        return messages;
+    }
+
+    /**
+     * Number of bytes of the last DATA frame which can be returned to the window right away, i.e. the bytes of the
+     * message which is not complete yet.
+     */
+    int returnPartialBytes() {
+        int bytes = cumulation.readableBytes() - returnedBytes;
+        returnedBytes = cumulation.readableBytes();
+        return bytes;
+    }
+
+    /**
+     * Whether a message is cut off, which is an error at the end of the stream.
+     */
+    boolean hasPartialMessage() {
+        return cumulation.isReadable();
+    }
+
+    void release() {
+        cumulation.release();
+    }
+
+    /**
+     * A complete message along with the number of its bytes which are still to be returned to the window.
+     */
+    static final class GrpcMessage extends DefaultHttpContent {
+
+        private final AtomicInteger unreturnedBytes;
+
+        private GrpcMessage(ByteBuf content, int unreturnedBytes) {
+            super(content);
+            this.unreturnedBytes = new AtomicInteger(unreturnedBytes);
+        }
+
+        /**
+         * Take the bytes to be returned to the window, which are handed out only once however often the message is
+         * taken from the queue of its request.
+         */
+        int takeUnreturnedBytes() {
+            return unreturnedBytes.getAndSet(0);
+        }
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.transport.http.netty.listener.http2;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http2.Http2Connection;
+import io.netty.handler.codec.http2.Http2ConnectionHandler;
+import io.netty.handler.codec.http2.Http2Error;
+import io.netty.handler.codec.http2.Http2Exception;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.Http2Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+import org.wso2.carbon.transport.http.netty.sender.channel.BootstrapConfiguration;
+import org.wso2.carbon.transport.http.netty.sender.http2.HTTP2PassthroughTargetHandler;
+import org.wso2.carbon.transport.http.netty.sender.http2.HTTP2PassthroughTargetHandlerBuilder;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@code HTTP2Passthrough} relays the streams of an HTTP/2 source connection to an HTTP/2 connection of its own to
+ * the passthrough target of the listener, without converting them to carbon messages.
+ * <p>
+ * Each source stream is mapped to a target stream, and headers, DATA and RST_STREAM frames are relayed as they are.
+ * The bytes of a DATA frame are returned to the flow control window of the sending side only once the frame is
+ * written to the other side, hence a slow receiver throttles the sender through the windows of both connections.
+ * The target connection uses the event loop of the source connection, so that all the relay state is confined to a
+ * single thread.
+ */
+public class HTTP2Passthrough {
+
+    private static final Logger log = LoggerFactory.getLogger(HTTP2Passthrough.class);
+
+    private final HTTP2SourceHandler sourceHandler;
+    private final ChannelHandlerContext sourceCtx;
+    private final HttpRoute httpRoute;
+    // Id of the target stream of a source stream, and the other way around
+    private final Http2Connection.PropertyKey sourcePeerKey;
+    private Http2Connection.PropertyKey targetPeerKey;
+
+    private HTTP2PassthroughTargetHandler targetHandler;
+    private ChannelHandlerContext targetCtx;
+    private Channel targetChannel;
+    // Frames received before the target connection is ready, and the content they hold
+    private List<Runnable> pendingFrames = new ArrayList<>();
+    private final List<ByteBuf> pendingData = new ArrayList<>();
+
+    HTTP2Passthrough(HTTP2SourceHandler sourceHandler, ChannelHandlerContext sourceCtx, HttpRoute httpRoute) {
+        this.sourceHandler = sourceHandler;
+        this.sourceCtx = sourceCtx;
+        this.httpRoute = httpRoute;
+        this.sourcePeerKey = sourceHandler.connection().newKey();
+    }
+
+    /**
+     * Open the target connection. Reading from the source connection is suspended until it is ready.
+     */
+    void connect() {
+        sourceCtx.channel().config().setAutoRead(false);
+        Bootstrap bootstrap = new Bootstrap()
+                .group(sourceCtx.channel().eventLoop())
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) throws Exception {
+                        targetHandler = new HTTP2PassthroughTargetHandlerBuilder(HTTP2Passthrough.this).build();
+                        ch.pipeline().addLast("http2-passthrough", targetHandler);
+                    }
+                });
+        BootstrapConfiguration bootstrapConfiguration = BootstrapConfiguration.getInstance();
+        if (bootstrapConfiguration != null) {
+            bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, bootstrapConfiguration.getConnectTimeOut());
+        }
+        targetChannel = bootstrap.connect(new InetSocketAddress(httpRoute.getHost(), httpRoute.getPort()))
+                .addListener((ChannelFutureListener) future -> {
+                    if (!future.isSuccess()) {
+                        log.error("Cannot connect to HTTP/2 passthrough target " + httpRoute, future.cause());
+                        sourceCtx.close();
+                    }
+                }).channel();
+    }
+
+    /**
+     * Called by the target handler once the target connection is active and its preface is sent.
+     */
+    public void targetReady(ChannelHandlerContext ctx) {
+        targetCtx = ctx;
+        targetPeerKey = targetHandler.connection().newKey();
+        List<Runnable> frames = pendingFrames;
+        pendingFrames = null;
+        pendingData.clear();
+        frames.forEach(Runnable::run);
+        sourceCtx.channel().config().setAutoRead(true);
+    }
+
+    private void whenReady(Runnable frameRelay) {
+        if (pendingFrames != null) {
+            pendingFrames.add(frameRelay);
+        } else {
+            frameRelay.run();
+        }
+    }
+
+    void onSourceHeaders(int streamId, Http2Headers headers, boolean endOfStream) {
+        whenReady(() -> {
+            Http2Stream sourceStream = sourceHandler.connection().stream(streamId);
+            if (sourceStream == null) {
+                return;
+            }
+            Integer targetStreamId = sourceStream.getProperty(sourcePeerKey);
+            if (targetStreamId == null) {
+                targetStreamId = targetHandler.connection().local().incrementAndGetNextStreamId();
+                targetHandler.encoder().writeHeaders(targetCtx, targetStreamId, headers, 0, endOfStream,
+                        targetCtx.newPromise());
+                Http2Stream targetStream = targetHandler.connection().stream(targetStreamId);
+                if (targetStream == null) {
+                    // Target does not accept more streams
+                    reset(sourceHandler, sourceCtx, streamId, Http2Error.REFUSED_STREAM.code());
+                    return;
+                }
+                sourceStream.setProperty(sourcePeerKey, targetStreamId);
+                targetStream.setProperty(targetPeerKey, streamId);
+            } else {
+                // Trailers
+                targetHandler.encoder().writeHeaders(targetCtx, targetStreamId, headers, 0, endOfStream,
+                        targetCtx.newPromise());
+            }
+            flush(targetHandler, targetCtx);
+        });
+    }
+
+    int onSourceData(int streamId, ByteBuf data, int padding, boolean endOfStream) {
+        ByteBuf relayedData = data.retain();
+        if (pendingFrames != null) {
+            pendingData.add(relayedData);
+        }
+        whenReady(() -> {
+            Integer targetStreamId = getPeerStreamId(sourceHandler, sourcePeerKey, streamId);
+            relayData(targetHandler, targetCtx, targetStreamId, sourceHandler, sourceCtx, streamId, relayedData,
+                    endOfStream);
+        });
+        // Padding is not relayed, hence returned to the window right away
+        return padding;
+    }
+
+    void onSourceRstStream(int streamId, long errorCode) {
+        whenReady(() -> {
+            Integer targetStreamId = getPeerStreamId(sourceHandler, sourcePeerKey, streamId);
+            if (targetStreamId != null) {
+                reset(targetHandler, targetCtx, targetStreamId, errorCode);
+            }
+        });
+    }
+
+    /**
+     * A closed source stream needs its target stream no more, e.g. when the client goes away.
+     */
+    void sourceStreamClosed(Http2Stream sourceStream) {
+        Integer targetStreamId = sourceStream.removeProperty(sourcePeerKey);
+        if (targetStreamId != null && targetHandler.connection().stream(targetStreamId) != null) {
+            reset(targetHandler, targetCtx, targetStreamId, Http2Error.CANCEL.code());
+        }
+    }
+
+    void sourceClosed() {
+        if (pendingFrames != null) {
+            pendingFrames.clear();
+            pendingData.forEach(ByteBuf::release);
+            pendingData.clear();
+        }
+        if (targetChannel != null) {
+            targetChannel.close();
+        }
+    }
+
+    public void onTargetHeaders(int streamId, Http2Headers headers, boolean endOfStream) {
+        Integer sourceStreamId = getPeerStreamId(targetHandler, targetPeerKey, streamId);
+        if (sourceStreamId == null) {
+            reset(targetHandler, targetCtx, streamId, Http2Error.CANCEL.code());
+            return;
+        }
+        sourceHandler.encoder().writeHeaders(sourceCtx, sourceStreamId, headers, 0, endOfStream,
+                sourceCtx.newPromise());
+        flush(sourceHandler, sourceCtx);
+    }
+
+    public int onTargetData(int streamId, ByteBuf data, int padding, boolean endOfStream) {
+        Integer sourceStreamId = getPeerStreamId(targetHandler, targetPeerKey, streamId);
+        relayData(sourceHandler, sourceCtx, sourceStreamId, targetHandler, targetCtx, streamId, data.retain(),
+                endOfStream);
+        return padding;
+    }
+
+    public void onTargetRstStream(int streamId, long errorCode) {
+        Integer sourceStreamId = getPeerStreamId(targetHandler, targetPeerKey, streamId);
+        if (sourceStreamId != null) {
+            reset(sourceHandler, sourceCtx, sourceStreamId, errorCode);
+        }
+    }
+
+    /**
+     * A target stream which is reset locally, e.g. due to a protocol error of the target, fails its source stream.
+     */
+    public void targetStreamClosed(Http2Stream targetStream) {
+        Integer sourceStreamId = targetStream.removeProperty(targetPeerKey);
+        if (sourceStreamId != null && targetStream.isResetSent()
+                && sourceHandler.connection().stream(sourceStreamId) != null) {
+            reset(sourceHandler, sourceCtx, sourceStreamId, Http2Error.CANCEL.code());
+        }
+    }
+
+    public void targetClosed() {
+        if (log.isDebugEnabled()) {
+            log.debug("HTTP/2 passthrough connection to " + httpRoute + " closed");
+        }
+        sourceCtx.close();
+    }
+
+    private static Integer getPeerStreamId(Http2ConnectionHandler handler, Http2Connection.PropertyKey peerKey,
+                                           int streamId) {
+        Http2Stream stream = handler.connection().stream(streamId);
+        return stream == null ? null : stream.getProperty(peerKey);
+    }
+
+    /**
+     * Write a DATA frame to the peer stream, and return its bytes to the window of the origin stream once it is
+     * written.
+     */
+    private static void relayData(Http2ConnectionHandler peerHandler, ChannelHandlerContext peerCtx,
+                                  Integer peerStreamId, Http2ConnectionHandler originHandler,
+                                  ChannelHandlerContext originCtx, int originStreamId, ByteBuf data,
+                                  boolean endOfStream) {
+        int bytes = data.readableBytes();
+        if (peerStreamId == null) {
+            data.release();
+            consumeBytes(originHandler, originCtx, originStreamId, bytes);
+            return;
+        }
+        peerHandler.encoder().writeData(peerCtx, peerStreamId, data, 0, endOfStream, peerCtx.newPromise())
+                .addListener(future -> consumeBytes(originHandler, originCtx, originStreamId, bytes));
+        flush(peerHandler, peerCtx);
+    }
+
+    private static void consumeBytes(Http2ConnectionHandler handler, ChannelHandlerContext ctx, int streamId,
+                                     int bytes) {
+        Http2Stream stream = handler.connection().stream(streamId);
+        if (stream == null || bytes == 0) {
+            // Bytes of a closed stream are returned to the connection window by the flow controller
+            return;
+        }
+        try {
+            if (handler.decoder().flowController().consumeBytes(stream, bytes)) {
+                flush(handler, ctx);
+            }
+        } catch (Http2Exception e) {
+            log.error("Error while returning relayed bytes to the window of stream " + streamId, e);
+            ctx.close();
+        }
+    }
+
+    private static void reset(Http2ConnectionHandler handler, ChannelHandlerContext ctx, int streamId,
+                              long errorCode) {
+        handler.resetStream(ctx, streamId, errorCode, ctx.newPromise());
+        flush(handler, ctx);
+    }
+
+    private static void flush(Http2ConnectionHandler handler, ChannelHandlerContext ctx) {
+        try {
+            handler.flush(ctx);
+        } catch (Http2Exception e) {
+            log.error("Error occurred while relaying frames", e);
+        }
+    }
+}
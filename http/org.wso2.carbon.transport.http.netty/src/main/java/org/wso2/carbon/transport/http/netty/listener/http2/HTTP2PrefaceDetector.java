@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.transport.http.netty.listener.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.transport.http.netty.config.ListenerConfiguration;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * {@code HTTP2PrefaceDetector} looks for the HTTP/2 connection preface on the first bytes of a cleartext connection.
+ * If the client speaks HTTP/2 with prior knowledge the HTTP/2 handler is installed directly, otherwise the pipeline
+ * falls back to HTTP/1.1. The detector removes itself in both cases, handing over the bytes read so far.
+ */
+public class HTTP2PrefaceDetector extends ByteToMessageDecoder {
+
+    private static final Logger log = LoggerFactory.getLogger(HTTP2PrefaceDetector.class);
+    private static final ByteBuf CONNECTION_PREFACE = Http2CodecUtil.connectionPrefaceBuf();
+
+    private final ConnectionManager connectionManager;
+    private final ListenerConfiguration listenerConfiguration;
+    private final Consumer<ChannelHandlerContext> http1PipelineConfigurer;
+
+    /**
+     * @param connectionManager       connection manager of the listener
+     * @param listenerConfiguration   listener configuration
+     * @param http1PipelineConfigurer adds the HTTP/1.1 handlers after the detector if the preface is not found
+     */
+    public HTTP2PrefaceDetector(ConnectionManager connectionManager, ListenerConfiguration listenerConfiguration,
+                                Consumer<ChannelHandlerContext> http1PipelineConfigurer) {
+        this.connectionManager = connectionManager;
+        this.listenerConfiguration = listenerConfiguration;
+        this.http1PipelineConfigurer = http1PipelineConfigurer;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        int prefaceLength = CONNECTION_PREFACE.readableBytes();
+        int bytesRead = Math.min(in.readableBytes(), prefaceLength);
+        if (!ByteBufUtil.equals(CONNECTION_PREFACE, CONNECTION_PREFACE.readerIndex(), in, in.readerIndex(),
+                bytesRead)) {
+            if (log.isDebugEnabled()) {
+                log.debug("HTTP/2 connection preface not found, falling back to HTTP/1.1");
+            }
+            http1PipelineConfigurer.accept(ctx);
+            ctx.pipeline().remove(this);
+        } else if (bytesRead == prefaceLength) {
+            ctx.pipeline().addAfter(ctx.name(), "http2-handler",
+                    new HTTP2SourceHandlerBuilder(connectionManager, listenerConfiguration).build());
+            ctx.pipeline().remove(this);
+        }
+        // Otherwise wait for the rest of the preface
+    }
+}
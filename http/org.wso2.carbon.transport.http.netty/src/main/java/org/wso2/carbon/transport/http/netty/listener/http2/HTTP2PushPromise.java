@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.transport.http.netty.listener.http2;
+
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.transport.http.netty.common.Constants;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A resource to be pushed to an HTTP/2 client along with a response.
+ * <p>
+ * Promises are declared on the response message with {@link #addTo(CarbonMessage)}. When the response is written a
+ * PUSH_PROMISE frame is sent for each of them, and a GET request for the promised resource is dispatched to the
+ * message processor, whose response is written to the pushed stream. Promises are dropped if the client disables
+ * push or the push budget of the connection is exhausted.
+ */
+public class HTTP2PushPromise {
+
+    private final String path;
+    private final Map<String, String> headers = new LinkedHashMap<>();
+
+    /**
+     * @param path path of the pushed resource, including the query if any
+     */
+    public HTTP2PushPromise(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Add a header of the promised request, e.g. the accept headers the resource is selected by.
+     *
+     * @param name  header name
+     * @param value header value
+     * @return this promise
+     */
+    public HTTP2PushPromise header(String name, String value) {
+        headers.put(name, value);
+        return this;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public Map<String, String> getHeaders() {
+        return Collections.unmodifiableMap(headers);
+    }
+
+    /**
+     * Declare the promise on a response.
+     *
+     * @param response response message of an HTTP/2 request
+     */
+    @SuppressWarnings("unchecked")
+    public void addTo(CarbonMessage response) {
+        List<HTTP2PushPromise> promises = (List<HTTP2PushPromise>) response.getProperty(Constants.HTTP2_PUSH_PROMISES);
+        if (promises == null) {
+            promises = new ArrayList<>();
+            response.setProperty(Constants.HTTP2_PUSH_PROMISES, promises);
+        }
+        promises.add(this);
+    }
+}
@@ -18,15 +18,22 @@
 package org.wso2.carbon.transport.http.netty.listener.http2;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
-import io.netty.channel.ChannelFuture;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.Http2Error;
 import io.netty.handler.codec.http2.Http2Exception;
 import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.util.AsciiString;
+import io.netty.util.concurrent.ScheduledFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.carbon.messaging.CarbonCallback;
@@ -36,14 +43,28 @@ import org.wso2.carbon.messaging.MessageDataSource;
 import org.wso2.carbon.transport.http.netty.common.Constants;
 import org.wso2.carbon.transport.http.netty.common.Util;
 import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
+import org.wso2.carbon.transport.http.netty.listener.ServerBootstrapConfiguration;
 import org.wso2.carbon.transport.http.netty.message.HTTPCarbonMessage;
 
-import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * {@code HTTP2ResponseCallback} is the class implements {@link CarbonCallback} interface to process http2 message
  * responses coming from message processor
+ * <p>
+ * Frames of the response are written in the event loop of the connection, and no thread ever waits for them. The
+ * writer stops once the stream has no room in its flow control window, and reading from the backend connection of
+ * the response is suspended meanwhile, hence the memory held by a stream stays bounded by its window. The writer is
+ * resumed by the writability change of the stream, or by the arrival of the content it waits for.
  */
 public class HTTP2ResponseCallback implements CarbonCallback {
 
@@ -51,7 +72,26 @@ public class HTTP2ResponseCallback implements CarbonCallback {
     // Stream id of the channel of initial request
     private int streamId;
     private static final Logger logger = LoggerFactory.getLogger(HTTP2ResponseCallback.class);
-    private static final String DEFAULT_HTTP_METHOD_POST = "POST";
+    private static final int MAX_CACHED_HEADER_NAMES = 256;
+    private static final int MAX_COALESCED_CHUNKS = 64;
+    // Content of a DefaultCarbonMessage is not notified, hence it is looked up periodically while it is awaited
+    private static final long CONTENT_POLL_INTERVAL = 10;
+    private static final Map<String, AsciiString> HEADER_NAMES = new ConcurrentHashMap<>();
+    private static final String TOKEN_SYMBOLS = "!#$%&'*+-.^_`|~";
+    private static final Set<AsciiString> CONNECTION_HEADERS = new HashSet<>(Arrays.asList(
+            HttpHeaderNames.CONNECTION, HttpHeaderNames.KEEP_ALIVE, HttpHeaderNames.PROXY_CONNECTION,
+            HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderNames.UPGRADE));
+
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+    private HTTP2SourceHandler http2SourceHandler;
+    private CarbonMessage response;
+    // Backend connection which produces the content of the response
+    private Channel upstreamChannel;
+    // Following are accessed in the event loop only
+    private boolean streamClosed;
+    private boolean completed;
+    private boolean upstreamSuspended;
+    private ScheduledFuture<?> stallTimer;
 
     /**
      * Construct a new {@link HTTP2ResponseCallback} to process HTTP2 responses
@@ -71,71 +111,289 @@ public class HTTP2ResponseCallback implements CarbonCallback {
         }
         Http2Headers http2Headers = createHttp2Headers(cMsg);
 
-        if (ctx.handler() instanceof HTTP2SourceHandler) {
-            HTTP2SourceHandler http2SourceHandler = (HTTP2SourceHandler) ctx.handler();
-            http2SourceHandler.encoder().writeHeaders(ctx, streamId, http2Headers, 0, false,
-                    ctx.newPromise());
-            try {
+        if (!(ctx.handler() instanceof HTTP2SourceHandler)) {
+            return;
+        }
+        http2SourceHandler = (HTTP2SourceHandler) ctx.handler();
+        response = cMsg;
+        Object upstreamCtx = cMsg.getProperty(Constants.TARGET_CHNL_HNDLR_CTX);
+        if (upstreamCtx instanceof ChannelHandlerContext) {
+            upstreamChannel = ((ChannelHandlerContext) upstreamCtx).channel();
+        }
+        try {
+            ctx.executor().execute(() -> {
                 if (cMsg instanceof HTTPCarbonMessage) {
-                    HTTPCarbonMessage nettyCMsg = (HTTPCarbonMessage) cMsg;
-                    while (true) {
-                        if (nettyCMsg.isEndOfMsgAdded() && nettyCMsg.isEmpty()) {
-                            http2SourceHandler.encoder().writeData(ctx, streamId, Unpooled.EMPTY_BUFFER, 0, true,
-                                    ctx.newPromise());
-                            http2SourceHandler.flush(ctx);
-                            break;
-                        }
-                        HttpContent httpContent = nettyCMsg.getHttpContent();
-                        if (httpContent instanceof LastHttpContent) {
-                            http2SourceHandler.encoder().writeData(ctx, streamId, httpContent.content(), 0, true,
-                                    ctx.newPromise());
-                            http2SourceHandler.flush(ctx);
-                            if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
-                                HTTPTransportContextHolder.getInstance().getHandlerExecutor().
-                                        executeAtSourceResponseSending(cMsg);
-                            }
-                            break;
-                        }
-                        http2SourceHandler.encoder().writeData(ctx, streamId, httpContent.content(), 0, false,
-                                ctx.newPromise());
-                    }
-                } else if (cMsg instanceof DefaultCarbonMessage) {
-                    DefaultCarbonMessage defaultCMsg = (DefaultCarbonMessage) cMsg;
-                    if (defaultCMsg.isEndOfMsgAdded() && defaultCMsg.isEmpty()) {
-                        http2SourceHandler.encoder().writeData(ctx, streamId, Unpooled.EMPTY_BUFFER, 0, true,
-                                ctx.newPromise());
-                        http2SourceHandler.flush(ctx);
-                        return;
-                    }
-                    while (true) {
-                        ByteBuffer byteBuffer = defaultCMsg.getMessageBody();
-                        ByteBuf bbuf = Unpooled.wrappedBuffer(byteBuffer);
-                        http2SourceHandler.encoder().writeData(ctx, streamId, bbuf, 0, false, ctx
-                                .newPromise());
-                        if (defaultCMsg.isEndOfMsgAdded() && defaultCMsg.isEmpty()) {
-                            ChannelFuture future = http2SourceHandler.encoder().writeData(ctx, streamId, Unpooled
-                                    .EMPTY_BUFFER, 0, true, ctx.newPromise());
-                            http2SourceHandler.flush(ctx);
-                            if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
-                                HTTPTransportContextHolder.getInstance().getHandlerExecutor().
-                                        executeAtSourceResponseSending(cMsg);
-                            }
-                            String connection = cMsg.getHeader(Constants.HTTP_CONNECTION);
-                            if (connection != null && Constants.HTTP_CONNECTION_CLOSE.equalsIgnoreCase(connection)) {
-                                future.addListener(ChannelFutureListener.CLOSE);
-                            }
-                            break;
-                        }
-                    }
-                } else {
+                    ((HTTPCarbonMessage) cMsg).setContentAvailableListener(this::scheduleWrite);
+                }
+                if (!http2SourceHandler.registerResponseCallback(streamId, this)) {
+                    streamClosed();
+                    return;
+                }
+                writePushPromises(cMsg);
+                http2SourceHandler.encoder().writeHeaders(ctx, streamId, http2Headers, 0, false, ctx.newPromise());
+                write();
+            });
+        } catch (RejectedExecutionException e) {
+            // Event loop is shut down
+            if (cMsg instanceof HTTPCarbonMessage) {
+                ((HTTPCarbonMessage) cMsg).release();
+            }
+        }
+    }
 
+    /**
+     * Send the push promises declared on the response, which have to precede the response headers.
+     */
+    private void writePushPromises(CarbonMessage cMsg) {
+        Object pushPromises = cMsg.getProperty(Constants.HTTP2_PUSH_PROMISES);
+        if (!(pushPromises instanceof List)) {
+            return;
+        }
+        for (Object pushPromise : (List<?>) pushPromises) {
+            if (pushPromise instanceof HTTP2PushPromise
+                    && !http2SourceHandler.push(streamId, (HTTP2PushPromise) pushPromise)) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Push of " + ((HTTP2PushPromise) pushPromise).getPath() + " on stream " + streamId
+                            + " is dropped since the client disabled push or the push budget is exhausted");
                 }
-            } catch (Http2Exception e) {
-                logger.error("Error occurred while sending response to client", e);
+            }
+        }
+    }
+
+    private void scheduleWrite() {
+        if (writeScheduled.compareAndSet(false, true)) {
+            try {
+                ctx.executor().execute(this::write);
+            } catch (RejectedExecutionException e) {
+                // Event loop is shut down, hence the stream is closed with the connection
+                writeScheduled.set(false);
             }
         }
     }
 
+    /**
+     * Write the content of the response which is already received, as long as the stream has room in its window.
+     * Called in the event loop.
+     */
+    private void write() {
+        writeScheduled.set(false);
+        if (streamClosed) {
+            discardContent();
+            return;
+        }
+        while (!completed) {
+            if (!http2SourceHandler.isWritable(streamId)) {
+                // Resumed by writabilityChanged
+                setUpstreamAutoRead(false);
+                startStallTimer("Client does not accept more data on stream " + streamId);
+                return;
+            }
+            boolean written;
+            if (response instanceof HTTPCarbonMessage) {
+                written = writeContent((HTTPCarbonMessage) response);
+            } else if (response instanceof DefaultCarbonMessage) {
+                written = writeContent((DefaultCarbonMessage) response);
+            } else {
+                writeEnd(Unpooled.EMPTY_BUFFER, null);
+                written = true;
+            }
+            if (!written) {
+                // Resumed once the content is available
+                startStallTimer("Timed out while waiting for the content of the response of stream " + streamId);
+                return;
+            }
+            cancelStallTimer();
+        }
+    }
+
+    /**
+     * Write the next frame of a response whose content is received from a backend or built by the transport.
+     *
+     * @return false if no content is available yet
+     */
+    private boolean writeContent(HTTPCarbonMessage nettyCMsg) {
+        HttpContent httpContent = nettyCMsg.pollHttpContent();
+        if (httpContent == null && nettyCMsg.isEndOfMsgAdded()) {
+            // Last content may have been added along with the end of the message
+            httpContent = nettyCMsg.pollHttpContent();
+        }
+        if (httpContent == null) {
+            if (!nettyCMsg.isEndOfMsgAdded()) {
+                return false;
+            }
+            writeEnd(Unpooled.EMPTY_BUFFER, null);
+            return true;
+        }
+        boolean endOfStream = httpContent instanceof LastHttpContent;
+        HttpHeaders trailingHeaders = endOfStream ? ((LastHttpContent) httpContent).trailingHeaders() : null;
+        ByteBuf data = httpContent.content();
+        int maxFrameSize = http2SourceHandler.encoder().configuration().frameSizePolicy().maxFrameSize();
+        if (!endOfStream && data.readableBytes() < maxFrameSize) {
+            // Coalesce the chunks which are already received into a single frame
+            CompositeByteBuf composite = null;
+            HttpContent nextContent;
+            while (!endOfStream && data.readableBytes() < maxFrameSize
+                    && (nextContent = nettyCMsg.pollHttpContent()) != null) {
+                if (composite == null) {
+                    composite = ctx.alloc().compositeBuffer(MAX_COALESCED_CHUNKS);
+                    composite.addComponent(true, data);
+                    data = composite;
+                }
+                composite.addComponent(true, nextContent.content());
+                if (nextContent instanceof LastHttpContent) {
+                    endOfStream = true;
+                    trailingHeaders = ((LastHttpContent) nextContent).trailingHeaders();
+                }
+            }
+        }
+        if (endOfStream) {
+            writeEnd(data, trailingHeaders);
+        } else {
+            writeData(data, false);
+        }
+        return true;
+    }
+
+    /**
+     * Write the next frame of a response built by the message processor.
+     *
+     * @return false if no content is available yet
+     */
+    private boolean writeContent(DefaultCarbonMessage defaultCMsg) {
+        if (defaultCMsg.isEmpty()) {
+            if (!defaultCMsg.isEndOfMsgAdded()) {
+                ctx.executor().schedule(this::write, CONTENT_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                return false;
+            }
+            writeEnd(Unpooled.EMPTY_BUFFER, null);
+            String connection = defaultCMsg.getHeader(Constants.HTTP_CONNECTION);
+            if (connection != null && Constants.HTTP_CONNECTION_CLOSE.equalsIgnoreCase(connection)) {
+                ctx.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+            }
+            return true;
+        }
+        writeData(Unpooled.wrappedBuffer(defaultCMsg.getMessageBody()), false);
+        return true;
+    }
+
+    /**
+     * Write the last DATA frame of the response, followed by the trailers if there are any, which completes the
+     * response.
+     *
+     * @param data            content of the last frame
+     * @param trailingHeaders trailers of the last content of the response, null if there are none
+     */
+    private void writeEnd(ByteBuf data, HttpHeaders trailingHeaders) {
+        completed = true;
+        http2SourceHandler.releasePermits(streamId);
+        cancelStallTimer();
+        setUpstreamAutoRead(true);
+        Http2Headers trailers = createTrailers(trailingHeaders, response);
+        if (trailers.isEmpty()) {
+            writeData(data, true);
+        } else {
+            if (data.isReadable()) {
+                writeData(data, false);
+            } else {
+                data.release();
+            }
+            // Stream is closed by the trailers themselves
+            http2SourceHandler.encoder().writeHeaders(ctx, streamId, trailers, 0, true, ctx.newPromise());
+            flush();
+        }
+        if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
+            HTTPTransportContextHolder.getInstance().getHandlerExecutor().executeAtSourceResponseSending(response);
+        }
+    }
+
+    /**
+     * Write a DATA frame of the response and flush it, so that the window of the stream reflects it.
+     */
+    private void writeData(ByteBuf data, boolean endOfStream) {
+        http2SourceHandler.encoder().writeData(ctx, streamId, data, 0, endOfStream, ctx.newPromise());
+        flush();
+    }
+
+    private void flush() {
+        try {
+            http2SourceHandler.flush(ctx);
+        } catch (Http2Exception e) {
+            logger.error("Error occurred while sending response to client", e);
+        }
+    }
+
+    /**
+     * Reset the stream if the writer is not resumed within the write timeout.
+     */
+    private void startStallTimer(String reason) {
+        if (stallTimer == null) {
+            stallTimer = ctx.executor().schedule(() -> {
+                stallTimer = null;
+                logger.error(reason + " within " + getWriteTimeout() + " seconds");
+                resetStream();
+            }, getWriteTimeout(), TimeUnit.SECONDS);
+        }
+    }
+
+    private void cancelStallTimer() {
+        if (stallTimer != null) {
+            stallTimer.cancel(false);
+            stallTimer = null;
+        }
+    }
+
+    private void resetStream() {
+        http2SourceHandler.encoder().writeRstStream(ctx, streamId, Http2Error.CANCEL.code(), ctx.newPromise());
+        ctx.flush();
+    }
+
+    // Content which is still to be received is dropped as it arrives, since the stream is gone
+    private void discardContent() {
+        if (response instanceof HTTPCarbonMessage) {
+            HttpContent httpContent;
+            while ((httpContent = ((HTTPCarbonMessage) response).pollHttpContent()) != null) {
+                httpContent.release();
+            }
+        }
+    }
+
+    private void setUpstreamAutoRead(boolean autoRead) {
+        if (upstreamChannel != null && upstreamSuspended == autoRead) {
+            upstreamSuspended = !autoRead;
+            upstreamChannel.config().setAutoRead(autoRead);
+        }
+    }
+
+    private static int getWriteTimeout() {
+        ServerBootstrapConfiguration serverBootstrapConfiguration = ServerBootstrapConfiguration.getInstance();
+        return serverBootstrapConfiguration == null ? 60 : serverBootstrapConfiguration.getSoTimeOut();
+    }
+
+    /**
+     * Notify a change of the writability of the stream. Called in the event loop.
+     *
+     * @param isWritable true if the stream has room in its flow control window
+     */
+    void writabilityChanged(boolean isWritable) {
+        if (isWritable && !completed && !streamClosed) {
+            cancelStallTimer();
+            setUpstreamAutoRead(true);
+            write();
+        }
+    }
+
+    /**
+     * Notify that the stream is closed, e.g. by a RST_STREAM of the client. Called in the event loop.
+     */
+    void streamClosed() {
+        streamClosed = true;
+        cancelStallTimer();
+        setUpstreamAutoRead(true);
+        if (!completed) {
+            discardContent();
+        }
+    }
+
     /**
      * Handles the response without content length and set or remove headers based on carbon message
      *
@@ -152,33 +410,97 @@ public class HTTP2ResponseCallback implements CarbonCallback {
                 logger.error("Message is already built but cannot find the MessageDataSource");
             }
         }
-        if (cMsg.getHeader(Constants.HTTP_TRANSFER_ENCODING) == null
+        String contentType = cMsg.getHeader(Constants.HTTP_CONTENT_TYPE);
+        if (contentType != null && contentType.startsWith(Constants.GRPC_CONTENT_TYPE)) {
+            // gRPC responses are streamed, hence they are not held back to find out their length
+            return;
+        }
+        // Length of a response which is still being received is not waited for, since its frames delimit it anyway
+        if (cMsg.isEndOfMsgAdded() && cMsg.getHeader(Constants.HTTP_TRANSFER_ENCODING) == null
                 && cMsg.getHeader(Constants.HTTP_CONTENT_LENGTH) == null) {
             cMsg.setHeader(Constants.HTTP_CONTENT_LENGTH, String.valueOf(cMsg.getFullMessageLength()));
         }
     }
 
     /**
-     * Create HTTP/2 Headers for response
+     * Create HTTP/2 Headers for response. Only the status pseudo header is sent, and connection specific headers
+     * as well as headers with invalid names are dropped since they are not allowed in HTTP/2.
      *
      * @param msg Carbon Message
      * @return HTTP/2 Headers
      */
     private Http2Headers createHttp2Headers(CarbonMessage msg) {
-        Http2Headers http2Headers = new DefaultHttp2Headers()
-                .status(String.valueOf(Util.getIntValue(msg, Constants.HTTP_STATUS_CODE, 200)))
-                .method(Util.getStringValue(msg, Constants.HTTP_METHOD, DEFAULT_HTTP_METHOD_POST))
-                .path(msg.getProperty(Constants.TO) != null ? msg.getProperty(Constants.TO).toString() : "/")
-                .scheme(msg.getProperty(Constants.SCHEME) != null ? msg.getProperty(Constants.SCHEME).toString()
-                        : Constants.PROTOCOL_NAME);
-        //set Authority Header
-        if (msg.getProperty(Constants.AUTHORITY) != null) {
-            http2Headers.authority(Constants.AUTHORITY);
-        } else {
-            http2Headers.authority(((InetSocketAddress) ctx.channel().remoteAddress()).getHostName());
+        // Names are lower cased and validated by getHeaderName, hence the headers need not validate them again
+        Http2Headers http2Headers = new DefaultHttp2Headers(false).status(
+                HttpResponseStatus.valueOf(Util.getIntValue(msg, Constants.HTTP_STATUS_CODE, 200)).codeAsText());
+        msg.getHeaders().getAll().forEach(k -> {
+            AsciiString name = getHeaderName(k.getName());
+            if (name != null && !CONNECTION_HEADERS.contains(name)) {
+                http2Headers.add(name, k.getValue());
+            }
+        });
+        return http2Headers;
+    }
+
+    /**
+     * Create the trailers of a response from the trailing headers of its last content and the trailers set on it.
+     */
+    @SuppressWarnings("unchecked")
+    private Http2Headers createTrailers(HttpHeaders trailingHeaders, CarbonMessage msg) {
+        Http2Headers trailers = new DefaultHttp2Headers(false);
+        if (trailingHeaders != null) {
+            trailingHeaders.forEach(header -> {
+                AsciiString name = getHeaderName(header.getKey());
+                if (name != null) {
+                    trailers.add(name, header.getValue());
+                }
+            });
         }
+        Object trailerHeaders = msg.getProperty(Constants.HTTP_TRAILER_HEADERS);
+        if (trailerHeaders instanceof Map) {
+            ((Map<String, String>) trailerHeaders).forEach((name, value) -> {
+                AsciiString trailerName = getHeaderName(name);
+                if (trailerName != null) {
+                    trailers.set(trailerName, value);
+                }
+            });
+        }
+        return trailers;
+    }
 
-        msg.getHeaders().getAll().forEach(k -> http2Headers.add(k.getName().toLowerCase(), k.getValue()));
-        return http2Headers;
+    /**
+     * Lower case header name of a response. Names are validated once and cached, since the responses of a server
+     * mostly carry the same few headers.
+     *
+     * @return header name, or null if the name is not a valid header field name, e.g. a pseudo header
+     */
+    private static AsciiString getHeaderName(String name) {
+        AsciiString headerName = HEADER_NAMES.get(name);
+        if (headerName == null) {
+            if (!isToken(name)) {
+                logger.warn("Dropping response header with invalid name '" + name + "'");
+                return null;
+            }
+            headerName = AsciiString.of(name.toLowerCase(Locale.ENGLISH));
+            if (HEADER_NAMES.size() < MAX_CACHED_HEADER_NAMES) {
+                HEADER_NAMES.putIfAbsent(name, headerName);
+            }
+        }
+        return headerName;
+    }
+
+    // Field names are tokens as of RFC 7230, which leaves out the pseudo headers as well
+    private static boolean isToken(String name) {
+        if (name == null || name.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || TOKEN_SYMBOLS.indexOf(c) >= 0)) {
+                return false;
+            }
+        }
+        return true;
     }
 }
@@ -22,32 +22,49 @@ import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultHttpRequest;
 import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2Connection;
+import io.netty.handler.codec.http2.Http2ConnectionAdapter;
 import io.netty.handler.codec.http2.Http2ConnectionDecoder;
 import io.netty.handler.codec.http2.Http2ConnectionEncoder;
 import io.netty.handler.codec.http2.Http2ConnectionHandler;
+import io.netty.handler.codec.http2.Http2Error;
 import io.netty.handler.codec.http2.Http2Exception;
 import io.netty.handler.codec.http2.Http2Flags;
 import io.netty.handler.codec.http2.Http2FrameListener;
 import io.netty.handler.codec.http2.Http2Headers;
 import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2Stream;
 import io.netty.util.AsciiString;
 import io.netty.util.CharsetUtil;
-import io.netty.util.internal.PlatformDependent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.carbon.messaging.CarbonCallback;
 import org.wso2.carbon.messaging.CarbonMessageProcessor;
 import org.wso2.carbon.transport.http.netty.common.Constants;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
 import org.wso2.carbon.transport.http.netty.config.ListenerConfiguration;
 import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
+import org.wso2.carbon.transport.http.netty.listener.limiter.AdaptiveConcurrencyLimiter;
+import org.wso2.carbon.transport.http.netty.listener.limiter.PriorityLoadShedder;
+import org.wso2.carbon.transport.http.netty.listener.limiter.RateLimiter;
+import org.wso2.carbon.transport.http.netty.listener.limiter.RequestClass;
+import org.wso2.carbon.transport.http.netty.listener.limiter.TokenBucket;
 import org.wso2.carbon.transport.http.netty.message.HTTPCarbonMessage;
 import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
 
 import java.net.InetSocketAddress;
-import java.util.Map;
+import java.util.Locale;
 
 import static io.netty.handler.codec.http.HttpResponseStatus.OK;
 
@@ -58,14 +75,28 @@ import static io.netty.handler.codec.http.HttpResponseStatus.OK;
 public final class HTTP2SourceHandler extends Http2ConnectionHandler implements Http2FrameListener {
 
     private static final Logger log = LoggerFactory.getLogger(HTTP2SourceHandler.class);
-    /**
-     * streamIdRequestMap contains mapping of http carbon messages to streamid to support multiplexing capability of
-     * http2 tcp connections
-     */
-    private Map<Integer, HTTPCarbonMessage> streamIdRequestMap = PlatformDependent.newConcurrentHashMap();
     private ConnectionManager connectionManager;
     private ListenerConfiguration listenerConfiguration;
     private ChannelHandlerContext ctx;
+    // Request message of a stream, which lives as long as the stream to support multiplexing of the connection
+    private Http2Connection.PropertyKey requestMessageKey;
+    // Response callback of a stream, which is notified when the stream becomes writable or is closed
+    private Http2Connection.PropertyKey responseCallbackKey;
+    // Splits the request content of a gRPC stream into its messages, if gRPC framing is enabled
+    private Http2Connection.PropertyKey grpcFramerKey;
+    // Grows the connection window if auto tuning is enabled
+    private BdpEstimator bdpEstimator;
+    // Streams pushed over the connection so far
+    private int pushedStreamCount;
+    // Relays the streams to the passthrough target of the listener, if any
+    private HTTP2Passthrough passthrough;
+    // Permits a stream holds from the limiters of the listener, until its response is completed or it is closed
+    private Http2Connection.PropertyKey admissionKey;
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private PriorityLoadShedder loadShedder;
+    private RateLimiter rateLimiter;
+    // Rate limit of the client of the connection
+    private TokenBucket clientBucket;
 
     HTTP2SourceHandler(Http2ConnectionDecoder decoder, Http2ConnectionEncoder encoder,
                        Http2Settings initialSettings, ConnectionManager connectionManager, ListenerConfiguration
@@ -79,6 +110,141 @@ public final class HTTP2SourceHandler extends Http2ConnectionHandler implements
     public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
         super.handlerAdded(ctx);
         this.ctx = ctx;
+        requestMessageKey = connection().newKey();
+        responseCallbackKey = connection().newKey();
+        grpcFramerKey = connection().newKey();
+        admissionKey = connection().newKey();
+        concurrencyLimiter = HTTPTransportContextHolder.getInstance()
+                .getConcurrencyLimiter(listenerConfiguration.getId());
+        loadShedder = HTTPTransportContextHolder.getInstance().getLoadShedder(listenerConfiguration.getId());
+        rateLimiter = HTTPTransportContextHolder.getInstance().getRateLimiter(listenerConfiguration.getId());
+        if (rateLimiter != null && ctx.channel().remoteAddress() instanceof InetSocketAddress) {
+            clientBucket = rateLimiter.getClientBucket(((InetSocketAddress) ctx.channel().remoteAddress())
+                    .getAddress());
+        }
+        encoder().flowController().listener(stream -> {
+            HTTP2ResponseCallback responseCallback = stream.getProperty(responseCallbackKey);
+            if (responseCallback != null) {
+                responseCallback.writabilityChanged(encoder().flowController().isWritable(stream));
+            }
+        });
+        connection().addListener(new Http2ConnectionAdapter() {
+            @Override
+            public void onStreamClosed(Http2Stream stream) {
+                if (passthrough != null) {
+                    passthrough.sourceStreamClosed(stream);
+                }
+                HTTPCarbonMessage cMsg = stream.removeProperty(requestMessageKey);
+                if (cMsg != null && !cMsg.isEndOfMsgAdded()) {
+                    // Stream is reset or the connection is closed before the request is fully received
+                    cMsg.discardContent();
+                }
+                GrpcMessageFramer grpcFramer = stream.removeProperty(grpcFramerKey);
+                if (grpcFramer != null) {
+                    grpcFramer.release();
+                }
+                releasePermits((StreamAdmission) stream.removeProperty(admissionKey));
+                HTTP2ResponseCallback responseCallback = stream.removeProperty(responseCallbackKey);
+                if (responseCallback != null) {
+                    responseCallback.streamClosed();
+                }
+            }
+        });
+        initConnectionWindow(ctx);
+        if (listenerConfiguration.getHttp2PassthroughHost() != null) {
+            passthrough = new HTTP2Passthrough(this, ctx, new HttpRoute(listenerConfiguration.getHttp2PassthroughHost(),
+                    listenerConfiguration.getHttp2PassthroughPort()));
+            passthrough.connect();
+        }
+    }
+
+    /**
+     * Open up the connection window beyond the protocol default, which is sent right after the preface.
+     */
+    private void initConnectionWindow(ChannelHandlerContext ctx) throws Http2Exception {
+        int windowSize = Math.max(Http2CodecUtil.DEFAULT_WINDOW_SIZE,
+                listenerConfiguration.getHttp2ConnectionWindowSize());
+        if (listenerConfiguration.isHttp2ConnectionWindowAutoTuning()
+                && windowSize < listenerConfiguration.getHttp2MaxConnectionWindowSize()) {
+            bdpEstimator = new BdpEstimator(windowSize, listenerConfiguration.getHttp2MaxConnectionWindowSize());
+        }
+        incrementConnectionWindow(ctx, windowSize - Http2CodecUtil.DEFAULT_WINDOW_SIZE);
+    }
+
+    private void incrementConnectionWindow(ChannelHandlerContext ctx, int increment) throws Http2Exception {
+        if (increment > 0) {
+            decoder().flowController().incrementWindowSize(connection().connectionStream(), increment);
+            ctx.flush();
+        }
+    }
+
+    /**
+     * Attach the callback of the response of a stream to the stream. Has to be called in the event loop.
+     *
+     * @param streamId         stream id
+     * @param responseCallback response callback of the stream
+     * @return false if the stream is already closed
+     */
+    boolean registerResponseCallback(int streamId, HTTP2ResponseCallback responseCallback) {
+        Http2Stream stream = connection().stream(streamId);
+        if (stream == null) {
+            return false;
+        }
+        stream.setProperty(responseCallbackKey, responseCallback);
+        return true;
+    }
+
+    /**
+     * Send a PUSH_PROMISE on a stream and dispatch the promised request to the message processor, whose response is
+     * written to the pushed stream. Has to be called in the event loop, before the response headers of the stream.
+     *
+     * @param streamId    stream id of the request the resource is pushed along with
+     * @param pushPromise promised resource
+     * @return false if the promise is dropped since push is disabled or the push budget is exhausted
+     */
+    boolean push(int streamId, HTTP2PushPromise pushPromise) {
+        Http2Stream stream = connection().stream(streamId);
+        if (stream == null || !connection().remote().allowPushTo() || !connection().local().canOpenStream()
+                || pushedStreamCount >= listenerConfiguration.getHttp2PushBudget()) {
+            return false;
+        }
+        HTTPCarbonMessage request = stream.getProperty(requestMessageKey);
+        Object authority = request == null ? null : request.getProperty(Constants.AUTHORITY);
+        Http2Headers headers = new DefaultHttp2Headers()
+                .method(HttpMethod.GET.asciiName())
+                .path(pushPromise.getPath())
+                .scheme(listenerConfiguration.getScheme())
+                .authority(authority != null ? authority.toString()
+                        : ((InetSocketAddress) ctx.channel().localAddress()).getHostName());
+        pushPromise.getHeaders().forEach((name, value) -> headers.add(name.toLowerCase(Locale.ENGLISH), value));
+
+        int promisedStreamId = connection().local().incrementAndGetNextStreamId();
+        encoder().writePushPromise(ctx, streamId, promisedStreamId, headers, 0, ctx.newPromise());
+        if (connection().stream(promisedStreamId) == null) {
+            // Promise is rejected by the encoder
+            return false;
+        }
+        pushedStreamCount++;
+        // Pushed stream depends on its parent, so that it does not compete with the response it is pushed along with
+        encoder().flowController().updateDependencyTree(promisedStreamId, streamId,
+                Http2CodecUtil.DEFAULT_PRIORITY_WEIGHT, false);
+        HTTPCarbonMessage cMsg = publishToMessageProcessor(promisedStreamId, new DefaultHttp2Headers().add(headers));
+        cMsg.setEndOfMsgAdded(true);
+        if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
+            HTTPTransportContextHolder.getInstance().getHandlerExecutor().executeAtSourceRequestSending(cMsg);
+        }
+        return true;
+    }
+
+    /**
+     * Whether a stream has room in its flow control window. Has to be called in the event loop.
+     *
+     * @param streamId stream id
+     * @return true if data written to the stream is sent right away
+     */
+    boolean isWritable(int streamId) {
+        Http2Stream stream = connection().stream(streamId);
+        return stream != null && encoder().flowController().isWritable(stream);
     }
 
     /**
@@ -105,7 +271,28 @@ public final class HTTP2SourceHandler extends Http2ConnectionHandler implements
     public int onDataRead(ChannelHandlerContext ctx, int streamId, ByteBuf data, int padding, boolean endOfStream)
             throws Http2Exception {
 
-        HTTPCarbonMessage cMsg = streamIdRequestMap.get(streamId);
+        if (bdpEstimator != null && bdpEstimator.onDataRead(data.readableBytes() + padding)) {
+            encoder().writePing(ctx, false, ctx.alloc().buffer(8).writeLong(BdpEstimator.PING_PAYLOAD),
+                    ctx.newPromise());
+            ctx.flush();
+        }
+        if (passthrough != null) {
+            return passthrough.onSourceData(streamId, data, padding, endOfStream);
+        }
+        Http2Stream stream = connection().stream(streamId);
+        HTTPCarbonMessage cMsg = stream == null ? null : stream.getProperty(requestMessageKey);
+        GrpcMessageFramer grpcFramer = stream == null ? null : stream.getProperty(grpcFramerKey);
+        if (cMsg != null && grpcFramer != null) {
+            for (GrpcMessageFramer.GrpcMessage message : grpcFramer.add(data.retain())) {
+                cMsg.addHttpContent(message);
+            }
+            // Bytes of the complete messages are returned to the window once they are read
+            int processedBytes = grpcFramer.returnPartialBytes() + padding;
+            if (endOfStream) {
+                completeRequest(streamId, cMsg, grpcFramer, LastHttpContent.EMPTY_LAST_CONTENT);
+            }
+            return processedBytes;
+        }
         if (cMsg != null) {
             cMsg.addHttpContent(new DefaultLastHttpContent(data.retain()));
             if (endOfStream) {
@@ -118,10 +305,62 @@ public final class HTTP2SourceHandler extends Http2ConnectionHandler implements
         return data.readableBytes() + padding;
     }
 
+    /**
+     * Handle the trailers of a request, which end its stream.
+     */
+    private void onTrailersRead(int streamId, HTTPCarbonMessage cMsg, Http2Headers headers) throws Http2Exception {
+        LastHttpContent trailers = new DefaultLastHttpContent();
+        headers.forEach(header -> trailers.trailingHeaders().add(header.getKey(), header.getValue()));
+        Http2Stream stream = connection().stream(streamId);
+        completeRequest(streamId, cMsg, stream == null ? null : stream.getProperty(grpcFramerKey), trailers);
+    }
+
+    private void completeRequest(int streamId, HTTPCarbonMessage cMsg, GrpcMessageFramer grpcFramer,
+                                 LastHttpContent lastContent) throws Http2Exception {
+        if (grpcFramer != null && grpcFramer.hasPartialMessage()) {
+            throw Http2Exception.streamError(streamId, Http2Error.PROTOCOL_ERROR,
+                    "Stream ended in the middle of a gRPC message");
+        }
+        cMsg.addHttpContent(lastContent);
+        cMsg.setEndOfMsgAdded(true);
+        if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
+            HTTPTransportContextHolder.getInstance().getHandlerExecutor().executeAtSourceRequestSending(cMsg);
+        }
+    }
+
+    /**
+     * Return the bytes of a gRPC message which is read to the window of its stream.
+     */
+    private void returnGrpcMessageBytes(int streamId, int bytes) {
+        Http2Stream stream = connection().stream(streamId);
+        if (stream == null || bytes == 0) {
+            return;
+        }
+        try {
+            if (decoder().flowController().consumeBytes(stream, bytes)) {
+                flush(ctx);
+            }
+        } catch (Http2Exception e) {
+            log.error("Error while returning the bytes of a gRPC message to the window of stream " + streamId, e);
+        }
+    }
+
 
     public void onHeadersRead(ChannelHandlerContext ctx, int streamId,
                               Http2Headers headers, int padding, boolean endOfStream) throws Http2Exception {
-
+        if (passthrough != null) {
+            passthrough.onSourceHeaders(streamId, headers, endOfStream);
+            return;
+        }
+        Http2Stream stream = connection().stream(streamId);
+        HTTPCarbonMessage requestMsg = stream == null ? null : stream.getProperty(requestMessageKey);
+        if (requestMsg != null) {
+            onTrailersRead(streamId, requestMsg, headers);
+            return;
+        }
+        if (!admitStream(streamId, headers, endOfStream)) {
+            return;
+        }
         HTTPCarbonMessage cMsg = publishToMessageProcessor(streamId, headers);
         if (endOfStream) {
             cMsg.setEndOfMsgAdded(true);
@@ -146,8 +385,11 @@ public final class HTTP2SourceHandler extends Http2ConnectionHandler implements
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
-        // Stop the connector timer
-        ctx.close();
+        // Closes the active streams, which releases their state
+        super.channelInactive(ctx);
+        if (passthrough != null) {
+            passthrough.sourceClosed();
+        }
         if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
             HTTPTransportContextHolder.getInstance().getHandlerExecutor()
                     .executeAtSourceConnectionTermination(Integer.toString(ctx.hashCode()));
@@ -169,7 +411,19 @@ public final class HTTP2SourceHandler extends Http2ConnectionHandler implements
         if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
             HTTPTransportContextHolder.getInstance().getHandlerExecutor().executeAtSourceRequestReceiving(cMsg);
         }
+        Http2Stream stream = connection().stream(streamId);
+        StreamAdmission admission = stream == null ? null : stream.getProperty(admissionKey);
+        if (admission == null || admission.pendingRequest == null) {
+            dispatch(streamId, cMsg);
+        }
+        return cMsg;
+    }
 
+    /**
+     * Hand over the request of a stream to the message processor. The request of a stream which waits for the
+     * budget of its class is dispatched once it is admitted, and its content is buffered meanwhile.
+     */
+    private void dispatch(int streamId, HTTPCarbonMessage cMsg) {
         boolean continueRequest = true;
 
         if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
@@ -195,8 +449,159 @@ public final class HTTP2SourceHandler extends Http2ConnectionHandler implements
                 log.error("Cannot find registered MessageProcessor for forward the message");
             }
         }
+    }
 
-        return cMsg;
+    /**
+     * Admit a new stream through the rate limiter, the load shedder and the concurrency limiter of the listener,
+     * the same way as a request of an HTTP/1 connection. A stream which has to wait for the budget of its class is
+     * queued. The permits are kept on the stream until its response is completed or it is closed.
+     *
+     * @return false if the stream is rejected
+     */
+    private boolean admitStream(int streamId, Http2Headers headers, boolean endOfStream) {
+        if (rateLimiter != null && !rateLimiter.tryAcquire(clientBucket)) {
+            rejectStream(streamId, !endOfStream, rateLimiter.getRejectionResponse());
+            return false;
+        }
+        Http2Stream stream = connection().stream(streamId);
+        if (stream == null || (loadShedder == null && concurrencyLimiter == null)) {
+            return true;
+        }
+        StreamAdmission admission = new StreamAdmission();
+        admission.requestClass = loadShedder == null ? null : loadShedder.classify(toHttpRequest(headers));
+        RequestClass requestClass = admission.requestClass;
+        if (requestClass != null && !loadShedder.tryAcquire(requestClass)) {
+            if (loadShedder.isQueueable(requestClass)) {
+                admission.pendingRequest = loadShedder.enqueue(requestClass,
+                        () -> ctx.executor().execute(() -> resumeQueuedStream(streamId, admission, true)),
+                        () -> ctx.executor().execute(() -> resumeQueuedStream(streamId, admission, false)));
+            }
+            if (admission.pendingRequest == null) {
+                loadShedder.recordRejected(requestClass);
+                rejectStream(streamId, !endOfStream, loadShedder.getRejectionResponse());
+                return false;
+            }
+            stream.setProperty(admissionKey, admission);
+            return true;
+        }
+        return acquireConcurrencyPermit(stream, admission, !endOfStream);
+    }
+
+    private boolean acquireConcurrencyPermit(Http2Stream stream, StreamAdmission admission, boolean remoteOpen) {
+        if (concurrencyLimiter != null) {
+            if (!concurrencyLimiter.tryAcquire()) {
+                if (admission.requestClass != null) {
+                    loadShedder.release(admission.requestClass);
+                }
+                stream.removeProperty(admissionKey);
+                rejectStream(stream.id(), remoteOpen, concurrencyLimiter.getRejectionResponse());
+                return false;
+            }
+            admission.permitTime = System.nanoTime();
+        }
+        stream.setProperty(admissionKey, admission);
+        return true;
+    }
+
+    /**
+     * Dispatch or reject a queued stream once it leaves the queue.
+     *
+     * @param streamId  stream id
+     * @param admission admission state of the stream
+     * @param admitted  true if the stream is admitted, false if it is shed
+     */
+    private void resumeQueuedStream(int streamId, StreamAdmission admission, boolean admitted) {
+        Http2Stream stream = connection().stream(streamId);
+        if (stream == null || stream.getProperty(admissionKey) != admission) {
+            // Stream is closed while it is waiting
+            if (admitted) {
+                loadShedder.release(admission.requestClass);
+            }
+            return;
+        }
+        admission.pendingRequest = null;
+        boolean remoteOpen = stream.state().remoteSideOpen();
+        if (!admitted) {
+            stream.removeProperty(admissionKey);
+            discardRequest(stream);
+            rejectStream(streamId, remoteOpen, loadShedder.getRejectionResponse());
+        } else if (acquireConcurrencyPermit(stream, admission, remoteOpen)) {
+            HTTPCarbonMessage cMsg = stream.getProperty(requestMessageKey);
+            if (cMsg != null) {
+                dispatch(streamId, cMsg);
+            }
+        } else {
+            discardRequest(stream);
+        }
+    }
+
+    /**
+     * Release the permits of a stream once its response is completed. Has to be called in the event loop.
+     *
+     * @param streamId stream id
+     */
+    void releasePermits(int streamId) {
+        Http2Stream stream = connection().stream(streamId);
+        if (stream != null) {
+            releasePermits((StreamAdmission) stream.removeProperty(admissionKey));
+        }
+    }
+
+    private void releasePermits(StreamAdmission admission) {
+        if (admission == null) {
+            return;
+        }
+        if (admission.pendingRequest != null) {
+            // Stream is closed while it is waiting for the budget of its class
+            loadShedder.remove(admission.pendingRequest);
+            return;
+        }
+        if (admission.permitTime != 0) {
+            concurrencyLimiter.release(System.nanoTime() - admission.permitTime);
+        }
+        if (admission.requestClass != null) {
+            loadShedder.release(admission.requestClass);
+        }
+    }
+
+    /**
+     * Answer a stream with the status and the Retry-After header of a rejection response without processing it.
+     * A stream whose request is still being received is reset once the response is sent, since the rest of the
+     * request is of no use.
+     */
+    private void rejectStream(int streamId, boolean remoteOpen, FullHttpResponse rejectionResponse) {
+        Http2Headers headers = new DefaultHttp2Headers().status(rejectionResponse.status().codeAsText());
+        String retryAfter = rejectionResponse.headers().get(HttpHeaderNames.RETRY_AFTER);
+        if (retryAfter != null) {
+            headers.set(HttpHeaderNames.RETRY_AFTER, retryAfter);
+        }
+        encoder().writeHeaders(ctx, streamId, headers, 0, true, ctx.newPromise());
+        if (remoteOpen) {
+            encoder().writeRstStream(ctx, streamId, Http2Error.NO_ERROR.code(), ctx.newPromise());
+        }
+        ctx.flush();
+    }
+
+    private void discardRequest(Http2Stream stream) {
+        HTTPCarbonMessage cMsg = stream.removeProperty(requestMessageKey);
+        if (cMsg != null) {
+            cMsg.discardContent();
+        }
+    }
+
+    /**
+     * Build the view of the headers of a stream which the load shedder classifies a request by, which is the path
+     * and the regular headers.
+     */
+    private static HttpRequest toHttpRequest(Http2Headers headers) {
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET,
+                headers.path() == null ? "/" : headers.path().toString(), false);
+        headers.forEach(header -> {
+            if (!Http2Headers.PseudoHeaderName.isPseudoHeader(header.getKey())) {
+                request.headers().add(header.getKey(), header.getValue());
+            }
+        });
+        return request;
     }
 
     /**
@@ -241,22 +646,52 @@ public final class HTTP2SourceHandler extends Http2ConnectionHandler implements
             cMsg.setProperty(Constants.HTTP_METHOD, method);
         }
         // Remove PseudoHeaderNames from headers
-        headers.getAndRemove(Constants.HTTP2_AUTHORITY);
+        CharSequence authority = headers.getAndRemove(Constants.HTTP2_AUTHORITY);
+        if (authority != null) {
+            cMsg.setProperty(Constants.AUTHORITY, authority.toString());
+        }
         headers.getAndRemove(Constants.HTTP2_SCHEME);
 
         // Copy Http2 headers to carbon message
         headers.forEach(k -> cMsg.setHeader(k.getKey().toString(), k.getValue().toString()));
-        streamIdRequestMap.put(streamId, cMsg);
+        Http2Stream stream = connection().stream(streamId);
+        if (stream != null) {
+            stream.setProperty(requestMessageKey, cMsg);
+            CharSequence contentType = headers.get(HttpHeaderNames.CONTENT_TYPE);
+            if (listenerConfiguration.isGrpcFraming() && contentType != null
+                    && contentType.toString().startsWith(Constants.GRPC_CONTENT_TYPE)) {
+                stream.setProperty(grpcFramerKey, new GrpcMessageFramer(ctx.alloc(), streamId,
+                        listenerConfiguration.getGrpcMaxMessageSize()));
+                cMsg.setContentReadListener(content -> {
+                    int bytes = content instanceof GrpcMessageFramer.GrpcMessage ?
+                            ((GrpcMessageFramer.GrpcMessage) content).takeUnreturnedBytes() : 0;
+                    if (bytes > 0) {
+                        ctx.executor().execute(() -> returnGrpcMessageBytes(streamId, bytes));
+                    }
+                });
+            }
+        }
         return cMsg;
     }
 
     @Override
     public void onPriorityRead(ChannelHandlerContext ctx, int streamId, int streamDependency,
                                short weight, boolean exclusive) {
+        // Priority is applied to the stream scheduler of the flow controller by the decoder
     }
 
     @Override
     public void onRstStreamRead(ChannelHandlerContext ctx, int streamId, long errorCode) {
+        if (passthrough != null) {
+            passthrough.onSourceRstStream(streamId, errorCode);
+            return;
+        }
+        Http2Stream stream = connection().stream(streamId);
+        HTTPCarbonMessage cMsg = stream == null ? null : stream.removeProperty(requestMessageKey);
+        if (cMsg != null) {
+            // Nobody is interested in the request any more, hence its content which is not read yet is released
+            cMsg.discardContent();
+        }
     }
 
     @Override
@@ -272,7 +707,11 @@ public final class HTTP2SourceHandler extends Http2ConnectionHandler implements
     }
 
     @Override
-    public void onPingAckRead(ChannelHandlerContext ctx, ByteBuf data) {
+    public void onPingAckRead(ChannelHandlerContext ctx, ByteBuf data) throws Http2Exception {
+        if (bdpEstimator != null && data.readableBytes() == 8
+                && data.getLong(data.readerIndex()) == BdpEstimator.PING_PAYLOAD) {
+            incrementConnectionWindow(ctx, bdpEstimator.onPingAckRead());
+        }
     }
 
     @Override
@@ -306,5 +745,16 @@ public final class HTTP2SourceHandler extends Http2ConnectionHandler implements
         return listenerConfiguration;
     }
 
+    /**
+     * Permits a stream holds from the limiters of the listener.
+     */
+    private static class StreamAdmission {
+        // Class of the stream in the load shedder, null if it does not belong to any
+        private RequestClass requestClass;
+        // Time the concurrency limiter admitted the stream at, 0 if it is not limited
+        private long permitTime;
+        // Set while the stream waits for the budget of its class
+        private PriorityLoadShedder.PendingRequest pendingRequest;
+    }
 }
 
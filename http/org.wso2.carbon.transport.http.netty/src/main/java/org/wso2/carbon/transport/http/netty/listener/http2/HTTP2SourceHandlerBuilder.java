@@ -20,9 +20,15 @@ package org.wso2.carbon.transport.http.netty.listener.http2;
 
 import io.netty.handler.codec.http2.AbstractHttp2ConnectionHandlerBuilder;
 import io.netty.handler.codec.http2.DefaultHttp2Connection;
+import io.netty.handler.codec.http2.DefaultHttp2RemoteFlowController;
+import io.netty.handler.codec.http2.Http2Connection;
 import io.netty.handler.codec.http2.Http2ConnectionDecoder;
 import io.netty.handler.codec.http2.Http2ConnectionEncoder;
 import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.StreamByteDistributor;
+import io.netty.handler.codec.http2.UniformStreamByteDistributor;
+import io.netty.handler.codec.http2.WeightedFairQueueByteDistributor;
+import org.wso2.carbon.transport.http.netty.common.Constants;
 import org.wso2.carbon.transport.http.netty.config.ListenerConfiguration;
 import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
 
@@ -39,6 +45,44 @@ public final class HTTP2SourceHandlerBuilder
     public HTTP2SourceHandlerBuilder(ConnectionManager connectionManager, ListenerConfiguration listenerConfiguration) {
         this.listenerConfiguration = listenerConfiguration;
         this.connectionManager = connectionManager;
+        Http2Settings settings = new Http2Settings();
+        if (listenerConfiguration.getHttp2MaxConcurrentStreams() > 0) {
+            settings.maxConcurrentStreams(listenerConfiguration.getHttp2MaxConcurrentStreams());
+        }
+        if (listenerConfiguration.getHttp2MaxHeaderListSize() > 0) {
+            settings.maxHeaderListSize(listenerConfiguration.getHttp2MaxHeaderListSize());
+        }
+        if (listenerConfiguration.getHttp2InitialWindowSize() > 0) {
+            settings.initialWindowSize(listenerConfiguration.getHttp2InitialWindowSize());
+        }
+        if (listenerConfiguration.getHttp2MaxFrameSize() > 0) {
+            settings.maxFrameSize(listenerConfiguration.getHttp2MaxFrameSize());
+        }
+        if (listenerConfiguration.getHttp2HeaderTableSize() >= 0) {
+            settings.headerTableSize(listenerConfiguration.getHttp2HeaderTableSize());
+        }
+        initialSettings(settings);
+        connection(createConnection(listenerConfiguration));
+    }
+
+    /**
+     * Create the connection with the stream scheduler of the listener, which honours the priorities sent by the
+     * client unless the uniform scheduler is configured.
+     */
+    private static Http2Connection createConnection(ListenerConfiguration listenerConfiguration) {
+        Http2Connection connection = new DefaultHttp2Connection(true);
+        StreamByteDistributor distributor;
+        if (Constants.HTTP2_SCHEDULER_UNIFORM.equalsIgnoreCase(listenerConfiguration.getHttp2StreamScheduler())) {
+            UniformStreamByteDistributor uniformDistributor = new UniformStreamByteDistributor(connection);
+            uniformDistributor.minAllocationChunk(Math.max(1, listenerConfiguration.getHttp2AllocationQuantum()));
+            distributor = uniformDistributor;
+        } else {
+            WeightedFairQueueByteDistributor weightedDistributor = new WeightedFairQueueByteDistributor(connection);
+            weightedDistributor.allocationQuantum(Math.max(1, listenerConfiguration.getHttp2AllocationQuantum()));
+            distributor = weightedDistributor;
+        }
+        connection.remote().flowController(new DefaultHttp2RemoteFlowController(connection, distributor));
+        return connection;
     }
 
     @Override
@@ -52,7 +96,6 @@ public final class HTTP2SourceHandlerBuilder
         HTTP2SourceHandler handler = new HTTP2SourceHandler(decoder, encoder, initialSettings, connectionManager,
                 listenerConfiguration);
         frameListener(handler);
-        connection(new DefaultHttp2Connection(true));
         return handler;
     }
 }
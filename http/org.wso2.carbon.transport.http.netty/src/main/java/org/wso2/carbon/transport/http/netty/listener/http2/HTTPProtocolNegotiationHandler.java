@@ -34,6 +34,7 @@ import org.wso2.carbon.transport.http.netty.config.RequestSizeValidationConfigur
 import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
 import org.wso2.carbon.transport.http.netty.listener.CustomHttpObjectAggregator;
 import org.wso2.carbon.transport.http.netty.listener.CustomHttpRequestDecoder;
+import org.wso2.carbon.transport.http.netty.listener.HTTPServerChannelInitializer;
 import org.wso2.carbon.transport.http.netty.listener.SourceHandler;
 import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
 
@@ -74,6 +75,7 @@ public class HTTPProtocolNegotiationHandler extends ApplicationProtocolNegotiati
             } else {
                 p.addLast("decoder", new HttpRequestDecoder());
             }
+            HTTPServerChannelInitializer.configureRequestLimits(p, listenerConfiguration);
             if (RequestSizeValidationConfiguration.getInstance().isRequestSizeValidation()) {
                 p.addLast("custom-aggregator", new CustomHttpObjectAggregator());
             }
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.listener.limiter;
+
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.wso2.carbon.transport.http.netty.common.Util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the number of requests of a listener which are processed concurrently, adapting the limit to the observed
+ * processing latency.
+ * <p>
+ * The limit follows the gradient between the long term and the short term latency. While the short term latency
+ * stays within the tolerance of the long term latency the limit grows by a queue allowance of the square root of
+ * the limit, and once requests start to queue up the limit shrinks proportionally to the latency increase.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double SHORT_WINDOW_FACTOR = 2.0 / (10 + 1);
+    private static final double LONG_WINDOW_FACTOR = 2.0 / (600 + 1);
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final FullHttpResponse rejectionResponse;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+
+    // Guarded by this
+    private double estimatedLimit;
+    private double shortRtt;
+    private double longRtt;
+
+    private final LongAdder acceptedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, int retryAfter) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.estimatedLimit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.limit = (int) estimatedLimit;
+        this.rejectionResponse = Util.createRejectionResponse(HttpResponseStatus.SERVICE_UNAVAILABLE, retryAfter);
+    }
+
+    /**
+     * Try to admit a request.
+     *
+     * @return true if the request can be processed, in which case {@link #release(long)} has to be called once it
+     * is completed
+     */
+    public boolean tryAcquire() {
+        if (inFlight.incrementAndGet() > limit) {
+            inFlight.decrementAndGet();
+            rejectedCount.increment();
+            return false;
+        }
+        acceptedCount.increment();
+        return true;
+    }
+
+    /**
+     * Release an admitted request.
+     *
+     * @param latency processing latency of the request in nanoseconds
+     */
+    public void release(long latency) {
+        int concurrency = inFlight.getAndDecrement();
+        update(latency, concurrency);
+    }
+
+    private synchronized void update(long latency, int concurrency) {
+        shortRtt = shortRtt == 0 ? latency : shortRtt + (latency - shortRtt) * SHORT_WINDOW_FACTOR;
+        longRtt = longRtt == 0 ? latency : longRtt + (latency - longRtt) * LONG_WINDOW_FACTOR;
+
+        // Long term latency drifts up under a sustained overload, hence it is pulled down once the short term
+        // latency recovers
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+
+        // Limit is not the bottleneck when less than half of it is used, hence there is nothing to learn
+        if (concurrency < estimatedLimit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        newLimit = estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        limit = (int) estimatedLimit;
+    }
+
+    /**
+     * Precomputed response for the rejected requests, which has to be duplicated before it is written.
+     *
+     * @return 503 response with a Retry-After header
+     */
+    public FullHttpResponse getRejectionResponse() {
+        return rejectionResponse;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getAcceptedCount() {
+        return acceptedCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+}
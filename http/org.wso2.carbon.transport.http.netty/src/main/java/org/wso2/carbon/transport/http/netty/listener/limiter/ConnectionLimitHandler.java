@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.listener.limiter;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies the connection limits of a listener to a source connection.
+ * <p>
+ * This handler sits in front of the pipeline, where it admits the connection and notices the first bytes of each
+ * request. The limits on HTTP/1.x requests are applied by the handler provided by {@link #getRequestHandler()},
+ * which sits right after the request decoder, until the connection is upgraded to HTTP/2.
+ */
+public class ConnectionLimitHandler extends ChannelInboundHandlerAdapter {
+
+    private static final Logger log = LoggerFactory.getLogger(ConnectionLimitHandler.class);
+
+    private final ConnectionLimiter connectionLimiter;
+    private final RequestHandler requestHandler = new RequestHandler();
+    private InetAddress clientAddress;
+    private boolean acquired;
+
+    private boolean trackingRequests;
+    private boolean bytesRead;
+    private boolean awaitingRequest = true;
+    private ScheduledFuture<?> headerReadTimer;
+    private int requestCount;
+    private int inFlightCount;
+    private boolean closeAfterResponse;
+    private boolean discarding;
+
+    public ConnectionLimitHandler(ConnectionLimiter connectionLimiter) {
+        this.connectionLimiter = connectionLimiter;
+    }
+
+    /**
+     * Handler which applies the limits on the requests of the connection, to be placed right after the request
+     * decoder.
+     *
+     * @return request handler of this connection
+     */
+    public ChannelHandler getRequestHandler() {
+        return requestHandler;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().remoteAddress() instanceof InetSocketAddress) {
+            clientAddress = ((InetSocketAddress) ctx.channel().remoteAddress()).getAddress();
+        }
+        acquired = connectionLimiter.tryAcquire(clientAddress);
+        if (!acquired) {
+            if (log.isDebugEnabled()) {
+                log.debug("Closing connection from " + clientAddress + " since connection limits are reached");
+            }
+            ctx.close();
+            return;
+        }
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof ByteBuf) {
+            bytesRead = true;
+            if (trackingRequests && awaitingRequest) {
+                startHeaderReadTimer(ctx);
+            }
+        }
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        cancelHeaderReadTimer();
+        if (acquired) {
+            acquired = false;
+            connectionLimiter.release(clientAddress);
+            super.channelInactive(ctx);
+        }
+    }
+
+    private void startHeaderReadTimer(ChannelHandlerContext ctx) {
+        if (headerReadTimer == null && connectionLimiter.getHeaderReadTimeout() > 0) {
+            headerReadTimer = ctx.executor().schedule(() -> {
+                connectionLimiter.recordHeaderTimeoutClosed();
+                ctx.close();
+            }, connectionLimiter.getHeaderReadTimeout(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void cancelHeaderReadTimer() {
+        if (headerReadTimer != null) {
+            headerReadTimer.cancel(false);
+            headerReadTimer = null;
+        }
+    }
+
+    /**
+     * Tracks the HTTP/1.x requests of the connection to close it once it is idle, once the headers of a request take
+     * too long or once it has served the maximum number of requests.
+     */
+    private class RequestHandler extends ChannelDuplexHandler {
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+            trackingRequests = true;
+            if (bytesRead && awaitingRequest) {
+                // Added while the first bytes are read, as on a fallback from HTTP/2 with prior knowledge
+                startHeaderReadTimer(ctx);
+            }
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (msg instanceof HttpRequest) {
+                cancelHeaderReadTimer();
+                awaitingRequest = false;
+                int maxRequests = connectionLimiter.getMaxRequestsPerConnection();
+                discarding = maxRequests > 0 && requestCount >= maxRequests;
+                if (!discarding) {
+                    requestCount++;
+                    inFlightCount++;
+                }
+            }
+            if (msg instanceof LastHttpContent) {
+                awaitingRequest = true;
+            }
+            if (discarding) {
+                // Request after the last one allowed, which is dropped as the connection is about to be closed
+                ReferenceCountUtil.release(msg);
+                return;
+            }
+            ctx.fireChannelRead(msg);
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+            if (msg instanceof HttpResponse && ((HttpResponse) msg).status().code() < 200) {
+                // Interim responses do not complete a request
+                ctx.write(msg, promise);
+                return;
+            }
+            if (msg instanceof HttpResponse && inFlightCount == 1
+                    && connectionLimiter.getMaxRequestsPerConnection() > 0
+                    && requestCount >= connectionLimiter.getMaxRequestsPerConnection()) {
+                ((HttpResponse) msg).headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+                closeAfterResponse = true;
+            }
+            if (msg instanceof LastHttpContent) {
+                inFlightCount = Math.max(0, inFlightCount - 1);
+                if (closeAfterResponse && inFlightCount == 0) {
+                    connectionLimiter.recordMaxRequestsClosed();
+                    promise = promise.unvoid();
+                    promise.addListener(ChannelFutureListener.CLOSE);
+                }
+            }
+            ctx.write(msg, promise);
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            if (evt instanceof IdleStateEvent) {
+                if (inFlightCount == 0) {
+                    connectionLimiter.recordIdleClosed();
+                    ctx.close();
+                }
+                return;
+            }
+            if (evt instanceof HttpServerUpgradeHandler.UpgradeEvent) {
+                // Upgrade request is consumed by the upgrade handler, hence its headers are never seen here
+                cancelHeaderReadTimer();
+                trackingRequests = false;
+                inFlightCount = 0;
+                ctx.pipeline().remove(this);
+            }
+            ctx.fireUserEventTriggered(evt);
+        }
+    }
+}
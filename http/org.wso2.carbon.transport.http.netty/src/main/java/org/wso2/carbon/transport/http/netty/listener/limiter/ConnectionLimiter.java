@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.listener.limiter;
+
+import org.wso2.carbon.transport.http.netty.config.ListenerConfiguration;
+
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the source connections of a listener and keeps count of the connections closed by each limit.
+ * <p>
+ * The limits on the lifetime of a connection are applied by the {@link ConnectionLimitHandler} of the connection.
+ */
+public class ConnectionLimiter {
+
+    private final int maxConnections;
+    private final int maxConnectionsPerClient;
+    private final long idleTimeout;
+    private final long headerReadTimeout;
+    private final int maxRequestsPerConnection;
+
+    private final AtomicInteger connections = new AtomicInteger();
+    private final Map<InetAddress, Integer> clientConnections = new ConcurrentHashMap<>();
+
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder clientRejectedCount = new LongAdder();
+    private final LongAdder idleClosedCount = new LongAdder();
+    private final LongAdder headerTimeoutClosedCount = new LongAdder();
+    private final LongAdder maxRequestsClosedCount = new LongAdder();
+
+    public ConnectionLimiter(ListenerConfiguration listenerConfiguration) {
+        this.maxConnections = listenerConfiguration.getMaxConnections() > 0
+                ? listenerConfiguration.getMaxConnections() : Integer.MAX_VALUE;
+        this.maxConnectionsPerClient = listenerConfiguration.getMaxConnectionsPerClient() > 0
+                ? listenerConfiguration.getMaxConnectionsPerClient() : Integer.MAX_VALUE;
+        this.idleTimeout = listenerConfiguration.getIdleTimeout();
+        this.headerReadTimeout = listenerConfiguration.getHeaderReadTimeout();
+        this.maxRequestsPerConnection = listenerConfiguration.getMaxRequestsPerConnection();
+    }
+
+    /**
+     * Try to accept a connection.
+     *
+     * @param address address of the client
+     * @return true if the connection is within the limits, in which case {@link #release(InetAddress)} has to be
+     * called once it is closed
+     */
+    public boolean tryAcquire(InetAddress address) {
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            rejectedCount.increment();
+            return false;
+        }
+        if (maxConnectionsPerClient == Integer.MAX_VALUE || address == null) {
+            return true;
+        }
+        boolean[] accepted = new boolean[1];
+        clientConnections.compute(address, (key, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= maxConnectionsPerClient) {
+                return count;
+            }
+            accepted[0] = true;
+            return current + 1;
+        });
+        if (!accepted[0]) {
+            connections.decrementAndGet();
+            clientRejectedCount.increment();
+        }
+        return accepted[0];
+    }
+
+    /**
+     * Release an accepted connection.
+     *
+     * @param address address of the client
+     */
+    public void release(InetAddress address) {
+        connections.decrementAndGet();
+        if (maxConnectionsPerClient != Integer.MAX_VALUE && address != null) {
+            clientConnections.computeIfPresent(address, (key, count) -> count <= 1 ? null : count - 1);
+        }
+    }
+
+    void recordIdleClosed() {
+        idleClosedCount.increment();
+    }
+
+    void recordHeaderTimeoutClosed() {
+        headerTimeoutClosedCount.increment();
+    }
+
+    void recordMaxRequestsClosed() {
+        maxRequestsClosedCount.increment();
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public long getHeaderReadTimeout() {
+        return headerReadTimeout;
+    }
+
+    public int getMaxRequestsPerConnection() {
+        return maxRequestsPerConnection;
+    }
+
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public long getClientRejectedCount() {
+        return clientRejectedCount.sum();
+    }
+
+    public long getIdleClosedCount() {
+        return idleClosedCount.sum();
+    }
+
+    public long getHeaderTimeoutClosedCount() {
+        return headerTimeoutClosedCount.sum();
+    }
+
+    public long getMaxRequestsClosedCount() {
+        return maxRequestsClosedCount.sum();
+    }
+}
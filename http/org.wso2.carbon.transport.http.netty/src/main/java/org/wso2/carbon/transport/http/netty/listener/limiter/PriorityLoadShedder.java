@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.listener.limiter;
+
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.wso2.carbon.transport.http.netty.common.Util;
+import org.wso2.carbon.transport.http.netty.config.ListenerConfiguration;
+import org.wso2.carbon.transport.http.netty.config.RequestClassConfiguration;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Sheds the requests of a listener according to the priority of their class.
+ * <p>
+ * A request is admitted while both its class and the listener have concurrency budget left. Otherwise it waits in
+ * the queue of its class, and the queued requests are admitted highest priority first as the budget is released.
+ * When the queues of the listener are full, a queued request of the lowest priority class below the class of the
+ * arriving request is shed to make room for it. Requests which do not belong to any class are not limited.
+ */
+public class PriorityLoadShedder {
+
+    private final RequestClass[] requestClasses;
+    // Request classes ordered by their priority, highest first
+    private final RequestClass[] prioritizedClasses;
+    private final int maxConcurrentRequests;
+    private final int maxQueuedRequests;
+    private final FullHttpResponse rejectionResponse;
+
+    // Guarded by this
+    private int inFlight;
+    private int queued;
+
+    public PriorityLoadShedder(ListenerConfiguration listenerConfiguration) {
+        List<RequestClassConfiguration> configurations = listenerConfiguration.getRequestClasses();
+        requestClasses = new RequestClass[configurations.size()];
+        for (int i = 0; i < requestClasses.length; i++) {
+            requestClasses[i] = new RequestClass(configurations.get(i), this);
+        }
+        prioritizedClasses = Arrays.copyOf(requestClasses, requestClasses.length);
+        Arrays.sort(prioritizedClasses, Comparator.comparingInt(RequestClass::getPriority).reversed());
+        maxConcurrentRequests = listenerConfiguration.getMaxConcurrentRequests() > 0
+                ? listenerConfiguration.getMaxConcurrentRequests() : Integer.MAX_VALUE;
+        maxQueuedRequests = listenerConfiguration.getMaxQueuedRequests() > 0
+                ? listenerConfiguration.getMaxQueuedRequests() : Integer.MAX_VALUE;
+        rejectionResponse = Util.createRejectionResponse(HttpResponseStatus.SERVICE_UNAVAILABLE,
+                listenerConfiguration.getRetryAfter());
+    }
+
+    /**
+     * Find the class of a request. The classes are matched in the configured order without creating any objects.
+     *
+     * @param request request to be classified
+     * @return first class the request belongs to, or null if it does not belong to any class
+     */
+    public RequestClass classify(HttpRequest request) {
+        for (RequestClass requestClass : requestClasses) {
+            if (requestClass.matches(request)) {
+                return requestClass;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Try to admit a request right away.
+     *
+     * @param requestClass class of the request
+     * @return true if the request is admitted, in which case {@link #release(RequestClass)} has to be called once
+     * it is completed
+     */
+    public boolean tryAcquire(RequestClass requestClass) {
+        synchronized (this) {
+            if (!hasConcurrencyBudget(requestClass)) {
+                return false;
+            }
+            acquire(requestClass);
+        }
+        requestClass.recordAdmitted();
+        return true;
+    }
+
+    /**
+     * Check whether a request which cannot be admitted right away may wait for the budget.
+     *
+     * @param requestClass class of the request
+     * @return false if the request has to be rejected
+     */
+    public synchronized boolean isQueueable(RequestClass requestClass) {
+        return requestClass.hasQueueBudget() && (queued < maxQueuedRequests || hasLowerPriorityPending(requestClass));
+    }
+
+    /**
+     * Queue a request until its class and the listener have concurrency budget. The request is dispatched right
+     * away if the budget is released in the meantime.
+     *
+     * @param requestClass class of the request
+     * @param onDispatch   invoked once the request is admitted
+     * @param onShed       invoked if the request is shed while it is waiting
+     * @return handle of the queued request, or null if the request has to be rejected
+     */
+    public PendingRequest enqueue(RequestClass requestClass, Runnable onDispatch, Runnable onShed) {
+        PendingRequest pendingRequest = new PendingRequest(requestClass, onDispatch, onShed);
+        PendingRequest shedRequest = null;
+        boolean dispatched = false;
+        synchronized (this) {
+            if (hasConcurrencyBudget(requestClass)) {
+                acquire(requestClass);
+                dispatched = true;
+            } else if (!requestClass.hasQueueBudget()) {
+                return null;
+            } else if (queued < maxQueuedRequests) {
+                queue(pendingRequest);
+            } else {
+                shedRequest = pollLowerPriorityPending(requestClass);
+                if (shedRequest == null) {
+                    return null;
+                }
+                queue(pendingRequest);
+            }
+        }
+        if (dispatched) {
+            requestClass.recordAdmitted();
+            onDispatch.run();
+            return pendingRequest;
+        }
+        requestClass.recordQueued();
+        if (shedRequest != null) {
+            shedRequest.requestClass.recordShed();
+            shedRequest.onShed.run();
+        }
+        return pendingRequest;
+    }
+
+    /**
+     * Remove a queued request whose connection is closed.
+     *
+     * @param pendingRequest handle of the queued request
+     */
+    public synchronized void remove(PendingRequest pendingRequest) {
+        if (pendingRequest.requestClass.pendingRequests.remove(pendingRequest)) {
+            queued--;
+        }
+    }
+
+    /**
+     * Release the budget of an admitted request, which is handed over to the highest priority queued request
+     * which fits in.
+     *
+     * @param requestClass class of the request
+     */
+    public void release(RequestClass requestClass) {
+        PendingRequest next = null;
+        synchronized (this) {
+            requestClass.inFlight--;
+            inFlight--;
+            for (RequestClass prioritizedClass : prioritizedClasses) {
+                if (!prioritizedClass.pendingRequests.isEmpty() && hasConcurrencyBudget(prioritizedClass)) {
+                    next = prioritizedClass.pendingRequests.pollFirst();
+                    queued--;
+                    acquire(prioritizedClass);
+                    break;
+                }
+            }
+        }
+        if (next != null) {
+            next.requestClass.recordAdmitted();
+            next.onDispatch.run();
+        }
+    }
+
+    /**
+     * Record a request which is rejected since it cannot be queued.
+     *
+     * @param requestClass class of the request
+     */
+    public void recordRejected(RequestClass requestClass) {
+        requestClass.recordShed();
+    }
+
+    /**
+     * Precomputed response for the shed requests, which has to be duplicated before it is written.
+     *
+     * @return 503 response with a Retry-After header
+     */
+    public FullHttpResponse getRejectionResponse() {
+        return rejectionResponse;
+    }
+
+    public List<RequestClass> getRequestClasses() {
+        return Collections.unmodifiableList(Arrays.asList(requestClasses));
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueued() {
+        return queued;
+    }
+
+    private boolean hasConcurrencyBudget(RequestClass requestClass) {
+        return inFlight < maxConcurrentRequests && requestClass.hasConcurrencyBudget();
+    }
+
+    private void acquire(RequestClass requestClass) {
+        requestClass.inFlight++;
+        inFlight++;
+    }
+
+    private void queue(PendingRequest pendingRequest) {
+        pendingRequest.requestClass.pendingRequests.addLast(pendingRequest);
+        queued++;
+    }
+
+    private boolean hasLowerPriorityPending(RequestClass requestClass) {
+        for (int i = prioritizedClasses.length - 1; i >= 0; i--) {
+            RequestClass lowerClass = prioritizedClasses[i];
+            if (lowerClass.getPriority() >= requestClass.getPriority()) {
+                return false;
+            }
+            if (!lowerClass.pendingRequests.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private PendingRequest pollLowerPriorityPending(RequestClass requestClass) {
+        for (int i = prioritizedClasses.length - 1; i >= 0; i--) {
+            RequestClass lowerClass = prioritizedClasses[i];
+            if (lowerClass.getPriority() >= requestClass.getPriority()) {
+                return null;
+            }
+            if (!lowerClass.pendingRequests.isEmpty()) {
+                // Newest request of the class is shed, since it has the least chance to be served in time
+                queued--;
+                return lowerClass.pendingRequests.pollLast();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A request waiting for the concurrency budget.
+     */
+    public static class PendingRequest {
+        private final RequestClass requestClass;
+        private final Runnable onDispatch;
+        private final Runnable onShed;
+
+        private PendingRequest(RequestClass requestClass, Runnable onDispatch, Runnable onShed) {
+            this.requestClass = requestClass;
+            this.onDispatch = onDispatch;
+            this.onShed = onShed;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.listener.limiter;
+
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.wso2.carbon.transport.http.netty.common.Util;
+import org.wso2.carbon.transport.http.netty.config.ListenerConfiguration;
+
+import java.net.InetAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the rate of the requests of a listener, as a whole and per client address, with token buckets.
+ * <p>
+ * The bucket of a client is looked up once per connection from a table bounded to the most recently used client
+ * addresses, hence the table is not touched per request. The limits can be changed at runtime and apply to the
+ * existing buckets right away.
+ */
+public class RateLimiter {
+
+    private volatile Limit listenerLimit;
+    private volatile Limit clientLimit;
+    private final TokenBucket listenerBucket = new TokenBucket();
+    private final Map<InetAddress, TokenBucket> clientBuckets;
+    private final FullHttpResponse rejectionResponse;
+
+    private final LongAdder acceptedCount = new LongAdder();
+    private final LongAdder listenerRejectedCount = new LongAdder();
+    private final LongAdder clientRejectedCount = new LongAdder();
+
+    public RateLimiter(ListenerConfiguration listenerConfiguration) {
+        setListenerLimit(listenerConfiguration.getRateLimit(), listenerConfiguration.getRateLimitBurst());
+        setClientLimit(listenerConfiguration.getClientRateLimit(), listenerConfiguration.getClientRateLimitBurst());
+        int maxClients = Math.max(1, listenerConfiguration.getMaxRateLimitedClients());
+        this.clientBuckets = new LinkedHashMap<InetAddress, TokenBucket>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<InetAddress, TokenBucket> eldest) {
+                return size() > maxClients;
+            }
+        };
+        this.rejectionResponse = Util.createRejectionResponse(HttpResponseStatus.TOO_MANY_REQUESTS,
+                listenerConfiguration.getRetryAfter());
+    }
+
+    /**
+     * Get the bucket of a client.
+     *
+     * @param address address of the client
+     * @return bucket of the client, or null if the rate per client is not limited
+     */
+    public TokenBucket getClientBucket(InetAddress address) {
+        if (clientLimit == null || address == null) {
+            return null;
+        }
+        synchronized (clientBuckets) {
+            return clientBuckets.computeIfAbsent(address, key -> new TokenBucket());
+        }
+    }
+
+    /**
+     * Try to admit a request.
+     *
+     * @param clientBucket bucket of the client of the request, if any
+     * @return true if the request is within the limits
+     */
+    public boolean tryAcquire(TokenBucket clientBucket) {
+        long now = System.nanoTime();
+        Limit client = clientBucket == null ? null : clientLimit;
+        if (client != null && !clientBucket.tryAcquire(now, client.interval, client.burst)) {
+            clientRejectedCount.increment();
+            return false;
+        }
+        Limit limit = listenerLimit;
+        if (limit != null && !listenerBucket.tryAcquire(now, limit.interval, limit.burst)) {
+            // The client is not to blame for the listener being overloaded
+            if (client != null) {
+                clientBucket.release(client.interval);
+            }
+            listenerRejectedCount.increment();
+            return false;
+        }
+        acceptedCount.increment();
+        return true;
+    }
+
+    /**
+     * Change the rate limit of the listener as a whole.
+     *
+     * @param rate  requests per second, not limited if not positive
+     * @param burst requests allowed at once, the rate is used if not positive
+     */
+    public void setListenerLimit(double rate, int burst) {
+        listenerLimit = Limit.of(rate, burst);
+    }
+
+    /**
+     * Change the rate limit per client address. Connections which are already open keep their limit if the rate per
+     * client was not limited before.
+     *
+     * @param rate  requests per second, not limited if not positive
+     * @param burst requests allowed at once, the rate is used if not positive
+     */
+    public void setClientLimit(double rate, int burst) {
+        clientLimit = Limit.of(rate, burst);
+    }
+
+    /**
+     * Precomputed response for the rejected requests, which has to be duplicated before it is written.
+     *
+     * @return 429 response with a Retry-After header
+     */
+    public FullHttpResponse getRejectionResponse() {
+        return rejectionResponse;
+    }
+
+    public int getClientCount() {
+        synchronized (clientBuckets) {
+            return clientBuckets.size();
+        }
+    }
+
+    public long getAcceptedCount() {
+        return acceptedCount.sum();
+    }
+
+    public long getListenerRejectedCount() {
+        return listenerRejectedCount.sum();
+    }
+
+    public long getClientRejectedCount() {
+        return clientRejectedCount.sum();
+    }
+
+    /**
+     * A rate limit in the form used by the token buckets.
+     */
+    private static class Limit {
+        private final long interval;
+        private final int burst;
+
+        private Limit(long interval, int burst) {
+            this.interval = interval;
+            this.burst = burst;
+        }
+
+        private static Limit of(double rate, int burst) {
+            if (rate <= 0) {
+                return null;
+            }
+            return new Limit(Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / rate)),
+                    burst > 0 ? burst : Math.max(1, (int) Math.ceil(rate)));
+        }
+    }
+}
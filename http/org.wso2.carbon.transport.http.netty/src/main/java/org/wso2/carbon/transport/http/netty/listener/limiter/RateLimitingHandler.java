@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.listener.limiter;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Rejects the requests of a source channel which exceed the rate limits of the listener, right after their headers
+ * are decoded. A rejected request is passed on as a {@link RejectedRequest}, and its content is discarded as it is
+ * read.
+ */
+public class RateLimitingHandler extends ChannelInboundHandlerAdapter {
+
+    private final RateLimiter rateLimiter;
+    private TokenBucket clientBucket;
+    private boolean discarding;
+
+    public RateLimitingHandler(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().remoteAddress() instanceof InetSocketAddress) {
+            clientBucket = rateLimiter.getClientBucket(((InetSocketAddress) ctx.channel().remoteAddress())
+                    .getAddress());
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof HttpRequest) {
+            if (rateLimiter.tryAcquire(clientBucket)) {
+                discarding = false;
+                ctx.fireChannelRead(msg);
+                return;
+            }
+            // Source handler writes the rejection in order with the responses of the earlier requests
+            discarding = !(msg instanceof LastHttpContent);
+            ctx.fireChannelRead(new RejectedRequest((HttpRequest) msg, rateLimiter.getRejectionResponse(), ctx));
+        } else if (discarding && msg instanceof HttpContent) {
+            discarding = !(msg instanceof LastHttpContent);
+            ReferenceCountUtil.release(msg);
+        } else {
+            ctx.fireChannelRead(msg);
+        }
+    }
+}
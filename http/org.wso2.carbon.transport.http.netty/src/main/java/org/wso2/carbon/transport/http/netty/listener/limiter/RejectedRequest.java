@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.listener.limiter;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpRequest;
+
+/**
+ * A request rejected by a limiter in front of the source handler, which is passed on to the source handler to
+ * write the rejection response in the order of the responses of the connection.
+ */
+public class RejectedRequest {
+
+    private final HttpRequest request;
+    private final FullHttpResponse response;
+    private final ChannelHandlerContext ctx;
+
+    public RejectedRequest(HttpRequest request, FullHttpResponse response, ChannelHandlerContext ctx) {
+        this.request = request;
+        this.response = response;
+        this.ctx = ctx;
+    }
+
+    public HttpRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * Precomputed rejection response, which has to be duplicated before it is written.
+     *
+     * @return rejection response
+     */
+    public FullHttpResponse getResponse() {
+        return response;
+    }
+
+    /**
+     * Context of the limiter, from which the response has to be written since the handlers after it have not seen
+     * the request.
+     *
+     * @return context to write the response from
+     */
+    public ChannelHandlerContext getContext() {
+        return ctx;
+    }
+}
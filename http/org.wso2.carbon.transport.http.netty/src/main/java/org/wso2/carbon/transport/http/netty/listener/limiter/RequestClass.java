@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.listener.limiter;
+
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.util.AsciiString;
+import org.wso2.carbon.transport.http.netty.config.RequestClassConfiguration;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A class of requests of a listener with its own concurrency and queue budget.
+ * <p>
+ * The state of the budget is guarded by the owning {@link PriorityLoadShedder}.
+ */
+public class RequestClass {
+
+    private final String name;
+    private final int priority;
+    private final String pathPrefix;
+    private final AsciiString header;
+    private final String headerValue;
+    private final int maxConcurrency;
+    private final int maxQueued;
+    private final Object lock;
+
+    int inFlight;
+    final Deque<PriorityLoadShedder.PendingRequest> pendingRequests = new ArrayDeque<>();
+
+    private final LongAdder admittedCount = new LongAdder();
+    private final LongAdder queuedCount = new LongAdder();
+    private final LongAdder shedCount = new LongAdder();
+
+    RequestClass(RequestClassConfiguration configuration, Object lock) {
+        this.lock = lock;
+        this.name = configuration.getName();
+        this.priority = configuration.getPriority();
+        this.pathPrefix = configuration.getPathPrefix();
+        this.header = configuration.getHeader() == null ? null : AsciiString.of(configuration.getHeader());
+        this.headerValue = configuration.getHeaderValue();
+        this.maxConcurrency = Math.max(1, configuration.getMaxConcurrency());
+        this.maxQueued = Math.max(0, configuration.getMaxQueued());
+    }
+
+    /**
+     * Check whether a request belongs to this class without creating any objects.
+     *
+     * @param request request to be classified
+     * @return true if the request matches all the criteria of this class
+     */
+    boolean matches(HttpRequest request) {
+        if (pathPrefix != null && !request.uri().startsWith(pathPrefix)) {
+            return false;
+        }
+        if (header != null) {
+            return headerValue == null ? request.headers().contains(header)
+                    : request.headers().contains(header, headerValue, true);
+        }
+        return true;
+    }
+
+    boolean hasConcurrencyBudget() {
+        return inFlight < maxConcurrency;
+    }
+
+    boolean hasQueueBudget() {
+        return pendingRequests.size() < maxQueued;
+    }
+
+    void recordAdmitted() {
+        admittedCount.increment();
+    }
+
+    void recordQueued() {
+        queuedCount.increment();
+    }
+
+    void recordShed() {
+        shedCount.increment();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    public int getInFlight() {
+        synchronized (lock) {
+            return inFlight;
+        }
+    }
+
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pendingRequests.size();
+        }
+    }
+
+    public long getAdmittedCount() {
+        return admittedCount.sum();
+    }
+
+    public long getQueuedCount() {
+        return queuedCount.sum();
+    }
+
+    public long getShedCount() {
+        return shedCount.sum();
+    }
+}
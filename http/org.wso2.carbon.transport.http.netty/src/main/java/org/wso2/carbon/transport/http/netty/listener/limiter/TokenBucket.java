@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.listener.limiter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket.
+ * <p>
+ * Instead of counting the tokens, the bucket tracks the time at which it becomes empty, assuming tokens are taken
+ * at the refill rate. A request takes a token if that time is not further ahead than the burst allows, which
+ * requires a single compare and set.
+ */
+public class TokenBucket {
+
+    private final AtomicLong emptyTime = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Try to take a token.
+     *
+     * @param now      current time in nanoseconds
+     * @param interval time to refill a token in nanoseconds
+     * @param capacity maximum number of tokens of the bucket
+     * @return true if a token is taken
+     */
+    public boolean tryAcquire(long now, long interval, int capacity) {
+        long burstTolerance = interval * (capacity - 1);
+        while (true) {
+            long current = emptyTime.get();
+            long start = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+            if (start - now > burstTolerance) {
+                return false;
+            }
+            if (emptyTime.compareAndSet(current, start + interval)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Give back a token taken by {@link #tryAcquire(long, long, int)}.
+     *
+     * @param interval time to refill a token in nanoseconds
+     */
+    public void release(long interval) {
+        emptyTime.addAndGet(-interval);
+    }
+}
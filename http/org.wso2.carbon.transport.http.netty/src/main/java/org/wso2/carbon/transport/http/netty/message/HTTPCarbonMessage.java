@@ -38,6 +38,7 @@ import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.InflaterInputStream;
 
@@ -55,6 +56,10 @@ public class HTTPCarbonMessage extends CarbonMessage {
     // Variable to keep the status on whether the last content was added during the clone
     private boolean isEndMarked = false;
     private int soTimeOut = 60;
+    // Notified when a content is taken from the queue to be read
+    private volatile Consumer<HttpContent> contentReadListener;
+    // Notified when a content is added to the queue
+    private volatile Runnable contentAvailableListener;
 
     public HTTPCarbonMessage() {
         BootstrapConfiguration clientBootstrapConfig = BootstrapConfiguration.getInstance();
@@ -74,21 +79,67 @@ public class HTTPCarbonMessage extends CarbonMessage {
         } catch (InterruptedException e) {
             LOG.error("Cannot put content to queue", e);
         }
+        notifyContentAvailable();
     }
 
     public HttpContent getHttpContent() {
         try {
-            return httpContentQueue.poll(soTimeOut, TimeUnit.SECONDS);
+            return notifyContentRead(httpContentQueue.poll(soTimeOut, TimeUnit.SECONDS));
         } catch (InterruptedException e) {
             LOG.error("Error while retrieving http content from queue.", e);
             return null;
         }
     }
 
+    /**
+     * Set the listener which is notified when a content is taken from the message to be read, e.g. to return its
+     * bytes to a flow control window. The listener is notified on every path which takes a content from the queue,
+     * hence a content which is put back and taken again is notified more than once.
+     *
+     * @param contentReadListener listener, which is called by the reading thread
+     */
+    public void setContentReadListener(Consumer<HttpContent> contentReadListener) {
+        this.contentReadListener = contentReadListener;
+    }
+
+    /**
+     * Set the listener which is notified when a content is added to the message or the end of the message is marked,
+     * e.g. to resume a writer which does not wait for the content.
+     *
+     * @param contentAvailableListener listener, which is called by the thread adding the content
+     */
+    public void setContentAvailableListener(Runnable contentAvailableListener) {
+        this.contentAvailableListener = contentAvailableListener;
+    }
+
+    private void notifyContentAvailable() {
+        Runnable listener = contentAvailableListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    private HttpContent notifyContentRead(HttpContent httpContent) {
+        Consumer<HttpContent> listener = contentReadListener;
+        if (httpContent != null && listener != null) {
+            listener.accept(httpContent);
+        }
+        return httpContent;
+    }
+
+    /**
+     * Retrieve the next content without waiting for it.
+     *
+     * @return next content, or null if no content is received yet
+     */
+    public HttpContent pollHttpContent() {
+        return notifyContentRead(httpContentQueue.poll());
+    }
+
     @Override
     public ByteBuffer getMessageBody() {
         try {
-            HttpContent httpContent = httpContentQueue.poll(soTimeOut, TimeUnit.SECONDS);
+            HttpContent httpContent = notifyContentRead(httpContentQueue.poll(soTimeOut, TimeUnit.SECONDS));
             if (httpContent instanceof LastHttpContent) {
                 super.setEndOfMsgAdded(true);
             }
@@ -108,7 +159,7 @@ public class HTTPCarbonMessage extends CarbonMessage {
         boolean isEndOfMessageProcessed = false;
         while (!isEndOfMessageProcessed) {
             try {
-                HttpContent httpContent = httpContentQueue.poll(soTimeOut, TimeUnit.SECONDS);
+                HttpContent httpContent = notifyContentRead(httpContentQueue.poll(soTimeOut, TimeUnit.SECONDS));
                 // This check is to make sure we add the last http content after getClone and avoid adding
                 // empty content to bytebuf list again and again
                 if (httpContent instanceof EmptyLastHttpContent) {
@@ -163,7 +214,12 @@ public class HTTPCarbonMessage extends CarbonMessage {
         boolean isEndOfMessageProcessed = false;
         while (!isEndOfMessageProcessed) {
             try {
-                HttpContent httpContent = httpContentQueue.poll(soTimeOut, TimeUnit.SECONDS);
+                // Content is put back, but its bytes are returned so that the rest of the message is received
+                HttpContent httpContent = notifyContentRead(httpContentQueue.poll(soTimeOut, TimeUnit.SECONDS));
+                if (httpContent == null) {
+                    LOG.error("Timed out while waiting for the content to find out the full message length");
+                    break;
+                }
                 if ((httpContent instanceof LastHttpContent) || (isEndOfMsgAdded() && httpContentQueue.isEmpty())) {
                     isEndOfMessageProcessed = true;
                 }
@@ -193,6 +249,7 @@ public class HTTPCarbonMessage extends CarbonMessage {
             outContentQueue.add(new DefaultHttpContent(Unpooled.copiedBuffer(msgBody)));
         } else {
             httpContentQueue.add(new DefaultHttpContent(Unpooled.copiedBuffer(msgBody)));
+            notifyContentAvailable();
         } 
 
     }
@@ -202,6 +259,7 @@ public class HTTPCarbonMessage extends CarbonMessage {
                 outContentQueue.add(new EmptyLastHttpContent());
             } else {
                 httpContentQueue.add(new EmptyLastHttpContent());
+                notifyContentAvailable();
             }
     }
 
@@ -214,7 +272,21 @@ public class HTTPCarbonMessage extends CarbonMessage {
             });
             outContentQueue.clear();
         }
+        notifyContentAvailable();
+
+    }
 
+    /**
+     * Drop the content which is not read yet, e.g. once the stream of the message is reset, and mark the end of the
+     * message so that readers waiting for more content are not blocked.
+     */
+    public void discardContent() {
+        HttpContent httpContent;
+        while ((httpContent = notifyContentRead(httpContentQueue.poll())) != null) {
+            httpContent.release();
+        }
+        httpContentQueue.add(LastHttpContent.EMPTY_LAST_CONTENT);
+        setEndOfMsgAdded(true);
     }
 
     @Override
@@ -32,6 +32,7 @@ import org.wso2.carbon.transport.http.netty.listener.SourceHandler;
 import org.wso2.carbon.transport.http.netty.sender.channel.ChannelUtils;
 import org.wso2.carbon.transport.http.netty.sender.channel.TargetChannel;
 import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.PoolAcquireQueue;
 
 /**
  * Class Which handover incoming requests to be written to BE asynchronously.
@@ -52,6 +53,8 @@ public class ClientRequestWorker implements Runnable {
     private ConnectionManager connectionManager;
     private EventLoopGroup eventLoopGroup;
     private Class aClass;
+    private PoolAcquireQueue.Permit permit;
+    private TargetChannel cachedChannel;
 
     public ClientRequestWorker(HttpRoute httpRoute, SourceHandler sourceHandler, SenderConfiguration senderConfig,
             HttpRequest httpRequest, CarbonMessage carbonMessage, CarbonCallback carbonCallback,
@@ -70,12 +73,33 @@ public class ClientRequestWorker implements Runnable {
         this.aClass = aClass;
     }
 
+    /**
+     * Set the permit of the bounded pool acquired for this request, which is released along with the channel.
+     *
+     * @param permit permit of the bounded pool
+     */
+    public void setPermit(PoolAcquireQueue.Permit permit) {
+        this.permit = permit;
+    }
+
+    /**
+     * Set the channel cached by the source channel to be used for this request instead of a new channel.
+     *
+     * @param cachedChannel cached channel of the route, null to create a new channel
+     */
+    public void setCachedChannel(TargetChannel cachedChannel) {
+        this.cachedChannel = cachedChannel;
+    }
+
     @Override
     public void run() {
         Channel channel = null;
         TargetChannel targetChannel = null;
 
-        if (poolManagementPolicy == ConnectionManager.PoolManagementPolicy.
+        if (cachedChannel != null) {
+            targetChannel = cachedChannel;
+            targetChannel.borrow(null, permit);
+        } else if (poolManagementPolicy == ConnectionManager.PoolManagementPolicy.
                 PER_SERVER_CHANNEL_ENDPOINT_CONNECTION_CACHING) {
             targetChannel = new TargetChannel();
             ChannelFuture future = ChannelUtils
@@ -84,6 +108,7 @@ public class ClientRequestWorker implements Runnable {
             try {
                 channel = ChannelUtils.openChannel(future, httpRoute);
             } catch (Exception failedCause) {
+                releasePermit();
                 String msg = "Error when creating channel for route " + httpRoute;
                 log.error(msg);
                 MessagingException messagingException = new MessagingException(msg, failedCause, 101503);
@@ -94,6 +119,7 @@ public class ClientRequestWorker implements Runnable {
                 if (channel != null) {
                     targetChannel.setChannel(channel);
                     targetChannel.setTargetHandler(targetChannel.getHTTPClientInitializer().getTargetHandler());
+                    targetChannel.borrow(null, permit);
                 }
             }
         } else {
@@ -102,30 +128,36 @@ public class ClientRequestWorker implements Runnable {
         }
         if (targetChannel != null) {
             targetChannel.setHttpRoute(httpRoute);
-            if (targetChannel.getTargetHandler() != null) {
-                targetChannel.getTargetHandler().setCallback(carbonCallback);
-                targetChannel.getTargetHandler().setIncomingMsg(carbonMessage);
-                targetChannel.getTargetHandler().setTargetChannel(targetChannel);
-                targetChannel.getTargetHandler().setConnectionManager(connectionManager);
-            } else {
+            if (sourceHandler != null) {
+                targetChannel.setCorrelatedSource(sourceHandler);
+            }
+            if (targetChannel.getTargetHandler() == null) {
                 log.error("Cannot find registered TargetHandler probably connection creation is failed");
+                connectionManager.invalidateChannel(targetChannel);
                 String msg = "Connection creation failed for ";
                 MessagingException messagingException = new MessagingException(msg, 101503);
                 carbonMessage.setMessagingException(messagingException);
                 carbonCallback.done(carbonMessage);
                 return;
             }
-
-            boolean written = false;
-            if (targetChannel.getChannel() != null) {
-                written = ChannelUtils.writeContent(targetChannel.getChannel(), httpRequest, carbonMessage);
-            }
-            if (written) {
-                targetChannel.setRequestWritten(true);
-            }
-            if (sourceHandler != null) {
-                targetChannel.setCorrelatedSource(sourceHandler);
+            if (targetChannel.getChannel() == null || !targetChannel.getChannel().isActive()) {
+                // Channel is closed before the target handler knows about the request, hence it is released here
+                connectionManager.invalidateChannel(targetChannel);
+                String msg = "Connection to " + httpRoute + " is closed before the request is written";
+                log.warn(msg);
+                MessagingException messagingException = new MessagingException(msg, 101503);
+                carbonMessage.setMessagingException(messagingException);
+                carbonCallback.done(carbonMessage);
+                return;
             }
+            targetChannel.getTargetHandler().setCallback(carbonCallback);
+            targetChannel.getTargetHandler().setIncomingMsg(carbonMessage);
+            targetChannel.getTargetHandler().setTargetChannel(targetChannel);
+            targetChannel.getTargetHandler().setConnectionManager(connectionManager);
+            targetChannel.getTargetHandler().startRequestTimer();
+
+            // From here on the channel is released by the target handler, also when it is closed while writing
+            ChannelUtils.writeContent(targetChannel.getChannel(), httpRequest, carbonMessage);
         }
     }
 
@@ -134,10 +166,13 @@ public class ClientRequestWorker implements Runnable {
             Object obj = genericObjectPool.borrowObject();
             if (obj != null) {
                 TargetChannel targetChannel = (TargetChannel) obj;
+                targetChannel.borrow(genericObjectPool, permit);
                 targetChannel.setTargetHandler(targetChannel.getHTTPClientInitializer().getTargetHandler());
                 return targetChannel;
             }
+            releasePermit();
         } catch (Exception e) {
+            releasePermit();
             String msg = e.getMessage();
             log.error(msg, e);
             MessagingException messagingException = new MessagingException(msg, 101503);
@@ -147,4 +182,9 @@ public class ClientRequestWorker implements Runnable {
         return null;
     }
 
+    private void releasePermit() {
+        if (permit != null) {
+            permit.release();
+        }
+    }
 }
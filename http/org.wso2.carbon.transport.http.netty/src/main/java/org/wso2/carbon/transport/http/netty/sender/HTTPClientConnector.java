@@ -38,13 +38,19 @@ import org.wso2.carbon.transport.http.netty.sender.channel.BootstrapConfiguratio
 import org.wso2.carbon.transport.http.netty.sender.channel.ChannelUtils;
 import org.wso2.carbon.transport.http.netty.sender.channel.TargetChannel;
 import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
+import org.wso2.carbon.transport.http.netty.sender.http2.HTTP2ConnectionManager;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 
+import javax.net.ssl.SSLException;
+
 /**
  * HTTP client connector class which is used for sending message to a backend endpoint.
  *
@@ -55,6 +61,8 @@ public class HTTPClientConnector implements ClientConnector {
     private static final Logger log = LoggerFactory.getLogger(HTTPClientConnector.class);
     private ConnectionManager connectionManager;
     private Map<String, SenderConfiguration> senderConfigurations;
+    private Map<String, HTTP2ConnectionManager> http2ConnectionManagers = new HashMap<>();
+    private final List<CompletableFuture<Void>> warmUpFutures = new CopyOnWriteArrayList<>();
 
     public HTTPClientConnector() {
         TransportsConfiguration transportsConfiguration = ConfigurationBuilder.getInstance().getConfiguration();
@@ -84,6 +92,81 @@ public class HTTPClientConnector implements ClientConnector {
 
         BootstrapConfiguration.createBootStrapConfiguration(transportProperties);
         this.connectionManager = ConnectionManager.getInstance(transportProperties);
+
+        for (SenderConfiguration config : senderConfiguration) {
+            if (config.isHttp2()) {
+                try {
+                    http2ConnectionManagers.put(config.getScheme().toLowerCase(Locale.getDefault()),
+                            new HTTP2ConnectionManager(config, connectionManager));
+                } catch (SSLException e) {
+                    log.error("Cannot initialize HTTP/2 sender " + config.getId(), e);
+                }
+            }
+        }
+
+        for (SenderConfiguration config : senderConfiguration) {
+            if (config.getWarmUpRoutes() == null) {
+                continue;
+            }
+            for (String warmUpRoute : config.getWarmUpRoutes()) {
+                int separatorIndex = warmUpRoute.lastIndexOf(':');
+                try {
+                    if (separatorIndex > 0) {
+                        warmUp(warmUpRoute.substring(0, separatorIndex),
+                                Integer.parseInt(warmUpRoute.substring(separatorIndex + 1)), config.getScheme());
+                    } else {
+                        warmUp(warmUpRoute, config.getSslConfig() != null ?
+                                Constants.DEFAULT_HTTPS_PORT : Constants.DEFAULT_HTTP_PORT, config.getScheme());
+                    }
+                } catch (NumberFormatException e) {
+                    log.error("Invalid warm up route " + warmUpRoute + " in sender " + config.getId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Connect to the given backend ahead of the requests so that the first requests do not pay the connection
+     * establishment cost.
+     *
+     * @param host   host of the backend
+     * @param port   port of the backend
+     * @param scheme scheme of the sender configuration to be used
+     * @return future which completes once the connections to the backend are ready
+     */
+    public CompletableFuture<Void> warmUp(String host, int port, String scheme) {
+        String protocol = scheme.toLowerCase(Locale.getDefault());
+        SenderConfiguration senderConfiguration = senderConfigurations.get(protocol);
+        if (senderConfiguration == null) {
+            CompletableFuture<Void> failedFuture = new CompletableFuture<>();
+            failedFuture.completeExceptionally(
+                    new IllegalArgumentException("No sender configuration found for scheme " + scheme));
+            return failedFuture;
+        }
+
+        HttpRoute route = new HttpRoute(host, port);
+        HTTP2ConnectionManager http2ConnectionManager = http2ConnectionManagers.get(protocol);
+        CompletableFuture<Void> warmUpFuture = http2ConnectionManager != null ?
+                http2ConnectionManager.warmUp(route) : connectionManager.warmUp(route, senderConfiguration);
+        warmUpFutures.add(warmUpFuture);
+        warmUpFuture.whenComplete((result, cause) -> {
+            if (cause == null) {
+                log.info("Connections to " + route + " are warmed up");
+            } else {
+                log.warn("Cannot warm up connections to " + route, cause);
+            }
+        });
+        return warmUpFuture;
+    }
+
+    /**
+     * Check whether the configured and requested warm ups are completed. A failed warm up does not keep the
+     * connector from being ready since connections are still created on demand.
+     *
+     * @return true if all the warm ups are completed
+     */
+    public boolean isReady() {
+        return warmUpFutures.stream().allMatch(CompletableFuture::isDone);
     }
 
     @Override
@@ -95,6 +178,9 @@ public class HTTPClientConnector implements ClientConnector {
     @Override
     public boolean send(CarbonMessage msg, CarbonCallback callback) throws ClientConnectorException {
 
+        if (msg.getProperty(Constants.REQUEST_START_TIME) == null) {
+            msg.setProperty(Constants.REQUEST_START_TIME, System.nanoTime());
+        }
         String protocol = (String) msg.getProperty(Constants.PROTOCOL);
         SenderConfiguration senderConfiguration = senderConfigurations.get(protocol.toLowerCase(Locale.getDefault()));
 
@@ -126,7 +212,7 @@ public class HTTPClientConnector implements ClientConnector {
             log.debug("Cannot find property PORT of type integer, hence using " + port);
         }
 
-        final HttpRoute route = new HttpRoute(host, port);
+        final HttpRoute route = new HttpRoute(host, port, (String) msg.getProperty(Constants.UNIX_DOMAIN_SOCKET_PATH));
 
         SourceHandler srcHandler = (SourceHandler) msg.getProperty(Constants.SRC_HANDLER);
         if (srcHandler == null) {
@@ -134,6 +220,14 @@ public class HTTPClientConnector implements ClientConnector {
                       " Message is not originated from the HTTP Server connector");
         }
 
+        HTTP2ConnectionManager http2ConnectionManager = http2ConnectionManagers
+                .get(protocol.toLowerCase(Locale.getDefault()));
+        if (http2ConnectionManager != null && !route.isDomainSocket()) {
+            http2ConnectionManager.send(route, srcHandler, httpRequest, msg, callback);
+            return false;
+        }
+        Util.setupAcceptEncodingForRequest(httpRequest, msg, senderConfiguration.getAcceptEncoding());
+
         try {
             TargetChannel targetChannel = connectionManager.
                     getTargetChannel(route, srcHandler, senderConfiguration, httpRequest, msg, callback);
@@ -143,9 +237,8 @@ public class HTTPClientConnector implements ClientConnector {
                 targetHandler.setIncomingMsg(msg);
                 targetHandler.setConnectionManager(connectionManager);
                 targetHandler.setTargetChannel(targetChannel);
-                if (ChannelUtils.writeContent(targetChannel.getChannel(), httpRequest, msg)) {
-                    targetChannel.setRequestWritten(true); // If request written
-                }
+                targetHandler.startRequestTimer();
+                ChannelUtils.writeContent(targetChannel.getChannel(), httpRequest, msg);
             }
         } catch (Exception failedCause) {
             throw new ClientConnectorException(failedCause.getMessage(), failedCause);
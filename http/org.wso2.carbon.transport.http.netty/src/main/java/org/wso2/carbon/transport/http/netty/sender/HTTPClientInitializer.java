@@ -15,9 +15,8 @@
 
 package org.wso2.carbon.transport.http.netty.sender;
 
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.handler.codec.http.HttpContentCompressor;
 import io.netty.handler.codec.http.HttpRequestEncoder;
 import io.netty.handler.codec.http.HttpResponseDecoder;
 import io.netty.handler.ssl.SslHandler;
@@ -26,12 +25,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.carbon.transport.http.netty.common.ssl.SSLHandlerFactory;
 import org.wso2.carbon.transport.http.netty.config.SenderConfiguration;
-import org.wso2.carbon.transport.http.netty.sender.channel.BootstrapConfiguration;
 
 /**
  * A class that responsible for initialize target server pipeline.
  */
-public class HTTPClientInitializer extends ChannelInitializer<SocketChannel> {
+public class HTTPClientInitializer extends ChannelInitializer<Channel> {
 
     private static final Logger log = LoggerFactory.getLogger(HTTPClientInitializer.class);
 
@@ -39,15 +37,13 @@ public class HTTPClientInitializer extends ChannelInitializer<SocketChannel> {
 
     protected static final String HANDLER = "handler";
     private TargetHandler handler;
-    private int soTimeOut;
 
     public HTTPClientInitializer(SenderConfiguration senderConfiguration) {
         this.senderConfiguration = senderConfiguration;
-        soTimeOut = BootstrapConfiguration.getInstance().getSocketTimeout();
     }
 
     @Override
-    protected void initChannel(SocketChannel ch) throws Exception {
+    protected void initChannel(Channel ch) throws Exception {
         // Add the generic handlers to the pipeline
         // e.g. SSL handler
         if (senderConfiguration.getSslConfig() != null) {
@@ -56,12 +52,17 @@ public class HTTPClientInitializer extends ChannelInitializer<SocketChannel> {
             sslHandler.engine().setUseClientMode(true);
             ch.pipeline().addLast("ssl", sslHandler);
         }
-        ch.pipeline().addLast("compressor", new HttpContentCompressor());
+        handler = new TargetHandler();
+        handler.setExpectContinueTimeout(senderConfiguration.getExpectContinueTimeout());
         ch.pipeline().addLast("decoder", new HttpResponseDecoder());
+        ch.pipeline().addLast("decompressor", new TargetContentDecompressor(handler));
         ch.pipeline().addLast("encoder", new HttpRequestEncoder());
+        if (senderConfiguration.getRequestCompression() != null) {
+            ch.pipeline().addLast("compressor", new HttpRequestCompressor(
+                    senderConfiguration.getRequestCompression(),
+                    senderConfiguration.getRequestCompressionThreshold()));
+        }
         ch.pipeline().addLast("chunkWriter", new ChunkedWriteHandler());
-
-        handler = new TargetHandler(soTimeOut);
         ch.pipeline().addLast(HANDLER, handler);
 
     }
@@ -74,11 +74,15 @@ public class HTTPSender implements TransportSender {
 
     @Override
     public boolean send(CarbonMessage msg, CarbonCallback callback) throws MessageProcessorException {
+        if (msg.getProperty(Constants.REQUEST_START_TIME) == null) {
+            msg.setProperty(Constants.REQUEST_START_TIME, System.nanoTime());
+        }
         String protocol = (String) msg.getProperty(Constants.PROTOCOL);
         SenderConfiguration defaultSenderConfiguration = senderConfigurationMap
                 .get(protocol.toLowerCase(Locale.getDefault()));
 
         final HttpRequest httpRequest = Util.createHttpRequest(msg);
+        Util.setupAcceptEncodingForRequest(httpRequest, msg, defaultSenderConfiguration.getAcceptEncoding());
 
         if (msg.getProperty(Constants.HOST) == null) {
             log.debug("Cannot find property HOST hence using default as " + "localhost"
@@ -97,7 +101,7 @@ public class HTTPSender implements TransportSender {
         }
 
         final HttpRoute route = new HttpRoute((String) msg.getProperty(Constants.HOST),
-                (Integer) msg.getProperty(Constants.PORT));
+                (Integer) msg.getProperty(Constants.PORT), (String) msg.getProperty(Constants.UNIX_DOMAIN_SOCKET_PATH));
 
         SourceHandler srcHandler = (SourceHandler) msg.getProperty(Constants.SRC_HANDLER);
         if (srcHandler == null) {
@@ -115,10 +119,8 @@ public class HTTPSender implements TransportSender {
                 targetChannel.getTargetHandler().setIncomingMsg(msg);
                 targetChannel.getTargetHandler().setTargetChannel(targetChannel);
                 targetChannel.getTargetHandler().setConnectionManager(connectionManager);
-                boolean written = ChannelUtils.writeContent(outboundChannel, httpRequest, msg);
-                if (written) {
-                    targetChannel.setRequestWritten(true);
-                }
+                targetChannel.getTargetHandler().startRequestTimer();
+                ChannelUtils.writeContent(outboundChannel, httpRequest, msg);
             }
         } catch (Exception failedCause) {
             throw new MessageProcessorException(failedCause.getMessage(), failedCause);
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.sender;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.MessageToMessageEncoder;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+import org.wso2.carbon.transport.http.netty.common.Constants;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compresses the request bodies written to a target channel.
+ * <p>
+ * A body with a known length is compressed only if it is not smaller than the threshold, while a chunked body is
+ * always compressed since its length is not known up front. Requests which are already encoded are written as they
+ * are.
+ */
+public class HttpRequestCompressor extends MessageToMessageEncoder<HttpObject> {
+
+    private final String contentEncoding;
+    private final ZlibWrapper wrapper;
+    private final int threshold;
+    private EmbeddedChannel encoder;
+
+    public HttpRequestCompressor(String contentEncoding, int threshold) {
+        if (Constants.ENCODING_GZIP.equalsIgnoreCase(contentEncoding)) {
+            this.wrapper = ZlibWrapper.GZIP;
+        } else if (Constants.ENCODING_DEFLATE.equalsIgnoreCase(contentEncoding)) {
+            this.wrapper = ZlibWrapper.ZLIB;
+        } else {
+            throw new IllegalArgumentException("Unsupported request compression: " + contentEncoding);
+        }
+        this.contentEncoding = contentEncoding.toLowerCase(Locale.getDefault());
+        this.threshold = threshold;
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, HttpObject msg, List<Object> out) throws Exception {
+        if (msg instanceof FullHttpRequest) {
+            // Full requests are written by other paths than the streaming sender, hence passed through
+            out.add(ReferenceCountUtil.retain(msg));
+        } else if (msg instanceof HttpRequest) {
+            cleanUp();
+            HttpRequest request = (HttpRequest) msg;
+            if (isCompressible(request)) {
+                encoder = new EmbeddedChannel(ZlibCodecFactory.newZlibEncoder(wrapper));
+                request.headers().set(HttpHeaderNames.CONTENT_ENCODING, contentEncoding);
+                request.headers().remove(HttpHeaderNames.CONTENT_LENGTH);
+                request.headers().set(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
+            }
+            out.add(ReferenceCountUtil.retain(msg));
+        } else if (msg instanceof HttpContent) {
+            HttpContent content = (HttpContent) msg;
+            if (encoder == null) {
+                out.add(content.retain());
+                return;
+            }
+            encoder.writeOutbound(content.content().retain());
+            readEncodedContent(out);
+            if (content instanceof LastHttpContent) {
+                encoder.finish();
+                readEncodedContent(out);
+                encoder = null;
+                LastHttpContent lastContent = new DefaultLastHttpContent();
+                lastContent.trailingHeaders().set(((LastHttpContent) content).trailingHeaders());
+                out.add(lastContent);
+            }
+        } else {
+            out.add(ReferenceCountUtil.retain(msg));
+        }
+    }
+
+    private boolean isCompressible(HttpRequest request) {
+        String existingEncoding = request.headers().get(HttpHeaderNames.CONTENT_ENCODING);
+        if (existingEncoding != null && !HttpHeaderValues.IDENTITY.contentEqualsIgnoreCase(existingEncoding)) {
+            return false;
+        }
+        if (HttpUtil.isTransferEncodingChunked(request)) {
+            return true;
+        }
+        String contentLength = request.headers().get(HttpHeaderNames.CONTENT_LENGTH);
+        if (contentLength == null) {
+            return false;
+        }
+        try {
+            return Long.parseLong(contentLength.trim()) >= Math.max(1, threshold);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private void readEncodedContent(List<Object> out) {
+        ByteBuf buf;
+        while ((buf = encoder.readOutbound()) != null) {
+            if (buf.isReadable()) {
+                out.add(new DefaultHttpContent(buf));
+            } else {
+                buf.release();
+            }
+        }
+    }
+
+    private void cleanUp() {
+        if (encoder != null) {
+            encoder.finish();
+            ByteBuf buf;
+            while ((buf = encoder.readOutbound()) != null) {
+                buf.release();
+            }
+            encoder = null;
+        }
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        cleanUp();
+        super.handlerRemoved(ctx);
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.sender;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.HttpContentDecompressor;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.transport.http.netty.common.Constants;
+
+/**
+ * Inflates the responses of a target channel while they are streamed to the carbon message.
+ * <p>
+ * A response is inflated only if its request asks for it through the {@link Constants#DECOMPRESS_RESPONSE}
+ * property. Otherwise the encoded response is passed through as it is, which avoids inflating a response only to
+ * compress it again towards the client.
+ */
+public class TargetContentDecompressor extends HttpContentDecompressor {
+
+    private final TargetHandler targetHandler;
+
+    public TargetContentDecompressor(TargetHandler targetHandler) {
+        this.targetHandler = targetHandler;
+    }
+
+    @Override
+    protected EmbeddedChannel newContentDecoder(String contentEncoding) throws Exception {
+        CarbonMessage requestMsg = targetHandler.getIncomingMsg();
+        if (requestMsg == null || !Boolean.TRUE.equals(requestMsg.getProperty(Constants.DECOMPRESS_RESPONSE))) {
+            return null;
+        }
+        return super.newContentDecoder(contentEncoding);
+    }
+}
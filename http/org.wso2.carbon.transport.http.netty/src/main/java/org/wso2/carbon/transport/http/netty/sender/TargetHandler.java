@@ -17,11 +17,16 @@ package org.wso2.carbon.transport.http.netty.sender;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.handler.codec.http.DefaultHttpContent;
 import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.LastHttpContent;
-import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.ScheduledFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.carbon.messaging.CarbonCallback;
@@ -33,6 +38,7 @@ import org.wso2.carbon.transport.http.netty.common.Constants;
 import org.wso2.carbon.transport.http.netty.common.Util;
 import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
 import org.wso2.carbon.transport.http.netty.message.HTTPCarbonMessage;
+import org.wso2.carbon.transport.http.netty.sender.channel.BootstrapConfiguration;
 import org.wso2.carbon.transport.http.netty.sender.channel.TargetChannel;
 import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
 
@@ -40,11 +46,20 @@ import java.net.InetSocketAddress;
 import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A class responsible for handling responses coming from BE.
+ * <p>
+ * Each request has a deadline for the first byte of its response, which covers acquiring a connection, connecting
+ * and writing the request, and an optional deadline for the whole response. Once the response headers are received
+ * the body is also timed out if nothing is read for the client socket timeout. All of them are served by a single
+ * timer on the event loop of the channel, which is cancelled once the response is completed, hence an idle channel
+ * between two keep-alive requests is never timed out by this handler. A request whose channel is closed before its
+ * response is completed fails right away instead.
  */
-public class TargetHandler extends ReadTimeoutHandler {
+public class TargetHandler extends ChannelInboundHandlerAdapter {
     protected static final Logger LOG = LoggerFactory.getLogger(TargetHandler.class);
 
     protected CarbonCallback callback;
@@ -52,9 +67,27 @@ public class TargetHandler extends ReadTimeoutHandler {
     protected ConnectionManager connectionManager;
     protected TargetChannel targetChannel;
     protected CarbonMessage incomingMsg;
+    protected ChannelHandlerContext ctx;
+
+    private ScheduledFuture<?> requestTimer;
+    // Set from the time the timer of a request is started until its response is completed or failed
+    private boolean requestInFlight;
+    private boolean responseReceived;
+    private long firstByteDeadline;
+    private long responseDeadline;
+    private long readTimeout;
+    private long lastReadTime;
+
+    // Completed with true once the backend asks for the body of a request with Expect: 100-continue, or with false
+    // if the backend answers with a final response or the channel is closed instead
+    private volatile CompletableFuture<Boolean> continueFuture;
+    private boolean interimResponse;
+    private long expectContinueTimeout;
 
-    public TargetHandler(int timeoutSeconds) {
-        super(timeoutSeconds);
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+        super.handlerAdded(ctx);
     }
 
     @Override
@@ -70,8 +103,31 @@ public class TargetHandler extends ReadTimeoutHandler {
     @SuppressWarnings("unchecked")
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof HttpResponse
+                && ((HttpResponse) msg).status().code() == HttpResponseStatus.CONTINUE.code()) {
+            // Interim response, the final response follows once the body is written
+            interimResponse = true;
+            completeContinue(true);
+            ReferenceCountUtil.release(msg);
+            return;
+        }
+        if (interimResponse) {
+            // Empty content which terminates the interim response
+            interimResponse = !(msg instanceof LastHttpContent);
+            ReferenceCountUtil.release(msg);
+            return;
+        }
         if (msg instanceof HttpResponse) {
 
+            boolean bodyWithheld = completeContinue(false);
+            onResponseHeadersReceived();
+            if (targetChannel != null) {
+                updateKeepAliveState((HttpResponse) msg);
+                if (bodyWithheld) {
+                    // Backend expects a body which is never written, hence the connection cannot be reused
+                    targetChannel.markNotReusable();
+                }
+            }
             cMsg = setUpCarbonMessage(ctx, msg);
             if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
                 HTTPTransportContextHolder.getInstance().getHandlerExecutor().
@@ -99,9 +155,11 @@ public class TargetHandler extends ReadTimeoutHandler {
                         HTTPTransportContextHolder.getInstance().getHandlerExecutor().
                                 executeAtTargetResponseSending(cMsg);
                     }
-                    targetChannel.setRequestWritten(false);
+                    cancelRequestTimer();
+                    requestInFlight = false;
                     connectionManager.returnChannel(targetChannel);
                 } else {
+                    lastReadTime = System.nanoTime();
                     HttpContent httpContent = (DefaultHttpContent) msg;
                     ((HTTPCarbonMessage) cMsg).addHttpContent(httpContent);
                 }
@@ -109,9 +167,46 @@ public class TargetHandler extends ReadTimeoutHandler {
         }
     }
 
+    /**
+     * Record the keep-alive hints of the backend, e.g. {@code Keep-Alive: timeout=5, max=100}, so that the channel
+     * is retired before the backend closes it.
+     */
+    private void updateKeepAliveState(HttpResponse httpResponse) {
+        long keepAliveTimeout = -1;
+        int remainingRequests = -1;
+        String keepAliveHeader = httpResponse.headers().get(HttpHeaderNames.KEEP_ALIVE);
+        if (keepAliveHeader != null) {
+            for (String param : keepAliveHeader.split(",")) {
+                String[] nameValue = param.trim().split("=", 2);
+                if (nameValue.length != 2) {
+                    continue;
+                }
+                try {
+                    if ("timeout".equalsIgnoreCase(nameValue[0].trim())) {
+                        keepAliveTimeout = TimeUnit.SECONDS.toMillis(Long.parseLong(nameValue[1].trim()));
+                    } else if ("max".equalsIgnoreCase(nameValue[0].trim())) {
+                        remainingRequests = Integer.parseInt(nameValue[1].trim());
+                    }
+                } catch (NumberFormatException e) {
+                    LOG.debug("Ignoring invalid Keep-Alive parameter {}", param);
+                }
+            }
+        }
+        targetChannel.onResponse(HttpUtil.isKeepAlive(httpResponse), keepAliveTimeout, remainingRequests);
+    }
+
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        cancelRequestTimer();
+        completeContinue(false);
         ctx.close();
+        if (targetChannel != null && connectionManager != null) {
+            // Channel closed while it is borrowed will never be returned to the pool
+            connectionManager.invalidateChannel(targetChannel);
+        }
+        if (requestInFlight) {
+            connectionClosed();
+        }
         if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
             HTTPTransportContextHolder.getInstance().getHandlerExecutor()
                     .executeAtTargetConnectionTermination(Integer.toString(ctx.hashCode()));
@@ -131,34 +226,200 @@ public class TargetHandler extends ReadTimeoutHandler {
         this.incomingMsg = incomingMsg;
     }
 
+    public CarbonMessage getIncomingMsg() {
+        return incomingMsg;
+    }
+
+    public long getExpectContinueTimeout() {
+        return expectContinueTimeout;
+    }
+
+    public void setExpectContinueTimeout(long expectContinueTimeout) {
+        this.expectContinueTimeout = expectContinueTimeout;
+    }
+
+    /**
+     * Register a request with Expect: 100-continue which is about to be written to this channel. The body of the
+     * request should be written only if the returned future completes with true.
+     *
+     * @return future which completes once the backend accepts or rejects the body
+     */
+    public CompletableFuture<Boolean> expectContinue() {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        continueFuture = future;
+        return future;
+    }
+
+    /**
+     * Complete the pending 100-continue expectation, if any.
+     *
+     * @return true if the expectation is rejected by this call, i.e. the body of the request is never written
+     */
+    private boolean completeContinue(boolean proceed) {
+        CompletableFuture<Boolean> future = continueFuture;
+        if (future == null) {
+            return false;
+        }
+        continueFuture = null;
+        return future.complete(proceed) && !proceed;
+    }
+
     public void setTargetChannel(TargetChannel targetChannel) {
         this.targetChannel = targetChannel;
     }
 
-    @Override
-    protected void readTimedOut(ChannelHandlerContext ctx) {
+    /**
+     * Start the timer of the request which is about to be written to this channel. Deadlines are calculated from
+     * the time the request is handed over to the sender.
+     */
+    public void startRequestTimer() {
+        CarbonMessage requestMsg = incomingMsg;
+        ctx.executor().execute(() -> {
+            cancelRequestTimer();
+            responseReceived = false;
+            requestInFlight = true;
+            if (!ctx.channel().isActive()) {
+                // Channel is closed before the request is registered, hence it is not failed on close
+                if (connectionManager != null) {
+                    connectionManager.invalidateChannel(targetChannel);
+                }
+                connectionClosed();
+                return;
+            }
+            long startTime = requestMsg.getProperty(Constants.REQUEST_START_TIME) instanceof Long ?
+                    (Long) requestMsg.getProperty(Constants.REQUEST_START_TIME) : System.nanoTime();
+            firstByteDeadline = startTime + TimeUnit.MILLISECONDS.toNanos(getRequestTimeout(requestMsg));
+            Object responseTimeout = requestMsg.getProperty(Constants.RESPONSE_TIMEOUT);
+            responseDeadline = responseTimeout instanceof Number ?
+                    startTime + TimeUnit.MILLISECONDS.toNanos(((Number) responseTimeout).longValue()) : 0;
+            readTimeout = TimeUnit.SECONDS.toNanos(BootstrapConfiguration.getInstance().getSocketTimeout());
+            scheduleRequestTimer(responseDeadline != 0 ? Math.min(firstByteDeadline, responseDeadline) :
+                    firstByteDeadline);
+        });
+    }
 
-        ctx.channel().close();
+    /**
+     * Timeout for the first byte of the response of a request, which is the REQUEST_TIMEOUT property of the message
+     * or the client socket timeout.
+     *
+     * @param requestMsg request message
+     * @return timeout in milliseconds
+     */
+    public static long getRequestTimeout(CarbonMessage requestMsg) {
+        Object requestTimeout = requestMsg.getProperty(Constants.REQUEST_TIMEOUT);
+        if (requestTimeout instanceof Number) {
+            return ((Number) requestTimeout).longValue();
+        }
+        return TimeUnit.SECONDS.toMillis(BootstrapConfiguration.getInstance().getSocketTimeout());
+    }
 
-        if (targetChannel.isRequestWritten()) {
-            String payload = "<errorMessage>" + "ReadTimeoutException occurred for endpoint " + targetChannel.
-                    getHttpRoute().toString() + "</errorMessage>";
+    private void scheduleRequestTimer(long deadline) {
+        requestTimer = ctx.executor().schedule(this::requestTimedOut, deadline - System.nanoTime(),
+                TimeUnit.NANOSECONDS);
+    }
 
-            CarbonMessageProcessor carbonMessageProcessor = HTTPTransportContextHolder.getInstance()
-                    .getMessageProcessor();
+    private void cancelRequestTimer() {
+        if (requestTimer != null) {
+            requestTimer.cancel(false);
+            requestTimer = null;
+        }
+    }
 
-            if (carbonMessageProcessor != null) {
-                try {
-                    HTTPTransportContextHolder.getInstance().getMessageProcessor()
-                            .receive(createErrorMessage(payload), callback);
-                } catch (Exception e) {
-                    LOG.error("Error while handover response to MessageProcessor ", e);
-                }
+    private void onResponseHeadersReceived() {
+        responseReceived = true;
+        lastReadTime = System.nanoTime();
+        cancelRequestTimer();
+        scheduleResponseTimer();
+    }
+
+    // Reads of the body only update the time of the latest read, which is checked once the timer expires
+    private void scheduleResponseTimer() {
+        if (readTimeout <= 0) {
+            if (responseDeadline != 0) {
+                scheduleRequestTimer(responseDeadline);
+            }
+            return;
+        }
+        long deadline = lastReadTime + readTimeout;
+        scheduleRequestTimer(responseDeadline != 0 ? Math.min(deadline, responseDeadline) : deadline);
+    }
+
+    private void requestTimedOut() {
+        requestTimer = null;
+        if (responseReceived) {
+            long now = System.nanoTime();
+            boolean deadlineExpired = responseDeadline != 0 && now - responseDeadline >= 0;
+            if (deadlineExpired || (readTimeout > 0 && now - lastReadTime >= readTimeout)) {
+                responseTimedOut();
             } else {
-                LOG.error("Cannot correlate callback with request callback is null ");
+                scheduleResponseTimer();
             }
+            return;
+        }
+
+        requestInFlight = false;
+        ctx.channel().close();
+        if (connectionManager != null) {
+            // Channel may be closed before this handler knew about the request, hence it is not released on close
+            connectionManager.invalidateChannel(targetChannel);
         }
 
+        String payload = "<errorMessage>" + "ReadTimeoutException occurred for endpoint " + targetChannel.
+                getHttpRoute().toString() + "</errorMessage>";
+        handOverErrorResponse(createErrorMessage(payload));
+    }
+
+    /**
+     * The backend closed the channel before the response of the request is completed. A response which is not
+     * received yet is answered with an error response as a timed out one is, while a response which is already
+     * handed over to the message processor is terminated with an error.
+     */
+    private void connectionClosed() {
+        requestInFlight = false;
+        cancelRequestTimer();
+        String errorMsg = "Connection to " + targetChannel.getHttpRoute() + " closed before the response is completed";
+        LOG.warn(errorMsg);
+        if (!responseReceived) {
+            handOverErrorResponse(createErrorMessage("<errorMessage>" + errorMsg + "</errorMessage>",
+                    new MessagingException(errorMsg, 101503)));
+        } else if (cMsg != null && !cMsg.isEndOfMsgAdded()) {
+            cMsg.setMessagingException(new MessagingException(errorMsg, 101503));
+            ((HTTPCarbonMessage) cMsg).addHttpContent(LastHttpContent.EMPTY_LAST_CONTENT);
+            cMsg.setEndOfMsgAdded(true);
+        }
+    }
+
+    private void handOverErrorResponse(CarbonMessage errorMessage) {
+        if (incomingMsg == null) {
+            return;
+        }
+        CarbonMessageProcessor carbonMessageProcessor = HTTPTransportContextHolder.getInstance()
+                .getMessageProcessor();
+
+        if (carbonMessageProcessor != null) {
+            try {
+                carbonMessageProcessor.receive(errorMessage, callback);
+            } catch (Exception e) {
+                LOG.error("Error while handover response to MessageProcessor ", e);
+            }
+        } else {
+            LOG.error("Cannot correlate callback with request callback is null ");
+        }
+    }
+
+    /**
+     * The whole response is not received within the deadline, or the body stalled for the read timeout. The
+     * response is already handed over to the message processor, hence it is terminated with an error.
+     */
+    private void responseTimedOut() {
+        LOG.warn("Response from " + targetChannel.getHttpRoute() + " is not completed within the deadline");
+        requestInFlight = false;
+        ctx.channel().close();
+        if (cMsg != null && !cMsg.isEndOfMsgAdded()) {
+            cMsg.setMessagingException(new MessagingException("Response Timeout", 101504));
+            ((HTTPCarbonMessage) cMsg).addHttpContent(LastHttpContent.EMPTY_LAST_CONTENT);
+            cMsg.setEndOfMsgAdded(true);
+        }
     }
 
     protected CarbonMessage setUpCarbonMessage(ChannelHandlerContext ctx, Object msg) {
@@ -166,11 +427,18 @@ public class TargetHandler extends ReadTimeoutHandler {
         if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
             HTTPTransportContextHolder.getInstance().getHandlerExecutor().executeAtTargetResponseReceiving(cMsg);
         }
-        cMsg.setProperty(Constants.PORT, ((InetSocketAddress) ctx.channel().remoteAddress()).getPort());
-        cMsg.setProperty(Constants.HOST, ((InetSocketAddress) ctx.channel().remoteAddress()).getHostName());
+        if (ctx.channel().remoteAddress() instanceof InetSocketAddress) {
+            cMsg.setProperty(Constants.PORT, ((InetSocketAddress) ctx.channel().remoteAddress()).getPort());
+            cMsg.setProperty(Constants.HOST, ((InetSocketAddress) ctx.channel().remoteAddress()).getHostName());
+        } else {
+            // Connected through a Unix domain socket
+            cMsg.setProperty(Constants.PORT, targetChannel.getHttpRoute().getPort());
+            cMsg.setProperty(Constants.HOST, targetChannel.getHttpRoute().getHost());
+        }
         cMsg.setProperty(org.wso2.carbon.messaging.Constants.DIRECTION,
                 org.wso2.carbon.messaging.Constants.DIRECTION_RESPONSE);
         cMsg.setProperty(org.wso2.carbon.messaging.Constants.CALL_BACK, callback);
+        cMsg.setProperty(Constants.TARGET_CHNL_HNDLR_CTX, ctx);
         HttpResponse httpResponse = (HttpResponse) msg;
 
         cMsg.setProperty(Constants.HTTP_STATUS_CODE, httpResponse.getStatus().code());
@@ -186,6 +454,10 @@ public class TargetHandler extends ReadTimeoutHandler {
     }
 
     protected CarbonMessage createErrorMessage(String payload) {
+        return createErrorMessage(payload, new MessagingException("Read Timeout", 101504));
+    }
+
+    protected CarbonMessage createErrorMessage(String payload, MessagingException messagingException) {
         DefaultCarbonMessage response = new DefaultCarbonMessage();
 
         response.setStringMessageBody(payload);
@@ -201,7 +473,6 @@ public class TargetHandler extends ReadTimeoutHandler {
         response.setProperty(org.wso2.carbon.messaging.Constants.DIRECTION,
                 org.wso2.carbon.messaging.Constants.DIRECTION_RESPONSE);
         response.setProperty(org.wso2.carbon.messaging.Constants.CALL_BACK, callback);
-        MessagingException messagingException = new MessagingException("Read Timeout", 101504);
         response.setMessagingException(messagingException);
         return response;
 
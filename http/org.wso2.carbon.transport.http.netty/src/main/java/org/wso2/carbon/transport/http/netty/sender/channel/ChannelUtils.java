@@ -22,25 +22,33 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.unix.DomainSocketAddress;
 import io.netty.handler.codec.http.DefaultHttpContent;
 import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.LastHttpContent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.carbon.messaging.CarbonMessage;
 import org.wso2.carbon.messaging.DefaultCarbonMessage;
+import org.wso2.carbon.transport.http.netty.common.Constants;
 import org.wso2.carbon.transport.http.netty.common.HttpRoute;
 import org.wso2.carbon.transport.http.netty.config.SenderConfiguration;
 import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
+import org.wso2.carbon.transport.http.netty.listener.SourceHandler;
 import org.wso2.carbon.transport.http.netty.message.HTTPCarbonMessage;
 import org.wso2.carbon.transport.http.netty.sender.HTTPClientInitializer;
+import org.wso2.carbon.transport.http.netty.sender.TargetHandler;
 
 import java.net.ConnectException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Utility class for Channel handling.
@@ -66,15 +74,25 @@ public class ChannelUtils {
         Bootstrap clientBootstrap = new Bootstrap();
         clientBootstrap.channel(eventLoopClass);
         clientBootstrap.group(eventLoopGroup);
-        clientBootstrap.option(ChannelOption.SO_KEEPALIVE, bootstrapConfiguration.isKeepAlive());
-        clientBootstrap.option(ChannelOption.TCP_NODELAY, bootstrapConfiguration.isTcpNoDelay());
-        clientBootstrap.option(ChannelOption.SO_REUSEADDR, bootstrapConfiguration.isSocketReuse());
+        if (!httpRoute.isDomainSocket()) {
+            // TCP only options, a Unix domain socket does not support them
+            clientBootstrap.option(ChannelOption.SO_KEEPALIVE, bootstrapConfiguration.isKeepAlive());
+            clientBootstrap.option(ChannelOption.TCP_NODELAY, bootstrapConfiguration.isTcpNoDelay());
+            clientBootstrap.option(ChannelOption.SO_REUSEADDR, bootstrapConfiguration.isSocketReuse());
+        }
         clientBootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, bootstrapConfiguration.getConnectTimeOut());
 
         // set the pipeline factory, which creates the pipeline for each newly created channels
         HTTPClientInitializer httpClientInitializer = new HTTPClientInitializer(senderConfiguration);
         targetChannel.setHTTPClientInitializer(httpClientInitializer);
         clientBootstrap.handler(httpClientInitializer);
+        if (httpRoute.isDomainSocket()) {
+            if (log.isDebugEnabled()) {
+                log.debug("Created new Unix domain socket client bootstrap connecting to {} with options: {}",
+                        httpRoute.getDomainSocketPath(), clientBootstrap);
+            }
+            return clientBootstrap.connect(new DomainSocketAddress(httpRoute.getDomainSocketPath()));
+        }
         if (log.isDebugEnabled()) {
             log.debug("Created new TCP client bootstrap connecting to {}:{} with options: {}", httpRoute.getHost(),
                     httpRoute.getPort(), clientBootstrap);
@@ -139,6 +157,37 @@ public class ChannelUtils {
         return channel;
     }
 
+    /**
+     * Wait until the backend accepts the body of a request with Expect: 100-continue. The client of a request
+     * originated from a listener is asked for the body only once the backend accepts it.
+     *
+     * @return false if the backend rejected the body with a final response or the channel is closed
+     */
+    private static boolean awaitContinue(CompletableFuture<Boolean> continueFuture, long timeout,
+                                         CarbonMessage carbonMessage) {
+        boolean proceed;
+        try {
+            proceed = continueFuture.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Backend may not support the expectation, hence the body is sent anyway as per RFC 7231 section 5.1.1
+            log.debug("Interim response is not received within {} milliseconds, sending the body", timeout);
+            continueFuture.complete(true);
+            proceed = continueFuture.getNow(true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            proceed = false;
+        } catch (ExecutionException e) {
+            proceed = false;
+        }
+        if (proceed) {
+            Object sourceHandler = carbonMessage.getProperty(Constants.SRC_HANDLER);
+            if (sourceHandler instanceof SourceHandler) {
+                ((SourceHandler) sourceHandler).continueRequest(carbonMessage);
+            }
+        }
+        return proceed;
+    }
+
     /**
      * Method used to write content to outbound endpoint.
      *
@@ -152,7 +201,18 @@ public class ChannelUtils {
             HTTPTransportContextHolder.getInstance().getHandlerExecutor().
                     executeAtTargetRequestReceiving(carbonMessage);
         }
-        channel.write(httpRequest);
+        TargetHandler targetHandler = channel.pipeline().get(TargetHandler.class);
+        if (HttpUtil.is100ContinueExpected(httpRequest) && targetHandler != null
+                && !channel.eventLoop().inEventLoop()) {
+            CompletableFuture<Boolean> continueFuture = targetHandler.expectContinue();
+            channel.writeAndFlush(httpRequest);
+            if (!awaitContinue(continueFuture, targetHandler.getExpectContinueTimeout(), carbonMessage)) {
+                // Backend rejected the request with a final response, hence the body is not written
+                return true;
+            }
+        } else {
+            channel.write(httpRequest);
+        }
 
         if (carbonMessage instanceof HTTPCarbonMessage) {
             HTTPCarbonMessage nettyCMsg = (HTTPCarbonMessage) carbonMessage;
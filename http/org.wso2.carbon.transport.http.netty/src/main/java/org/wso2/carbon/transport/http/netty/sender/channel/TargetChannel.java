@@ -17,10 +17,16 @@ package org.wso2.carbon.transport.http.netty.sender.channel;
 
 
 import io.netty.channel.Channel;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.apache.commons.pool.impl.GenericObjectPool;
 import org.wso2.carbon.transport.http.netty.common.HttpRoute;
 import org.wso2.carbon.transport.http.netty.listener.SourceHandler;
 import org.wso2.carbon.transport.http.netty.sender.HTTPClientInitializer;
 import org.wso2.carbon.transport.http.netty.sender.TargetHandler;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.PoolAcquireQueue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A class that encapsulate channel and state.
@@ -38,11 +44,30 @@ public class TargetChannel {
 
     private SourceHandler correlatedSource;
 
-    private boolean isRequestWritten;
+    // Set while the channel is used by a request, from before the request is written until the channel is
+    // returned or invalidated
+    private final AtomicBoolean borrowed = new AtomicBoolean();
 
-    public boolean isRequestWritten() {
-        return isRequestWritten;
-    }
+    private GenericObjectPool pool;
+
+    private PoolAcquireQueue.Permit permit;
+
+    private final long createdTime = System.currentTimeMillis();
+
+    // Time the channel became idle, i.e. when the latest request using it was completed
+    private volatile long idleSince = createdTime;
+
+    private int requestCount;
+
+    // Idle timeout advertised by the backend through the Keep-Alive header, -1 if not advertised
+    private long keepAliveTimeout = -1;
+
+    // Remaining requests advertised by the backend through the Keep-Alive header, -1 if not advertised
+    private int remainingRequests = -1;
+
+    private boolean keepAlive = true;
+
+    private ScheduledFuture<?> idleExpiry;
 
     public Channel getChannel() {
         return channel;
@@ -85,7 +110,126 @@ public class TargetChannel {
         this.correlatedSource = correlatedSource;
     }
 
-    public void setRequestWritten(boolean isRequestWritten) {
-        this.isRequestWritten = isRequestWritten;
+    /**
+     * Mark this channel as used by a request. It has to be called before the request is written, so that the
+     * channel is released once by either the completion of the response or the closure of the channel, whichever
+     * comes first.
+     *
+     * @param pool   pool the channel is borrowed from, null if the channel is not pooled
+     * @param permit permit of the bounded pool held by the request, null if the pool is not bounded
+     */
+    public void borrow(GenericObjectPool pool, PoolAcquireQueue.Permit permit) {
+        this.pool = pool;
+        this.permit = permit;
+        borrowed.set(true);
+    }
+
+    /**
+     * End the use of this channel by the current request.
+     *
+     * @return true only for the first call after {@link #borrow(GenericObjectPool, PoolAcquireQueue.Permit)},
+     * i.e. the caller which has to return or invalidate the channel
+     */
+    public boolean release() {
+        if (borrowed.compareAndSet(true, false)) {
+            idleSince = System.currentTimeMillis();
+            return true;
+        }
+        return false;
+    }
+
+    public GenericObjectPool getPool() {
+        return pool;
+    }
+
+    public PoolAcquireQueue.Permit getPermit() {
+        return permit;
+    }
+
+    /**
+     * Record a response received on this channel along with the keep-alive hints of the backend.
+     *
+     * @param keepAlive         false if the backend is going to close the connection
+     * @param keepAliveTimeout  idle timeout advertised by the backend in milliseconds, -1 if not advertised
+     * @param remainingRequests remaining requests advertised by the backend, -1 if not advertised
+     */
+    public void onResponse(boolean keepAlive, long keepAliveTimeout, int remainingRequests) {
+        this.requestCount++;
+        this.keepAlive = keepAlive;
+        if (keepAliveTimeout >= 0) {
+            this.keepAliveTimeout = keepAliveTimeout;
+        }
+        if (remainingRequests >= 0) {
+            this.remainingRequests = remainingRequests;
+        }
+    }
+
+    /**
+     * Retire this channel once the current response is completed, e.g. when the body of the request is not written.
+     */
+    public void markNotReusable() {
+        this.keepAlive = false;
+    }
+
+    /**
+     * Check whether this channel can be used for another request.
+     *
+     * @param maxLifetime maximum lifetime of a connection in milliseconds, -1 for unlimited
+     * @param maxRequests maximum requests per connection, -1 for unlimited
+     * @return true if the channel can be reused
+     */
+    public boolean isReusable(long maxLifetime, int maxRequests) {
+        if (!keepAlive || remainingRequests == 0 || !channel.isActive()) {
+            return false;
+        }
+        if (maxRequests > 0 && requestCount >= maxRequests) {
+            return false;
+        }
+        return maxLifetime <= 0 || System.currentTimeMillis() - createdTime < maxLifetime;
+    }
+
+    public long getCreatedTime() {
+        return createdTime;
+    }
+
+    public long getIdleSince() {
+        return idleSince;
+    }
+
+    public int getRequestCount() {
+        return requestCount;
+    }
+
+    public long getKeepAliveTimeout() {
+        return keepAliveTimeout;
+    }
+
+    /**
+     * Schedule closing this channel on its own event loop after it stays idle for the given time.
+     *
+     * @param delay    idle time in milliseconds, {@link Long#MAX_VALUE} if the channel never expires
+     * @param onExpiry invoked once the channel is closed, to remove it from the pool or cache holding it
+     */
+    public void scheduleIdleExpiry(long delay, Runnable onExpiry) {
+        cancelIdleExpiry();
+        if (delay == Long.MAX_VALUE) {
+            return;
+        }
+        if (delay <= 0) {
+            expire(onExpiry);
+            return;
+        }
+        idleExpiry = channel.eventLoop().schedule(() -> expire(onExpiry), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void expire(Runnable onExpiry) {
+        channel.close().addListener(future -> onExpiry.run());
+    }
+
+    public void cancelIdleExpiry() {
+        if (idleExpiry != null) {
+            idleExpiry.cancel(false);
+            idleExpiry = null;
+        }
     }
 }
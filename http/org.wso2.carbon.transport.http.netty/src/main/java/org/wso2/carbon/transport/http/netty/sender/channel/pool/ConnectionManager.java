@@ -15,30 +15,45 @@
 
 package org.wso2.carbon.transport.http.netty.sender.channel.pool;
 
-import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http.HttpRequest;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
 import org.apache.commons.pool.impl.GenericObjectPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.carbon.messaging.CarbonCallback;
 import org.wso2.carbon.messaging.CarbonMessage;
 import org.wso2.carbon.messaging.exceptions.MessagingException;
+import org.wso2.carbon.transport.http.netty.common.Constants;
 import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+import org.wso2.carbon.transport.http.netty.common.TransportThreadFactory;
 import org.wso2.carbon.transport.http.netty.config.SenderConfiguration;
+import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
 import org.wso2.carbon.transport.http.netty.listener.SourceHandler;
+import org.wso2.carbon.transport.http.netty.listener.WorkerGroup;
 import org.wso2.carbon.transport.http.netty.sender.ClientRequestWorker;
+import org.wso2.carbon.transport.http.netty.sender.TargetHandler;
 import org.wso2.carbon.transport.http.netty.sender.channel.TargetChannel;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -48,6 +63,8 @@ public class ConnectionManager {
 
     private static final Logger log = LoggerFactory.getLogger(ConnectionManager.class);
 
+    private static final int TOP_UP_THREADS = 2;
+
     private static volatile ConnectionManager connectionManager;
 
     private PoolConfiguration poolConfiguration;
@@ -55,33 +72,62 @@ public class ConnectionManager {
     private int poolCount;
 
     private final List<Map<String, GenericObjectPool>> poolList;
+    // Pools of the listeners which have worker groups other than the default one
+    private final Map<String, List<Map<String, GenericObjectPool>>> workerGroupPoolLists = new ConcurrentHashMap<>();
 
     //Connection Pool to be used  when Carbon transport HTTP Listeners are not used.
     private final Map<String, GenericObjectPool> localConnectionMap;
 
-    private PoolManagementPolicy poolManagementPolicy;
+    private final PoolManagementPolicy poolManagementPolicy;
 
     private AtomicInteger index = new AtomicInteger(1);
 
     private ExecutorService executorService;
 
+    // Event loop group of the connections of the requests which are not originated from a listener
+    private EventLoopGroup senderEventLoopGroup;
+
+    // Pools are filled on threads of their own since connecting blocks until the connection is established
+    private final ExecutorService topUpExecutor;
+
+    // Event loop group of the connections to Unix domain sockets, which need the native epoll transport
+    private EventLoopGroup domainSocketEventLoopGroup;
+
+    private final Set<GenericObjectPool> poolsUnderTopUp = ConcurrentHashMap.newKeySet();
+
+    private final Set<GenericObjectPool> poolsUnderCleanUp = ConcurrentHashMap.newKeySet();
+
+    // Pending acquire queues of the routes when the number of connections per route is bounded
+    private final Map<String, PoolAcquireQueue> acquireQueues = new ConcurrentHashMap<>();
+
+    private Timer acquireTimer;
+
     private ConnectionManager(PoolConfiguration poolConfiguration) {
         this.poolConfiguration = poolConfiguration;
         this.poolCount = poolConfiguration.getNumberOfPools();
         this.executorService = Executors.newFixedThreadPool(poolConfiguration.getExecutorServiceThreads());
+        this.topUpExecutor = Executors.newFixedThreadPool(TOP_UP_THREADS,
+                new TransportThreadFactory(new ThreadGroup("http-pool-top-up")));
         localConnectionMap = new ConcurrentHashMap<>();
+        if (poolConfiguration.isBounded()) {
+            this.acquireTimer = new HashedWheelTimer();
+        }
         if (poolConfiguration.getNumberOfPools() == 0) {
             this.poolManagementPolicy = PoolManagementPolicy.PER_SERVER_CHANNEL_ENDPOINT_CONNECTION_CACHING;
         } else {
             this.poolManagementPolicy = PoolManagementPolicy.GLOBAL_ENDPOINT_CONNECTION_CACHING;
         }
 
-        poolList = new ArrayList<>();
+        poolList = createPoolList();
+    }
+
+    private List<Map<String, GenericObjectPool>> createPoolList() {
+        List<Map<String, GenericObjectPool>> pools = new ArrayList<>();
         for (int i = 0; i < poolCount; i++) {
             Map<String, GenericObjectPool> map = new ConcurrentHashMap<>();
-            poolList.add(map);
+            pools.add(map);
         }
-
+        return pools;
     }
 
     private GenericObjectPool createPoolForRoute(HttpRoute httpRoute, EventLoopGroup eventLoopGroup,
@@ -89,15 +135,22 @@ public class ConnectionManager {
         GenericObjectPool.Config config = new GenericObjectPool.Config();
         config.maxActive = poolConfiguration.getMaxActivePerPool();
         config.maxIdle = poolConfiguration.getMaxIdlePerPool();
-        config.minIdle = poolConfiguration.getMinIdlePerPool();
-        config.testOnBorrow = poolConfiguration.isTestOnBorrow();
+        // Pools are refilled up to min-idle by topUp, since a clean up of the pool would connect on its thread
+        config.minIdle = 0;
+        // Idle channels are closed in the background, hence they are always validated when they are borrowed
+        config.testOnBorrow = true;
         config.testWhileIdle = poolConfiguration.isTestWhileIdle();
         config.timeBetweenEvictionRunsMillis = poolConfiguration.getTimeBetweenEvictionRuns();
+        // A clean up of the pool validates all of its idle channels
+        config.numTestsPerEvictionRun = -1;
         config.minEvictableIdleTimeMillis = poolConfiguration.getMinEvictableIdleTime();
         config.whenExhaustedAction = poolConfiguration.getExhaustedAction();
-        return new GenericObjectPool(
-                new PoolableTargetChannelFactory(httpRoute, eventLoopGroup, eventLoopClass, senderConfiguration),
-                config);
+        config.maxWait = poolConfiguration.getMaxWaitTime();
+        PoolableTargetChannelFactory factory = new PoolableTargetChannelFactory(httpRoute, eventLoopGroup,
+                eventLoopClass, senderConfiguration, poolConfiguration);
+        GenericObjectPool pool = new GenericObjectPool(factory, config);
+        factory.setIdleExpiryListener(() -> cleanUp(pool));
+        return pool;
 
     }
 
@@ -137,25 +190,31 @@ public class ConnectionManager {
 
         Class cl;
         EventLoopGroup group;
-
-        if (sourceHandler != null) {
+        // Requests without a source channel are pooled per route, which must not change the policy of the manager
+        PoolManagementPolicy policy = poolManagementPolicy;
+
+        if (httpRoute.isDomainSocket()) {
+            // Event loop of the inbound channel cannot drive an epoll channel, hence a dedicated group is used
+            cl = EpollDomainSocketChannel.class;
+            group = getDomainSocketEventLoopGroup(senderConfiguration);
+            if (sourceHandler == null) {
+                policy = PoolManagementPolicy.DEFAULT_POOLING;
+            }
+        } else if (sourceHandler != null) {
             ChannelHandlerContext ctx = sourceHandler.getInboundChannelContext();
             group = ctx.channel().eventLoop();
             cl = ctx.channel().getClass();
         } else {
             cl = NioSocketChannel.class;
-            group = new NioEventLoopGroup(Integer.parseInt(senderConfiguration.getSenderWorkerThreads()));
-            poolManagementPolicy = PoolManagementPolicy.DEFAULT_POOLING;
+            group = getSenderEventLoopGroup(senderConfiguration);
+            policy = PoolManagementPolicy.DEFAULT_POOLING;
         }
 
         // Take connections from Global connection pool
-        if (poolManagementPolicy == PoolManagementPolicy.GLOBAL_ENDPOINT_CONNECTION_CACHING) {
+        if (policy == PoolManagementPolicy.GLOBAL_ENDPOINT_CONNECTION_CACHING) {
             Map<String, GenericObjectPool> objectPoolMap = sourceHandler.getTargetChannelPool();
-            GenericObjectPool pool = objectPoolMap.get(httpRoute.toString());
-            if (pool == null) {
-                pool = createPoolForRoute(httpRoute, group, cl, senderConfiguration);
-                objectPoolMap.put(httpRoute.toString(), pool);
-            }
+            GenericObjectPool pool = objectPoolMap.computeIfAbsent(httpRoute.toString(),
+                    key -> createPoolForRoute(httpRoute, group, cl, senderConfiguration));
             try {
                 acquireChannelAndDeliver(httpRoute, sourceHandler, senderConfiguration, httpRequest,
                                          carbonMessage, carbonCallback, PoolManagementPolicy.
@@ -167,7 +226,7 @@ public class ConnectionManager {
                 carbonMessage.setMessagingException(messagingException);
                 carbonCallback.done(carbonMessage);
             }
-        } else if (poolManagementPolicy == PoolManagementPolicy.PER_SERVER_CHANNEL_ENDPOINT_CONNECTION_CACHING) {
+        } else if (policy == PoolManagementPolicy.PER_SERVER_CHANNEL_ENDPOINT_CONNECTION_CACHING) {
             // manage connections according to per inbound channel caching method
             if (!sourceHandler.isChannelFutureExists(httpRoute)) {
                 acquireChannelAndDeliver(httpRoute, sourceHandler, senderConfiguration, httpRequest,
@@ -178,8 +237,10 @@ public class ConnectionManager {
                 synchronized (sourceHandler) {
                     if (sourceHandler.isChannelFutureExists(httpRoute)) {
                         targetChannel = sourceHandler.getChannelFuture(httpRoute);
-                        Channel channel = targetChannel.getChannel();
-                        if (!channel.isActive()) {
+                        targetChannel.cancelIdleExpiry();
+                        if (!targetChannel.isReusable(poolConfiguration.getMaxConnectionLifetime(),
+                                poolConfiguration.getMaxRequestsPerConnection())) {
+                            targetChannel.getChannel().close();
                             targetChannel = null;
                             acquireChannelAndDeliver(httpRoute, sourceHandler, senderConfiguration, httpRequest,
                                                      carbonMessage, carbonCallback,
@@ -196,22 +257,28 @@ public class ConnectionManager {
                     }
                 }
             }
-        } else if (poolManagementPolicy == PoolManagementPolicy.DEFAULT_POOLING) {
-            GenericObjectPool pool = localConnectionMap.get(httpRoute.toString());
-            if (pool == null) {
-                pool = createPoolForRoute(httpRoute, group, cl, senderConfiguration);
-                localConnectionMap.put(httpRoute.toString(), pool);
-            }
+        } else if (policy == PoolManagementPolicy.DEFAULT_POOLING) {
+            GenericObjectPool pool = localConnectionMap.computeIfAbsent(httpRoute.toString(),
+                    key -> createPoolForRoute(httpRoute, group, cl, senderConfiguration));
             acquireChannelAndDeliver(httpRoute, sourceHandler, senderConfiguration, httpRequest,
                                      carbonMessage, carbonCallback, PoolManagementPolicy.
                                              DEFAULT_POOLING, pool, group, cl);
         }
 
+        if (targetChannel != null && poolConfiguration.isBounded()) {
+            // A cached channel is used under a permit of its route as well, hence it is handed over once acquired
+            acquireChannelAndDeliver(httpRoute, sourceHandler, senderConfiguration, httpRequest, carbonMessage,
+                                     carbonCallback,
+                                     PoolManagementPolicy.PER_SERVER_CHANNEL_ENDPOINT_CONNECTION_CACHING,
+                                     null, group, cl, targetChannel);
+            return null;
+        }
         if (targetChannel != null) {
             targetChannel.setHttpRoute(httpRoute);
             if (sourceHandler != null) {
                 targetChannel.setCorrelatedSource(sourceHandler);
             }
+            targetChannel.borrow(null, null);
         }
         return targetChannel;
     }
@@ -224,46 +291,306 @@ public class ConnectionManager {
                                           GenericObjectPool genericObjectPool,
                                           EventLoopGroup eventLoopGroup,
                                           Class aClass) {
-        executorService.execute(
+        acquireChannelAndDeliver(httpRoute, sourceHandler, senderConfig, httpRequest, carbonMessage, carbonCallback,
+                                 poolManagementPolicy, genericObjectPool, eventLoopGroup, aClass, null);
+    }
+
+    private void acquireChannelAndDeliver(HttpRoute httpRoute, SourceHandler sourceHandler,
+                                          SenderConfiguration senderConfig,
+                                          HttpRequest httpRequest, CarbonMessage carbonMessage,
+                                          CarbonCallback carbonCallback,
+                                          PoolManagementPolicy poolManagementPolicy,
+                                          GenericObjectPool genericObjectPool,
+                                          EventLoopGroup eventLoopGroup,
+                                          Class aClass, TargetChannel cachedChannel) {
+        if (genericObjectPool != null && poolConfiguration.getMinIdlePerPool() > 0
+                && genericObjectPool.getNumIdle() <= poolConfiguration.getMinIdlePerPool()
+                && poolsUnderTopUp.add(genericObjectPool)) {
+            // Borrowing this request's channel takes the pool below min-idle, hence refill it in the background
+            topUp(genericObjectPool, httpRoute, poolConfiguration.getMinIdlePerPool())
+                    .whenComplete((result, cause) -> poolsUnderTopUp.remove(genericObjectPool));
+        }
+        ClientRequestWorker clientRequestWorker =
                 new ClientRequestWorker(httpRoute, sourceHandler, senderConfig, httpRequest,
                                         carbonMessage, carbonCallback,
                                         poolManagementPolicy,
-                                        genericObjectPool, this, eventLoopGroup, aClass));
+                                        genericObjectPool, this, eventLoopGroup, aClass);
+        clientRequestWorker.setCachedChannel(cachedChannel);
+        if (!poolConfiguration.isBounded()) {
+            executorService.execute(clientRequestWorker);
+            return;
+        }
+        // Connections are bounded per route, however many pools and source channels the route is used from
+        PoolAcquireQueue acquireQueue = acquireQueues.computeIfAbsent(httpRoute.toString(),
+                key -> new PoolAcquireQueue(httpRoute, poolConfiguration.getMaxActivePerPool(),
+                        poolConfiguration.getMaxPendingAcquiresPerPool(), acquireTimer));
+        acquireQueue.acquire(permit -> {
+            clientRequestWorker.setPermit(permit);
+            executorService.execute(clientRequestWorker);
+        }, reason -> {
+            log.warn(reason);
+            if (cachedChannel != null) {
+                // Route is over its limit, hence the idle cached channel is closed rather than kept
+                cachedChannel.getChannel().close();
+            }
+            MessagingException messagingException = new MessagingException(reason, 101500);
+            carbonMessage.setMessagingException(messagingException);
+            carbonCallback.done(carbonMessage);
+        }, getAcquireTimeout(carbonMessage));
     }
 
-    //Add connection to Pool back
-    public void returnChannel(TargetChannel targetChannel) throws Exception {
-        if (poolManagementPolicy == PoolManagementPolicy.PER_SERVER_CHANNEL_ENDPOINT_CONNECTION_CACHING) {
-            SourceHandler sourceHandler = targetChannel.getCorrelatedSource();
-            sourceHandler.addTargetChannel(targetChannel.getHttpRoute(), targetChannel);
-        } else if (poolManagementPolicy == PoolManagementPolicy.GLOBAL_ENDPOINT_CONNECTION_CACHING) {
-            Map<String, GenericObjectPool> objectPoolMap = targetChannel.getCorrelatedSource().getTargetChannelPool();
-            releaseChannelToPool(targetChannel, objectPoolMap.get(targetChannel.getHttpRoute().toString()));
-        } else if (poolManagementPolicy == PoolManagementPolicy.DEFAULT_POOLING) {
-            GenericObjectPool pool = localConnectionMap.get(targetChannel.getHttpRoute().toString());
-            releaseChannelToPool(targetChannel, pool);
+    private long getAcquireTimeout(CarbonMessage carbonMessage) {
+        Object acquireTimeout = carbonMessage.getProperty(Constants.POOL_ACQUIRE_TIMEOUT);
+        long timeout = acquireTimeout instanceof Number ?
+                ((Number) acquireTimeout).longValue() : poolConfiguration.getMaxWaitTime();
+
+        // Waiting for a connection is a part of the request deadline
+        Object startTime = carbonMessage.getProperty(Constants.REQUEST_START_TIME);
+        if (startTime instanceof Long) {
+            long remainingTime = TargetHandler.getRequestTimeout(carbonMessage)
+                    - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - (Long) startTime);
+            timeout = Math.min(timeout, remainingTime);
+        }
+        return timeout;
+    }
+
+    /**
+     * Pre-connect the connection pools of the given route so that the first requests to the route do not pay the
+     * connection establishment cost. Pools are filled up to the configured minimum idle connections, or with a
+     * single connection if no minimum is configured.
+     * <p>
+     * With global connection caching the pools of every worker group of the listeners are warmed up, with their
+     * connections on the event loops of the worker group. Connections cached per source channel are bound to the
+     * source channels, hence they cannot be warmed up and only the pool of the requests which are not originated
+     * from a listener is warmed up under that policy, or when no listener is started yet.
+     *
+     * @param httpRoute           BE address
+     * @param senderConfiguration netty sender config
+     * @return future which completes once the pools of the route are warm
+     */
+    public CompletableFuture<Void> warmUp(HttpRoute httpRoute, SenderConfiguration senderConfiguration) {
+        List<GenericObjectPool> pools = new ArrayList<>();
+        try {
+            EventLoopGroup defaultWorkerGroup = HTTPTransportContextHolder.getInstance().getWorkerGroup();
+            if (poolManagementPolicy == PoolManagementPolicy.GLOBAL_ENDPOINT_CONNECTION_CACHING
+                    && defaultWorkerGroup != null) {
+                addListenerPools(pools, poolList, defaultWorkerGroup, httpRoute, senderConfiguration);
+                for (WorkerGroup workerGroup : HTTPTransportContextHolder.getInstance().getWorkerGroups()) {
+                    if (!workerGroup.isDefault()) {
+                        addListenerPools(pools,
+                                workerGroupPoolLists.computeIfAbsent(workerGroup.getName(), key -> createPoolList()),
+                                workerGroup.getEventLoopGroup(), httpRoute, senderConfiguration);
+                    }
+                }
+            } else {
+                EventLoopGroup group = httpRoute.isDomainSocket() ?
+                        getDomainSocketEventLoopGroup(senderConfiguration) :
+                        getSenderEventLoopGroup(senderConfiguration);
+                Class cl = httpRoute.isDomainSocket() ? EpollDomainSocketChannel.class : NioSocketChannel.class;
+                pools.add(localConnectionMap.computeIfAbsent(httpRoute.toString(),
+                        key -> createPoolForRoute(httpRoute, group, cl, senderConfiguration)));
+            }
+        } catch (IllegalStateException e) {
+            CompletableFuture<Void> failedFuture = new CompletableFuture<>();
+            failedFuture.completeExceptionally(e);
+            return failedFuture;
+        }
+
+        int idleConnections = Math.max(1, poolConfiguration.getMinIdlePerPool());
+        return CompletableFuture.allOf(pools.stream()
+                .map(pool -> topUp(pool, httpRoute, idleConnections))
+                .toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Collect the pools of a route used by the listeners of a worker group. A pool which is not created yet is
+     * created on an event loop of the worker group, as it would be by the first source channel using it.
+     */
+    private void addListenerPools(List<GenericObjectPool> pools, List<Map<String, GenericObjectPool>> poolMaps,
+                                  EventLoopGroup workerGroup, HttpRoute httpRoute,
+                                  SenderConfiguration senderConfiguration) {
+        for (Map<String, GenericObjectPool> objectPoolMap : poolMaps) {
+            EventLoopGroup group = httpRoute.isDomainSocket() ?
+                    getDomainSocketEventLoopGroup(senderConfiguration) : workerGroup.next();
+            Class cl = httpRoute.isDomainSocket() ? EpollDomainSocketChannel.class : NioSocketChannel.class;
+            pools.add(objectPoolMap.computeIfAbsent(httpRoute.toString(),
+                    key -> createPoolForRoute(httpRoute, group, cl, senderConfiguration)));
+        }
+    }
+
+    private CompletableFuture<Void> topUp(GenericObjectPool pool, HttpRoute httpRoute, int idleConnections) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                // Drop the idle channels which are already closed, so that they are not counted as idle
+                pool.evict();
+                while (pool.getNumIdle() < idleConnections
+                        && (pool.getMaxActive() < 0 || pool.getNumIdle() + pool.getNumActive() < pool.getMaxActive())) {
+                    pool.addObject();
+                }
+                log.debug("Connection pool of {} has {} idle connections", httpRoute, pool.getNumIdle());
+            } catch (Exception e) {
+                log.warn("Cannot pre-connect to " + httpRoute + " " + e.getMessage());
+                throw new CompletionException(e);
+            }
+        }, topUpExecutor);
+    }
+
+    /**
+     * Destroy the idle channels of a pool which are already closed, so that they are not counted as idle. A clean
+     * up of a pool is run on the top up threads once one of its idle channels expires, and covers the channels
+     * which expire while it is pending.
+     */
+    private void cleanUp(GenericObjectPool pool) {
+        if (!poolsUnderCleanUp.add(pool)) {
+            return;
+        }
+        topUpExecutor.execute(() -> {
+            poolsUnderCleanUp.remove(pool);
+            try {
+                pool.evict();
+            } catch (Exception e) {
+                log.debug("Cannot clean up connection pool", e);
+            }
+        });
+    }
+
+    /**
+     * Provide the event loop group of the connections of the requests which are not originated from a listener.
+     *
+     * @param senderConfiguration netty sender config, which sizes the group when it is created
+     * @return event loop group of the sender
+     */
+    public synchronized EventLoopGroup getSenderEventLoopGroup(SenderConfiguration senderConfiguration) {
+        if (senderEventLoopGroup == null) {
+            senderEventLoopGroup = new NioEventLoopGroup(
+                    Integer.parseInt(senderConfiguration.getSenderWorkerThreads()));
         }
+        return senderEventLoopGroup;
     }
 
-    private void releaseChannelToPool(TargetChannel targetChannel, GenericObjectPool pool) throws Exception {
+    private synchronized EventLoopGroup getDomainSocketEventLoopGroup(SenderConfiguration senderConfiguration) {
+        boolean epollAvailable;
         try {
-            if (targetChannel.getChannel().isActive()) {
+            epollAvailable = Epoll.isAvailable();
+        } catch (NoClassDefFoundError e) {
+            // Epoll packages are optional imports, hence they are not wired when the epoll bundle is not installed
+            throw new IllegalStateException("Unix domain socket routes require the native epoll transport bundle", e);
+        }
+        if (!epollAvailable) {
+            throw new IllegalStateException("Unix domain socket routes require the native epoll transport",
+                    Epoll.unavailabilityCause());
+        }
+        if (domainSocketEventLoopGroup == null) {
+            domainSocketEventLoopGroup = new EpollEventLoopGroup(
+                    Integer.parseInt(senderConfiguration.getSenderWorkerThreads()));
+        }
+        return domainSocketEventLoopGroup;
+    }
+
+    /**
+     * Add a channel back to its pool, or to the cache of its source channel when it is not pooled, once the
+     * response of its request is completed. A channel which is already released by its closure is ignored.
+     *
+     * @param targetChannel borrowed target channel
+     * @throws Exception if the channel cannot be returned to its pool
+     */
+    public void returnChannel(TargetChannel targetChannel) throws Exception {
+        if (!targetChannel.release()) {
+            return;
+        }
+        GenericObjectPool pool = targetChannel.getPool();
+        if (pool == null) {
+            releasePermit(targetChannel);
+            SourceHandler sourceHandler = targetChannel.getCorrelatedSource();
+            if (sourceHandler == null || !targetChannel.isReusable(poolConfiguration.getMaxConnectionLifetime(),
+                    poolConfiguration.getMaxRequestsPerConnection())) {
+                targetChannel.getChannel().close();
+                return;
+            }
+            HttpRoute httpRoute = targetChannel.getHttpRoute();
+            sourceHandler.addTargetChannel(httpRoute, targetChannel);
+            targetChannel.scheduleIdleExpiry(
+                    PoolableTargetChannelFactory.getIdleExpiryDelay(targetChannel, poolConfiguration),
+                    () -> sourceHandler.removeTargetChannel(httpRoute, targetChannel));
+            return;
+        }
+        try {
+            if (targetChannel.isReusable(poolConfiguration.getMaxConnectionLifetime(),
+                    poolConfiguration.getMaxRequestsPerConnection())) {
                 pool.returnObject(targetChannel);
+            } else {
+                pool.invalidateObject(targetChannel);
             }
         } catch (Exception e) {
             throw new Exception("Cannot return channel to pool", e);
+        } finally {
+            releasePermit(targetChannel);
         }
     }
 
+    /**
+     * Discard a borrowed channel which cannot complete its request, e.g. when it is closed before the response is
+     * completed. A channel which is already returned or invalidated is ignored.
+     *
+     * @param targetChannel borrowed target channel
+     */
+    public void invalidateChannel(TargetChannel targetChannel) {
+        if (!targetChannel.release()) {
+            return;
+        }
+        GenericObjectPool pool = targetChannel.getPool();
+        try {
+            if (pool != null) {
+                pool.invalidateObject(targetChannel);
+            } else if (targetChannel.getChannel() != null) {
+                targetChannel.getChannel().close();
+            }
+        } catch (Exception e) {
+            log.warn("Cannot invalidate channel of " + targetChannel.getHttpRoute(), e);
+        } finally {
+            releasePermit(targetChannel);
+        }
+    }
+
+    private void releasePermit(TargetChannel targetChannel) {
+        PoolAcquireQueue.Permit permit = targetChannel.getPermit();
+        if (permit != null) {
+            permit.release();
+        }
+    }
+
+    /**
+     * Provide the pending acquire queues of the bounded routes, which carry the wait time statistics.
+     *
+     * @return pending acquire queues, empty if the routes are not bounded
+     */
+    public Collection<PoolAcquireQueue> getPoolAcquireQueues() {
+        return Collections.unmodifiableCollection(acquireQueues.values());
+    }
+
     /**
      * Provide specific target channel map.
      *
      * @return Map contains pools for each route
      */
     public Map<String, GenericObjectPool> getTargetChannelPool() {
+        return getTargetChannelPool(null);
+    }
+
+    /**
+     * Provide specific target channel map of a worker group. Pools are created from the event loop of the source
+     * channel which uses them first, hence each worker group has pools of its own so that the connections to the
+     * backends stay on the event loops of the listeners of the group.
+     *
+     * @param workerGroupName name of the worker group, null for the default one
+     * @return Map contains pools for each route
+     */
+    public Map<String, GenericObjectPool> getTargetChannelPool(String workerGroupName) {
         if (poolManagementPolicy == PoolManagementPolicy.GLOBAL_ENDPOINT_CONNECTION_CACHING) {
+            List<Map<String, GenericObjectPool>> pools = workerGroupName == null ? poolList
+                    : workerGroupPoolLists.computeIfAbsent(workerGroupName, key -> createPoolList());
             int ind = index.getAndIncrement() % poolCount;
-            return poolList.get(ind);
+            return pools.get(ind);
         }
         return null;
     }
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.sender.channel.pool;
+
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * A FIFO queue of requests waiting for a connection of a bounded connection pool.
+ * <p>
+ * A request holds a permit while it uses a connection of the pool. Requests which cannot get a permit wait in this
+ * queue until a connection is released or their deadline expires, and are rejected right away when the queue is
+ * full. A permit is released only once, however many times the request using it is completed or failed.
+ */
+public class PoolAcquireQueue {
+
+    private final HttpRoute httpRoute;
+    private final int maxPendingAcquires;
+    private final Timer timer;
+    private final Deque<PendingAcquire> pendingAcquires = new ArrayDeque<>();
+    private int availablePermits;
+
+    private final LongAdder acquiredCount = new LongAdder();
+    private final LongAdder waitedCount = new LongAdder();
+    private final LongAdder totalWaitTimeNanos = new LongAdder();
+    private final AtomicLong maxWaitTimeNanos = new AtomicLong();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder timedOutCount = new LongAdder();
+
+    public PoolAcquireQueue(HttpRoute httpRoute, int maxConnections, int maxPendingAcquires, Timer timer) {
+        this.httpRoute = httpRoute;
+        this.availablePermits = maxConnections;
+        this.maxPendingAcquires = maxPendingAcquires;
+        this.timer = timer;
+    }
+
+    /**
+     * Acquire a permit to use a connection of the pool.
+     *
+     * @param onAcquire     invoked with the permit once it is acquired
+     * @param onFailure     invoked with the reason if the request is rejected or its deadline expires
+     * @param timeoutMillis maximum time the request may wait for a permit
+     */
+    public void acquire(Consumer<Permit> onAcquire, Consumer<String> onFailure, long timeoutMillis) {
+        boolean acquired;
+        synchronized (this) {
+            if (availablePermits > 0 && pendingAcquires.isEmpty()) {
+                availablePermits--;
+                acquired = true;
+            } else if (pendingAcquires.size() < maxPendingAcquires && timeoutMillis > 0) {
+                PendingAcquire pendingAcquire = new PendingAcquire(onAcquire, onFailure);
+                pendingAcquires.addLast(pendingAcquire);
+                pendingAcquire.timeout = timer.newTimeout(timeout -> expire(pendingAcquire), timeoutMillis,
+                        TimeUnit.MILLISECONDS);
+                return;
+            } else {
+                acquired = false;
+            }
+        }
+        if (acquired) {
+            acquiredCount.increment();
+            onAcquire.accept(new Permit(this));
+        } else {
+            rejectedCount.increment();
+            onFailure.accept("Connection pool of " + httpRoute + " is exhausted and " + maxPendingAcquires
+                    + " requests are already waiting for a connection");
+        }
+    }
+
+    /**
+     * Release a permit. The permit is handed over to the oldest waiting request, if any.
+     */
+    private void release() {
+        PendingAcquire next;
+        synchronized (this) {
+            next = pendingAcquires.pollFirst();
+            if (next == null) {
+                availablePermits++;
+                return;
+            }
+        }
+        next.timeout.cancel();
+        long waitTime = System.nanoTime() - next.enqueuedTime;
+        waitedCount.increment();
+        totalWaitTimeNanos.add(waitTime);
+        maxWaitTimeNanos.accumulateAndGet(waitTime, Math::max);
+        acquiredCount.increment();
+        next.onAcquire.accept(new Permit(this));
+    }
+
+    private void expire(PendingAcquire pendingAcquire) {
+        synchronized (this) {
+            if (!pendingAcquires.remove(pendingAcquire)) {
+                // Permit is already handed over to the request
+                return;
+            }
+        }
+        timedOutCount.increment();
+        pendingAcquire.onFailure.accept("Timed out while waiting for a connection to " + httpRoute);
+    }
+
+    public HttpRoute getHttpRoute() {
+        return httpRoute;
+    }
+
+    public synchronized int getPendingAcquireCount() {
+        return pendingAcquires.size();
+    }
+
+    public synchronized int getAvailablePermits() {
+        return availablePermits;
+    }
+
+    public long getAcquiredCount() {
+        return acquiredCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public long getTimedOutCount() {
+        return timedOutCount.sum();
+    }
+
+    /**
+     * Average time spent in the queue by the requests which had to wait for a connection.
+     *
+     * @return average wait time in milliseconds
+     */
+    public double getAverageWaitTime() {
+        long waited = waitedCount.sum();
+        return waited == 0 ? 0 : totalWaitTimeNanos.sum() / (waited * 1000000.0);
+    }
+
+    /**
+     * Maximum time spent in the queue by a request.
+     *
+     * @return maximum wait time in milliseconds
+     */
+    public long getMaxWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitTimeNanos.get());
+    }
+
+    /**
+     * A permit held by a request while it uses a connection of the pool.
+     */
+    public static class Permit {
+        private final PoolAcquireQueue acquireQueue;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(PoolAcquireQueue acquireQueue) {
+            this.acquireQueue = acquireQueue;
+        }
+
+        /**
+         * Release this permit. Calls after the first one have no effect.
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                acquireQueue.release();
+            }
+        }
+    }
+
+    /**
+     * A request waiting for a permit.
+     */
+    private static class PendingAcquire {
+        private final Consumer<Permit> onAcquire;
+        private final Consumer<String> onFailure;
+        private final long enqueuedTime = System.nanoTime();
+        private Timeout timeout;
+
+        private PendingAcquire(Consumer<Permit> onAcquire, Consumer<String> onFailure) {
+            this.onAcquire = onAcquire;
+            this.onFailure = onFailure;
+        }
+    }
+}
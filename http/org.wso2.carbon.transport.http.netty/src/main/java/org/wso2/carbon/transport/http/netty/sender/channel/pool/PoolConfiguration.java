@@ -21,6 +21,7 @@ import org.slf4j.LoggerFactory;
 import org.wso2.carbon.transport.http.netty.common.Constants;
 import org.wso2.carbon.transport.http.netty.common.Util;
 
+import java.util.Locale;
 import java.util.Map;
 
 /**
@@ -42,12 +43,21 @@ public class PoolConfiguration {
 
     private boolean testWhileIdle = true;
 
-    private long timeBetweenEvictionRuns = 30 * 1000L;
+    // Idle connections are retired by timers of their own event loops, hence the evictor does not scan the pools
+    private long timeBetweenEvictionRuns = -1;
 
     private long minEvictableIdleTime = 5 * 60 * 1000L;
 
     private byte exhaustedAction = GenericObjectPool.WHEN_EXHAUSTED_GROW;
 
+    private int maxPendingAcquiresPerPool = 1000;
+
+    private long maxWaitTime = 30 * 1000L;
+
+    private long maxConnectionLifetime = -1;
+
+    private int maxRequestsPerConnection = -1;
+
     private int numberOfPools = 0;
 
     private int executorServiceThreads = 20;
@@ -70,6 +80,27 @@ public class PoolConfiguration {
         minEvictableIdleTime = Util.getLongProperty(
                 transportProperties, Constants.MIN_EVICTION_IDLE_TIME, 5 * 60 * 1000L);
 
+        exhaustedAction = getExhaustedAction(Util.getStringProperty(
+                transportProperties, Constants.POOL_EXHAUSTED_ACTION, "grow"));
+
+        maxPendingAcquiresPerPool = Util.getIntProperty(
+                transportProperties, Constants.MAX_PENDING_ACQUIRES_PER_POOL, 1000);
+
+        maxWaitTime = Util.getLongProperty(
+                transportProperties, Constants.MAX_WAIT_TIME_FOR_CONNECTION, 30 * 1000L);
+
+        if (isBounded() && maxActivePerPool <= 0) {
+            logger.warn(Constants.MAX_ACTIVE_CONNECTIONS_PER_POOL + " is not set for a bounded connection pool, "
+                    + "hence using 100");
+            maxActivePerPool = 100;
+        }
+
+        maxConnectionLifetime = Util.getLongProperty(
+                transportProperties, Constants.MAX_CONNECTION_LIFETIME, -1L);
+
+        maxRequestsPerConnection = Util.getIntProperty(
+                transportProperties, Constants.MAX_REQUESTS_PER_CONNECTION, -1);
+
         executorServiceThreads = Util.getIntProperty(
                 transportProperties, Constants.NO_THREADS_IN_EXECUTOR_SERVICE, 20);
 
@@ -81,12 +112,31 @@ public class PoolConfiguration {
         logger.debug(Constants.MIN_IDLE_CONNECTIONS_PER_POOL + ":" + maxIdlePerPool);
         logger.debug(Constants.MAX_IDLE_CONNECTIONS_PER_POOL + ":" + maxIdlePerPool);
         logger.debug(Constants.MIN_EVICTION_IDLE_TIME + ":" + minEvictableIdleTime);
+        logger.debug(Constants.MAX_CONNECTION_LIFETIME + ":" + maxConnectionLifetime);
+        logger.debug(Constants.MAX_REQUESTS_PER_CONNECTION + ":" + maxRequestsPerConnection);
         logger.debug(Constants.NO_THREADS_IN_EXECUTOR_SERVICE + ":" + executorServiceThreads);
         logger.debug("Time between Evictions Runs" + ":" + timeBetweenEvictionRuns);
         logger.debug("Pool exhausted action" + ":" + exhaustedAction);
+        logger.debug(Constants.MAX_PENDING_ACQUIRES_PER_POOL + ":" + maxPendingAcquiresPerPool);
+        logger.debug(Constants.MAX_WAIT_TIME_FOR_CONNECTION + ":" + maxWaitTime);
         logger.debug("Event group executor threads : " + eventGroupExecutorThreads);
     }
 
+    private static byte getExhaustedAction(String exhaustedAction) {
+        switch (exhaustedAction.toLowerCase(Locale.getDefault())) {
+            case "block":
+                return GenericObjectPool.WHEN_EXHAUSTED_BLOCK;
+            case "fail":
+                return GenericObjectPool.WHEN_EXHAUSTED_FAIL;
+            case "grow":
+                return GenericObjectPool.WHEN_EXHAUSTED_GROW;
+            default:
+                logger.warn("Unknown " + Constants.POOL_EXHAUSTED_ACTION + " " + exhaustedAction
+                        + ", hence using grow");
+                return GenericObjectPool.WHEN_EXHAUSTED_GROW;
+        }
+    }
+
     public static PoolConfiguration getInstance() {
         return poolConfiguration;
 
@@ -128,6 +178,34 @@ public class PoolConfiguration {
         return exhaustedAction;
     }
 
+    /**
+     * A bounded route never has more than the maximum active connections in use, however many pools it has and
+     * including the connections cached per source channel, which is the case when the number of pools is 0.
+     * Requests wait in a FIFO queue for a connection when the action is block, and are rejected right away when it
+     * is fail.
+     *
+     * @return true if the number of connections per route is bounded
+     */
+    public boolean isBounded() {
+        return exhaustedAction != GenericObjectPool.WHEN_EXHAUSTED_GROW;
+    }
+
+    public int getMaxPendingAcquiresPerPool() {
+        return exhaustedAction == GenericObjectPool.WHEN_EXHAUSTED_FAIL ? 0 : maxPendingAcquiresPerPool;
+    }
+
+    public long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    public long getMaxConnectionLifetime() {
+        return maxConnectionLifetime;
+    }
+
+    public int getMaxRequestsPerConnection() {
+        return maxRequestsPerConnection;
+    }
+
     public int getNumberOfPools() {
         return numberOfPools;
     }
@@ -38,16 +38,32 @@ public class PoolableTargetChannelFactory implements PoolableObjectFactory {
     private Class eventLoopClass;
     private HttpRoute httpRoute;
     private SenderConfiguration senderConfiguration;
+    private PoolConfiguration poolConfiguration;
+    private Runnable idleExpiryListener = () -> { };
+
+    // Idle connections are retired this much earlier than the keep-alive timeout advertised by the backend
+    private static final long KEEP_ALIVE_TIMEOUT_MARGIN = 1000L;
 
     public PoolableTargetChannelFactory(HttpRoute httpRoute, EventLoopGroup eventLoopGroup,
-                                        Class eventLoopClass, SenderConfiguration senderConfiguration) {
+                                        Class eventLoopClass, SenderConfiguration senderConfiguration,
+                                        PoolConfiguration poolConfiguration) {
         this.eventLoopGroup = eventLoopGroup;
         this.eventLoopClass = eventLoopClass;
         this.httpRoute = httpRoute;
         this.senderConfiguration = senderConfiguration;
+        this.poolConfiguration = poolConfiguration;
     }
 
 
+    /**
+     * Set the action which removes the channels closed by their idle expiry from the pool of this factory.
+     *
+     * @param idleExpiryListener invoked once an idle channel of the pool is closed
+     */
+    public void setIdleExpiryListener(Runnable idleExpiryListener) {
+        this.idleExpiryListener = idleExpiryListener;
+    }
+
     @Override
     public Object makeObject() throws Exception {
         TargetChannel targetChannel = new TargetChannel();
@@ -70,19 +86,44 @@ public class PoolableTargetChannelFactory implements PoolableObjectFactory {
 
     @Override
     public boolean validateObject(Object o) {
-        boolean answer = ((TargetChannel) o).getChannel().isActive();
+        boolean answer = ((TargetChannel) o).isReusable(poolConfiguration.getMaxConnectionLifetime(),
+                poolConfiguration.getMaxRequestsPerConnection());
         log.debug("Validating channel: {} -> {}", o, answer);
         return answer;
     }
 
     @Override
     public void activateObject(Object o) throws Exception {
-
+        ((TargetChannel) o).cancelIdleExpiry();
     }
 
     @Override
     public void passivateObject(Object o) throws Exception {
+        TargetChannel targetChannel = (TargetChannel) o;
+        targetChannel.scheduleIdleExpiry(getIdleExpiryDelay(targetChannel, poolConfiguration), idleExpiryListener);
+    }
 
+    /**
+     * An idle channel is closed before the backend closes it due to its keep-alive timeout, when it exceeds the
+     * idle time or when it reaches its maximum lifetime, whichever comes first. A closed channel fails the
+     * validation and is destroyed by the pool it belongs to, which is cleaned up once the channel is closed.
+     * Channels cached per source channel expire the same way.
+     */
+    static long getIdleExpiryDelay(TargetChannel targetChannel, PoolConfiguration config) {
+        // Measured from the time the channel became idle, since a clean up passivates the channels it validates
+        long idleTime = System.currentTimeMillis() - targetChannel.getIdleSince();
+        long delay = config.getMinEvictableIdleTime() > 0 ?
+                config.getMinEvictableIdleTime() - idleTime : Long.MAX_VALUE;
+        long keepAliveTimeout = targetChannel.getKeepAliveTimeout();
+        if (keepAliveTimeout >= 0) {
+            delay = Math.min(delay, keepAliveTimeout - Math.min(KEEP_ALIVE_TIMEOUT_MARGIN, keepAliveTimeout / 2)
+                    - idleTime);
+        }
+        if (config.getMaxConnectionLifetime() > 0) {
+            delay = Math.min(delay, targetChannel.getCreatedTime() + config.getMaxConnectionLifetime()
+                    - System.currentTimeMillis());
+        }
+        return delay;
     }
 
 
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.sender.http2;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http2.DefaultHttp2Connection;
+import io.netty.handler.codec.http2.Http2Connection;
+import io.netty.handler.codec.http2.HttpToHttp2ConnectionHandler;
+import io.netty.handler.codec.http2.HttpToHttp2ConnectionHandlerBuilder;
+import io.netty.handler.codec.http2.InboundHttp2ToHttpAdapterBuilder;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
+import io.netty.handler.ssl.SslContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A class that responsible for initialize the pipeline of a multiplexed HTTP/2 connection to a backend.
+ * <p>
+ * HTTP/2 is negotiated through ALPN when TLS is used, otherwise the connection starts with prior knowledge (h2c)
+ * without an upgrade round trip. Requests which exceed the concurrent stream limit advertised by the backend are
+ * buffered by the encoder until one of the active streams is closed.
+ */
+public class HTTP2ClientInitializer extends ChannelInitializer<SocketChannel> {
+
+    private static final Logger log = LoggerFactory.getLogger(HTTP2ClientInitializer.class);
+
+    private final SslContext sslContext;
+    private final HTTP2TargetChannel targetChannel;
+
+    public HTTP2ClientInitializer(SslContext sslContext, HTTP2TargetChannel targetChannel) {
+        this.sslContext = sslContext;
+        this.targetChannel = targetChannel;
+    }
+
+    @Override
+    protected void initChannel(SocketChannel ch) throws Exception {
+        Http2Connection connection = new DefaultHttp2Connection(false);
+        HTTP2TargetHandler targetHandler = new HTTP2TargetHandler(targetChannel, connection);
+        HttpToHttp2ConnectionHandler connectionHandler = new HttpToHttp2ConnectionHandlerBuilder()
+                // Frames are recorded as they are read, since the deadlines of a stream depend on its reads
+                .frameListener(targetHandler.recordReads(new InboundHttp2ToHttpAdapterBuilder(connection)
+                        .maxContentLength(Integer.MAX_VALUE)
+                        .propagateSettings(true)
+                        .build()))
+                .connection(connection)
+                // Streams beyond SETTINGS_MAX_CONCURRENT_STREAMS of the backend are buffered until a stream closes
+                .encoderEnforceMaxConcurrentStreams(true)
+                .build();
+        targetChannel.setConnectionHandler(connectionHandler);
+        targetChannel.setTargetHandler(targetHandler);
+
+        if (sslContext != null) {
+            log.debug("adding ssl handler");
+            ch.pipeline().addLast("ssl", sslContext.newHandler(ch.alloc(), targetChannel.getHttpRoute().getHost(),
+                    targetChannel.getHttpRoute().getPort()));
+            ch.pipeline().addLast(new ApplicationProtocolNegotiationHandler("") {
+                @Override
+                protected void configurePipeline(ChannelHandlerContext ctx, String protocol) {
+                    if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+                        configureHttp2Pipeline(ctx.pipeline(), connectionHandler, targetHandler);
+                        return;
+                    }
+                    targetChannel.markFailed(new IllegalStateException(
+                            "HTTP/2 is not supported by " + targetChannel.getHttpRoute() + ", negotiated protocol: "
+                                    + protocol));
+                    ctx.close();
+                }
+            });
+        } else {
+            configureHttp2Pipeline(ch.pipeline(), connectionHandler, targetHandler);
+        }
+    }
+
+    private void configureHttp2Pipeline(ChannelPipeline pipeline, HttpToHttp2ConnectionHandler connectionHandler,
+                                        HTTP2TargetHandler targetHandler) {
+        pipeline.addLast("http2ConnectionHandler", connectionHandler);
+        pipeline.addLast("handler", targetHandler);
+    }
+}
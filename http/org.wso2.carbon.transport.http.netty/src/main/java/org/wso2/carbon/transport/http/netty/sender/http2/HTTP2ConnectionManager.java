@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.sender.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.EventLoopGroup;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import io.netty.handler.ssl.SslContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.messaging.CarbonCallback;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
+import org.wso2.carbon.messaging.exceptions.MessagingException;
+import org.wso2.carbon.transport.http.netty.common.Constants;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+import org.wso2.carbon.transport.http.netty.common.ssl.SSLHandlerFactory;
+import org.wso2.carbon.transport.http.netty.config.SenderConfiguration;
+import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
+import org.wso2.carbon.transport.http.netty.listener.SourceHandler;
+import org.wso2.carbon.transport.http.netty.message.HTTPCarbonMessage;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.net.ssl.SSLException;
+
+/**
+ * {@code HTTP2ConnectionManager} dispatches the requests of a HTTP/2 enabled sender configuration to per route
+ * pools of multiplexed connections.
+ */
+public class HTTP2ConnectionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(HTTP2ConnectionManager.class);
+
+    private final SenderConfiguration senderConfiguration;
+    private final SslContext sslContext;
+    private final Map<String, HTTP2ConnectionPool> connectionPools = new ConcurrentHashMap<>();
+    private final ConnectionManager connectionManager;
+
+    public HTTP2ConnectionManager(SenderConfiguration senderConfiguration, ConnectionManager connectionManager)
+            throws SSLException {
+        this.senderConfiguration = senderConfiguration;
+        this.connectionManager = connectionManager;
+        if (senderConfiguration.getSslConfig() != null) {
+            this.sslContext = new SSLHandlerFactory(senderConfiguration.getSslConfig())
+                    .createHttp2TLSContextForClient();
+        } else {
+            this.sslContext = null;
+        }
+    }
+
+    /**
+     * Send a request to the given route over a multiplexed HTTP/2 connection. Response is delivered to the
+     * callback once the whole response is received.
+     *
+     * @param httpRoute     route of the backend
+     * @param sourceHandler source handler of the inbound connection, null if not originated from a listener
+     * @param httpRequest   request line and headers
+     * @param carbonMessage carbon message which carries the request body
+     * @param callback      callback which receives the response
+     */
+    public void send(HttpRoute httpRoute, SourceHandler sourceHandler, HttpRequest httpRequest,
+                     CarbonMessage carbonMessage, CarbonCallback callback) {
+        FullHttpRequest fullHttpRequest = aggregateRequest(httpRequest, carbonMessage);
+
+        HTTP2TargetChannel targetChannel = getConnectionPool(httpRoute).acquire(getEventLoopGroup(sourceHandler));
+        targetChannel.getReadyFuture().whenComplete((readyChannel, cause) -> {
+            if (cause == null) {
+                readyChannel.writeRequest(fullHttpRequest, carbonMessage, callback);
+            } else {
+                fullHttpRequest.release();
+                targetChannel.releaseStream();
+                log.error("Cannot create HTTP/2 connection to " + httpRoute, cause);
+                MessagingException messagingException = new MessagingException(
+                        "Error while connecting to " + httpRoute + " " + cause.getMessage(), cause, 101503);
+                carbonMessage.setMessagingException(messagingException);
+                callback.done(carbonMessage);
+            }
+        });
+    }
+
+    /**
+     * Open a connection to the given route ahead of the requests.
+     *
+     * @param httpRoute route of the backend
+     * @return future which completes once the connection is ready for requests
+     */
+    public CompletableFuture<Void> warmUp(HttpRoute httpRoute) {
+        return getConnectionPool(httpRoute).ensureConnection(getEventLoopGroup(null)).getReadyFuture()
+                .thenApply(targetChannel -> null);
+    }
+
+    private HTTP2ConnectionPool getConnectionPool(HttpRoute httpRoute) {
+        return connectionPools.computeIfAbsent(httpRoute.toString(),
+                key -> new HTTP2ConnectionPool(httpRoute, sslContext,
+                        senderConfiguration.getHttp2MaxConcurrentStreams(),
+                        senderConfiguration.getHttp2MaxConnectionsPerRoute()));
+    }
+
+    private EventLoopGroup getEventLoopGroup(SourceHandler sourceHandler) {
+        if (sourceHandler != null && sourceHandler.getInboundChannelContext() != null) {
+            return sourceHandler.getInboundChannelContext().channel().eventLoop();
+        }
+        // Connections of the requests which are not originated from a listener share the HTTP/1.1 sender threads
+        return connectionManager.getSenderEventLoopGroup(senderConfiguration);
+    }
+
+    /**
+     * HTTP to HTTP/2 conversion writes a request as a single unit, hence the body of the carbon message is
+     * aggregated before the request is dispatched to a stream.
+     */
+    private FullHttpRequest aggregateRequest(HttpRequest httpRequest, CarbonMessage carbonMessage) {
+        if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
+            HTTPTransportContextHolder.getInstance().getHandlerExecutor().
+                    executeAtTargetRequestReceiving(carbonMessage);
+        }
+        // Whole body is needed up front, hence a client waiting on Expect: 100-continue is asked for it right away
+        Object sourceHandler = carbonMessage.getProperty(Constants.SRC_HANDLER);
+        if (sourceHandler instanceof SourceHandler) {
+            ((SourceHandler) sourceHandler).continueRequest(carbonMessage);
+        }
+        CompositeByteBuf content = Unpooled.compositeBuffer(Integer.MAX_VALUE);
+        if (carbonMessage instanceof HTTPCarbonMessage) {
+            HTTPCarbonMessage nettyCMsg = (HTTPCarbonMessage) carbonMessage;
+            while (!(nettyCMsg.isEndOfMsgAdded() && nettyCMsg.isEmpty())) {
+                HttpContent httpContent = nettyCMsg.getHttpContent();
+                if (httpContent != null) {
+                    content.addComponent(true, httpContent.content());
+                    if (httpContent instanceof LastHttpContent) {
+                        break;
+                    }
+                }
+            }
+        } else if (carbonMessage instanceof DefaultCarbonMessage) {
+            DefaultCarbonMessage defaultCMsg = (DefaultCarbonMessage) carbonMessage;
+            while (!(defaultCMsg.isEndOfMsgAdded() && defaultCMsg.isEmpty())) {
+                ByteBuffer byteBuffer = defaultCMsg.getMessageBody();
+                if (byteBuffer != null) {
+                    ByteBuf bbuf = Unpooled.wrappedBuffer(byteBuffer);
+                    content.addComponent(true, bbuf);
+                }
+            }
+        }
+        if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
+            HTTPTransportContextHolder.getInstance().getHandlerExecutor().
+                    executeAtTargetRequestSending(carbonMessage);
+        }
+
+        FullHttpRequest fullHttpRequest = new DefaultFullHttpRequest(httpRequest.protocolVersion(),
+                httpRequest.method(), httpRequest.uri(), content);
+        fullHttpRequest.headers().set(httpRequest.headers());
+        fullHttpRequest.headers().remove(HttpHeaderNames.TRANSFER_ENCODING);
+        fullHttpRequest.headers().remove(HttpHeaderNames.CONNECTION);
+        fullHttpRequest.headers().remove(HttpHeaderNames.EXPECT);
+        fullHttpRequest.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, content.readableBytes());
+        fullHttpRequest.headers().set(HttpConversionUtil.ExtensionHeaderNames.SCHEME.text(),
+                sslContext != null ? "https" : "http");
+        return fullHttpRequest;
+    }
+
+    /**
+     * Close all the HTTP/2 connections created by this manager. The event loop group of the connections is owned by
+     * the {@link ConnectionManager}, hence it is not shut down.
+     */
+    public void close() {
+        connectionPools.values().forEach(HTTP2ConnectionPool::close);
+        connectionPools.clear();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.sender.http2;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ConnectTimeoutException;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.ssl.SslContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+import org.wso2.carbon.transport.http.netty.sender.channel.BootstrapConfiguration;
+
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A small pool of multiplexed HTTP/2 connections to a single route.
+ * <p>
+ * A request is dispatched to the first connection which has a free stream. A new connection is opened only when
+ * all the existing connections have reached their concurrent stream limit and the per route connection limit is
+ * not reached, otherwise the least loaded connection is used and the excess streams are buffered by the encoder of
+ * the connection until the backend allows them to be opened.
+ */
+public class HTTP2ConnectionPool {
+
+    private static final Logger log = LoggerFactory.getLogger(HTTP2ConnectionPool.class);
+
+    private final HttpRoute httpRoute;
+    private final SslContext sslContext;
+    private final int maxConcurrentStreams;
+    private final int maxConnections;
+    private final List<HTTP2TargetChannel> targetChannels = new ArrayList<>();
+
+    public HTTP2ConnectionPool(HttpRoute httpRoute, SslContext sslContext, int maxConcurrentStreams,
+                               int maxConnections) {
+        this.httpRoute = httpRoute;
+        this.sslContext = sslContext;
+        this.maxConcurrentStreams = maxConcurrentStreams;
+        this.maxConnections = Math.max(1, maxConnections);
+    }
+
+    /**
+     * Acquire a connection with a stream reserved on it. The stream has to be released once the response is
+     * received or the request fails.
+     *
+     * @param eventLoopGroup event loop group used when a new connection has to be opened
+     * @return connection which may still be connecting, use {@link HTTP2TargetChannel#getReadyFuture()}
+     */
+    public synchronized HTTP2TargetChannel acquire(EventLoopGroup eventLoopGroup) {
+        targetChannels.removeIf(targetChannel -> !targetChannel.isUsable());
+
+        HTTP2TargetChannel leastLoaded = null;
+        for (HTTP2TargetChannel targetChannel : targetChannels) {
+            if (targetChannel.tryReserveStream()) {
+                return targetChannel;
+            }
+            if (leastLoaded == null || targetChannel.getActiveStreams() < leastLoaded.getActiveStreams()) {
+                leastLoaded = targetChannel;
+            }
+        }
+
+        if (leastLoaded == null || targetChannels.size() < maxConnections) {
+            HTTP2TargetChannel targetChannel = connect(eventLoopGroup);
+            targetChannel.forceReserveStream();
+            return targetChannel;
+        }
+        leastLoaded.forceReserveStream();
+        return leastLoaded;
+    }
+
+    /**
+     * Make sure that the route has at least one connection.
+     *
+     * @param eventLoopGroup event loop group used when a new connection has to be opened
+     * @return an existing or a newly opened connection
+     */
+    public synchronized HTTP2TargetChannel ensureConnection(EventLoopGroup eventLoopGroup) {
+        targetChannels.removeIf(targetChannel -> !targetChannel.isUsable());
+        if (targetChannels.isEmpty()) {
+            return connect(eventLoopGroup);
+        }
+        return targetChannels.get(0);
+    }
+
+    private HTTP2TargetChannel connect(EventLoopGroup eventLoopGroup) {
+        HTTP2TargetChannel targetChannel = new HTTP2TargetChannel(httpRoute, maxConcurrentStreams);
+        BootstrapConfiguration bootstrapConfiguration = BootstrapConfiguration.getInstance();
+        Bootstrap clientBootstrap = new Bootstrap();
+        clientBootstrap.channel(NioSocketChannel.class);
+        clientBootstrap.group(eventLoopGroup);
+        clientBootstrap.option(ChannelOption.SO_KEEPALIVE, bootstrapConfiguration.isKeepAlive());
+        clientBootstrap.option(ChannelOption.TCP_NODELAY, bootstrapConfiguration.isTcpNoDelay());
+        clientBootstrap.option(ChannelOption.SO_REUSEADDR, bootstrapConfiguration.isSocketReuse());
+        clientBootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, bootstrapConfiguration.getConnectTimeOut());
+        clientBootstrap.handler(new HTTP2ClientInitializer(sslContext, targetChannel));
+        if (log.isDebugEnabled()) {
+            log.debug("Creating new HTTP/2 connection to {}:{}", httpRoute.getHost(), httpRoute.getPort());
+        }
+
+        ChannelFuture channelFuture = clientBootstrap
+                .connect(new InetSocketAddress(httpRoute.getHost(), httpRoute.getPort()));
+        targetChannel.setChannel(channelFuture.channel());
+        targetChannels.add(targetChannel);
+        channelFuture.addListener(future -> {
+            if (future.isSuccess()) {
+                // Requests wait for the handshake, hence a backend which never completes it must not hold them
+                channelFuture.channel().eventLoop().schedule(() -> {
+                    if (!targetChannel.getReadyFuture().isDone()) {
+                        targetChannel.markFailed(new ConnectTimeoutException(
+                                "HTTP/2 handshake with " + httpRoute + " is not completed in time"));
+                        channelFuture.channel().close();
+                    }
+                }, bootstrapConfiguration.getConnectTimeOut(), TimeUnit.MILLISECONDS);
+            } else {
+                ConnectException cause = new ConnectException("Connection refused, " + httpRoute.toString());
+                if (future.cause() != null) {
+                    cause.initCause(future.cause());
+                }
+                targetChannel.markFailed(cause);
+            }
+        });
+        channelFuture.channel().closeFuture().addListener(future -> remove(targetChannel));
+        return targetChannel;
+    }
+
+    private synchronized void remove(HTTP2TargetChannel targetChannel) {
+        targetChannels.remove(targetChannel);
+    }
+
+    /**
+     * Close all the connections of this pool.
+     */
+    public synchronized void close() {
+        List<HTTP2TargetChannel> channelsToClose = new ArrayList<>(targetChannels);
+        targetChannels.clear();
+        for (HTTP2TargetChannel targetChannel : channelsToClose) {
+            targetChannel.getChannel().close();
+        }
+    }
+}
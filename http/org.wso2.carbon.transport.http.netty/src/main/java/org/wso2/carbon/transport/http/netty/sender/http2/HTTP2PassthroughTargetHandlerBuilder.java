@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.transport.http.netty.sender.http2;
+
+import io.netty.handler.codec.http2.AbstractHttp2ConnectionHandlerBuilder;
+import io.netty.handler.codec.http2.Http2ConnectionDecoder;
+import io.netty.handler.codec.http2.Http2ConnectionEncoder;
+import io.netty.handler.codec.http2.Http2Settings;
+import org.wso2.carbon.transport.http.netty.listener.http2.HTTP2Passthrough;
+
+/**
+ * {@code HTTP2PassthroughTargetHandlerBuilder} is used to build the client side handler of the target connection of
+ * an {@link HTTP2Passthrough}.
+ */
+public final class HTTP2PassthroughTargetHandlerBuilder extends
+        AbstractHttp2ConnectionHandlerBuilder<HTTP2PassthroughTargetHandler, HTTP2PassthroughTargetHandlerBuilder> {
+
+    private final HTTP2Passthrough passthrough;
+
+    public HTTP2PassthroughTargetHandlerBuilder(HTTP2Passthrough passthrough) {
+        this.passthrough = passthrough;
+        server(false);
+        initialSettings(new Http2Settings().pushEnabled(false));
+    }
+
+    @Override
+    public HTTP2PassthroughTargetHandler build() {
+        return super.build();
+    }
+
+    @Override
+    protected HTTP2PassthroughTargetHandler build(Http2ConnectionDecoder decoder, Http2ConnectionEncoder encoder,
+                                                  Http2Settings initialSettings) {
+        HTTP2PassthroughTargetHandler handler = new HTTP2PassthroughTargetHandler(decoder, encoder, initialSettings,
+                passthrough);
+        frameListener(handler);
+        return handler;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.sender.http2;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http2.Http2Error;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import io.netty.handler.codec.http2.HttpToHttp2ConnectionHandler;
+import org.wso2.carbon.messaging.CarbonCallback;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code HTTP2TargetChannel} encapsulates a multiplexed HTTP/2 connection to a backend and the number of streams
+ * which are currently active on it.
+ */
+public class HTTP2TargetChannel {
+
+    private final HttpRoute httpRoute;
+    private final CompletableFuture<HTTP2TargetChannel> readyFuture = new CompletableFuture<>();
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private volatile int maxConcurrentStreams;
+
+    private Channel channel;
+    private HTTP2TargetHandler targetHandler;
+    private HttpToHttp2ConnectionHandler connectionHandler;
+
+    public HTTP2TargetChannel(HttpRoute httpRoute, int maxConcurrentStreams) {
+        this.httpRoute = httpRoute;
+        this.maxConcurrentStreams = maxConcurrentStreams;
+    }
+
+    /**
+     * Reserve a stream on this connection if the concurrent stream limit is not reached yet.
+     *
+     * @return true if a stream was reserved
+     */
+    public boolean tryReserveStream() {
+        while (true) {
+            int current = activeStreams.get();
+            if (current >= maxConcurrentStreams) {
+                return false;
+            }
+            if (activeStreams.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Reserve a stream on this connection regardless of the concurrent stream limit. A stream beyond the limit of
+     * the backend is buffered by the encoder until an active stream is closed.
+     */
+    public void forceReserveStream() {
+        activeStreams.incrementAndGet();
+    }
+
+    public void releaseStream() {
+        activeStreams.decrementAndGet();
+    }
+
+    public int getActiveStreams() {
+        return activeStreams.get();
+    }
+
+    /**
+     * Honour the SETTINGS_MAX_CONCURRENT_STREAMS value advertised by the backend if it is lower than the
+     * configured limit.
+     *
+     * @param remoteMaxConcurrentStreams value advertised by the backend, null if not advertised
+     */
+    public void updateMaxConcurrentStreams(Long remoteMaxConcurrentStreams) {
+        if (remoteMaxConcurrentStreams != null && remoteMaxConcurrentStreams < maxConcurrentStreams) {
+            maxConcurrentStreams = remoteMaxConcurrentStreams.intValue();
+        }
+    }
+
+    /**
+     * A connection is usable while it is connecting, negotiating or active.
+     *
+     * @return true if requests can be dispatched to this connection
+     */
+    public boolean isUsable() {
+        if (readyFuture.isCompletedExceptionally()) {
+            return false;
+        }
+        return channel == null || !readyFuture.isDone() || channel.isActive();
+    }
+
+    public CompletableFuture<HTTP2TargetChannel> getReadyFuture() {
+        return readyFuture;
+    }
+
+    public void markReady() {
+        readyFuture.complete(this);
+    }
+
+    public void markFailed(Throwable cause) {
+        readyFuture.completeExceptionally(cause);
+    }
+
+    /**
+     * Write a request to a new stream of this connection. Stream ids are allocated in the event loop of the
+     * connection so that they are always written in increasing order.
+     *
+     * @param request       aggregated request to be written
+     * @param incomingMsg   carbon message of the request
+     * @param callback      callback which receives the response
+     */
+    public void writeRequest(FullHttpRequest request, CarbonMessage incomingMsg, CarbonCallback callback) {
+        channel.eventLoop().execute(() -> {
+            int streamId = connectionHandler.connection().local().incrementAndGetNextStreamId();
+            if (streamId < 0) {
+                // Stream ids are exhausted, this connection can not be used for new requests anymore
+                request.release();
+                targetHandler.failRequest(incomingMsg, callback, "Stream ids exhausted for " + httpRoute);
+                channel.close();
+                return;
+            }
+            request.headers().setInt(HttpConversionUtil.ExtensionHeaderNames.STREAM_ID.text(), streamId);
+            targetHandler.registerStream(streamId, incomingMsg, callback);
+            channel.writeAndFlush(request).addListener(future -> {
+                if (!future.isSuccess()) {
+                    targetHandler.failStream(streamId, "Cannot write request to " + httpRoute);
+                }
+            });
+        });
+    }
+
+    /**
+     * Reset a stream with CANCEL, e.g. when its response is not received within its deadline. It has to be called
+     * from the event loop of the connection. A stream which is still buffered by the encoder is dropped instead.
+     *
+     * @param streamId id of the stream
+     */
+    void cancelStream(int streamId) {
+        ChannelHandlerContext ctx = channel.pipeline().context(connectionHandler);
+        if (ctx == null) {
+            return;
+        }
+        connectionHandler.encoder().writeRstStream(ctx, streamId, Http2Error.CANCEL.code(), ctx.newPromise());
+        ctx.flush();
+    }
+
+    public HttpRoute getHttpRoute() {
+        return httpRoute;
+    }
+
+    public Channel getChannel() {
+        return channel;
+    }
+
+    public void setChannel(Channel channel) {
+        this.channel = channel;
+    }
+
+    public HTTP2TargetHandler getTargetHandler() {
+        return targetHandler;
+    }
+
+    public void setTargetHandler(HTTP2TargetHandler targetHandler) {
+        this.targetHandler = targetHandler;
+    }
+
+    public void setConnectionHandler(HttpToHttp2ConnectionHandler connectionHandler) {
+        this.connectionHandler = connectionHandler;
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.sender.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http2.Http2Connection;
+import io.netty.handler.codec.http2.Http2ConnectionAdapter;
+import io.netty.handler.codec.http2.Http2Exception;
+import io.netty.handler.codec.http2.Http2FrameListener;
+import io.netty.handler.codec.http2.Http2FrameListenerDecorator;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2Stream;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.messaging.CarbonCallback;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.CarbonMessageProcessor;
+import org.wso2.carbon.messaging.exceptions.MessagingException;
+import org.wso2.carbon.transport.http.netty.common.Constants;
+import org.wso2.carbon.transport.http.netty.common.Util;
+import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
+import org.wso2.carbon.transport.http.netty.message.HTTPCarbonMessage;
+import org.wso2.carbon.transport.http.netty.sender.TargetHandler;
+import org.wso2.carbon.transport.http.netty.sender.channel.BootstrapConfiguration;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code HTTP2TargetHandler} correlates HTTP/2 responses coming from the backend with the requests written to the
+ * streams of a multiplexed connection.
+ * <p>
+ * Each stream has the same deadlines as a HTTP/1.1 request, see {@link TargetHandler}, served by a timer per stream
+ * on the event loop of the connection. A stream whose deadline expires is cancelled with RST_STREAM.
+ * <p>
+ * All the state of this handler is accessed from the event loop of the connection.
+ */
+public class HTTP2TargetHandler extends ChannelInboundHandlerAdapter {
+
+    private static final Logger log = LoggerFactory.getLogger(HTTP2TargetHandler.class);
+
+    private final HTTP2TargetChannel targetChannel;
+    private final Map<Integer, OutboundStream> inFlightStreams = new HashMap<>();
+
+    public HTTP2TargetHandler(HTTP2TargetChannel targetChannel, Http2Connection connection) {
+        this.targetChannel = targetChannel;
+        connection.addListener(new Http2ConnectionAdapter() {
+            @Override
+            public void onStreamClosed(Http2Stream stream) {
+                // Response of a completed stream is already delivered, hence this only fails reset streams
+                failStream(stream.id(), "Stream " + stream.id() + " closed before receiving the response from "
+                        + targetChannel.getHttpRoute());
+            }
+        });
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
+            HTTPTransportContextHolder.getInstance().getHandlerExecutor()
+                    .executeAtTargetConnectionInitiation(Integer.toString(ctx.hashCode()));
+        }
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof Http2Settings) {
+            targetChannel.updateMaxConcurrentStreams(((Http2Settings) msg).maxConcurrentStreams());
+            targetChannel.markReady();
+        } else if (msg instanceof FullHttpResponse) {
+            FullHttpResponse response = (FullHttpResponse) msg;
+            Integer streamId = response.headers().getInt(HttpConversionUtil.ExtensionHeaderNames.STREAM_ID.text());
+            OutboundStream outboundStream = streamId != null ? inFlightStreams.remove(streamId) : null;
+            if (outboundStream == null) {
+                log.warn("Received a response for an unknown stream " + streamId + " from "
+                        + targetChannel.getHttpRoute());
+                response.release();
+                return;
+            }
+            outboundStream.cancelTimer();
+            targetChannel.releaseStream();
+            deliverResponse(ctx, response, outboundStream);
+        } else {
+            ReferenceCountUtil.release(msg);
+        }
+    }
+
+    private void deliverResponse(ChannelHandlerContext ctx, FullHttpResponse response, OutboundStream stream) {
+        for (HttpConversionUtil.ExtensionHeaderNames extensionHeader :
+                HttpConversionUtil.ExtensionHeaderNames.values()) {
+            response.headers().remove(extensionHeader.text());
+        }
+
+        HTTPCarbonMessage cMsg = new HTTPCarbonMessage();
+        if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
+            HTTPTransportContextHolder.getInstance().getHandlerExecutor().executeAtTargetResponseReceiving(cMsg);
+        }
+        cMsg.setProperty(Constants.PORT, ((InetSocketAddress) ctx.channel().remoteAddress()).getPort());
+        cMsg.setProperty(Constants.HOST, ((InetSocketAddress) ctx.channel().remoteAddress()).getHostName());
+        cMsg.setProperty(org.wso2.carbon.messaging.Constants.DIRECTION,
+                org.wso2.carbon.messaging.Constants.DIRECTION_RESPONSE);
+        cMsg.setProperty(org.wso2.carbon.messaging.Constants.CALL_BACK, stream.callback);
+        cMsg.setProperty(Constants.HTTP_STATUS_CODE, response.status().code());
+        cMsg.setHeaders(Util.getHeaders(response).getAll());
+        cMsg.setProperty(Constants.EXECUTOR_WORKER_POOL,
+                stream.incomingMsg.getProperty(Constants.EXECUTOR_WORKER_POOL));
+
+        // Ownership of the aggregated content is handed over to the carbon message
+        cMsg.addHttpContent(new DefaultLastHttpContent(response.content()));
+        cMsg.setEndOfMsgAdded(true);
+        if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
+            HTTPTransportContextHolder.getInstance().getHandlerExecutor().executeAtTargetResponseSending(cMsg);
+        }
+
+        CarbonMessageProcessor carbonMessageProcessor = HTTPTransportContextHolder.getInstance()
+                .getMessageProcessor();
+        if (carbonMessageProcessor != null) {
+            try {
+                carbonMessageProcessor.receive(cMsg, stream.callback);
+            } catch (Exception e) {
+                log.error("Error while handover response to MessageProcessor ", e);
+            }
+        } else {
+            log.error("Cannot correlate callback with request callback is null ");
+        }
+    }
+
+    void registerStream(int streamId, CarbonMessage incomingMsg, CarbonCallback callback) {
+        OutboundStream stream = new OutboundStream(incomingMsg, callback);
+        inFlightStreams.put(streamId, stream);
+        long startTime = incomingMsg.getProperty(Constants.REQUEST_START_TIME) instanceof Long ?
+                (Long) incomingMsg.getProperty(Constants.REQUEST_START_TIME) : System.nanoTime();
+        long firstByteDeadline = startTime
+                + TimeUnit.MILLISECONDS.toNanos(TargetHandler.getRequestTimeout(incomingMsg));
+        Object responseTimeout = incomingMsg.getProperty(Constants.RESPONSE_TIMEOUT);
+        stream.responseDeadline = responseTimeout instanceof Number ?
+                startTime + TimeUnit.MILLISECONDS.toNanos(((Number) responseTimeout).longValue()) : 0;
+        stream.readTimeout = TimeUnit.SECONDS.toNanos(BootstrapConfiguration.getInstance().getSocketTimeout());
+        scheduleStreamTimer(streamId, stream, stream.responseDeadline != 0 ?
+                Math.min(firstByteDeadline, stream.responseDeadline) : firstByteDeadline);
+    }
+
+    /**
+     * Decorate the listener which aggregates the responses, so that the frames of a response are recorded as they
+     * are read.
+     *
+     * @param listener listener which aggregates the frames of a response
+     * @return listener which records the frames before handing them over
+     */
+    Http2FrameListener recordReads(Http2FrameListener listener) {
+        return new Http2FrameListenerDecorator(listener) {
+            @Override
+            public int onDataRead(ChannelHandlerContext ctx, int streamId, ByteBuf data, int padding,
+                                  boolean endOfStream) throws Http2Exception {
+                onStreamRead(streamId);
+                return super.onDataRead(ctx, streamId, data, padding, endOfStream);
+            }
+
+            @Override
+            public void onHeadersRead(ChannelHandlerContext ctx, int streamId, Http2Headers headers, int padding,
+                                      boolean endOfStream) throws Http2Exception {
+                onStreamRead(streamId);
+                super.onHeadersRead(ctx, streamId, headers, padding, endOfStream);
+            }
+
+            @Override
+            public void onHeadersRead(ChannelHandlerContext ctx, int streamId, Http2Headers headers,
+                                      int streamDependency, short weight, boolean exclusive, int padding,
+                                      boolean endOfStream) throws Http2Exception {
+                onStreamRead(streamId);
+                super.onHeadersRead(ctx, streamId, headers, streamDependency, weight, exclusive, padding,
+                        endOfStream);
+            }
+        };
+    }
+
+    // Frames of the body only update the time of the latest read, which is checked once the timer expires
+    private void onStreamRead(int streamId) {
+        OutboundStream stream = inFlightStreams.get(streamId);
+        if (stream == null) {
+            return;
+        }
+        stream.lastReadTime = System.nanoTime();
+        if (!stream.responseReceived) {
+            stream.responseReceived = true;
+            stream.cancelTimer();
+            scheduleResponseTimer(streamId, stream);
+        }
+    }
+
+    private void scheduleStreamTimer(int streamId, OutboundStream stream, long deadline) {
+        stream.timer = targetChannel.getChannel().eventLoop().schedule(() -> streamTimedOut(streamId, stream),
+                deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    private void scheduleResponseTimer(int streamId, OutboundStream stream) {
+        if (stream.readTimeout <= 0) {
+            if (stream.responseDeadline != 0) {
+                scheduleStreamTimer(streamId, stream, stream.responseDeadline);
+            }
+            return;
+        }
+        long deadline = stream.lastReadTime + stream.readTimeout;
+        scheduleStreamTimer(streamId, stream, stream.responseDeadline != 0 ?
+                Math.min(deadline, stream.responseDeadline) : deadline);
+    }
+
+    private void streamTimedOut(int streamId, OutboundStream stream) {
+        stream.timer = null;
+        if (inFlightStreams.get(streamId) != stream) {
+            return;
+        }
+        if (stream.responseReceived) {
+            long now = System.nanoTime();
+            boolean deadlineExpired = stream.responseDeadline != 0 && now - stream.responseDeadline >= 0;
+            if (!deadlineExpired && (stream.readTimeout <= 0 || now - stream.lastReadTime < stream.readTimeout)) {
+                scheduleResponseTimer(streamId, stream);
+                return;
+            }
+        }
+        // Stream is failed before it is reset, hence its closure does not fail it once more
+        failStream(streamId, "Response of stream " + streamId + " from " + targetChannel.getHttpRoute()
+                + " is not received within the deadline");
+        targetChannel.cancelStream(streamId);
+    }
+
+    void failStream(int streamId, String errorMsg) {
+        OutboundStream outboundStream = inFlightStreams.remove(streamId);
+        if (outboundStream != null) {
+            outboundStream.cancelTimer();
+            targetChannel.releaseStream();
+            failRequest(outboundStream.incomingMsg, outboundStream.callback, errorMsg);
+        }
+    }
+
+    void failRequest(CarbonMessage incomingMsg, CarbonCallback callback, String errorMsg) {
+        log.error(errorMsg);
+        MessagingException messagingException = new MessagingException(errorMsg, 101503);
+        incomingMsg.setMessagingException(messagingException);
+        callback.done(incomingMsg);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        targetChannel.markFailed(new ClosedChannelException());
+        List<Integer> streamIds = new ArrayList<>(inFlightStreams.keySet());
+        for (Integer streamId : streamIds) {
+            failStream(streamId, "Connection to " + targetChannel.getHttpRoute() + " closed while waiting for the "
+                    + "response of stream " + streamId);
+        }
+        if (HTTPTransportContextHolder.getInstance().getHandlerExecutor() != null) {
+            HTTPTransportContextHolder.getInstance().getHandlerExecutor()
+                    .executeAtTargetConnectionTermination(Integer.toString(ctx.hashCode()));
+        }
+        log.debug("HTTP/2 target channel closed.");
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        log.error("Error occurred in HTTP/2 connection to " + targetChannel.getHttpRoute(), cause);
+        targetChannel.markFailed(cause);
+        ctx.close();
+    }
+
+    /**
+     * Request state of an active stream.
+     */
+    private static class OutboundStream {
+        private final CarbonMessage incomingMsg;
+        private final CarbonCallback callback;
+        private ScheduledFuture<?> timer;
+        private boolean responseReceived;
+        private long responseDeadline;
+        private long readTimeout;
+        private long lastReadTime;
+
+        private OutboundStream(CarbonMessage incomingMsg, CarbonCallback callback) {
+            this.incomingMsg = incomingMsg;
+            this.callback = callback;
+        }
+
+        private void cancelTimer() {
+            if (timer != null) {
+                timer.cancel(false);
+                timer = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.transport.http.netty.drain;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http2.Http2ConnectionHandlerBuilder;
+import io.netty.handler.codec.http2.Http2FrameAdapter;
+import io.netty.handler.codec.http2.Http2FrameTypes;
+import org.testng.annotations.Test;
+import org.wso2.carbon.transport.http.netty.config.ListenerConfiguration;
+import org.wso2.carbon.transport.http.netty.listener.ConnectionDrainer;
+import org.wso2.carbon.transport.http.netty.listener.SourceHandler;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests the graceful close of the source connections of a listener by the {@link ConnectionDrainer}, using embedded
+ * channels for the connections.
+ */
+public class ConnectionDrainerTestCase {
+
+    private static final long DRAIN_TIMEOUT = 60000;
+
+    @Test
+    public void drainWithoutConnectionsTestCase() {
+        ConnectionDrainer connectionDrainer = new ConnectionDrainer("drain-test");
+        assertFalse(connectionDrainer.isDraining());
+        assertEquals(0, connectionDrainer.getRemainingTime());
+
+        CompletableFuture<Void> drainFuture = connectionDrainer.drain(DRAIN_TIMEOUT);
+        assertTrue(connectionDrainer.isDraining());
+        assertTrue("Drain of a listener without connections is not completed", drainFuture.isDone());
+        assertSame(drainFuture, connectionDrainer.drain(DRAIN_TIMEOUT));
+        assertTrue(connectionDrainer.getRemainingTime() > 0);
+
+        // Connection accepted while the listener is draining is closed right away
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        connectionDrainer.add(channel);
+        channel.runPendingTasks();
+        assertFalse(channel.isOpen());
+        assertEquals(0, connectionDrainer.getConnectionCount());
+    }
+
+    @Test
+    public void drainTestCase() throws Exception {
+        ConnectionDrainer connectionDrainer = new ConnectionDrainer("drain-test");
+        // Connection on which the protocol is not negotiated yet
+        EmbeddedChannel negotiatingChannel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        // HTTP/1.1 connection without a request in flight
+        SourceHandler sourceHandler = new SourceHandler(ConnectionManager.getInstance(new HashMap<>()),
+                new ListenerConfiguration("drain-test", "localhost", 8080));
+        EmbeddedChannel http1Channel = new EmbeddedChannel(sourceHandler);
+        // HTTP/2 connection without an active stream
+        EmbeddedChannel http2Channel = new EmbeddedChannel(new Http2ConnectionHandlerBuilder()
+                .frameListener(new Http2FrameAdapter()).build());
+        http2Channel.releaseOutbound();
+
+        connectionDrainer.add(negotiatingChannel);
+        connectionDrainer.add(http1Channel);
+        connectionDrainer.add(http2Channel);
+        assertEquals(3, connectionDrainer.getConnectionCount());
+        assertEquals(0, connectionDrainer.getInFlightRequestCount());
+
+        CompletableFuture<Void> drainFuture = connectionDrainer.drain(DRAIN_TIMEOUT);
+        assertFalse(drainFuture.isDone());
+
+        // Connections are drained from their own event loops
+        negotiatingChannel.runPendingTasks();
+        assertFalse(negotiatingChannel.isOpen());
+
+        http1Channel.runPendingTasks();
+        assertTrue(sourceHandler.isDraining());
+        assertFalse("Idle HTTP/1.1 connection is not closed", http1Channel.isOpen());
+        assertFalse(drainFuture.isDone());
+
+        http2Channel.runPendingTasks();
+        assertTrue("GOAWAY is not sent to the HTTP/2 connection",
+                readFrameTypes(http2Channel).contains((int) Http2FrameTypes.GO_AWAY));
+        assertFalse("Idle HTTP/2 connection is not closed", http2Channel.isOpen());
+
+        assertTrue("Drain is not completed once all connections are closed", drainFuture.isDone());
+        assertEquals(0, connectionDrainer.getConnectionCount());
+
+        negotiatingChannel.finishAndReleaseAll();
+        http1Channel.finishAndReleaseAll();
+        http2Channel.finishAndReleaseAll();
+    }
+
+    /**
+     * Read the types of the HTTP/2 frames written to the given channel.
+     */
+    private static List<Integer> readFrameTypes(EmbeddedChannel channel) {
+        ByteBuf frames = Unpooled.buffer();
+        for (Object msg = channel.readOutbound(); msg != null; msg = channel.readOutbound()) {
+            ByteBuf buf = (ByteBuf) msg;
+            frames.writeBytes(buf);
+            buf.release();
+        }
+        List<Integer> frameTypes = new ArrayList<>();
+        while (frames.readableBytes() >= 9) {
+            int payloadLength = frames.readUnsignedMedium();
+            frameTypes.add((int) frames.readByte());
+            frames.skipBytes(5 + payloadLength);
+        }
+        frames.release();
+        return frameTypes;
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.transport.http.netty.http2;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.Http2ConnectionHandler;
+import io.netty.handler.codec.http2.Http2ConnectionHandlerBuilder;
+import io.netty.handler.codec.http2.Http2Error;
+import io.netty.handler.codec.http2.Http2Exception;
+import io.netty.handler.codec.http2.Http2FrameAdapter;
+import io.netty.handler.codec.http2.Http2Headers;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.messaging.CarbonCallback;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.CarbonMessageProcessor;
+import org.wso2.carbon.messaging.ClientConnector;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
+import org.wso2.carbon.messaging.TransportSender;
+import org.wso2.carbon.transport.http.netty.config.ListenerConfiguration;
+import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
+import org.wso2.carbon.transport.http.netty.listener.http2.HTTP2SourceHandlerBuilder;
+import org.wso2.carbon.transport.http.netty.listener.limiter.AdaptiveConcurrencyLimiter;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
+import org.wso2.carbon.transport.http.netty.util.TestUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests that the streams of an HTTP/2 connection are admitted through the concurrency limiter of the listener, and
+ * that a stream gives its permit back once its response is completed or it is reset.
+ */
+public class HTTP2StreamAdmissionTestCase {
+
+    private static final String LISTENER_ID = "http2-admission";
+    private static final int RETRY_AFTER = 5;
+    private static final long WAIT_TIME = 5;
+
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private CarbonMessageProcessor previousMessageProcessor;
+    private EventLoopGroup group;
+    private Channel serverChannel;
+    private Channel clientChannel;
+    private Http2ConnectionHandler clientHandler;
+    private final BlockingQueue<CarbonCallback> dispatchedCallbacks = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Integer> respondedStreams = new LinkedBlockingQueue<>();
+    private final Map<Integer, Http2Headers> responseHeaders = new ConcurrentHashMap<>();
+
+    @BeforeClass
+    public void setup() throws Exception {
+        concurrencyLimiter = new AdaptiveConcurrencyLimiter(1, 1, 1, RETRY_AFTER);
+        HTTPTransportContextHolder.getInstance().setConcurrencyLimiter(LISTENER_ID, concurrencyLimiter);
+        previousMessageProcessor = HTTPTransportContextHolder.getInstance().getMessageProcessor();
+        HTTPTransportContextHolder.getInstance().setMessageProcessor(new CallbackRecordingProcessor());
+
+        ListenerConfiguration listenerConfiguration = new ListenerConfiguration(LISTENER_ID, TestUtil.TEST_HOST, 0);
+        group = new NioEventLoopGroup(1);
+        serverChannel = new ServerBootstrap()
+                .group(group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) throws Exception {
+                        ch.pipeline().addLast(new HTTP2SourceHandlerBuilder(
+                                ConnectionManager.getInstance(new HashMap<>()), listenerConfiguration).build());
+                    }
+                })
+                .bind(TestUtil.TEST_HOST, 0)
+                .sync().channel();
+
+        clientHandler = new Http2ConnectionHandlerBuilder().server(false).frameListener(new Http2FrameAdapter() {
+            @Override
+            public void onHeadersRead(ChannelHandlerContext ctx, int streamId, Http2Headers headers, int padding,
+                                      boolean endOfStream) throws Http2Exception {
+                responseHeaders.put(streamId, headers);
+                respondedStreams.add(streamId);
+            }
+
+            @Override
+            public void onHeadersRead(ChannelHandlerContext ctx, int streamId, Http2Headers headers,
+                                      int streamDependency, short weight, boolean exclusive, int padding,
+                                      boolean endOfStream) throws Http2Exception {
+                onHeadersRead(ctx, streamId, headers, padding, endOfStream);
+            }
+        }).build();
+        clientChannel = new Bootstrap()
+                .group(group)
+                .channel(NioSocketChannel.class)
+                .handler(clientHandler)
+                .connect(serverChannel.localAddress())
+                .sync().channel();
+    }
+
+    @Test
+    public void concurrencyLimitTestCase() throws Exception {
+        int firstStream = sendRequest(true);
+        CarbonCallback firstCallback = dispatchedCallbacks.poll(WAIT_TIME, TimeUnit.SECONDS);
+        assertNotNull("Stream within the concurrency limit is not dispatched", firstCallback);
+
+        int rejectedStream = sendRequest(true);
+        assertEquals(rejectedStream, awaitResponse());
+        Http2Headers rejection = responseHeaders.get(rejectedStream);
+        assertEquals("503", rejection.status().toString());
+        assertEquals(Integer.toString(RETRY_AFTER), rejection.get(HttpHeaderNames.RETRY_AFTER).toString());
+        assertTrue("Rejected stream is dispatched", dispatchedCallbacks.isEmpty());
+
+        firstCallback.done(createResponse());
+        assertEquals(firstStream, awaitResponse());
+        assertEquals("200", responseHeaders.get(firstStream).status().toString());
+
+        int thirdStream = sendRequest(true);
+        CarbonCallback thirdCallback = dispatchedCallbacks.poll(WAIT_TIME, TimeUnit.SECONDS);
+        assertNotNull("Permit of the completed stream is not released", thirdCallback);
+        thirdCallback.done(createResponse());
+        assertEquals(thirdStream, awaitResponse());
+        assertEquals(0, concurrencyLimiter.getInFlight());
+    }
+
+    @Test(dependsOnMethods = "concurrencyLimitTestCase")
+    public void resetStreamTestCase() throws Exception {
+        int resetStream = sendRequest(false);
+        assertNotNull(dispatchedCallbacks.poll(WAIT_TIME, TimeUnit.SECONDS));
+        clientChannel.eventLoop().submit(() -> {
+            ChannelHandlerContext ctx = clientChannel.pipeline().context(clientHandler);
+            clientHandler.encoder().writeRstStream(ctx, resetStream, Http2Error.CANCEL.code(), ctx.newPromise());
+            clientHandler.flush(ctx);
+            return null;
+        }).sync();
+
+        sendRequest(true);
+        CarbonCallback callback = dispatchedCallbacks.poll(WAIT_TIME, TimeUnit.SECONDS);
+        assertNotNull("Permit of the reset stream is not released", callback);
+        callback.done(createResponse());
+        awaitResponse();
+    }
+
+    @AfterClass
+    public void cleanUp() throws Exception {
+        HTTPTransportContextHolder.getInstance().removeConcurrencyLimiter(LISTENER_ID);
+        HTTPTransportContextHolder.getInstance().setMessageProcessor(previousMessageProcessor);
+        if (clientChannel != null) {
+            clientChannel.close().sync();
+        }
+        if (serverChannel != null) {
+            serverChannel.close().sync();
+        }
+        if (group != null) {
+            group.shutdownGracefully();
+        }
+    }
+
+    /**
+     * Open a new stream with the headers of a GET request.
+     *
+     * @param endOfStream whether the headers end the stream
+     * @return id of the stream
+     */
+    private int sendRequest(boolean endOfStream) throws Exception {
+        return clientChannel.eventLoop().submit(() -> {
+            ChannelHandlerContext ctx = clientChannel.pipeline().context(clientHandler);
+            int streamId = clientHandler.connection().local().incrementAndGetNextStreamId();
+            Http2Headers headers = new DefaultHttp2Headers().method("GET").path("/").scheme("http")
+                    .authority(TestUtil.TEST_HOST);
+            clientHandler.encoder().writeHeaders(ctx, streamId, headers, 0, endOfStream, ctx.newPromise());
+            clientHandler.flush(ctx);
+            return streamId;
+        }).get();
+    }
+
+    private int awaitResponse() throws InterruptedException {
+        Integer streamId = respondedStreams.poll(WAIT_TIME, TimeUnit.SECONDS);
+        assertNotNull("Response is not received", streamId);
+        return streamId;
+    }
+
+    private static CarbonMessage createResponse() {
+        DefaultCarbonMessage response = new DefaultCarbonMessage();
+        response.addMessageBody(ByteBuffer.wrap("OK".getBytes(StandardCharsets.UTF_8)));
+        response.setEndOfMsgAdded(true);
+        return response;
+    }
+
+    /**
+     * Records the callbacks of the dispatched requests, which are answered by the tests.
+     */
+    private class CallbackRecordingProcessor implements CarbonMessageProcessor {
+
+        @Override
+        public boolean receive(CarbonMessage carbonMessage, CarbonCallback carbonCallback) throws Exception {
+            dispatchedCallbacks.add(carbonCallback);
+            return true;
+        }
+
+        @Override
+        public void setTransportSender(TransportSender transportSender) {
+        }
+
+        @Override
+        public void setClientConnector(ClientConnector clientConnector) {
+        }
+
+        @Override
+        public String getId() {
+            return "http2-admission-processor";
+        }
+    }
+}
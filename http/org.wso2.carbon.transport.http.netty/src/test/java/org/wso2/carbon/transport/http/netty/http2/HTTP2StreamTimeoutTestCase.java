@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.transport.http.netty.http2;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.Http2ConnectionHandlerBuilder;
+import io.netty.handler.codec.http2.Http2Error;
+import io.netty.handler.codec.http2.Http2FrameAdapter;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
+import org.wso2.carbon.transport.http.netty.common.Constants;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+import org.wso2.carbon.transport.http.netty.config.SenderConfiguration;
+import org.wso2.carbon.transport.http.netty.sender.channel.BootstrapConfiguration;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
+import org.wso2.carbon.transport.http.netty.sender.http2.HTTP2ConnectionManager;
+import org.wso2.carbon.transport.http.netty.util.TestUtil;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests that a stream of the HTTP/2 sender whose backend never answers is failed and cancelled once its deadline
+ * expires.
+ */
+public class HTTP2StreamTimeoutTestCase {
+
+    private static final long REQUEST_TIMEOUT = 200;
+    private static final long WAIT_TIME = 5;
+
+    private EventLoopGroup backendGroup;
+    private Channel backendChannel;
+    private HTTP2ConnectionManager http2ConnectionManager;
+    private final CountDownLatch streamReset = new CountDownLatch(1);
+    private final AtomicLong resetErrorCode = new AtomicLong(-1);
+
+    @BeforeClass
+    public void setup() throws Exception {
+        if (BootstrapConfiguration.getInstance() == null) {
+            BootstrapConfiguration.createBootStrapConfiguration(new HashMap<>());
+        }
+        SenderConfiguration senderConfiguration = new SenderConfiguration("http2-sender");
+        senderConfiguration.setHttp2(true);
+        http2ConnectionManager = new HTTP2ConnectionManager(senderConfiguration,
+                ConnectionManager.getInstance(new HashMap<>()));
+
+        // Backend which accepts the streams and never answers them
+        backendGroup = new NioEventLoopGroup(1);
+        backendChannel = new ServerBootstrap()
+                .group(backendGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) throws Exception {
+                        ch.pipeline().addLast(new Http2ConnectionHandlerBuilder()
+                                .frameListener(new Http2FrameAdapter() {
+                                    @Override
+                                    public void onRstStreamRead(ChannelHandlerContext ctx, int streamId,
+                                                                long errorCode) {
+                                        resetErrorCode.set(errorCode);
+                                        streamReset.countDown();
+                                    }
+                                })
+                                .build());
+                    }
+                })
+                .bind(TestUtil.TEST_HOST, 0)
+                .sync().channel();
+    }
+
+    @Test
+    public void streamDeadlineTestCase() throws Exception {
+        HttpRoute route = new HttpRoute(TestUtil.TEST_HOST,
+                ((InetSocketAddress) backendChannel.localAddress()).getPort());
+        HttpRequest httpRequest = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
+        httpRequest.headers().set(HttpHeaderNames.HOST, route.getHost());
+        DefaultCarbonMessage request = new DefaultCarbonMessage();
+        request.setProperty(Constants.REQUEST_TIMEOUT, REQUEST_TIMEOUT);
+        request.setEndOfMsgAdded(true);
+
+        CountDownLatch latch = new CountDownLatch(1);
+        CarbonMessage[] response = new CarbonMessage[1];
+        http2ConnectionManager.send(route, null, httpRequest, request, responseMessage -> {
+            response[0] = responseMessage;
+            latch.countDown();
+        });
+
+        assertTrue("Stream is not failed once its deadline expires", latch.await(WAIT_TIME, TimeUnit.SECONDS));
+        assertNotNull(response[0].getMessagingException());
+        assertTrue("Stream is not reset", streamReset.await(WAIT_TIME, TimeUnit.SECONDS));
+        assertEquals(Http2Error.CANCEL.code(), resetErrorCode.get());
+    }
+
+    @AfterClass
+    public void cleanUp() throws Exception {
+        if (http2ConnectionManager != null) {
+            http2ConnectionManager.close();
+        }
+        if (backendChannel != null) {
+            backendChannel.close().sync();
+        }
+        if (backendGroup != null) {
+            backendGroup.shutdownGracefully();
+        }
+    }
+}
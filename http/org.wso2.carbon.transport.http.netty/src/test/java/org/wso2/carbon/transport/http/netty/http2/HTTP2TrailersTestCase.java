@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.transport.http.netty.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http2.Http2ConnectionHandler;
+import io.netty.handler.codec.http2.Http2ConnectionHandlerBuilder;
+import io.netty.handler.codec.http2.Http2Exception;
+import io.netty.handler.codec.http2.Http2FrameAdapter;
+import io.netty.handler.codec.http2.Http2Headers;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
+import org.wso2.carbon.transport.http.netty.common.Constants;
+import org.wso2.carbon.transport.http.netty.config.ListenerConfiguration;
+import org.wso2.carbon.transport.http.netty.listener.http2.HTTP2ResponseCallback;
+import org.wso2.carbon.transport.http.netty.listener.http2.HTTP2SourceHandler;
+import org.wso2.carbon.transport.http.netty.listener.http2.HTTP2SourceHandlerBuilder;
+import org.wso2.carbon.transport.http.netty.message.HTTPCarbonMessage;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests the trailers of the HTTP/2 responses written by the {@link HTTP2ResponseCallback}. The frames written by the
+ * source handler are decoded by a client connection handler, both on embedded channels.
+ */
+public class HTTP2TrailersTestCase {
+
+    private static final int STREAM_ID = 1;
+    private static final String GRPC_STATUS = "grpc-status";
+    private static final String GRPC_MESSAGE = "grpc-message";
+
+    private EmbeddedChannel serverChannel;
+    private EmbeddedChannel clientChannel;
+    private ResponseListener responseListener;
+
+    @BeforeMethod
+    public void setup() throws Exception {
+        HTTP2SourceHandler sourceHandler = new HTTP2SourceHandlerBuilder(
+                ConnectionManager.getInstance(new HashMap<>()),
+                new ListenerConfiguration("http2-trailers", "localhost", 8080)).build();
+        serverChannel = new EmbeddedChannel(sourceHandler);
+        // Request of the stream is fully received, hence only the response is left
+        sourceHandler.connection().remote().createStream(STREAM_ID, true);
+
+        responseListener = new ResponseListener();
+        Http2ConnectionHandler clientHandler = new Http2ConnectionHandlerBuilder().server(false)
+                .frameListener(responseListener).build();
+        clientChannel = new EmbeddedChannel(clientHandler);
+        clientHandler.connection().local().createStream(STREAM_ID, true);
+    }
+
+    @Test
+    public void trailersPropertyTestCase() throws Exception {
+        DefaultCarbonMessage response = new DefaultCarbonMessage();
+        response.setHeader(Constants.HTTP_CONTENT_TYPE, Constants.GRPC_CONTENT_TYPE);
+        response.addMessageBody(ByteBuffer.wrap("grpc response".getBytes(StandardCharsets.UTF_8)));
+        Map<String, String> trailers = new HashMap<>();
+        trailers.put(GRPC_STATUS, "0");
+        trailers.put(GRPC_MESSAGE, "OK");
+        response.setProperty(Constants.HTTP_TRAILER_HEADERS, trailers);
+        response.setEndOfMsgAdded(true);
+
+        respond(response);
+
+        assertEquals(2, responseListener.headers.size());
+        Http2Headers headers = responseListener.headers.get(0);
+        assertEquals("200", headers.status().toString());
+        assertEquals(Constants.GRPC_CONTENT_TYPE, headers.get("content-type").toString());
+        assertNull("gRPC response is held back to find out its length", headers.get("content-length"));
+        assertEquals("grpc response", responseListener.data.toString());
+
+        Http2Headers trailerHeaders = responseListener.headers.get(1);
+        assertEquals("0", trailerHeaders.get(GRPC_STATUS).toString());
+        assertEquals("OK", trailerHeaders.get(GRPC_MESSAGE).toString());
+        assertTrue("Stream is not ended by the trailers", responseListener.endOfStream);
+        assertFalse("Stream is ended by a DATA frame before the trailers", responseListener.dataEndOfStream);
+    }
+
+    @Test
+    public void trailingHeadersTestCase() throws Exception {
+        HTTPCarbonMessage response = new HTTPCarbonMessage();
+        response.setHeader(Constants.HTTP_CONTENT_TYPE, Constants.GRPC_CONTENT_TYPE);
+        response.addHttpContent(new DefaultHttpContent(Unpooled.copiedBuffer("grpc ", StandardCharsets.UTF_8)));
+        LastHttpContent lastContent = new DefaultLastHttpContent(
+                Unpooled.copiedBuffer("response", StandardCharsets.UTF_8));
+        lastContent.trailingHeaders().add(GRPC_STATUS, "13");
+        lastContent.trailingHeaders().add(GRPC_MESSAGE, "Internal error");
+        response.addHttpContent(lastContent);
+        // Trailers set on the response take precedence over the trailing headers of its last content
+        Map<String, String> trailers = new HashMap<>();
+        trailers.put(GRPC_STATUS, "2");
+        response.setProperty(Constants.HTTP_TRAILER_HEADERS, trailers);
+        response.setEndOfMsgAdded(true);
+
+        respond(response);
+
+        assertEquals(2, responseListener.headers.size());
+        assertEquals("grpc response", responseListener.data.toString());
+        Http2Headers trailerHeaders = responseListener.headers.get(1);
+        assertEquals("2", trailerHeaders.get(GRPC_STATUS).toString());
+        assertEquals("Internal error", trailerHeaders.get(GRPC_MESSAGE).toString());
+        assertTrue(responseListener.endOfStream);
+        assertFalse(responseListener.dataEndOfStream);
+    }
+
+    @Test
+    public void withoutTrailersTestCase() throws Exception {
+        DefaultCarbonMessage response = new DefaultCarbonMessage();
+        response.setHeader(Constants.HTTP_CONTENT_TYPE, Constants.TEXT_PLAIN);
+        response.addMessageBody(ByteBuffer.wrap("plain response".getBytes(StandardCharsets.UTF_8)));
+        response.setEndOfMsgAdded(true);
+
+        respond(response);
+
+        assertEquals("Trailers are sent for a response without them", 1, responseListener.headers.size());
+        assertEquals("plain response", responseListener.data.toString());
+        assertTrue("Stream is not ended by the last DATA frame", responseListener.dataEndOfStream);
+    }
+
+    @AfterMethod
+    public void cleanUp() {
+        serverChannel.finishAndReleaseAll();
+        clientChannel.finishAndReleaseAll();
+    }
+
+    /**
+     * Write the response on the stream and hand over the frames written by the server to the client.
+     */
+    private void respond(CarbonMessage response) {
+        HTTP2ResponseCallback responseCallback = new HTTP2ResponseCallback(
+                serverChannel.pipeline().context(HTTP2SourceHandler.class), STREAM_ID);
+        responseCallback.done(response);
+        serverChannel.runPendingTasks();
+        for (Object msg = serverChannel.readOutbound(); msg != null; msg = serverChannel.readOutbound()) {
+            clientChannel.writeInbound(msg);
+        }
+        assertTrue("Client rejected the frames of the response", clientChannel.isOpen());
+    }
+
+    /**
+     * Collects the frames of the response received by the client.
+     */
+    private static class ResponseListener extends Http2FrameAdapter {
+
+        private final List<Http2Headers> headers = new ArrayList<>();
+        private final StringBuilder data = new StringBuilder();
+        private boolean dataEndOfStream;
+        private boolean endOfStream;
+
+        @Override
+        public int onDataRead(ChannelHandlerContext ctx, int streamId, ByteBuf data, int padding,
+                              boolean endOfStream) throws Http2Exception {
+            this.data.append(data.toString(StandardCharsets.UTF_8));
+            this.dataEndOfStream = endOfStream;
+            this.endOfStream = endOfStream;
+            return data.readableBytes() + padding;
+        }
+
+        @Override
+        public void onHeadersRead(ChannelHandlerContext ctx, int streamId, Http2Headers headers, int padding,
+                                  boolean endOfStream) throws Http2Exception {
+            this.headers.add(headers);
+            this.endOfStream = endOfStream;
+        }
+
+        @Override
+        public void onHeadersRead(ChannelHandlerContext ctx, int streamId, Http2Headers headers,
+                                  int streamDependency, short weight, boolean exclusive, int padding,
+                                  boolean endOfStream) throws Http2Exception {
+            onHeadersRead(ctx, streamId, headers, padding, endOfStream);
+        }
+    }
+}
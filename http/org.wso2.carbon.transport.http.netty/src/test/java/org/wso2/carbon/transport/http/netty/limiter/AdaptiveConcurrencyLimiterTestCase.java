@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.transport.http.netty.limiter;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.testng.annotations.Test;
+import org.wso2.carbon.transport.http.netty.listener.limiter.AdaptiveConcurrencyLimiter;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests the admission of requests by the {@link AdaptiveConcurrencyLimiter} and the adaptation of its limit to the
+ * latency of the admitted requests.
+ */
+public class AdaptiveConcurrencyLimiterTestCase {
+
+    private static final long LOW_LATENCY = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long HIGH_LATENCY = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    public void admissionTestCase() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 5);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse("Request beyond the limit is admitted", limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(2, limiter.getAcceptedCount());
+        assertEquals(1, limiter.getRejectedCount());
+
+        limiter.release(LOW_LATENCY);
+        assertEquals(1, limiter.getInFlight());
+        assertTrue("Request is not admitted after a release", limiter.tryAcquire());
+
+        assertEquals(HttpResponseStatus.SERVICE_UNAVAILABLE, limiter.getRejectionResponse().status());
+        assertEquals("5", limiter.getRejectionResponse().headers().get(HttpHeaderNames.RETRY_AFTER));
+    }
+
+    @Test
+    public void limitAdaptationTestCase() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 2, 50, 1);
+
+        for (int i = 0; i < 20; i++) {
+            saturate(limiter, LOW_LATENCY);
+        }
+        int grownLimit = limiter.getLimit();
+        assertEquals("Limit does not grow up to the maximum under a steady latency", 50, grownLimit);
+
+        for (int i = 0; i < 20; i++) {
+            saturate(limiter, HIGH_LATENCY);
+        }
+        assertTrue("Limit does not shrink when the latency goes up: " + limiter.getLimit(),
+                limiter.getLimit() < grownLimit / 2);
+        assertTrue("Limit shrinks below the minimum", limiter.getLimit() >= 2);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void underusedLimitTestCase() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 50, 1);
+
+        // A single request at a time uses less than half of the limit, hence the limit is left as it is
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.release(LOW_LATENCY);
+        }
+        assertEquals(10, limiter.getLimit());
+    }
+
+    /**
+     * Admit as many requests as the limit allows and complete all of them with the given latency.
+     */
+    private static void saturate(AdaptiveConcurrencyLimiter limiter, long latency) {
+        int admitted = 0;
+        while (limiter.tryAcquire()) {
+            admitted++;
+        }
+        for (int i = 0; i < admitted; i++) {
+            limiter.release(latency);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.transport.http.netty.limiter;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpRequestDecoder;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2ConnectionHandlerBuilder;
+import io.netty.handler.codec.http2.Http2FrameAdapter;
+import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.AsciiString;
+import org.testng.annotations.Test;
+import org.wso2.carbon.transport.http.netty.config.ListenerConfiguration;
+import org.wso2.carbon.transport.http.netty.listener.http2.HTTP2PrefaceDetector;
+import org.wso2.carbon.transport.http.netty.listener.http2.HTTP2SourceHandler;
+import org.wso2.carbon.transport.http.netty.listener.limiter.ConnectionLimitHandler;
+import org.wso2.carbon.transport.http.netty.listener.limiter.ConnectionLimiter;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests the limits applied by the {@link ConnectionLimitHandler} on the lifetime of a source connection, using
+ * embedded channels which are laid out the same way as the pipelines of a listener.
+ */
+public class ConnectionLimitHandlerTestCase {
+
+    private static final int HEADER_READ_TIMEOUT = 200;
+    private static final String PARTIAL_REQUEST = "GET /orders HTTP/1.1\r\nHost: localhost\r\n";
+    private static final String UPGRADE_REQUEST = "GET / HTTP/1.1\r\n"
+            + "Host: localhost\r\n"
+            + "Connection: Upgrade, HTTP2-Settings\r\n"
+            + "Upgrade: h2c\r\n"
+            + "HTTP2-Settings: AAMAAABkAAQAAP__\r\n"
+            + "\r\n";
+
+    @Test
+    public void headerReadTimeoutTestCase() throws Exception {
+        ConnectionLimiter connectionLimiter = newConnectionLimiter(0);
+        ConnectionLimitHandler connectionLimitHandler = new ConnectionLimitHandler(connectionLimiter);
+        EmbeddedChannel channel = new EmbeddedChannel(connectionLimitHandler, new HttpRequestDecoder(),
+                connectionLimitHandler.getRequestHandler());
+        assertEquals(1, connectionLimiter.getConnectionCount());
+
+        channel.writeInbound(Unpooled.copiedBuffer(PARTIAL_REQUEST, StandardCharsets.US_ASCII));
+        awaitHeaderReadTimeout(channel);
+
+        assertFalse("Connection with incomplete headers is not closed", channel.isOpen());
+        assertEquals(1, connectionLimiter.getHeaderTimeoutClosedCount());
+        // Connection is released once the channel inactive event queued by the close is run
+        channel.runPendingTasks();
+        assertEquals(0, connectionLimiter.getConnectionCount());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void headersReadInTimeTestCase() throws Exception {
+        ConnectionLimiter connectionLimiter = newConnectionLimiter(0);
+        ConnectionLimitHandler connectionLimitHandler = new ConnectionLimitHandler(connectionLimiter);
+        EmbeddedChannel channel = new EmbeddedChannel(connectionLimitHandler, new HttpRequestDecoder(),
+                connectionLimitHandler.getRequestHandler());
+
+        channel.writeInbound(Unpooled.copiedBuffer(PARTIAL_REQUEST, StandardCharsets.US_ASCII));
+        channel.writeInbound(Unpooled.copiedBuffer("\r\n", StandardCharsets.US_ASCII));
+        assertTrue(channel.readInbound() instanceof HttpRequest);
+        awaitHeaderReadTimeout(channel);
+
+        assertTrue("Connection is closed after the headers are read", channel.isOpen());
+        assertEquals(0, connectionLimiter.getHeaderTimeoutClosedCount());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void h2cUpgradeTestCase() throws Exception {
+        ConnectionLimiter connectionLimiter = newConnectionLimiter(0);
+        ConnectionLimitHandler connectionLimitHandler = new ConnectionLimitHandler(connectionLimiter);
+        HttpServerCodec sourceCodec = new HttpServerCodec();
+        HttpServerUpgradeHandler.UpgradeCodecFactory upgradeCodecFactory = protocol -> {
+            if (AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME, protocol)) {
+                return new Http2ServerUpgradeCodec("http2-handler", new Http2ConnectionHandlerBuilder()
+                        .frameListener(new Http2FrameAdapter()).build());
+            }
+            return null;
+        };
+        EmbeddedChannel channel = new EmbeddedChannel(connectionLimitHandler);
+        channel.pipeline().addLast("encoder", sourceCodec);
+        channel.pipeline().addLast("http2-upgrade", new HttpServerUpgradeHandler(sourceCodec, upgradeCodecFactory));
+        channel.pipeline().addLast("request-limiter", connectionLimitHandler.getRequestHandler());
+
+        // Upgrade request is consumed by the upgrade handler, which hands over the connection to HTTP/2
+        channel.writeInbound(Unpooled.copiedBuffer(UPGRADE_REQUEST, StandardCharsets.US_ASCII));
+        channel.runPendingTasks();
+        assertTrue("Connection is not upgraded", channel.pipeline().get("http2-handler") != null);
+        assertNull("HTTP/1.x request limits are left on an HTTP/2 connection",
+                channel.pipeline().get("request-limiter"));
+
+        awaitHeaderReadTimeout(channel);
+        assertTrue("Upgraded connection is closed by the header read timeout", channel.isOpen());
+        assertEquals(0, connectionLimiter.getHeaderTimeoutClosedCount());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void priorKnowledgeTestCase() throws Exception {
+        ConnectionLimiter connectionLimiter = newConnectionLimiter(0);
+        EmbeddedChannel channel = newPriorKnowledgeChannel(connectionLimiter);
+
+        channel.writeInbound(Http2CodecUtil.connectionPrefaceBuf());
+        assertTrue("HTTP/2 handler is not added on the connection preface",
+                channel.pipeline().get("http2-handler") instanceof HTTP2SourceHandler);
+        assertNull(channel.pipeline().get("request-limiter"));
+
+        awaitHeaderReadTimeout(channel);
+        assertTrue("HTTP/2 connection is closed by the header read timeout", channel.isOpen());
+        assertEquals(0, connectionLimiter.getHeaderTimeoutClosedCount());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void priorKnowledgeFallbackTestCase() throws Exception {
+        ConnectionLimiter connectionLimiter = newConnectionLimiter(0);
+        EmbeddedChannel channel = newPriorKnowledgeChannel(connectionLimiter);
+
+        // Request limits are added while the first bytes are read, which still have to be timed
+        channel.writeInbound(Unpooled.copiedBuffer(PARTIAL_REQUEST, StandardCharsets.US_ASCII));
+        assertTrue(channel.pipeline().get("request-limiter") != null);
+
+        awaitHeaderReadTimeout(channel);
+        assertFalse("HTTP/1.1 connection with incomplete headers is not closed", channel.isOpen());
+        assertEquals(1, connectionLimiter.getHeaderTimeoutClosedCount());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void maxRequestsPerConnectionTestCase() throws Exception {
+        ConnectionLimiter connectionLimiter = newConnectionLimiter(2);
+        ConnectionLimitHandler connectionLimitHandler = new ConnectionLimitHandler(connectionLimiter);
+        EmbeddedChannel channel = new EmbeddedChannel(connectionLimitHandler,
+                connectionLimitHandler.getRequestHandler());
+
+        // Pipelined request beyond the maximum is dropped
+        for (int i = 0; i < 3; i++) {
+            channel.writeInbound(new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/" + i),
+                    LastHttpContent.EMPTY_LAST_CONTENT);
+        }
+        int requests = 0;
+        for (Object msg = channel.readInbound(); msg != null; msg = channel.readInbound()) {
+            if (msg instanceof HttpRequest) {
+                requests++;
+            }
+        }
+        assertEquals(2, requests);
+
+        HttpResponse firstResponse = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        channel.writeOutbound(firstResponse, LastHttpContent.EMPTY_LAST_CONTENT);
+        assertFalse(firstResponse.headers().contains(HttpHeaderNames.CONNECTION));
+        assertTrue(channel.isOpen());
+
+        HttpResponse lastResponse = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        channel.writeOutbound(lastResponse);
+        channel.runPendingTasks();
+        assertTrue(lastResponse.headers().contains(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE, true));
+        assertFalse("Connection is not closed after the last allowed response", channel.isOpen());
+        assertEquals(1, connectionLimiter.getMaxRequestsClosedCount());
+        assertEquals(0, connectionLimiter.getConnectionCount());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void idleTimeoutTestCase() throws Exception {
+        ConnectionLimiter connectionLimiter = newConnectionLimiter(0);
+        ConnectionLimitHandler connectionLimitHandler = new ConnectionLimitHandler(connectionLimiter);
+        EmbeddedChannel channel = new EmbeddedChannel(connectionLimitHandler,
+                connectionLimitHandler.getRequestHandler());
+
+        channel.writeInbound(new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/"),
+                LastHttpContent.EMPTY_LAST_CONTENT);
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.ALL_IDLE_STATE_EVENT);
+        assertTrue("Connection with a request in flight is closed when idle", channel.isOpen());
+
+        channel.writeOutbound(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.ALL_IDLE_STATE_EVENT);
+        channel.runPendingTasks();
+        assertFalse("Idle connection is not closed", channel.isOpen());
+        assertEquals(1, connectionLimiter.getIdleClosedCount());
+        channel.finishAndReleaseAll();
+    }
+
+    private static ConnectionLimiter newConnectionLimiter(int maxRequestsPerConnection) {
+        ListenerConfiguration listenerConfiguration = new ListenerConfiguration();
+        listenerConfiguration.setHeaderReadTimeout(HEADER_READ_TIMEOUT);
+        listenerConfiguration.setMaxRequestsPerConnection(maxRequestsPerConnection);
+        return new ConnectionLimiter(listenerConfiguration);
+    }
+
+    /**
+     * Create a channel which detects HTTP/2 with prior knowledge, falling back to HTTP/1.1 with request limits.
+     */
+    private static EmbeddedChannel newPriorKnowledgeChannel(ConnectionLimiter connectionLimiter) {
+        ConnectionLimitHandler connectionLimitHandler = new ConnectionLimitHandler(connectionLimiter);
+        ListenerConfiguration listenerConfiguration = new ListenerConfiguration();
+        listenerConfiguration.setHttp2(true);
+        listenerConfiguration.setHttp2PriorKnowledge(true);
+        return new EmbeddedChannel(connectionLimitHandler, new HTTP2PrefaceDetector(
+                ConnectionManager.getInstance(new HashMap<>()), listenerConfiguration, ctx -> {
+                    ctx.pipeline().addLast("decoder", new HttpRequestDecoder());
+                    ctx.pipeline().addLast("request-limiter", connectionLimitHandler.getRequestHandler());
+                }));
+    }
+
+    /**
+     * Wait past the header read timeout and run the timers which are due on the event loop of the channel.
+     */
+    private static void awaitHeaderReadTimeout(EmbeddedChannel channel) throws InterruptedException {
+        Thread.sleep(HEADER_READ_TIMEOUT * 2);
+        channel.runPendingTasks();
+    }
+}
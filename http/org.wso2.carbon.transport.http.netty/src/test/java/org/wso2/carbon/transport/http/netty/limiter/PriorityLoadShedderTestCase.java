@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.transport.http.netty.limiter;
+
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.transport.http.netty.config.ListenerConfiguration;
+import org.wso2.carbon.transport.http.netty.config.RequestClassConfiguration;
+import org.wso2.carbon.transport.http.netty.listener.limiter.PriorityLoadShedder;
+import org.wso2.carbon.transport.http.netty.listener.limiter.RequestClass;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests the classification, queuing and shedding of requests by the {@link PriorityLoadShedder}.
+ */
+public class PriorityLoadShedderTestCase {
+
+    private PriorityLoadShedder loadShedder;
+    private RequestClass critical;
+    private RequestClass internal;
+    private RequestClass batch;
+    private List<String> events;
+
+    @BeforeMethod
+    public void setup() {
+        RequestClassConfiguration criticalConfiguration = new RequestClassConfiguration("critical", 10);
+        criticalConfiguration.setPathPrefix("/critical");
+        criticalConfiguration.setMaxConcurrency(1);
+        criticalConfiguration.setMaxQueued(2);
+        RequestClassConfiguration internalConfiguration = new RequestClassConfiguration("internal", 5);
+        internalConfiguration.setHeader("X-Tier");
+        internalConfiguration.setHeaderValue("internal");
+        RequestClassConfiguration batchConfiguration = new RequestClassConfiguration("batch", 1);
+        batchConfiguration.setMaxConcurrency(1);
+        batchConfiguration.setMaxQueued(2);
+
+        ListenerConfiguration listenerConfiguration = new ListenerConfiguration();
+        listenerConfiguration.setRequestClasses(
+                Arrays.asList(criticalConfiguration, internalConfiguration, batchConfiguration));
+        listenerConfiguration.setMaxConcurrentRequests(2);
+        listenerConfiguration.setMaxQueuedRequests(2);
+
+        loadShedder = new PriorityLoadShedder(listenerConfiguration);
+        critical = loadShedder.getRequestClasses().get(0);
+        internal = loadShedder.getRequestClasses().get(1);
+        batch = loadShedder.getRequestClasses().get(2);
+        events = new ArrayList<>();
+    }
+
+    @Test
+    public void classificationTestCase() {
+        assertEquals(critical, loadShedder.classify(request("/critical/orders", null)));
+        assertEquals(internal, loadShedder.classify(request("/reports", "INTERNAL")));
+        assertEquals(batch, loadShedder.classify(request("/reports", "external")));
+        assertEquals(batch, loadShedder.classify(request("/reports", null)));
+    }
+
+    @Test
+    public void sheddingTestCase() {
+        assertTrue(loadShedder.tryAcquire(batch));
+        assertFalse("Request beyond the class concurrency is admitted", loadShedder.tryAcquire(batch));
+
+        assertNotNull(enqueue(batch, "batch-1"));
+        assertNotNull(enqueue(batch, "batch-2"));
+        assertEquals(2, loadShedder.getQueued());
+        assertFalse("Request beyond the class queue is queueable", loadShedder.isQueueable(batch));
+
+        assertTrue(loadShedder.tryAcquire(critical));
+        assertEquals(2, loadShedder.getInFlight());
+
+        // Queue is full, hence the newest request of the lower priority class gives way to the critical request
+        assertTrue(loadShedder.isQueueable(critical));
+        assertNotNull(enqueue(critical, "critical-1"));
+        assertEquals(Arrays.asList("shed batch-2"), events);
+        assertEquals(2, loadShedder.getQueued());
+        assertEquals(1, batch.getShedCount());
+
+        // Nothing of a lower priority is left to be shed for another batch request
+        assertNull(enqueue(batch, "batch-3"));
+
+        // Highest priority request is dispatched first regardless of the class of the released request
+        loadShedder.release(critical);
+        assertEquals(Arrays.asList("shed batch-2", "dispatch critical-1"), events);
+        loadShedder.release(batch);
+        assertEquals(Arrays.asList("shed batch-2", "dispatch critical-1", "dispatch batch-1"), events);
+
+        assertEquals(0, loadShedder.getQueued());
+        assertEquals(2, loadShedder.getInFlight());
+        assertEquals(1, critical.getInFlight());
+        assertEquals(1, batch.getInFlight());
+        assertEquals(2, critical.getAdmittedCount());
+        assertEquals(1, critical.getQueuedCount());
+        assertEquals(2, batch.getAdmittedCount());
+        assertEquals(2, batch.getQueuedCount());
+    }
+
+    @Test
+    public void dispatchWithinBudgetTestCase() {
+        assertNotNull(enqueue(internal, "internal-1"));
+        assertEquals(Arrays.asList("dispatch internal-1"), events);
+        assertEquals(0, loadShedder.getQueued());
+        assertEquals(1, loadShedder.getInFlight());
+        assertEquals(1, internal.getAdmittedCount());
+        assertEquals(0, internal.getQueuedCount());
+    }
+
+    @Test
+    public void removeTestCase() {
+        assertTrue(loadShedder.tryAcquire(batch));
+        PriorityLoadShedder.PendingRequest pendingRequest = enqueue(batch, "batch-1");
+        assertEquals(1, batch.getPendingCount());
+
+        // Request abandoned by its client is neither dispatched nor shed
+        loadShedder.remove(pendingRequest);
+        loadShedder.remove(pendingRequest);
+        assertEquals(0, batch.getPendingCount());
+        assertEquals(0, loadShedder.getQueued());
+
+        loadShedder.release(batch);
+        assertTrue(events.isEmpty());
+        assertEquals(0, loadShedder.getInFlight());
+    }
+
+    private PriorityLoadShedder.PendingRequest enqueue(RequestClass requestClass, String name) {
+        return loadShedder.enqueue(requestClass, () -> events.add("dispatch " + name),
+                () -> events.add("shed " + name));
+    }
+
+    private static HttpRequest request(String uri, String tier) {
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+        if (tier != null) {
+            request.headers().set("X-Tier", tier);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.transport.http.netty.limiter;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.testng.annotations.Test;
+import org.wso2.carbon.transport.http.netty.config.ListenerConfiguration;
+import org.wso2.carbon.transport.http.netty.listener.limiter.RateLimiter;
+import org.wso2.carbon.transport.http.netty.listener.limiter.TokenBucket;
+
+import java.net.InetAddress;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotSame;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests the listener wide and per client request rate limits of the {@link RateLimiter}.
+ */
+public class RateLimiterTestCase {
+
+    private static final long INTERVAL = 100;
+
+    @Test
+    public void tokenBucketTestCase() {
+        TokenBucket bucket = new TokenBucket();
+
+        assertTrue(bucket.tryAcquire(0, INTERVAL, 2));
+        assertTrue(bucket.tryAcquire(0, INTERVAL, 2));
+        assertFalse("Request beyond the burst is admitted", bucket.tryAcquire(0, INTERVAL, 2));
+        assertFalse(bucket.tryAcquire(INTERVAL - 1, INTERVAL, 2));
+        assertTrue("Token is not refilled after an interval", bucket.tryAcquire(INTERVAL, INTERVAL, 2));
+        assertFalse(bucket.tryAcquire(INTERVAL, INTERVAL, 2));
+
+        // Tokens do not accumulate beyond the burst while the bucket is idle
+        long idle = 100 * INTERVAL;
+        assertTrue(bucket.tryAcquire(idle, INTERVAL, 2));
+        assertTrue(bucket.tryAcquire(idle, INTERVAL, 2));
+        assertFalse(bucket.tryAcquire(idle, INTERVAL, 2));
+
+        bucket.release(INTERVAL);
+        assertTrue("Released token is not taken again", bucket.tryAcquire(idle, INTERVAL, 2));
+        assertFalse(bucket.tryAcquire(idle, INTERVAL, 2));
+    }
+
+    @Test
+    public void listenerLimitTestCase() {
+        ListenerConfiguration listenerConfiguration = new ListenerConfiguration();
+        listenerConfiguration.setRateLimit(1);
+        listenerConfiguration.setRateLimitBurst(2);
+        listenerConfiguration.setRetryAfter(1);
+        RateLimiter rateLimiter = new RateLimiter(listenerConfiguration);
+
+        assertNull("Client bucket is created without a client limit",
+                rateLimiter.getClientBucket(InetAddress.getLoopbackAddress()));
+        assertTrue(rateLimiter.tryAcquire(null));
+        assertTrue(rateLimiter.tryAcquire(null));
+        assertFalse("Request beyond the burst is admitted", rateLimiter.tryAcquire(null));
+        assertEquals(2, rateLimiter.getAcceptedCount());
+        assertEquals(1, rateLimiter.getListenerRejectedCount());
+        assertEquals(0, rateLimiter.getClientRejectedCount());
+
+        assertEquals(HttpResponseStatus.TOO_MANY_REQUESTS, rateLimiter.getRejectionResponse().status());
+        assertEquals("1", rateLimiter.getRejectionResponse().headers().get(HttpHeaderNames.RETRY_AFTER));
+
+        rateLimiter.setListenerLimit(0, 0);
+        assertTrue("Request is rejected once the limit is removed", rateLimiter.tryAcquire(null));
+    }
+
+    @Test
+    public void clientLimitTestCase() throws Exception {
+        ListenerConfiguration listenerConfiguration = new ListenerConfiguration();
+        listenerConfiguration.setClientRateLimit(1);
+        listenerConfiguration.setClientRateLimitBurst(1);
+        listenerConfiguration.setMaxRateLimitedClients(2);
+        RateLimiter rateLimiter = new RateLimiter(listenerConfiguration);
+
+        InetAddress firstClient = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        InetAddress secondClient = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+        InetAddress thirdClient = InetAddress.getByAddress(new byte[] {10, 0, 0, 3});
+        TokenBucket firstBucket = rateLimiter.getClientBucket(firstClient);
+        assertSame(firstBucket, rateLimiter.getClientBucket(firstClient));
+
+        assertTrue(rateLimiter.tryAcquire(firstBucket));
+        assertFalse("Request beyond the client burst is admitted", rateLimiter.tryAcquire(firstBucket));
+        assertTrue("Client is limited by the requests of another client",
+                rateLimiter.tryAcquire(rateLimiter.getClientBucket(secondClient)));
+        assertEquals(2, rateLimiter.getAcceptedCount());
+        assertEquals(1, rateLimiter.getClientRejectedCount());
+        assertEquals(0, rateLimiter.getListenerRejectedCount());
+
+        // Least recently used client is evicted once the number of tracked clients exceeds the maximum
+        rateLimiter.getClientBucket(thirdClient);
+        assertEquals(2, rateLimiter.getClientCount());
+        assertNotSame(firstBucket, rateLimiter.getClientBucket(firstClient));
+    }
+
+    @Test
+    public void listenerRejectionKeepsClientTokenTestCase() throws Exception {
+        ListenerConfiguration listenerConfiguration = new ListenerConfiguration();
+        listenerConfiguration.setRateLimit(1);
+        listenerConfiguration.setRateLimitBurst(1);
+        listenerConfiguration.setClientRateLimit(1);
+        listenerConfiguration.setClientRateLimitBurst(1);
+        RateLimiter rateLimiter = new RateLimiter(listenerConfiguration);
+
+        InetAddress firstClient = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        InetAddress secondClient = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+        assertTrue(rateLimiter.tryAcquire(rateLimiter.getClientBucket(firstClient)));
+        TokenBucket clientBucket = rateLimiter.getClientBucket(secondClient);
+        assertFalse(rateLimiter.tryAcquire(clientBucket));
+        assertEquals(1, rateLimiter.getListenerRejectedCount());
+
+        // The token taken from the client is given back when the listener rejects the request
+        rateLimiter.setListenerLimit(0, 0);
+        assertTrue("Client is charged for a request rejected by the listener", rateLimiter.tryAcquire(clientBucket));
+        assertEquals(0, rateLimiter.getClientRejectedCount());
+    }
+}
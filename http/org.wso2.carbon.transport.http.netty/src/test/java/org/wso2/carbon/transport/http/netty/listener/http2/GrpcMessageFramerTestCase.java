@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.transport.http.netty.listener.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http2.Http2Exception;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests the split of the request content of a gRPC stream into its messages by the {@link GrpcMessageFramer}, and
+ * the accounting of the bytes which are returned to the flow control window of the stream.
+ */
+public class GrpcMessageFramerTestCase {
+
+    private static final int STREAM_ID = 3;
+    private static final int MAX_MESSAGE_SIZE = 1024;
+
+    @Test
+    public void framingTestCase() throws Exception {
+        byte[] first = message("first");
+        byte[] second = message("second message");
+        byte[] empty = message("");
+        GrpcMessageFramer framer = new GrpcMessageFramer(ByteBufAllocator.DEFAULT, STREAM_ID, MAX_MESSAGE_SIZE);
+        int returnedBytes = 0;
+        try {
+            // First DATA frame carries the first message and the prefix of the second one
+            List<GrpcMessageFramer.GrpcMessage> messages = framer.add(Unpooled.wrappedBuffer(
+                    Unpooled.wrappedBuffer(first), Unpooled.wrappedBuffer(second, 0, 3)));
+            assertEquals(1, messages.size());
+            assertContent(first, messages.get(0));
+            assertTrue(framer.hasPartialMessage());
+            returnedBytes += framer.returnPartialBytes();
+            assertEquals("Bytes of the partial message are not returned right away", 3, returnedBytes);
+            returnedBytes += takeAll(messages);
+
+            // Second DATA frame completes the second message and carries an empty message after it
+            messages = framer.add(Unpooled.wrappedBuffer(
+                    Unpooled.wrappedBuffer(second, 3, second.length - 3), Unpooled.wrappedBuffer(empty)));
+            assertEquals(2, messages.size());
+            assertContent(second, messages.get(0));
+            assertContent(empty, messages.get(1));
+            assertFalse(framer.hasPartialMessage());
+            assertEquals(0, framer.returnPartialBytes());
+            returnedBytes += takeAll(messages);
+
+            assertEquals("Bytes returned to the window differ from the bytes received",
+                    first.length + second.length + empty.length, returnedBytes);
+        } finally {
+            framer.release();
+        }
+    }
+
+    @Test
+    public void messageSpanningFramesTestCase() throws Exception {
+        byte[] encoded = message("message spanning several DATA frames");
+        GrpcMessageFramer framer = new GrpcMessageFramer(ByteBufAllocator.DEFAULT, STREAM_ID, MAX_MESSAGE_SIZE);
+        int returnedBytes = 0;
+        try {
+            for (int offset = 0; offset < encoded.length; offset += 10) {
+                List<GrpcMessageFramer.GrpcMessage> messages = framer.add(
+                        Unpooled.wrappedBuffer(encoded, offset, Math.min(10, encoded.length - offset)));
+                returnedBytes += framer.returnPartialBytes();
+                if (offset + 10 < encoded.length) {
+                    assertTrue(messages.isEmpty());
+                } else {
+                    assertEquals(1, messages.size());
+                    assertContent(encoded, messages.get(0));
+                    returnedBytes += takeAll(messages);
+                }
+            }
+            assertEquals(encoded.length, returnedBytes);
+            assertFalse(framer.hasPartialMessage());
+        } finally {
+            framer.release();
+        }
+    }
+
+    @Test
+    public void unreturnedBytesTakenOnceTestCase() throws Exception {
+        GrpcMessageFramer framer = new GrpcMessageFramer(ByteBufAllocator.DEFAULT, STREAM_ID, MAX_MESSAGE_SIZE);
+        try {
+            byte[] encoded = message("taken once");
+            List<GrpcMessageFramer.GrpcMessage> messages = framer.add(Unpooled.wrappedBuffer(encoded));
+            GrpcMessageFramer.GrpcMessage grpcMessage = messages.get(0);
+
+            // Message may be taken from the queue of its request more than once, e.g. to find the length
+            assertEquals(encoded.length, grpcMessage.takeUnreturnedBytes());
+            assertEquals(0, grpcMessage.takeUnreturnedBytes());
+            grpcMessage.release();
+        } finally {
+            framer.release();
+        }
+    }
+
+    @Test(expectedExceptions = Http2Exception.class)
+    public void maxMessageSizeTestCase() throws Exception {
+        GrpcMessageFramer framer = new GrpcMessageFramer(ByteBufAllocator.DEFAULT, STREAM_ID, MAX_MESSAGE_SIZE);
+        try {
+            ByteBuf prefix = Unpooled.buffer(GrpcMessageFramer.PREFIX_LENGTH);
+            prefix.writeByte(0);
+            prefix.writeInt(MAX_MESSAGE_SIZE + 1);
+            framer.add(prefix);
+        } finally {
+            framer.release();
+        }
+    }
+
+    /**
+     * Encode a gRPC message with its prefix of the compressed flag and the length.
+     */
+    private static byte[] message(String payload) {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(GrpcMessageFramer.PREFIX_LENGTH + bytes.length)
+                .put((byte) 0).putInt(bytes.length).put(bytes).array();
+    }
+
+    private static void assertContent(byte[] expected, GrpcMessageFramer.GrpcMessage message) {
+        assertEquals(Unpooled.wrappedBuffer(expected), message.content());
+    }
+
+    /**
+     * Take the unreturned bytes of the given messages once they are read, and release them.
+     */
+    private static int takeAll(List<GrpcMessageFramer.GrpcMessage> messages) {
+        int bytes = 0;
+        for (GrpcMessageFramer.GrpcMessage message : messages) {
+            bytes += message.takeUnreturnedBytes();
+            message.release();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.transport.http.netty.pipelining;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.transport.http.netty.listener.ResponseSequencer;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests that the {@link ResponseSequencer} writes the responses of pipelined requests in the order of the requests,
+ * regardless of the order in which they are produced.
+ */
+public class ResponseSequencerTestCase {
+
+    private EmbeddedChannel channel;
+    private ResponseSequencer responseSequencer;
+    private int completedResponses;
+
+    @BeforeMethod
+    public void setup() {
+        channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        completedResponses = 0;
+        responseSequencer = new ResponseSequencer(channel.pipeline().firstContext(), () -> completedResponses++);
+    }
+
+    @Test
+    public void responseOrderTestCase() {
+        ResponseSequencer.ResponseSlot firstSlot = responseSequencer.newSlot();
+        ResponseSequencer.ResponseSlot secondSlot = responseSequencer.newSlot();
+        ResponseSequencer.ResponseSlot thirdSlot = responseSequencer.newSlot();
+        assertEquals(3, responseSequencer.size());
+
+        // Responses of the later requests are produced first
+        HttpResponse thirdResponse = response(HttpResponseStatus.ACCEPTED);
+        thirdSlot.writeAndFlush(thirdResponse);
+        HttpResponse secondResponse = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CREATED);
+        secondSlot.writeAndFlush(secondResponse);
+        assertNull("Response is written before the response of an earlier request", channel.readOutbound());
+
+        HttpResponse firstResponse = response(HttpResponseStatus.OK);
+        firstSlot.writeAndFlush(firstResponse);
+        assertEquals(1, completedResponses);
+        assertSame(firstResponse, channel.readOutbound());
+        assertSame(secondResponse, channel.readOutbound());
+        assertNull("Response is written before the response of an earlier request is completed",
+                channel.readOutbound());
+        assertEquals(2, responseSequencer.size());
+
+        secondSlot.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+        assertEquals(2, completedResponses);
+        assertSame(LastHttpContent.EMPTY_LAST_CONTENT, channel.readOutbound());
+        assertSame(thirdResponse, channel.readOutbound());
+        assertNull(channel.readOutbound());
+        assertEquals(0, responseSequencer.size());
+    }
+
+    @Test
+    public void interimResponseTestCase() {
+        ResponseSequencer.ResponseSlot firstSlot = responseSequencer.newSlot();
+        ResponseSequencer.ResponseSlot secondSlot = responseSequencer.newSlot();
+
+        HttpResponse continueResponse = response(HttpResponseStatus.CONTINUE);
+        firstSlot.writeAndFlush(continueResponse);
+        HttpResponse secondResponse = response(HttpResponseStatus.OK);
+        secondSlot.writeAndFlush(secondResponse);
+
+        // Interim response does not complete the first request
+        assertSame(continueResponse, channel.readOutbound());
+        assertNull(channel.readOutbound());
+        assertEquals(0, completedResponses);
+
+        HttpResponse firstResponse = response(HttpResponseStatus.OK);
+        firstSlot.writeAndFlush(firstResponse);
+        assertSame(firstResponse, channel.readOutbound());
+        assertSame(secondResponse, channel.readOutbound());
+        assertEquals(0, responseSequencer.size());
+    }
+
+    @Test
+    public void clearTestCase() {
+        ResponseSequencer.ResponseSlot firstSlot = responseSequencer.newSlot();
+        ResponseSequencer.ResponseSlot secondSlot = responseSequencer.newSlot();
+        ChannelFuture heldBack = secondSlot.writeAndFlush(response(HttpResponseStatus.OK));
+
+        List<ResponseSequencer.ResponseSlot> dropped = new ArrayList<>();
+        responseSequencer.clear(dropped::add);
+        assertEquals(2, dropped.size());
+        assertSame(firstSlot, dropped.get(0));
+        assertSame(secondSlot, dropped.get(1));
+        assertEquals(0, responseSequencer.size());
+        assertTrue(heldBack.cause() instanceof ClosedChannelException);
+
+        // Response produced after the connection is closed is dropped as well
+        ChannelFuture late = firstSlot.writeAndFlush(response(HttpResponseStatus.OK));
+        assertFalse(late.isSuccess());
+        assertTrue(late.cause() instanceof ClosedChannelException);
+        assertNull(channel.readOutbound());
+        assertEquals(0, completedResponses);
+    }
+
+    private static HttpResponse response(HttpResponseStatus status) {
+        return new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status);
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.transport.http.netty.pool;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.HashedWheelTimer;
+import org.apache.commons.pool.BasePoolableObjectFactory;
+import org.apache.commons.pool.impl.GenericObjectPool;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.transport.http.netty.common.HttpRoute;
+import org.wso2.carbon.transport.http.netty.sender.channel.TargetChannel;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.ConnectionManager;
+import org.wso2.carbon.transport.http.netty.sender.channel.pool.PoolAcquireQueue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests that the permits of a bounded connection pool are handed over in order and released exactly once, however
+ * many times the request holding a permit is completed or failed.
+ */
+public class PoolPermitTestCase {
+
+    private static final HttpRoute ROUTE = new HttpRoute("localhost", 9000);
+    private static final long ACQUIRE_TIMEOUT = 10000;
+
+    private HashedWheelTimer timer;
+
+    @BeforeClass
+    public void setup() {
+        timer = new HashedWheelTimer();
+    }
+
+    @Test
+    public void permitHandOverTestCase() {
+        PoolAcquireQueue acquireQueue = new PoolAcquireQueue(ROUTE, 1, 1, timer);
+        List<PoolAcquireQueue.Permit> permits = new ArrayList<>();
+        List<String> failures = new ArrayList<>();
+
+        acquireQueue.acquire(permits::add, failures::add, ACQUIRE_TIMEOUT);
+        acquireQueue.acquire(permits::add, failures::add, ACQUIRE_TIMEOUT);
+        acquireQueue.acquire(permits::add, failures::add, ACQUIRE_TIMEOUT);
+        assertEquals(1, permits.size());
+        assertEquals(1, acquireQueue.getPendingAcquireCount());
+        assertEquals("Request beyond the pending acquires is not rejected", 1, failures.size());
+        assertEquals(0, acquireQueue.getAvailablePermits());
+
+        // Permit is handed over to the waiting request, and released once however often its holder releases it
+        permits.get(0).release();
+        permits.get(0).release();
+        assertEquals(2, permits.size());
+        assertEquals(0, acquireQueue.getPendingAcquireCount());
+        assertEquals(0, acquireQueue.getAvailablePermits());
+
+        permits.get(1).release();
+        permits.get(1).release();
+        assertEquals(1, acquireQueue.getAvailablePermits());
+        assertEquals(2, acquireQueue.getAcquiredCount());
+        assertEquals(1, acquireQueue.getRejectedCount());
+    }
+
+    @Test
+    public void acquireTimeoutTestCase() throws Exception {
+        PoolAcquireQueue acquireQueue = new PoolAcquireQueue(ROUTE, 1, 1, timer);
+        List<PoolAcquireQueue.Permit> permits = new ArrayList<>();
+        CountDownLatch timedOut = new CountDownLatch(1);
+
+        acquireQueue.acquire(permits::add, reason -> timedOut.countDown(), ACQUIRE_TIMEOUT);
+        acquireQueue.acquire(permits::add, reason -> timedOut.countDown(), 100);
+        assertTrue("Waiting request is not timed out", timedOut.await(5, TimeUnit.SECONDS));
+        assertEquals(1, acquireQueue.getTimedOutCount());
+        assertEquals(0, acquireQueue.getPendingAcquireCount());
+
+        // Permit is not handed over to the timed out request
+        permits.get(0).release();
+        assertEquals(1, permits.size());
+        assertEquals(1, acquireQueue.getAvailablePermits());
+    }
+
+    @Test
+    public void targetChannelReleaseTestCase() throws Exception {
+        ConnectionManager connectionManager = ConnectionManager.getInstance(new HashMap<>());
+        PoolAcquireQueue acquireQueue = new PoolAcquireQueue(ROUTE, 1, 0, timer);
+        GenericObjectPool pool = new GenericObjectPool(new BasePoolableObjectFactory() {
+            @Override
+            public Object makeObject() throws Exception {
+                TargetChannel targetChannel = new TargetChannel().setChannel(new EmbeddedChannel());
+                targetChannel.setHttpRoute(ROUTE);
+                return targetChannel;
+            }
+        });
+
+        // Response is completed and the channel is closed right after, both of which release the channel
+        TargetChannel targetChannel = borrow(pool, acquireQueue);
+        connectionManager.returnChannel(targetChannel);
+        connectionManager.invalidateChannel(targetChannel);
+        assertEquals(1, acquireQueue.getAvailablePermits());
+        assertEquals(0, pool.getNumActive());
+        assertEquals(1, pool.getNumIdle());
+
+        // Channel is closed before the response is completed
+        targetChannel = borrow(pool, acquireQueue);
+        connectionManager.invalidateChannel(targetChannel);
+        connectionManager.returnChannel(targetChannel);
+        assertEquals(1, acquireQueue.getAvailablePermits());
+        assertEquals(0, pool.getNumActive());
+        assertEquals(0, pool.getNumIdle());
+        assertEquals(2, acquireQueue.getAcquiredCount());
+        pool.close();
+
+        // Channel created for a source channel holds a permit of the route as well
+        List<PoolAcquireQueue.Permit> permits = new ArrayList<>();
+        List<String> failures = new ArrayList<>();
+        acquireQueue.acquire(permits::add, failures::add, ACQUIRE_TIMEOUT);
+        targetChannel = new TargetChannel().setChannel(new EmbeddedChannel());
+        targetChannel.setHttpRoute(ROUTE);
+        targetChannel.borrow(null, permits.get(0));
+        assertEquals(0, acquireQueue.getAvailablePermits());
+        connectionManager.returnChannel(targetChannel);
+        assertEquals(1, acquireQueue.getAvailablePermits());
+        assertFalse("Channel without a source channel is kept", targetChannel.getChannel().isOpen());
+    }
+
+    @Test
+    public void idleExpiryTestCase() throws Exception {
+        List<TargetChannel> expired = new ArrayList<>();
+        EmbeddedChannel channel = new EmbeddedChannel();
+        TargetChannel targetChannel = new TargetChannel().setChannel(channel);
+
+        // Channel which is borrowed again before it expires is kept open
+        targetChannel.scheduleIdleExpiry(50, () -> expired.add(targetChannel));
+        targetChannel.cancelIdleExpiry();
+        Thread.sleep(100);
+        channel.runPendingTasks();
+        assertTrue(channel.isOpen());
+        assertEquals(0, expired.size());
+
+        // Pool or cache holding the channel is notified once the channel is closed
+        targetChannel.scheduleIdleExpiry(50, () -> expired.add(targetChannel));
+        Thread.sleep(100);
+        channel.runPendingTasks();
+        assertFalse("Idle channel is not closed", channel.isOpen());
+        assertEquals(1, expired.size());
+        channel.finishAndReleaseAll();
+    }
+
+    /**
+     * Borrow a channel from the pool along with a permit of the acquire queue, the same way a request does.
+     */
+    private static TargetChannel borrow(GenericObjectPool pool, PoolAcquireQueue acquireQueue) throws Exception {
+        List<PoolAcquireQueue.Permit> permits = new ArrayList<>();
+        List<String> failures = new ArrayList<>();
+        acquireQueue.acquire(permits::add, failures::add, ACQUIRE_TIMEOUT);
+        assertEquals("Permit is not available: " + failures, 1, permits.size());
+        TargetChannel targetChannel = (TargetChannel) pool.borrowObject();
+        targetChannel.borrow(pool, permits.get(0));
+        return targetChannel;
+    }
+
+    @AfterClass
+    public void cleanUp() {
+        timer.stop();
+    }
+}
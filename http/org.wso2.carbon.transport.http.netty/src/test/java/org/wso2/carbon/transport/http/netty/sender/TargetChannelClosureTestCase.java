@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.transport.http.netty.sender;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.messaging.CarbonCallback;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.CarbonMessageProcessor;
+import org.wso2.carbon.messaging.ClientConnector;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
+import org.wso2.carbon.messaging.TransportSender;
+import org.wso2.carbon.transport.http.netty.common.Constants;
+import org.wso2.carbon.transport.http.netty.config.TransportsConfiguration;
+import org.wso2.carbon.transport.http.netty.config.YAMLTransportConfigurationBuilder;
+import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
+import org.wso2.carbon.transport.http.netty.util.TestUtil;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests that a request fails right away when the backend closes the connection before the response is completed,
+ * instead of waiting for the request timeout. The socket timeout of the sender is 15 seconds, hence a request
+ * which is only failed by its timer is not completed within the wait time of these tests.
+ */
+public class TargetChannelClosureTestCase {
+
+    private static final long WAIT_TIME = 5;
+    private static final int CONTENT_LENGTH = 100;
+
+    private EventLoopGroup backendGroup;
+    private Channel backendChannel;
+    private volatile boolean respondPartially;
+    private HTTPClientConnector httpClientConnector;
+    private CarbonMessageProcessor previousMessageProcessor;
+
+    @BeforeClass
+    public void setup() throws Exception {
+        TransportsConfiguration configuration = YAMLTransportConfigurationBuilder
+                .build("src/test/resources/simple-test-config/netty-transports.yml");
+        httpClientConnector = new HTTPClientConnector(configuration.getSenderConfigurations(),
+                configuration.getTransportProperties());
+        previousMessageProcessor = HTTPTransportContextHolder.getInstance().getMessageProcessor();
+        HTTPTransportContextHolder.getInstance().setMessageProcessor(new ResponseDeliveringProcessor());
+
+        backendGroup = new NioEventLoopGroup(1);
+        backendChannel = new ServerBootstrap()
+                .group(backendGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) throws Exception {
+                        ch.pipeline().addLast(new HttpServerCodec(), new ClosingBackendHandler());
+                    }
+                })
+                .bind(TestUtil.TEST_HOST, 0)
+                .sync().channel();
+    }
+
+    @Test
+    public void closedBeforeResponseTestCase() throws Exception {
+        respondPartially = false;
+        CarbonMessage response = send();
+
+        assertEquals(504, response.getProperty(Constants.HTTP_STATUS_CODE));
+        assertNotNull("Closure is not reported", response.getMessagingException());
+    }
+
+    @Test
+    public void closedWhileReadingBodyTestCase() throws Exception {
+        respondPartially = true;
+        CarbonMessage response = send();
+        assertEquals(200, response.getProperty(Constants.HTTP_STATUS_CODE));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(WAIT_TIME);
+        while (!response.isEndOfMsgAdded() && System.nanoTime() - deadline < 0) {
+            Thread.sleep(10);
+        }
+        assertTrue("Response is not terminated", response.isEndOfMsgAdded());
+        assertNotNull("Closure is not reported", response.getMessagingException());
+    }
+
+    private CarbonMessage send() throws Exception {
+        DefaultCarbonMessage request = new DefaultCarbonMessage();
+        request.setProperty(Constants.PROTOCOL, "http");
+        request.setProperty(Constants.HOST, TestUtil.TEST_HOST);
+        request.setProperty(Constants.PORT, ((InetSocketAddress) backendChannel.localAddress()).getPort());
+        request.setProperty(Constants.TO, "/");
+        request.setProperty(Constants.HTTP_METHOD, HttpMethod.GET.name());
+        request.setEndOfMsgAdded(true);
+
+        CountDownLatch latch = new CountDownLatch(1);
+        CarbonMessage[] response = new CarbonMessage[1];
+        httpClientConnector.send(request, responseMessage -> {
+            response[0] = responseMessage;
+            latch.countDown();
+        });
+        assertTrue("Request is not failed once the connection is closed", latch.await(WAIT_TIME, TimeUnit.SECONDS));
+        return response[0];
+    }
+
+    @AfterClass
+    public void cleanUp() throws Exception {
+        HTTPTransportContextHolder.getInstance().setMessageProcessor(previousMessageProcessor);
+        if (backendChannel != null) {
+            backendChannel.close().sync();
+        }
+        if (backendGroup != null) {
+            backendGroup.shutdownGracefully();
+        }
+    }
+
+    /**
+     * Closes the connection once a request is read, either right away or after a part of the response body.
+     */
+    private class ClosingBackendHandler extends ChannelInboundHandlerAdapter {
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            boolean lastContent = msg instanceof LastHttpContent;
+            ReferenceCountUtil.release(msg);
+            if (!lastContent) {
+                return;
+            }
+            if (!respondPartially) {
+                ctx.close();
+                return;
+            }
+            HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            response.headers().set(HttpHeaderNames.CONTENT_LENGTH, CONTENT_LENGTH);
+            ctx.write(response);
+            ctx.writeAndFlush(new DefaultHttpContent(Unpooled.wrappedBuffer(new byte[CONTENT_LENGTH / 10])))
+                    .addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    /**
+     * Hands over the responses received from the backend to the callback of the request.
+     */
+    private static class ResponseDeliveringProcessor implements CarbonMessageProcessor {
+
+        @Override
+        public boolean receive(CarbonMessage carbonMessage, CarbonCallback carbonCallback) throws Exception {
+            carbonCallback.done(carbonMessage);
+            return true;
+        }
+
+        @Override
+        public void setTransportSender(TransportSender transportSender) {
+        }
+
+        @Override
+        public void setClientConnector(ClientConnector clientConnector) {
+        }
+
+        @Override
+        public String getId() {
+            return "target-channel-closure-processor";
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.transport.http.netty.uds;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.handler.codec.http.HttpMethod;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.SkipException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.messaging.CarbonCallback;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.CarbonMessageProcessor;
+import org.wso2.carbon.messaging.ClientConnector;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
+import org.wso2.carbon.messaging.TransportSender;
+import org.wso2.carbon.transport.http.netty.common.Constants;
+import org.wso2.carbon.transport.http.netty.config.TransportsConfiguration;
+import org.wso2.carbon.transport.http.netty.config.YAMLTransportConfigurationBuilder;
+import org.wso2.carbon.transport.http.netty.internal.HTTPTransportContextHolder;
+import org.wso2.carbon.transport.http.netty.sender.HTTPClientConnector;
+import org.wso2.carbon.transport.http.netty.util.TestUtil;
+import org.wso2.carbon.transport.http.netty.util.server.HTTPServer;
+import org.wso2.carbon.transport.http.netty.util.server.HTTPServerInitializer;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Sends requests to a backend over a Unix domain socket and, in the benchmark group which is not part of the default
+ * suite, compares their latency with the latency of requests sent to the same backend over loopback TCP. Requests
+ * are not originated from a listener, hence both routes are served from the pools of the requests without a source
+ * channel.
+ */
+public class UnixDomainSocketBenchmarkTestCase {
+
+    private static final Logger log = LoggerFactory.getLogger(UnixDomainSocketBenchmarkTestCase.class);
+
+    private static final int FUNCTIONAL_REQUESTS = 10;
+    private static final int WARM_UP_REQUESTS = 1000;
+    private static final int BENCHMARK_REQUESTS = 10000;
+    private static final String RESPONSE_MESSAGE = "Hello from the sidecar";
+    // Latency over the domain socket is expected to be lower, the margin only keeps a noisy build host from failing
+    private static final double LATENCY_MARGIN = 1.5;
+
+    private HTTPServer tcpServer;
+    private EventLoopGroup domainSocketGroup;
+    private Channel domainSocketServerChannel;
+    private File socketFile;
+    private HTTPClientConnector httpClientConnector;
+    private CarbonMessageProcessor previousMessageProcessor;
+
+    @BeforeClass
+    public void setup() throws Exception {
+        if (!Epoll.isAvailable()) {
+            throw new SkipException("Native epoll transport is not available: " + Epoll.unavailabilityCause());
+        }
+        TransportsConfiguration configuration = YAMLTransportConfigurationBuilder
+                .build("src/test/resources/simple-test-config/netty-transports.yml");
+        httpClientConnector = new HTTPClientConnector(configuration.getSenderConfigurations(),
+                configuration.getTransportProperties());
+        previousMessageProcessor = HTTPTransportContextHolder.getInstance().getMessageProcessor();
+        HTTPTransportContextHolder.getInstance().setMessageProcessor(new ResponseDeliveringProcessor());
+
+        tcpServer = TestUtil.startHTTPServer(TestUtil.TEST_SERVER_PORT, RESPONSE_MESSAGE, "text/plain");
+
+        socketFile = new File(System.getProperty("java.io.tmpdir"), "carbon-transport-benchmark.sock");
+        if (socketFile.exists() && !socketFile.delete()) {
+            throw new IllegalStateException("Cannot delete stale socket file " + socketFile);
+        }
+        HTTPServerInitializer serverInitializer = new HTTPServerInitializer();
+        serverInitializer.setMessage(RESPONSE_MESSAGE, "text/plain");
+        domainSocketGroup = new EpollEventLoopGroup(1);
+        domainSocketServerChannel = new ServerBootstrap()
+                .group(domainSocketGroup)
+                .channel(EpollServerDomainSocketChannel.class)
+                .childHandler(serverInitializer)
+                .bind(new DomainSocketAddress(socketFile))
+                .sync().channel();
+    }
+
+    @Test
+    public void domainSocketTestCase() throws Exception {
+        send(FUNCTIONAL_REQUESTS, socketFile.getAbsolutePath());
+    }
+
+    @Test(groups = "benchmark")
+    public void domainSocketVersusLoopbackTcpTestCase() throws Exception {
+        send(WARM_UP_REQUESTS, null);
+        send(WARM_UP_REQUESTS, socketFile.getAbsolutePath());
+
+        long tcpTime = send(BENCHMARK_REQUESTS, null);
+        long domainSocketTime = send(BENCHMARK_REQUESTS, socketFile.getAbsolutePath());
+
+        log.info("Average latency over loopback TCP: {} us, over Unix domain socket: {} us",
+                TimeUnit.NANOSECONDS.toMicros(tcpTime) / (double) BENCHMARK_REQUESTS,
+                TimeUnit.NANOSECONDS.toMicros(domainSocketTime) / (double) BENCHMARK_REQUESTS);
+        assertTrue("Requests over the Unix domain socket took " + domainSocketTime + " ns while requests over "
+                + "loopback TCP took " + tcpTime + " ns", domainSocketTime <= tcpTime * LATENCY_MARGIN);
+    }
+
+    /**
+     * Send the given number of sequential requests and provide the total time taken in nanoseconds.
+     */
+    private long send(int requests, String domainSocketPath) throws Exception {
+        long startTime = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            DefaultCarbonMessage request = new DefaultCarbonMessage();
+            request.setProperty(Constants.PROTOCOL, "http");
+            request.setProperty(Constants.HOST, TestUtil.TEST_HOST);
+            request.setProperty(Constants.PORT, TestUtil.TEST_SERVER_PORT);
+            request.setProperty(Constants.TO, "/");
+            request.setProperty(Constants.HTTP_METHOD, HttpMethod.GET.name());
+            if (domainSocketPath != null) {
+                request.setProperty(Constants.UNIX_DOMAIN_SOCKET_PATH, domainSocketPath);
+            }
+            request.setEndOfMsgAdded(true);
+
+            CountDownLatch latch = new CountDownLatch(1);
+            CarbonMessage[] response = new CarbonMessage[1];
+            httpClientConnector.send(request, responseMessage -> {
+                response[0] = responseMessage;
+                latch.countDown();
+            });
+            assertTrue("Response not received", latch.await(10, TimeUnit.SECONDS));
+            assertEquals(200, response[0].getProperty(Constants.HTTP_STATUS_CODE));
+        }
+        return System.nanoTime() - startTime;
+    }
+
+    @AfterClass
+    public void cleanUp() throws Exception {
+        if (httpClientConnector != null) {
+            HTTPTransportContextHolder.getInstance().setMessageProcessor(previousMessageProcessor);
+        }
+        if (domainSocketServerChannel != null) {
+            domainSocketServerChannel.close().sync();
+            domainSocketGroup.shutdownGracefully();
+        }
+        if (tcpServer != null) {
+            tcpServer.shutdown();
+        }
+        if (socketFile != null && socketFile.exists() && !socketFile.delete()) {
+            log.warn("Cannot delete socket file " + socketFile);
+        }
+    }
+
+    /**
+     * Hands over the responses received from the backend to the callback of the request.
+     */
+    private static class ResponseDeliveringProcessor implements CarbonMessageProcessor {
+
+        @Override
+        public boolean receive(CarbonMessage carbonMessage, CarbonCallback carbonCallback) throws Exception {
+            carbonCallback.done(carbonMessage);
+            return true;
+        }
+
+        @Override
+        public void setTransportSender(TransportSender transportSender) {
+        }
+
+        @Override
+        public void setClientConnector(ClientConnector clientConnector) {
+        }
+
+        @Override
+        public String getId() {
+            return "uds-benchmark-processor";
+        }
+    }
+}